@@ -59,7 +59,7 @@ public class DataSet {
         roads = new HashMap<geography.GeographicPoint, HashSet<geography.RoadSegment>>();
         intersections = new HashSet<GeographicPoint>();
         //TODO: change to use intersections for points in graph.
-    	GraphLoader.loadRoadMap(filePath, graph, roads, intersections);
+    	GraphLoader.loadRoadMapWithSnapshot(filePath, graph, roads, intersections);
     }
 
 	public String getFilePath() {
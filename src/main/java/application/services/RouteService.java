@@ -24,6 +24,10 @@ public class RouteService {
     private MarkerManager markerManager;
     private Polyline routeLine;
     private RouteVisualization rv;
+    private roadgraph.RouteCache routeCache;
+
+    private static final int CACHED_ROUTES = 1000;
+    private static final long CACHED_INTERSECTIONS = 1000000;
 
 	public RouteService(GoogleMapView mapComponent, MarkerManager manager) {
 		this.map = mapComponent.getMap();
@@ -96,16 +100,14 @@ public class RouteService {
         			toggle == RouteController.BFS) {
         		markerManager.initVisualization();
             	Consumer<geography.GeographicPoint> nodeAccepter = markerManager.getVisualization()::acceptPoint;
-            	List<geography.GeographicPoint> path = null;
+            	roadgraph.SearchAlgorithm algorithm = roadgraph.SearchAlgorithm.DIJKSTRA;
             	if (toggle == RouteController.BFS) {
-            		path = markerManager.getDataSet().getGraph().bfs(start, end, nodeAccepter);
-            	}
-            	else if (toggle == RouteController.DIJ) {
-            		path = markerManager.getDataSet().getGraph().dijkstra(start, end, nodeAccepter);
+            		algorithm = roadgraph.SearchAlgorithm.BFS;
             	}
             	else if (toggle == RouteController.A_STAR) {
-            		path = markerManager.getDataSet().getGraph().aStarSearch(start, end, nodeAccepter);
+            		algorithm = roadgraph.SearchAlgorithm.A_STAR;
             	}
+            	List<geography.GeographicPoint> path = getRouteCache().route(start, end, algorithm, nodeAccepter).getPath();
 
             	if(path == null) {
                     // System.out.println("In displayRoute : PATH NOT FOUND");
@@ -187,6 +189,16 @@ public class RouteService {
     }
 
 
+    // The cache of the graph currently displayed, replaced when a new map
+    // is loaded
+    private roadgraph.RouteCache getRouteCache() {
+    	roadgraph.MapGraph graph = markerManager.getDataSet().getGraph();
+    	if (routeCache == null || routeCache.getGraph() != graph) {
+    		routeCache = new roadgraph.RouteCache(graph, CACHED_ROUTES, CACHED_INTERSECTIONS);
+    	}
+    	return routeCache;
+    }
+
 	private void removeRouteLine() {
         if(routeLine != null) {
     		map.removeMapShape(routeLine);
@@ -22,8 +22,22 @@ public class GeographicPoint extends Double {
                 other.getX(), other.getY());     
 	}
 	
+	/**
+	 * Calculates the geographic distance in km between two lat, lon points,
+	 * exactly as distance(GeographicPoint) does, without making the points.
+	 * @param lat1 The latitude of the first point
+	 * @param lon1 The longitude of the first point
+	 * @param lat2 The latitude of the second point
+	 * @param lon2 The longitude of the second point
+	 * @return The distance between the two points
+	 */
+	public static double distance(double lat1, double lon1, double lat2, double lon2)
+	{
+		return getDist(lat1, lon1, lat2, lon2);
+	}
+	
     
-    private double getDist(double lat1, double lon1, double lat2, double lon2)
+    private static double getDist(double lat1, double lon1, double lat2, double lon2)
     {
     	int R = 6373; // radius of the earth in kilometres
     	double lat1rad = Math.toRadians(lat1);
@@ -0,0 +1,147 @@
+package geography;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The intermediate points of many road segments, kept as primitive data that
+ * a RoadSegment points into with a range of indices. A segment made over a
+ * store holds no GeographicPoints of its own: they are made each time its
+ * points are asked for, which for a whole map is only when a route over it is
+ * drawn.
+ *
+ * A store either references points of shared coordinate arrays by id, added
+ * one at a time as the segments are built, or is made over coordinate arrays
+ * holding the points of the segments one after another, as a snapshot does.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public final class GeometryStore {
+
+	private final double[] latitudes;
+	private final double[] longitudes;
+	// Point i of the store is coordinate pointIds[i], or coordinate i when
+	// the store is made over its points
+	private int[] pointIds;
+	private int size;
+
+	/**
+	 * Create an empty store whose points are taken from the given coordinate
+	 * arrays. The arrays are not copied.
+	 *
+	 * @param latitudes
+	 *            The latitude of every point that may be added, by id
+	 * @param longitudes
+	 *            The longitude of every point that may be added, by id
+	 */
+	public GeometryStore(double[] latitudes, double[] longitudes) {
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.pointIds = new int[16];
+	}
+
+	private GeometryStore(double[] latitudes, double[] longitudes, int size) {
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+		this.size = size;
+	}
+
+	/**
+	 * Create a store holding the given coordinates as its points, in order.
+	 * Nothing can be added to it. The arrays are not copied.
+	 *
+	 * @param latitudes
+	 *            The latitude of every point
+	 * @param longitudes
+	 *            The longitude of every point
+	 * @return The store
+	 */
+	public static GeometryStore of(double[] latitudes, double[] longitudes) {
+		return new GeometryStore(latitudes, longitudes, latitudes.length);
+	}
+
+	/**
+	 * Get the number of points in the store
+	 *
+	 * @return The number of points, which is also the index the next point
+	 *         added gets.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Add a point to the end of the store
+	 *
+	 * @param pointId
+	 *            The id of the point in the coordinate arrays
+	 * @throws IllegalStateException
+	 *             If the store was made over its points.
+	 */
+	public void add(int pointId) {
+		if (pointIds == null) {
+			throw new IllegalStateException("Points cannot be added to this store");
+		}
+		if (size == pointIds.length) {
+			pointIds = Arrays.copyOf(pointIds, size * 2);
+		}
+		pointIds[size++] = pointId;
+	}
+
+	/**
+	 * Remove the points from the given index on, such as those of a segment
+	 * that turned out not to be needed
+	 *
+	 * @param newSize
+	 *            The number of points to keep
+	 */
+	public void truncate(int newSize) {
+		if (newSize < 0 || newSize > size) {
+			throw new IndexOutOfBoundsException("Size " + newSize);
+		}
+		size = newSize;
+	}
+
+	/**
+	 * Get the latitude of a point of the store, without making a
+	 * GeographicPoint
+	 *
+	 * @param index
+	 *            The index of the point, 0 .. size()-1
+	 * @return The latitude of the point
+	 */
+	public double getLatitude(int index) {
+		return latitudes[pointIds != null ? pointIds[index] : index];
+	}
+
+	/**
+	 * Get the longitude of a point of the store, without making a
+	 * GeographicPoint
+	 *
+	 * @param index
+	 *            The index of the point, 0 .. size()-1
+	 * @return The longitude of the point
+	 */
+	public double getLongitude(int index) {
+		return longitudes[pointIds != null ? pointIds[index] : index];
+	}
+
+	/**
+	 * Make the points of a range of the store
+	 *
+	 * @param start
+	 *            The index of the first point
+	 * @param end
+	 *            The index after the last point
+	 * @return A new list of new GeographicPoints
+	 */
+	public List<GeographicPoint> getPoints(int start, int end) {
+		List<GeographicPoint> points = new ArrayList<GeographicPoint>(end - start);
+		for (int i = start; i < end; i++) {
+			points.add(new GeographicPoint(getLatitude(i), getLongitude(i)));
+		}
+		return points;
+	}
+}
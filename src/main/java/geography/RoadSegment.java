@@ -16,7 +16,12 @@ public class RoadSegment {
 	private GeographicPoint point1;
 	private GeographicPoint point2;
 	
+	// The intermediate points, or null when they are points
+	// geometryStart .. geometryEnd-1 of the store
 	private List<GeographicPoint> geometryPoints;
+	private GeometryStore store;
+	private int geometryStart;
+	private int geometryEnd;
 	
 	private String roadName;
 	private String roadType;
@@ -36,6 +41,31 @@ public class RoadSegment {
 		this.length = length;
 	}
 	
+	/** Create a segment whose intermediate points are kept in a store and
+	 * only made when they are asked for.
+	 * @param pt1 The first end point
+	 * @param pt2 The second end point
+	 * @param store The store holding the intermediate points
+	 * @param start The index in the store of the point after pt1
+	 * @param end The index after the point before pt2
+	 * @param roadName The name of the road
+	 * @param roadType The type of the road
+	 * @param length The length of the segment in km
+	 */
+	public RoadSegment(GeographicPoint pt1, GeographicPoint pt2, 
+						GeometryStore store, int start, int end,
+						String roadName, String roadType, double length)
+	{
+		point1 = pt1;
+		point2 = pt2;
+		this.store = store;
+		geometryStart = start;
+		geometryEnd = end;
+		this.roadName = roadName;
+		this.roadType = roadType;
+		this.length = length;
+	}
+	
 	
 	/** Return all of the points from start to end in that order
 	 * on this segment.
@@ -49,12 +79,12 @@ public class RoadSegment {
 		List<GeographicPoint> allPoints = new ArrayList<GeographicPoint>();
 		if (point1.equals(start) && point2.equals(end)) {
 			allPoints.add(start);
-			allPoints.addAll(geometryPoints);
+			allPoints.addAll(geometry());
 			allPoints.add(end);
 		}
 		else if (point2.equals(start) && point1.equals(end)) {
 			allPoints.add(end);
-			allPoints.addAll(geometryPoints);
+			allPoints.addAll(geometry());
 			allPoints.add(start);
 			Collections.reverse(allPoints);
 		}
@@ -98,7 +128,7 @@ public class RoadSegment {
 	{
 		String toReturn = this.roadName + ", " +this.roadType;
 		toReturn += " [" + point1;
-		for (GeographicPoint p : this.geometryPoints) {
+		for (GeographicPoint p : geometry()) {
 			toReturn += "; " + p;
 		}
 		toReturn += "; " + point2 + "]";
@@ -109,6 +139,30 @@ public class RoadSegment {
 	// get the length of the road segment
 	public double getLength() { return this.length; }
 	
+	// get the two end points (intersections) of the road segment
+	public GeographicPoint getPoint1() { return this.point1; }
+	
+	public GeographicPoint getPoint2() { return this.point2; }
+	
+	// get the intermediate points from point1 to point2, not including them
+	public List<GeographicPoint> getGeometryPoints() { 
+		return Collections.unmodifiableList(geometry()); 
+	}
+	
+	// get the number of intermediate points, without making them
+	public int getNumGeometryPoints() {
+		return geometryPoints != null ? geometryPoints.size() : geometryEnd - geometryStart;
+	}
+	
+	public String getRoadName() { return this.roadName; }
+	
+	public String getRoadType() { return this.roadType; }
+	
+	
+	// the intermediate points, made from the store if they are kept there
+	private List<GeographicPoint> geometry() {
+		return geometryPoints != null ? geometryPoints : store.getPoints(geometryStart, geometryEnd);
+	}
 	
 	// given one end, return the other.
 	public geography.GeographicPoint getOtherPoint(geography.GeographicPoint point) {
@@ -0,0 +1,657 @@
+package geography;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An R-tree over the geometry of a set of road segments, for snapping a
+ * location onto the nearest road and for finding the roads inside a window.
+ *
+ * Every straight piece of every segment, from one of its points to the next
+ * (end points and geometry points alike), is one entry of the tree. The tree
+ * is bulk loaded with Sort-Tile-Recursive (STR) packing: the entries are
+ * sorted into vertical slices by longitude, each slice is sorted by latitude
+ * and cut into full leaves, and the same packing is applied to the leaves to
+ * build each level above. Packed nodes are full and overlap little, and the
+ * whole tree lives in a few primitive arrays.
+ *
+ * Nearest segment queries project the location onto the pieces in a local
+ * equirectangular plane around the location (longitudes scaled by the cosine
+ * of its latitude), which is accurate for the short pieces of a road map, and
+ * report the distance of the projected point with GeographicPoint.distance.
+ *
+ * The index is immutable, so any number of threads can query it at once.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class SegmentIndex {
+
+	private static final int NODE_CAPACITY = 16;
+
+	// The length of one degree of latitude, with the earth radius
+	// GeographicPoint.distance uses
+	private static final double KM_PER_DEGREE = 6373 * Math.PI / 180;
+
+	private final RoadSegment[] segments;
+
+	// The points of segment s, from point1 to point2, are the points
+	// pointStart[s] .. pointStart[s+1]-1; distanceFromStart is the length
+	// of the geometry from point1 to each of them, in km.
+	private final int[] pointStart;
+	private final double[] latitude;
+	private final double[] longitude;
+	private final double[] distanceFromStart;
+
+	// Piece p runs from point pieceStart[p] to the next one and belongs to
+	// segment pieceSegment[p], in leaf order.
+	private final int[] pieceStart;
+	private final int[] pieceSegment;
+
+	// Nodes 0 .. numberOfLeaves-1 are the leaves, whose children are
+	// pieces; the children of the other nodes are nodes. The root is the
+	// last node.
+	private final double[] minLat;
+	private final double[] minLon;
+	private final double[] maxLat;
+	private final double[] maxLon;
+	private final int[] firstChild;
+	private final int[] childCount;
+	private final int numberOfLeaves;
+
+	/**
+	 * Build an index over the segment map GraphLoader.loadRoadMap fills in.
+	 * A segment stored under both of its end points is indexed once.
+	 *
+	 * @param segments
+	 *            The road segments, keyed by their end points
+	 */
+	public SegmentIndex(Map<GeographicPoint, ? extends Collection<RoadSegment>> segments) {
+		this(distinct(segments));
+	}
+
+	/**
+	 * Build an index over some road segments
+	 *
+	 * @param roads
+	 *            The segments to index
+	 */
+	public SegmentIndex(Collection<RoadSegment> roads) {
+		segments = roads.toArray(new RoadSegment[roads.size()]);
+
+		int numberOfPoints = 0;
+		for (RoadSegment segment : segments) {
+			numberOfPoints += segment.getNumGeometryPoints() + 2;
+		}
+
+		pointStart = new int[segments.length + 1];
+		latitude = new double[numberOfPoints];
+		longitude = new double[numberOfPoints];
+		distanceFromStart = new double[numberOfPoints];
+		int numberOfPieces = numberOfPoints - segments.length;
+		int[] pieces = new int[numberOfPieces];
+		int[] owners = new int[numberOfPieces];
+
+		int point = 0;
+		int piece = 0;
+		for (int s = 0; s < segments.length; s++) {
+			pointStart[s] = point;
+			GeographicPoint previous = null;
+			List<GeographicPoint> geometry = segments[s].getPoints(segments[s].getPoint1(), segments[s].getPoint2());
+			for (GeographicPoint current : geometry) {
+				latitude[point] = current.getX();
+				longitude[point] = current.getY();
+				if (previous != null) {
+					distanceFromStart[point] = distanceFromStart[point - 1] + previous.distance(current);
+					pieces[piece] = point - 1;
+					owners[piece++] = s;
+				}
+				previous = current;
+				point++;
+			}
+		}
+		pointStart[segments.length] = point;
+
+		// Leaf level: the bounding box of every piece
+		double[] boxMinLat = new double[numberOfPieces];
+		double[] boxMinLon = new double[numberOfPieces];
+		double[] boxMaxLat = new double[numberOfPieces];
+		double[] boxMaxLon = new double[numberOfPieces];
+		for (int p = 0; p < numberOfPieces; p++) {
+			int a = pieces[p];
+			boxMinLat[p] = Math.min(latitude[a], latitude[a + 1]);
+			boxMaxLat[p] = Math.max(latitude[a], latitude[a + 1]);
+			boxMinLon[p] = Math.min(longitude[a], longitude[a + 1]);
+			boxMaxLon[p] = Math.max(longitude[a], longitude[a + 1]);
+		}
+
+		int[] order = packOrder(boxMinLat, boxMinLon, boxMaxLat, boxMaxLon, numberOfPieces);
+		pieceStart = new int[numberOfPieces];
+		pieceSegment = new int[numberOfPieces];
+		for (int p = 0; p < numberOfPieces; p++) {
+			pieceStart[p] = pieces[order[p]];
+			pieceSegment[p] = owners[order[p]];
+		}
+		Level level = Level.group(permute(boxMinLat, order), permute(boxMinLon, order), permute(boxMaxLat, order),
+				permute(boxMaxLon, order), numberOfPieces);
+		numberOfLeaves = level.size;
+
+		// Pack each level into the one above until a single root is left.
+		// Packing reorders the nodes of a level, together with their child
+		// ranges, so that every parent's children are contiguous.
+		List<Level> levels = new ArrayList<>();
+		while (level.size > 1) {
+			order = packOrder(level.minLat, level.minLon, level.maxLat, level.maxLon, level.size);
+			level = level.permute(order);
+			levels.add(level);
+			level = Level.group(level.minLat, level.minLon, level.maxLat, level.maxLon, level.size);
+		}
+		levels.add(level);
+
+		int numberOfNodes = 0;
+		for (Level l : levels) {
+			numberOfNodes += l.size;
+		}
+		minLat = new double[numberOfNodes];
+		minLon = new double[numberOfNodes];
+		maxLat = new double[numberOfNodes];
+		maxLon = new double[numberOfNodes];
+		firstChild = new int[numberOfNodes];
+		childCount = new int[numberOfNodes];
+
+		int offset = 0;
+		int childOffset = 0;
+		for (int i = 0; i < levels.size(); i++) {
+			Level l = levels.get(i);
+			System.arraycopy(l.minLat, 0, minLat, offset, l.size);
+			System.arraycopy(l.minLon, 0, minLon, offset, l.size);
+			System.arraycopy(l.maxLat, 0, maxLat, offset, l.size);
+			System.arraycopy(l.maxLon, 0, maxLon, offset, l.size);
+			System.arraycopy(l.childCount, 0, childCount, offset, l.size);
+			for (int j = 0; j < l.size; j++) {
+				firstChild[offset + j] = l.firstChild[j] + (i > 0 ? childOffset : 0);
+			}
+			childOffset = offset;
+			offset += l.size;
+		}
+	}
+
+	/**
+	 * Get the number of distinct segments in the index
+	 *
+	 * @return The number of segments indexed.
+	 */
+	public int size() {
+		return segments.length;
+	}
+
+	/**
+	 * Find the point of any road segment closest to a location
+	 *
+	 * @param location
+	 *            The location to snap
+	 * @return The nearest segment with the projection of the location onto
+	 *         it, or null if the index is empty.
+	 */
+	public SegmentMatch nearest(GeographicPoint location) {
+		if (pieceStart.length == 0) {
+			return null;
+		}
+
+		double lat = location.getX();
+		double lon = location.getY();
+		double scale = Math.cos(Math.toRadians(lat));
+
+		int bestPiece = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		double bestFraction = 0;
+
+		// Best first: always expand the node whose box is closest
+		NodeQueue queue = new NodeQueue();
+		queue.add(firstChild.length - 1, 0);
+		while (queue.size > 0 && queue.peekKey() < bestDistance) {
+			int node = queue.poll();
+
+			for (int i = firstChild[node], end = firstChild[node] + childCount[node]; i < end; i++) {
+				if (node < numberOfLeaves) {
+					double t = project(i, lat, lon, scale);
+					double distance = planarDistance(i, t, lat, lon, scale);
+					if (distance < bestDistance) {
+						bestDistance = distance;
+						bestPiece = i;
+						bestFraction = t;
+					}
+				} else {
+					double dx = gap(lon, minLon[i], maxLon[i]) * scale;
+					double dy = gap(lat, minLat[i], maxLat[i]);
+					double distance = dx * dx + dy * dy;
+					if (distance < bestDistance) {
+						queue.add(i, distance);
+					}
+				}
+			}
+		}
+
+		return match(location, bestPiece, bestFraction);
+	}
+
+	/**
+	 * Find the point of every road segment closest to a location, for the
+	 * segments that pass within some distance of it
+	 *
+	 * @param location
+	 *            The location to snap
+	 * @param radius
+	 *            The largest distance in km
+	 * @return One match per segment within radius, from the nearest to the
+	 *         farthest.
+	 */
+	public List<SegmentMatch> withinRadius(GeographicPoint location, double radius) {
+		List<SegmentMatch> found = new ArrayList<>();
+		if (pieceStart.length == 0) {
+			return found;
+		}
+
+		double lat = location.getX();
+		double lon = location.getY();
+		double scale = Math.cos(Math.toRadians(lat));
+		// The local plane is in degrees and close to, but not exactly, the
+		// great circle distance, so it is searched with some slack and the
+		// matches are filtered by their real distance.
+		double limit = radius / KM_PER_DEGREE * 1.01;
+		limit *= limit;
+
+		// The pieces within the limit and their distances. keys[c] holds the
+		// segment of candidate c in its high half and c in its low half, so
+		// sorting the keys groups the candidates of every segment in the
+		// order they were found.
+		long[] keys = new long[16];
+		int[] candidates = new int[16];
+		double[] distances = new double[16];
+		int count = 0;
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = firstChild.length - 1;
+		while (top > 0) {
+			int node = stack[--top];
+			for (int i = firstChild[node], end = firstChild[node] + childCount[node]; i < end; i++) {
+				if (node < numberOfLeaves) {
+					double distance = planarDistance(i, project(i, lat, lon, scale), lat, lon, scale);
+					if (distance <= limit) {
+						if (count == keys.length) {
+							keys = Arrays.copyOf(keys, count * 2);
+							candidates = Arrays.copyOf(candidates, count * 2);
+							distances = Arrays.copyOf(distances, count * 2);
+						}
+						keys[count] = (long) pieceSegment[i] << 32 | count;
+						candidates[count] = i;
+						distances[count] = distance;
+						count++;
+					}
+				} else {
+					double dx = gap(lon, minLon[i], maxLon[i]) * scale;
+					double dy = gap(lat, minLat[i], maxLat[i]);
+					if (dx * dx + dy * dy <= limit) {
+						if (top == stack.length) {
+							stack = Arrays.copyOf(stack, top * 2);
+						}
+						stack[top++] = i;
+					}
+				}
+			}
+		}
+
+		// The closest piece of each segment, the first one found on a tie
+		Arrays.sort(keys, 0, count);
+		for (int k = 0; k < count;) {
+			int segment = (int) (keys[k] >>> 32);
+			int closest = (int) keys[k];
+			for (k++; k < count && (int) (keys[k] >>> 32) == segment; k++) {
+				int candidate = (int) keys[k];
+				if (distances[candidate] < distances[closest]) {
+					closest = candidate;
+				}
+			}
+
+			int piece = candidates[closest];
+			SegmentMatch match = match(location, piece, project(piece, lat, lon, scale));
+			if (match.getDistance() <= radius) {
+				found.add(match);
+			}
+		}
+
+		found.sort((a, b) -> Double.compare(a.getDistance(), b.getDistance()));
+		return found;
+	}
+
+	/**
+	 * Find every road segment that passes through a latitude and longitude
+	 * window. The window does not wrap around the antimeridian.
+	 *
+	 * @param minLatitude
+	 *            The southern edge of the window
+	 * @param minLongitude
+	 *            The western edge of the window
+	 * @param maxLatitude
+	 *            The northern edge of the window
+	 * @param maxLongitude
+	 *            The eastern edge of the window
+	 * @return The segments with some part of their geometry inside the window
+	 *         or on its edges.
+	 */
+	public List<RoadSegment> withinBounds(double minLatitude, double minLongitude, double maxLatitude,
+			double maxLongitude) {
+		List<RoadSegment> found = new ArrayList<>();
+		if (pieceStart.length == 0) {
+			return found;
+		}
+
+		BitSet seen = new BitSet(segments.length);
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = firstChild.length - 1;
+
+		while (top > 0) {
+			int node = stack[--top];
+			if (maxLat[node] < minLatitude || minLat[node] > maxLatitude || maxLon[node] < minLongitude
+					|| minLon[node] > maxLongitude) {
+				continue;
+			}
+
+			for (int i = firstChild[node], end = firstChild[node] + childCount[node]; i < end; i++) {
+				if (node >= numberOfLeaves) {
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = i;
+				} else if (!seen.get(pieceSegment[i])
+						&& crosses(pieceStart[i], minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+					seen.set(pieceSegment[i]);
+					found.add(segments[pieceSegment[i]]);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	// Where the location projects onto piece i in the local plane, as a
+	// fraction of the piece from its first point
+	private double project(int i, double lat, double lon, double scale) {
+		int a = pieceStart[i];
+		double ax = (longitude[a] - lon) * scale;
+		double ay = latitude[a] - lat;
+		double dx = (longitude[a + 1] - longitude[a]) * scale;
+		double dy = latitude[a + 1] - latitude[a];
+		double lengthSquared = dx * dx + dy * dy;
+		return lengthSquared > 0 ? clamp(-(ax * dx + ay * dy) / lengthSquared) : 0;
+	}
+
+	// The squared distance in the local plane from the location to the point
+	// at fraction t of piece i
+	private double planarDistance(int i, double t, double lat, double lon, double scale) {
+		int a = pieceStart[i];
+		double px = (longitude[a] + t * (longitude[a + 1] - longitude[a]) - lon) * scale;
+		double py = latitude[a] + t * (latitude[a + 1] - latitude[a]) - lat;
+		return px * px + py * py;
+	}
+
+	private SegmentMatch match(GeographicPoint location, int piece, double t) {
+		int a = pieceStart[piece];
+		int s = pieceSegment[piece];
+		GeographicPoint projected = new GeographicPoint(latitude[a] + t * (latitude[a + 1] - latitude[a]),
+				longitude[a] + t * (longitude[a + 1] - longitude[a]));
+		double total = distanceFromStart[pointStart[s + 1] - 1];
+		double along = distanceFromStart[a] + t * (distanceFromStart[a + 1] - distanceFromStart[a]);
+
+		return new SegmentMatch(segments[s], projected, location.distance(projected), total > 0 ? along / total : 0);
+	}
+
+	// Whether the piece from point a to a+1 has a point inside the window:
+	// Liang-Barsky clipping of the piece against the window.
+	private boolean crosses(int a, double minLatitude, double minLongitude, double maxLatitude,
+			double maxLongitude) {
+		double x0 = longitude[a];
+		double y0 = latitude[a];
+		double dx = longitude[a + 1] - x0;
+		double dy = latitude[a + 1] - y0;
+		double[] p = { -dx, dx, -dy, dy };
+		double[] q = { x0 - minLongitude, maxLongitude - x0, y0 - minLatitude, maxLatitude - y0 };
+		double enter = 0;
+		double leave = 1;
+
+		for (int i = 0; i < 4; i++) {
+			if (p[i] == 0) {
+				if (q[i] < 0) {
+					return false;
+				}
+			} else {
+				double t = q[i] / p[i];
+				if (p[i] < 0) {
+					enter = Math.max(enter, t);
+				} else {
+					leave = Math.min(leave, t);
+				}
+			}
+		}
+
+		return enter <= leave;
+	}
+
+	private static double clamp(double t) {
+		return t < 0 ? 0 : t > 1 ? 1 : t;
+	}
+
+	// How far value lies outside [min, max]
+	private static double gap(double value, double min, double max) {
+		return value < min ? min - value : value > max ? value - max : 0;
+	}
+
+	private static List<RoadSegment> distinct(Map<GeographicPoint, ? extends Collection<RoadSegment>> segments) {
+		LinkedHashSet<RoadSegment> distinct = new LinkedHashSet<>();
+		for (Collection<RoadSegment> atPoint : segments.values()) {
+			distinct.addAll(atPoint);
+		}
+		return new ArrayList<>(distinct);
+	}
+
+	/*
+	 * The Sort-Tile-Recursive order of count boxes: sort them by the
+	 * longitude of their centers, cut them into vertical slices of
+	 * sqrt(count / NODE_CAPACITY) nodes each, and sort every slice by the
+	 * latitude of the centers. Consecutive runs of NODE_CAPACITY boxes in this
+	 * order then make up the nodes of the next level.
+	 */
+	private static int[] packOrder(double[] minLat, double[] minLon, double[] maxLat, double[] maxLon, int count) {
+		int[] order = new int[count];
+		double[] keys = new double[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+			keys[i] = minLon[i] + maxLon[i];
+		}
+		sortByKey(keys, order, 0, count);
+
+		int nodes = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int slices = (int) Math.ceil(Math.sqrt(nodes));
+		int sliceSize = (int) Math.ceil((double) nodes / slices) * NODE_CAPACITY;
+
+		for (int from = 0; from < count; from += sliceSize) {
+			int to = Math.min(from + sliceSize, count);
+			for (int i = from; i < to; i++) {
+				keys[i] = minLat[order[i]] + maxLat[order[i]];
+			}
+			sortByKey(keys, order, from, to);
+		}
+
+		return order;
+	}
+
+	private static double[] permute(double[] values, int[] order) {
+		double[] permuted = new double[order.length];
+		for (int i = 0; i < order.length; i++) {
+			permuted[i] = values[order[i]];
+		}
+		return permuted;
+	}
+
+	// Sort values[from, to) by keys[from, to), moving both: a quicksort on
+	// the two parallel arrays, so the keys never need boxing.
+	private static void sortByKey(double[] keys, int[] values, int from, int to) {
+		while (to - from > 16) {
+			double pivot = median(keys[from], keys[(from + to) >>> 1], keys[to - 1]);
+			int i = from;
+			int j = to - 1;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, values, i++, j--);
+				}
+			}
+			// Recurse into the smaller side and loop on the larger one
+			if (j - from < to - i) {
+				sortByKey(keys, values, from, j + 1);
+				from = i;
+			} else {
+				sortByKey(keys, values, i, to);
+				to = j + 1;
+			}
+		}
+
+		for (int i = from + 1; i < to; i++) {
+			for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+				swap(keys, values, j - 1, j);
+			}
+		}
+	}
+
+	private static double median(double a, double b, double c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	private static void swap(double[] keys, int[] values, int i, int j) {
+		double key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+	// The nodes of one level of the tree while it is being built
+	private static final class Level {
+		final int size;
+		final double[] minLat;
+		final double[] minLon;
+		final double[] maxLat;
+		final double[] maxLon;
+		final int[] firstChild;
+		final int[] childCount;
+
+		Level(int size) {
+			this.size = size;
+			minLat = new double[size];
+			minLon = new double[size];
+			maxLat = new double[size];
+			maxLon = new double[size];
+			firstChild = new int[size];
+			childCount = new int[size];
+		}
+
+		// One node for every NODE_CAPACITY consecutive boxes
+		static Level group(double[] minLat, double[] minLon, double[] maxLat, double[] maxLon, int count) {
+			Level level = new Level((count + NODE_CAPACITY - 1) / NODE_CAPACITY);
+			for (int j = 0; j < level.size; j++) {
+				int from = j * NODE_CAPACITY;
+				int to = Math.min(from + NODE_CAPACITY, count);
+				level.firstChild[j] = from;
+				level.childCount[j] = to - from;
+				level.minLat[j] = Double.POSITIVE_INFINITY;
+				level.minLon[j] = Double.POSITIVE_INFINITY;
+				level.maxLat[j] = Double.NEGATIVE_INFINITY;
+				level.maxLon[j] = Double.NEGATIVE_INFINITY;
+				for (int i = from; i < to; i++) {
+					level.minLat[j] = Math.min(level.minLat[j], minLat[i]);
+					level.minLon[j] = Math.min(level.minLon[j], minLon[i]);
+					level.maxLat[j] = Math.max(level.maxLat[j], maxLat[i]);
+					level.maxLon[j] = Math.max(level.maxLon[j], maxLon[i]);
+				}
+			}
+			return level;
+		}
+
+		Level permute(int[] order) {
+			Level permuted = new Level(size);
+			for (int i = 0; i < size; i++) {
+				permuted.minLat[i] = minLat[order[i]];
+				permuted.minLon[i] = minLon[order[i]];
+				permuted.maxLat[i] = maxLat[order[i]];
+				permuted.maxLon[i] = maxLon[order[i]];
+				permuted.firstChild[i] = firstChild[order[i]];
+				permuted.childCount[i] = childCount[order[i]];
+			}
+			return permuted;
+		}
+	}
+
+	// A binary min-heap of nodes keyed by their squared distance
+	private static final class NodeQueue {
+		int[] nodes = new int[32];
+		double[] keys = new double[32];
+		int size;
+
+		double peekKey() {
+			return keys[0];
+		}
+
+		void add(int node, double key) {
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, size * 2);
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+			int slot = size++;
+			while (slot > 0 && keys[(slot - 1) / 2] > key) {
+				nodes[slot] = nodes[(slot - 1) / 2];
+				keys[slot] = keys[(slot - 1) / 2];
+				slot = (slot - 1) / 2;
+			}
+			nodes[slot] = node;
+			keys[slot] = key;
+		}
+
+		int poll() {
+			int top = nodes[0];
+			int node = nodes[--size];
+			double key = keys[size];
+			int slot = 0;
+			while (true) {
+				int child = 2 * slot + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && keys[child + 1] < keys[child]) {
+					child++;
+				}
+				if (keys[child] >= key) {
+					break;
+				}
+				nodes[slot] = nodes[child];
+				keys[slot] = keys[child];
+				slot = child;
+			}
+			nodes[slot] = node;
+			keys[slot] = key;
+			return top;
+		}
+	}
+}
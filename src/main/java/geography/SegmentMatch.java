@@ -0,0 +1,47 @@
+package geography;
+
+/**
+ * The point of a road segment closest to some location, as found by
+ * SegmentIndex.nearest().
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class SegmentMatch {
+
+	private final RoadSegment segment;
+	private final GeographicPoint projectedPoint;
+	private final double distance;
+	private final double offset;
+
+	SegmentMatch(RoadSegment segment, GeographicPoint projectedPoint, double distance, double offset) {
+		this.segment = segment;
+		this.projectedPoint = projectedPoint;
+		this.distance = distance;
+		this.offset = offset;
+	}
+
+	// get the road segment matched
+	public RoadSegment getSegment() { return segment; }
+
+	// get the point of the segment closest to the location
+	public GeographicPoint getProjectedPoint() { return projectedPoint; }
+
+	// get the distance in km from the location to the projected point
+	public double getDistance() { return distance; }
+
+	/**
+	 * How far along the segment the projected point lies
+	 *
+	 * @return The length of the segment's geometry from point1 to the
+	 *         projected point, as a fraction of its whole length: 0 at point1
+	 *         and 1 at point2.
+	 */
+	public double getOffset() { return offset; }
+
+	public String toString()
+	{
+		return "SegmentMatch [" + projectedPoint + ", distance " + distance + ", offset " + offset + " on "
+				+ segment + "]";
+	}
+}
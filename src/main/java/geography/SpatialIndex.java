@@ -0,0 +1,483 @@
+package geography;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import util.IntList;
+
+/**
+ * A static k-d tree over a set of GeographicPoints, for snapping raw
+ * coordinates to the nearest known point and for radius and bounding box
+ * queries.
+ *
+ * The tree is built over the points' positions on the unit sphere, as 3D
+ * vectors. The straight (chord) distance between two such vectors grows with
+ * the great circle distance GeographicPoint.distance() measures, so the
+ * nearest points by chord are the nearest points by distance(), and the tree
+ * needs no special care near the poles or the antimeridian. Each subtree also
+ * records the latitude and longitude range of its points for bounding box
+ * queries.
+ *
+ * Nearest neighbor queries take O(log n) on average. The index is immutable,
+ * so any number of threads can query it at once.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class SpatialIndex {
+
+	// The radius GeographicPoint.distance() uses, in km
+	private static final double EARTH_RADIUS = 6373;
+
+	private final GeographicPoint[] points;
+
+	// The tree is implicit: the node of the range [lo, hi) of tree positions
+	// is its middle position (lo + hi) >>> 1, with the range's lower half on
+	// the left and its upper half on the right.
+	private final int[] order;
+	private final double[] xyz;
+	private final byte[] axis;
+	private final double[] minLatitude;
+	private final double[] maxLatitude;
+	private final double[] minLongitude;
+	private final double[] maxLongitude;
+
+	/**
+	 * Build an index over some points
+	 *
+	 * @param points
+	 *            The points to index, for instance MapGraph.getVertices()
+	 */
+	public SpatialIndex(Collection<? extends GeographicPoint> points) {
+		this(points.toArray(new GeographicPoint[points.size()]));
+	}
+
+	/**
+	 * Build an index over an array of points. The positions in the array are
+	 * the indexes nearestIndex() returns.
+	 *
+	 * @param points
+	 *            The points to index. The array is not copied and must not be
+	 *            modified afterwards.
+	 */
+	public SpatialIndex(GeographicPoint[] points) {
+		int n = points.length;
+		this.points = points;
+		order = new int[n];
+		xyz = new double[3 * n];
+		axis = new byte[n];
+		minLatitude = new double[n];
+		maxLatitude = new double[n];
+		minLongitude = new double[n];
+		maxLongitude = new double[n];
+
+		double[] unsorted = new double[3 * n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			toUnitVector(points[i], unsorted, 3 * i);
+		}
+
+		build(0, n, unsorted);
+
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(unsorted, 3 * order[i], xyz, 3 * i, 3);
+		}
+		computeBounds(0, n);
+	}
+
+	/**
+	 * Get the number of points in the index
+	 *
+	 * @return The number of points indexed.
+	 */
+	public int size() {
+		return points.length;
+	}
+
+	/**
+	 * Find the point nearest to a location
+	 *
+	 * @param location
+	 *            The location to snap
+	 * @return The nearest indexed point, or null if the index is empty.
+	 */
+	public GeographicPoint nearest(GeographicPoint location) {
+		int index = nearestIndex(location);
+		return index >= 0 ? points[index] : null;
+	}
+
+	/**
+	 * Find the point nearest to a location
+	 *
+	 * @param location
+	 *            The location to snap
+	 * @return The position of the nearest point in the array the index was
+	 *         built from, or -1 if the index is empty.
+	 */
+	public int nearestIndex(GeographicPoint location) {
+		Neighbors neighbors = new Neighbors(1);
+		if (points.length > 0) {
+			searchNearest(0, points.length, unitVector(location), neighbors);
+		}
+		return neighbors.size > 0 ? order[neighbors.position[0]] : -1;
+	}
+
+	/**
+	 * Find the k points nearest to a location
+	 *
+	 * @param location
+	 *            The location to search around
+	 * @param k
+	 *            The number of points to return
+	 * @return The min(k, size()) nearest points, nearest first.
+	 */
+	public List<GeographicPoint> nearest(GeographicPoint location, int k) {
+		Neighbors neighbors = new Neighbors(Math.max(0, Math.min(k, points.length)));
+		if (neighbors.capacity > 0) {
+			searchNearest(0, points.length, unitVector(location), neighbors);
+		}
+
+		int[] sorted = neighbors.sortedPositions();
+		List<GeographicPoint> nearest = new ArrayList<>(sorted.length);
+		for (int position : sorted) {
+			nearest.add(points[order[position]]);
+		}
+		return nearest;
+	}
+
+	/**
+	 * Find every point within a distance of a location
+	 *
+	 * @param location
+	 *            The center of the search
+	 * @param radius
+	 *            The largest distance from the center, in km
+	 * @return The points whose distance() from location is at most radius,
+	 *         nearest first.
+	 */
+	public List<GeographicPoint> withinRadius(GeographicPoint location, double radius) {
+		List<GeographicPoint> found = new ArrayList<>();
+		if (radius < 0 || points.length == 0) {
+			return found;
+		}
+
+		// The chord of the radius, widened a little so that rounding cannot
+		// drop a point distance() would accept
+		double chord = radius >= Math.PI * EARTH_RADIUS ? 2 : 2 * Math.sin(radius / (2 * EARTH_RADIUS));
+		double limit = chord * chord * (1 + 1e-9) + 1e-18;
+
+		IntList candidates = new IntList();
+		searchRadius(0, points.length, unitVector(location), limit, candidates);
+
+		double[] distances = new double[candidates.size()];
+		int count = 0;
+		int[] kept = new int[candidates.size()];
+		for (int i = 0; i < candidates.size(); i++) {
+			GeographicPoint point = points[order[candidates.get(i)]];
+			double distance = location.distance(point);
+			if (distance <= radius) {
+				distances[count] = distance;
+				kept[count++] = order[candidates.get(i)];
+			}
+		}
+
+		sortByKey(distances, kept, count);
+		for (int i = 0; i < count; i++) {
+			found.add(points[kept[i]]);
+		}
+		return found;
+	}
+
+	/**
+	 * Find every point inside a latitude and longitude box. The box does not
+	 * wrap around the antimeridian.
+	 *
+	 * @param minLat
+	 *            The southern edge of the box
+	 * @param minLon
+	 *            The western edge of the box
+	 * @param maxLat
+	 *            The northern edge of the box
+	 * @param maxLon
+	 *            The eastern edge of the box
+	 * @return The points inside the box or on its edges, in no particular
+	 *         order.
+	 */
+	public List<GeographicPoint> withinBounds(double minLat, double minLon, double maxLat, double maxLon) {
+		List<GeographicPoint> found = new ArrayList<>();
+		searchBounds(0, points.length, minLat, minLon, maxLat, maxLon, found);
+		return found;
+	}
+
+	// Arrange order[lo, hi) into a k-d tree, splitting each range on the
+	// axis along which its points spread the most.
+	private void build(int lo, int hi, double[] unsorted) {
+		if (hi - lo < 2) {
+			return;
+		}
+
+		int splitAxis = 0;
+		double widest = -1;
+		for (int a = 0; a < 3; a++) {
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = lo; i < hi; i++) {
+				double value = unsorted[3 * order[i] + a];
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+			if (max - min > widest) {
+				widest = max - min;
+				splitAxis = a;
+			}
+		}
+
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, splitAxis, unsorted);
+		axis[mid] = (byte) splitAxis;
+
+		build(lo, mid, unsorted);
+		build(mid + 1, hi, unsorted);
+	}
+
+	// Quickselect: move the point with rank k along the axis to position k,
+	// with no larger point before it and no smaller one after it.
+	private void select(int lo, int hi, int k, int splitAxis, double[] unsorted) {
+		while (lo < hi) {
+			double pivot = unsorted[3 * order[(lo + hi) >>> 1] + splitAxis];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (unsorted[3 * order[i] + splitAxis] < pivot) {
+					i++;
+				}
+				while (unsorted[3 * order[j] + splitAxis] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int swap = order[i];
+					order[i] = order[j];
+					order[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	// Fill in the latitude and longitude range of the subtree of [lo, hi)
+	private void computeBounds(int lo, int hi) {
+		if (lo >= hi) {
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		computeBounds(lo, mid);
+		computeBounds(mid + 1, hi);
+
+		GeographicPoint point = points[order[mid]];
+		double minLat = point.getX();
+		double maxLat = point.getX();
+		double minLon = point.getY();
+		double maxLon = point.getY();
+		if (lo < mid) {
+			int left = (lo + mid) >>> 1;
+			minLat = Math.min(minLat, minLatitude[left]);
+			maxLat = Math.max(maxLat, maxLatitude[left]);
+			minLon = Math.min(minLon, minLongitude[left]);
+			maxLon = Math.max(maxLon, maxLongitude[left]);
+		}
+		if (mid + 1 < hi) {
+			int right = (mid + 1 + hi) >>> 1;
+			minLat = Math.min(minLat, minLatitude[right]);
+			maxLat = Math.max(maxLat, maxLatitude[right]);
+			minLon = Math.min(minLon, minLongitude[right]);
+			maxLon = Math.max(maxLon, maxLongitude[right]);
+		}
+
+		minLatitude[mid] = minLat;
+		maxLatitude[mid] = maxLat;
+		minLongitude[mid] = minLon;
+		maxLongitude[mid] = maxLon;
+	}
+
+	private void searchNearest(int lo, int hi, double[] query, Neighbors neighbors) {
+		int mid = (lo + hi) >>> 1;
+		neighbors.offer(mid, squaredChord(query, mid));
+
+		if (hi - lo < 2) {
+			return;
+		}
+
+		double difference = query[axis[mid]] - xyz[3 * mid + axis[mid]];
+		boolean leftFirst = difference < 0;
+
+		if (leftFirst) {
+			if (lo < mid) {
+				searchNearest(lo, mid, query, neighbors);
+			}
+			if (mid + 1 < hi && difference * difference < neighbors.worst()) {
+				searchNearest(mid + 1, hi, query, neighbors);
+			}
+		} else {
+			if (mid + 1 < hi) {
+				searchNearest(mid + 1, hi, query, neighbors);
+			}
+			if (lo < mid && difference * difference < neighbors.worst()) {
+				searchNearest(lo, mid, query, neighbors);
+			}
+		}
+	}
+
+	private void searchRadius(int lo, int hi, double[] query, double limit, IntList found) {
+		if (lo >= hi) {
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		if (squaredChord(query, mid) <= limit) {
+			found.add(mid);
+		}
+
+		double difference = query[axis[mid]] - xyz[3 * mid + axis[mid]];
+		if (difference <= 0 || difference * difference <= limit) {
+			searchRadius(lo, mid, query, limit, found);
+		}
+		if (difference >= 0 || difference * difference <= limit) {
+			searchRadius(mid + 1, hi, query, limit, found);
+		}
+	}
+
+	private void searchBounds(int lo, int hi, double minLat, double minLon, double maxLat, double maxLon,
+			List<GeographicPoint> found) {
+		if (lo >= hi) {
+			return;
+		}
+
+		int mid = (lo + hi) >>> 1;
+		if (maxLatitude[mid] < minLat || minLatitude[mid] > maxLat || maxLongitude[mid] < minLon
+				|| minLongitude[mid] > maxLon) {
+			return;
+		}
+
+		GeographicPoint point = points[order[mid]];
+		if (point.getX() >= minLat && point.getX() <= maxLat && point.getY() >= minLon && point.getY() <= maxLon) {
+			found.add(point);
+		}
+
+		searchBounds(lo, mid, minLat, minLon, maxLat, maxLon, found);
+		searchBounds(mid + 1, hi, minLat, minLon, maxLat, maxLon, found);
+	}
+
+	private double squaredChord(double[] query, int position) {
+		double dx = query[0] - xyz[3 * position];
+		double dy = query[1] - xyz[3 * position + 1];
+		double dz = query[2] - xyz[3 * position + 2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private static double[] unitVector(GeographicPoint point) {
+		double[] vector = new double[3];
+		toUnitVector(point, vector, 0);
+		return vector;
+	}
+
+	private static void toUnitVector(GeographicPoint point, double[] target, int offset) {
+		double latitude = Math.toRadians(point.getX());
+		double longitude = Math.toRadians(point.getY());
+		target[offset] = Math.cos(latitude) * Math.cos(longitude);
+		target[offset + 1] = Math.cos(latitude) * Math.sin(longitude);
+		target[offset + 2] = Math.sin(latitude);
+	}
+
+	// Sort the first count values by their keys. A Shell sort on the two
+	// parallel arrays, so the keys never need boxing.
+	private static void sortByKey(double[] keys, int[] values, int count) {
+		int gap = 1;
+		while (gap < count / 3) {
+			gap = 3 * gap + 1;
+		}
+
+		for (; gap > 0; gap /= 3) {
+			for (int i = gap; i < count; i++) {
+				double key = keys[i];
+				int value = values[i];
+				int j = i;
+				while (j >= gap && keys[j - gap] > key) {
+					keys[j] = keys[j - gap];
+					values[j] = values[j - gap];
+					j -= gap;
+				}
+				keys[j] = key;
+				values[j] = value;
+			}
+		}
+	}
+
+	// The k best candidates seen so far, in a binary max-heap on the
+	// squared chord so the worst one can be replaced.
+	private static final class Neighbors {
+		final int capacity;
+		final int[] position;
+		final double[] distance;
+		int size;
+
+		Neighbors(int capacity) {
+			this.capacity = capacity;
+			position = new int[capacity];
+			distance = new double[capacity];
+		}
+
+		double worst() {
+			return size < capacity ? Double.POSITIVE_INFINITY : distance[0];
+		}
+
+		void offer(int candidate, double d) {
+			if (size < capacity) {
+				int slot = size++;
+				while (slot > 0 && distance[(slot - 1) / 2] < d) {
+					position[slot] = position[(slot - 1) / 2];
+					distance[slot] = distance[(slot - 1) / 2];
+					slot = (slot - 1) / 2;
+				}
+				position[slot] = candidate;
+				distance[slot] = d;
+			} else if (capacity > 0 && d < distance[0]) {
+				int slot = 0;
+				while (true) {
+					int child = 2 * slot + 1;
+					if (child >= size) {
+						break;
+					}
+					if (child + 1 < size && distance[child + 1] > distance[child]) {
+						child++;
+					}
+					if (distance[child] <= d) {
+						break;
+					}
+					position[slot] = position[child];
+					distance[slot] = distance[child];
+					slot = child;
+				}
+				position[slot] = candidate;
+				distance[slot] = d;
+			}
+		}
+
+		int[] sortedPositions() {
+			double[] keys = Arrays.copyOf(distance, size);
+			int[] values = Arrays.copyOf(position, size);
+			sortByKey(keys, values, size);
+			return values;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Bidirectional Dijkstra and A* over a CompactGraph. A forward search
+ *         from the start walks the out-edges while a backward search from the
+ *         goal walks the in-edges (the reverse CSR), and the shortest path is
+ *         found where the two meet. On long routes each side only settles a
+ *         ball of about half the radius a one-way search would need.
+ *
+ *         Bidirectional A* uses the average potential p(v) = (h(v, goal) -
+ *         h(start, v)) / 2 for the forward search and -p(v) for the backward
+ *         one, which keeps the reduced edge weights of both sides
+ *         non-negative. With keys d(v) + p(v) forward and d(v) - p(v)
+ *         backward, the search can stop as soon as the two smallest keys add
+ *         up to the best path seen so far. Dijkstra is the special case p = 0.
+ *
+ */
+final class BidirectionalSearch {
+
+	private static final int NO_PARENT = SearchWorkspace.NO_PARENT;
+
+	private BidirectionalSearch() {
+	}
+
+	/**
+	 * Find the shortest path from start to goal using bidirectional search
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The weight of every edge, indexed by edge id. Weights must
+	 *            not be negative.
+	 * @param heuristic
+	 *            An admissible and consistent estimate of the weight between
+	 *            two vertices, or null for bidirectional Dijkstra
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex as it is
+	 *            settled by either of the two searches.
+	 * @return The ids of the vertices that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	static int[] search(CompactGraph graph, double[] weights, Heuristic heuristic, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace forward = SearchWorkspace.acquire(graph.getNumVertices());
+		SearchWorkspace backward = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			return search(graph, weights, heuristic, start, goal, nodeSearched, forward, backward);
+		} finally {
+			forward.release();
+			backward.release();
+		}
+	}
+
+	private static int[] search(CompactGraph graph, double[] weights, Heuristic heuristic, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched, SearchWorkspace forward, SearchWorkspace backward) {
+		forward.reach(start, 0, NO_PARENT, NO_PARENT);
+		forward.heap.insertOrDecrease(start, potential(heuristic, start, goal, start));
+		backward.reach(goal, 0, NO_PARENT, NO_PARENT);
+		backward.heap.insertOrDecrease(goal, -potential(heuristic, start, goal, goal));
+
+		double bestLength = start == goal ? 0 : Double.POSITIVE_INFINITY;
+		int meeting = start == goal ? start : NO_PARENT;
+
+		while (!forward.heap.isEmpty() && !backward.heap.isEmpty()
+				&& forward.heap.peekKey() + backward.heap.peekKey() < bestLength) {
+
+			if (forward.heap.size() <= backward.heap.size()) {
+				int currentNode = forward.heap.poll();
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				double currentDistance = forward.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					int outNeighbor = graph.getEdgeTarget(edge);
+					double newDistance = currentDistance + weights[edge];
+					if (newDistance < forward.distance(outNeighbor)) {
+						forward.reach(outNeighbor, newDistance, currentNode, edge);
+						forward.heap.insertOrDecrease(outNeighbor,
+								newDistance + potential(heuristic, start, goal, outNeighbor));
+
+						if (newDistance + backward.distance(outNeighbor) < bestLength) {
+							bestLength = newDistance + backward.distance(outNeighbor);
+							meeting = outNeighbor;
+						}
+					}
+				}
+			} else {
+				int currentNode = backward.heap.poll();
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				double currentDistance = backward.distance(currentNode);
+				for (int i = graph.getInEdgeStart(currentNode), end = graph.getInEdgeEnd(currentNode); i < end; i++) {
+					int inNeighbor = graph.getInEdgeSource(i);
+					double newDistance = currentDistance + weights[graph.getInEdge(i)];
+					if (newDistance < backward.distance(inNeighbor)) {
+						backward.reach(inNeighbor, newDistance, currentNode, graph.getInEdge(i));
+						backward.heap.insertOrDecrease(inNeighbor,
+								newDistance - potential(heuristic, start, goal, inNeighbor));
+
+						if (newDistance + forward.distance(inNeighbor) < bestLength) {
+							bestLength = newDistance + forward.distance(inNeighbor);
+							meeting = inNeighbor;
+						}
+					}
+				}
+			}
+		}
+
+		if (meeting == NO_PARENT) {
+			return null;
+		}
+
+		int[] firstHalf = forward.buildPath(meeting);
+		int length = firstHalf.length;
+		for (int node = backward.parent(meeting); node != NO_PARENT; node = backward.parent(node)) {
+			length++;
+		}
+
+		int[] path = Arrays.copyOf(firstHalf, length);
+		int next = firstHalf.length;
+		for (int node = backward.parent(meeting); node != NO_PARENT; node = backward.parent(node)) {
+			path[next++] = node;
+		}
+
+		return path;
+	}
+
+	// The forward potential of a vertex; the backward one is its negation.
+	private static double potential(Heuristic heuristic, int start, int goal, int vertex) {
+		if (heuristic == null) {
+			return 0;
+		}
+		return (heuristic.estimate(vertex, goal) - heuristic.estimate(start, vertex)) / 2;
+	}
+}
@@ -0,0 +1,560 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import geography.GeographicPoint;
+import geography.SpatialIndex;
+import util.CoordinateMap;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         An immutable, int-indexed snapshot of a MapGraph in compressed sparse
+ *         row (CSR) form. Vertices are numbered 0 .. n-1 and the out-edges of
+ *         vertex v are the edge ids getOutEdgeStart(v) .. getOutEdgeEnd(v)-1,
+ *         whose targets live in one flat int array. Coordinates are kept in
+ *         primitive arrays so searches never touch a hash map or a boxed
+ *         point while walking the graph. A reverse CSR over the same edges
+ *         gives the in-edges of every vertex for backward searches.
+ *
+ *         Edge attributes are parallel arrays indexed by edge id: the length
+ *         in km as a double, and the road name and road type as ids into two
+ *         tables of interned strings.
+ *
+ *         Edges may also carry a travel time profile for time-dependent
+ *         routing. The profiles are interned too: every edge holds a profile
+ *         id, or -1, and the breakpoints of all distinct profiles are packed
+ *         into two shared double arrays, so a city where most roads follow a
+ *         handful of rush hour shapes costs four bytes per edge plus sixteen
+ *         per distinct breakpoint.
+ *
+ *         Every vertex also carries its position as a unit vector in 3D,
+ *         computed once at construction, so the straight line bound used by
+ *         A* costs a few multiplications and a square root instead of the
+ *         trigonometry of GeographicPoint.distance.
+ *
+ *         Instances are created with MapGraph.freeze() and are safe to share
+ *         between threads.
+ *
+ */
+public class CompactGraph {
+
+	// Radius of the earth in km, as in GeographicPoint.distance, scaled down
+	// by a relative 1e-9 so that rounding never pushes the chord bound above
+	// the haversine length of an edge.
+	private static final double BOUND_RADIUS = 6373 * (1 - 1e-9);
+
+	private final CoordinateMap vertexIndex;
+	private final GeographicPoint[] points;
+
+	// Unit vector of every vertex: x, y and z of vertex v at 3v, 3v+1, 3v+2
+	private final double[] unitVectors;
+
+	// outStart[v] .. outStart[v+1]-1 are the out-edges of v
+	private final int[] outStart;
+	private final int[] edgeTarget;
+	private final double[] edgeLength;
+	private final int[] edgeRoadName;
+	private final int[] edgeRoadType;
+	private final String[] roadNames;
+	private final String[] roadTypes;
+
+	// edgeProfile[e] is the profile id of edge e, or -1. The breakpoints of
+	// profile p are profileStart[p] .. profileStart[p+1]-1 of profileTimes
+	// and profileTravelTimes.
+	private final int[] edgeProfile;
+	private final int[] profileStart;
+	private final double[] profileTimes;
+	private final double[] profileTravelTimes;
+	private final double[] profileMinimum;
+
+	// inStart[v] .. inStart[v+1]-1 index the in-edges of v, given as the
+	// forward edge id and the vertex the edge comes from
+	private final int[] inStart;
+	private final int[] inEdge;
+	private final int[] inSource;
+
+	// Built on first use
+	private volatile SpatialIndex spatialIndex;
+	private final ConcurrentHashMap<Weighting, double[]> weights = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Weighting, Heuristic> timeDependentHeuristics = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a new CompactGraph from its CSR arrays. The arrays are not copied.
+	 *
+	 * @param points
+	 *            The location of every vertex, indexed by vertex id
+	 * @param outStart
+	 *            The offset of the first out-edge of every vertex, with one
+	 *            extra trailing entry holding the number of edges
+	 * @param edgeTarget
+	 *            The target vertex of every edge, indexed by edge id
+	 * @param edgeLength
+	 *            The length of every edge in km, indexed by edge id
+	 * @param edgeRoadName
+	 *            The road name id of every edge, indexed by edge id
+	 * @param edgeRoadType
+	 *            The road type id of every edge, indexed by edge id
+	 * @param roadNames
+	 *            The road names, indexed by road name id
+	 * @param roadTypes
+	 *            The road types, indexed by road type id
+	 * @param edgeProfile
+	 *            The travel time profile id of every edge, or -1, indexed by
+	 *            edge id
+	 * @param profileStart
+	 *            The offset of the first breakpoint of every profile, with one
+	 *            extra trailing entry holding the number of breakpoints
+	 * @param profileTimes
+	 *            The departure time of every breakpoint, in hours
+	 * @param profileTravelTimes
+	 *            The travel time of every breakpoint, in hours
+	 */
+	CompactGraph(GeographicPoint[] points, int[] outStart, int[] edgeTarget, double[] edgeLength,
+			int[] edgeRoadName, int[] edgeRoadType, String[] roadNames, String[] roadTypes, int[] edgeProfile,
+			int[] profileStart, double[] profileTimes, double[] profileTravelTimes) {
+		this.points = points;
+		this.outStart = outStart;
+		this.edgeTarget = edgeTarget;
+		this.edgeLength = edgeLength;
+		this.edgeRoadName = edgeRoadName;
+		this.edgeRoadType = edgeRoadType;
+		this.roadNames = roadNames;
+		this.roadTypes = roadTypes;
+		this.edgeProfile = edgeProfile;
+		this.profileStart = profileStart;
+		this.profileTimes = profileTimes;
+		this.profileTravelTimes = profileTravelTimes;
+
+		// A piecewise linear profile is smallest at one of its breakpoints
+		profileMinimum = new double[profileStart.length - 1];
+		for (int profile = 0; profile < profileMinimum.length; profile++) {
+			double minimum = Double.POSITIVE_INFINITY;
+			for (int i = profileStart[profile]; i < profileStart[profile + 1]; i++) {
+				minimum = Math.min(minimum, profileTravelTimes[i]);
+			}
+			profileMinimum[profile] = minimum;
+		}
+
+		vertexIndex = new CoordinateMap(points.length);
+		for (GeographicPoint point : points) {
+			vertexIndex.add(point.getX(), point.getY());
+		}
+
+		int n = points.length;
+		unitVectors = new double[3 * n];
+		for (int v = 0; v < n; v++) {
+			double latitude = Math.toRadians(points[v].getX());
+			double longitude = Math.toRadians(points[v].getY());
+			unitVectors[3 * v] = Math.cos(latitude) * Math.cos(longitude);
+			unitVectors[3 * v + 1] = Math.cos(latitude) * Math.sin(longitude);
+			unitVectors[3 * v + 2] = Math.sin(latitude);
+		}
+
+		inStart = new int[n + 1];
+		inEdge = new int[edgeTarget.length];
+		inSource = new int[edgeTarget.length];
+
+		for (int target : edgeTarget) {
+			inStart[target + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			inStart[v + 1] += inStart[v];
+		}
+
+		// Counting sort by target; walking the edges in id order leaves the
+		// in-edges of every vertex sorted by edge id.
+		int[] next = Arrays.copyOf(inStart, n);
+		for (int v = 0; v < n; v++) {
+			for (int edge = outStart[v]; edge < outStart[v + 1]; edge++) {
+				int slot = next[edgeTarget[edge]]++;
+				inEdge[slot] = edge;
+				inSource[slot] = v;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of vertices (road intersections) in the graph
+	 *
+	 * @return The number of vertices in the graph.
+	 */
+	public int getNumVertices() {
+		return points.length;
+	}
+
+	/**
+	 * Get the number of road segments in the graph
+	 *
+	 * @return The number of edges in the graph.
+	 */
+	public int getNumEdges() {
+		return edgeTarget.length;
+	}
+
+	/**
+	 * Find the vertex id of a location.
+	 *
+	 * @param location
+	 *            The location of the intersection
+	 * @return The id of the vertex at that location, or -1 if the location is
+	 *         null or not a vertex of this graph.
+	 */
+	public int indexOf(GeographicPoint location) {
+		return location == null ? -1 : vertexIndex.get(location.getX(), location.getY());
+	}
+
+	/**
+	 * Get the location of a vertex
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The location of the vertex
+	 */
+	public GeographicPoint getPoint(int vertex) {
+		return points[vertex];
+	}
+
+	/**
+	 * Get the latitude of a vertex, without making a GeographicPoint
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The latitude of the vertex
+	 */
+	public double getLatitude(int vertex) {
+		return vertexIndex.getLatitude(vertex);
+	}
+
+	/**
+	 * Get the longitude of a vertex, without making a GeographicPoint
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The longitude of the vertex
+	 */
+	public double getLongitude(int vertex) {
+		return vertexIndex.getLongitude(vertex);
+	}
+
+	/**
+	 * Get a lower bound of the geographic distance between two vertices: the
+	 * length of the straight chord through the earth between them. A chord is
+	 * never longer than the great circle arc over the same two points, and no
+	 * road between them is shorter than that arc, so this bound is admissible
+	 * and consistent as an A* heuristic for road lengths.
+	 *
+	 * @param from
+	 *            The id of one vertex
+	 * @param to
+	 *            The id of the other vertex
+	 * @return A lower bound of the distance between the vertices, in km
+	 */
+	public double straightLineDistance(int from, int to) {
+		double dx = unitVectors[3 * from] - unitVectors[3 * to];
+		double dy = unitVectors[3 * from + 1] - unitVectors[3 * to + 1];
+		double dz = unitVectors[3 * from + 2] - unitVectors[3 * to + 2];
+		return BOUND_RADIUS * Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Get the id of the first out-edge of a vertex
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The id of the first out-edge of the vertex
+	 */
+	public int getOutEdgeStart(int vertex) {
+		return outStart[vertex];
+	}
+
+	/**
+	 * Get the id one past the last out-edge of a vertex
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The id one past the last out-edge of the vertex
+	 */
+	public int getOutEdgeEnd(int vertex) {
+		return outStart[vertex + 1];
+	}
+
+	/**
+	 * Get the vertex an edge points to
+	 *
+	 * @param edge
+	 *            The id of the edge
+	 * @return The id of the vertex at the end of the edge
+	 */
+	public int getEdgeTarget(int edge) {
+		return edgeTarget[edge];
+	}
+
+	/**
+	 * Find the edge from one vertex to another
+	 *
+	 * @param source
+	 *            The id of the vertex the edge starts at
+	 * @param target
+	 *            The id of the vertex the edge ends at
+	 * @return The id of the edge, or -1 if there is none
+	 */
+	public int findEdge(int source, int target) {
+		for (int edge = outStart[source]; edge < outStart[source + 1]; edge++) {
+			if (edgeTarget[edge] == target) {
+				return edge;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the length of an edge
+	 *
+	 * @param edge
+	 *            The id of the edge
+	 * @return The length of the road segment, in km
+	 */
+	public double getEdgeLength(int edge) {
+		return edgeLength[edge];
+	}
+
+	/**
+	 * Get the road name id of an edge
+	 *
+	 * @param edge
+	 *            The id of the edge
+	 * @return The id of the road name, usable with getRoadName
+	 */
+	public int getEdgeRoadName(int edge) {
+		return edgeRoadName[edge];
+	}
+
+	/**
+	 * Get the road type id of an edge
+	 *
+	 * @param edge
+	 *            The id of the edge
+	 * @return The id of the road type, usable with getRoadType
+	 */
+	public int getEdgeRoadType(int edge) {
+		return edgeRoadType[edge];
+	}
+
+	/**
+	 * Get the number of distinct road names of the graph
+	 *
+	 * @return The number of road names, whose ids are 0 .. getNumRoadNames()-1
+	 */
+	public int getNumRoadNames() {
+		return roadNames.length;
+	}
+
+	/**
+	 * Get a road name by its id
+	 *
+	 * @param roadName
+	 *            The id of the road name, such as getEdgeRoadName returns
+	 * @return The road name
+	 */
+	public String getRoadName(int roadName) {
+		return roadNames[roadName];
+	}
+
+	/**
+	 * Get the number of distinct road types of the graph
+	 *
+	 * @return The number of road types, whose ids are 0 .. getNumRoadTypes()-1
+	 */
+	public int getNumRoadTypes() {
+		return roadTypes.length;
+	}
+
+	/**
+	 * Get a road type by its id
+	 *
+	 * @param roadType
+	 *            The id of the road type, such as getEdgeRoadType returns
+	 * @return The road type
+	 */
+	public String getRoadType(int roadType) {
+		return roadTypes[roadType];
+	}
+
+	/**
+	 * Get the travel time profile id of an edge
+	 *
+	 * @param edge
+	 *            The id of the edge
+	 * @return The id of the profile, or -1 if the edge has none
+	 */
+	public int getEdgeProfile(int edge) {
+		return edgeProfile[edge];
+	}
+
+	/**
+	 * Get the number of travel time profiles attached to the edges
+	 *
+	 * @return The number of profiles, whose ids are 0 ..
+	 *         getNumTravelTimeProfiles()-1
+	 */
+	public int getNumTravelTimeProfiles() {
+		return profileMinimum.length;
+	}
+
+	/**
+	 * Get the travel time of a profile for a departure time
+	 *
+	 * @param profile
+	 *            The id of the profile
+	 * @param departureTime
+	 *            The departure time, in hours since midnight of the first day
+	 * @return The travel time, in hours
+	 */
+	public double getProfileTravelTime(int profile, double departureTime) {
+		return TravelTimeProfile.evaluate(profileTimes, profileTravelTimes, profileStart[profile],
+				profileStart[profile + 1], departureTime);
+	}
+
+	// The edge lengths, indexed by edge id. Shared, not copied, so the
+	// searches can use them as weights; callers must not modify it.
+	double[] edgeLengths() {
+		return edgeLength;
+	}
+
+	// The weights of the edges under a weighting, indexed by edge id and
+	// computed the first time they are asked for. Shared like edgeLengths().
+	double[] weights(Weighting weighting) {
+		return weights.computeIfAbsent(weighting, w -> w.computeWeights(this));
+	}
+
+	// The total weight of the edges between consecutive vertices of a path
+	double pathWeight(int[] path, double[] weights) {
+		double total = 0;
+		for (int i = 1; i < path.length; i++) {
+			total += weights[findEdge(path[i - 1], path[i])];
+		}
+		return total;
+	}
+
+	// The travel time of an edge for a departure time: its profile if it has
+	// one, or else its static weight
+	double travelTime(int edge, double departureTime, double[] weights) {
+		int profile = edgeProfile[edge];
+		return profile < 0 ? weights[edge] : getProfileTravelTime(profile, departureTime);
+	}
+
+	// The time of arrival at the end of a path left at departureTime
+	double arrivalTime(int[] path, double departureTime, double[] weights) {
+		double time = departureTime;
+		for (int i = 1; i < path.length; i++) {
+			time += travelTime(findEdge(path[i - 1], path[i]), time, weights);
+		}
+		return time;
+	}
+
+	// An A* heuristic for time-dependent searches whose edges without a
+	// profile take the travel times of weighting: the straight line distance
+	// at the highest speed any edge reaches at any time of day. Computed the
+	// first time it is asked for.
+	Heuristic timeDependentHeuristic(Weighting weighting) {
+		return timeDependentHeuristics.computeIfAbsent(weighting, w -> {
+			double[] fallback = weights(w);
+			double maxSpeed = 0;
+			for (int edge = 0; edge < edgeTarget.length; edge++) {
+				int profile = edgeProfile[edge];
+				double fastest = profile < 0 ? fallback[edge] : profileMinimum[profile];
+				if (edgeLength[edge] > 0) {
+					maxSpeed = Math.max(maxSpeed, edgeLength[edge] / fastest);
+				}
+			}
+			double speed = maxSpeed;
+			return speed > 0 && speed < Double.POSITIVE_INFINITY
+					? (vertex, goal) -> straightLineDistance(vertex, goal) / speed
+					: (vertex, goal) -> 0;
+		});
+	}
+
+	/**
+	 * Get the position of the first in-edge of a vertex in the reverse index
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The position of the first in-edge of the vertex
+	 */
+	public int getInEdgeStart(int vertex) {
+		return inStart[vertex];
+	}
+
+	/**
+	 * Get the position one past the last in-edge of a vertex in the reverse
+	 * index
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The position one past the last in-edge of the vertex
+	 */
+	public int getInEdgeEnd(int vertex) {
+		return inStart[vertex + 1];
+	}
+
+	/**
+	 * Get the forward edge id of an entry of the reverse index
+	 *
+	 * @param position
+	 *            The position in the reverse index
+	 * @return The id of the edge, usable with getEdgeTarget
+	 */
+	public int getInEdge(int position) {
+		return inEdge[position];
+	}
+
+	/**
+	 * Get the vertex an entry of the reverse index comes from
+	 *
+	 * @param position
+	 *            The position in the reverse index
+	 * @return The id of the vertex at the start of the edge
+	 */
+	public int getInEdgeSource(int position) {
+		return inSource[position];
+	}
+
+	/**
+	 * Get a spatial index over the vertices of the graph, built the first
+	 * time it is asked for. Its nearestIndex() returns vertex ids.
+	 *
+	 * @return The spatial index of the vertices.
+	 */
+	public SpatialIndex getSpatialIndex() {
+		SpatialIndex index = spatialIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = spatialIndex;
+				if (index == null) {
+					index = new SpatialIndex(points);
+					spatialIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Convert a path of vertex ids into the list of intersections it visits.
+	 *
+	 * @param vertices
+	 *            The vertex ids of the path, in order
+	 * @return The locations of the vertices, in the same order
+	 */
+	public List<GeographicPoint> toPoints(int[] vertices) {
+		List<GeographicPoint> path = new ArrayList<>(vertices.length);
+		for (int vertex : vertices) {
+			path.add(points[vertex]);
+		}
+		return path;
+	}
+}
@@ -0,0 +1,631 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import geography.GeographicPoint;
+import util.IntList;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         A Contraction Hierarchy (CH) over the edge lengths of a
+ *         CompactGraph, for point-to-point queries that settle only a few
+ *         hundred vertices on city sized maps.
+ *
+ *         Preprocessing contracts the vertices from least to most
+ *         important. Contracting v removes it from the remaining graph and
+ *         adds a shortcut u -> w for every pair of neighbors whose only
+ *         shortest connection ran through v, which a bounded witness search
+ *         from u checks. Vertices are ordered by edge difference (shortcuts
+ *         added minus edges removed) plus the number of neighbors already
+ *         contracted. Each round contracts, in parallel, the vertices whose
+ *         priority is lower than that of all their remaining neighbors; the
+ *         witness searches of a round avoid every vertex of the round, so the
+ *         contractions do not depend on each other.
+ *
+ *         A query runs Dijkstra from both ends, only along edges that lead to
+ *         more important vertices, and unpacks the shortcuts of the best
+ *         meeting path back into road graph vertices. The path has the same
+ *         length as the one Dijkstra finds; when several shortest paths exist
+ *         either may be returned.
+ *
+ *         A ContractionHierarchy is immutable once built, and queries can run
+ *         concurrently.
+ *
+ */
+public class ContractionHierarchy {
+
+	private static final int NO_EDGE = -1;
+	private static final int NO_MIDDLE = -1;
+	// Witness searches give up after settling this many vertices and the
+	// contraction then keeps the shortcut, which is always safe.
+	private static final int WITNESS_SETTLED_LIMIT = 500;
+
+	private final CompactGraph graph;
+	private final int[] rank;
+
+	// Upward edges v -> w with rank[w] > rank[v], in CSR form by v
+	private final int[] upStart;
+	private final int[] upTarget;
+	private final double[] upWeight;
+	private final int[] upMiddle;
+
+	// Downward edges u -> v with rank[u] > rank[v], in CSR form by v, so
+	// that the backward search from the goal can walk them upward
+	private final int[] downStart;
+	private final int[] downSource;
+	private final double[] downWeight;
+	private final int[] downMiddle;
+
+	private final int numberOfShortcuts;
+
+	/**
+	 * Build a Contraction Hierarchy over the edge lengths of a graph
+	 *
+	 * @param graph
+	 *            The graph to preprocess, usually from MapGraph.freeze()
+	 */
+	public ContractionHierarchy(CompactGraph graph) {
+		this(graph, graph.edgeLengths());
+	}
+
+	/**
+	 * Build a Contraction Hierarchy over the given edge weights
+	 *
+	 * @param graph
+	 *            The graph to preprocess
+	 * @param weights
+	 *            The weight of every edge of the graph, indexed by edge id.
+	 *            Weights must not be negative.
+	 */
+	ContractionHierarchy(CompactGraph graph, double[] weights) {
+		this.graph = graph;
+		int n = graph.getNumVertices();
+
+		Contraction contraction = new Contraction(graph, weights);
+		contraction.run();
+		rank = contraction.rank;
+
+		int[] upCount = new int[n + 1];
+		int[] downCount = new int[n + 1];
+		int shortcuts = 0;
+		for (int v = 0; v < n; v++) {
+			Adjacency out = contraction.finalOut[v];
+			Adjacency in = contraction.finalIn[v];
+			upCount[v + 1] = out.size;
+			downCount[v + 1] = in.size;
+			for (int i = 0; i < out.size; i++) {
+				shortcuts += out.middle[i] != NO_MIDDLE ? 1 : 0;
+			}
+			for (int i = 0; i < in.size; i++) {
+				shortcuts += in.middle[i] != NO_MIDDLE ? 1 : 0;
+			}
+		}
+		numberOfShortcuts = shortcuts;
+
+		for (int v = 0; v < n; v++) {
+			upCount[v + 1] += upCount[v];
+			downCount[v + 1] += downCount[v];
+		}
+		upStart = upCount;
+		downStart = downCount;
+		upTarget = new int[upStart[n]];
+		upWeight = new double[upStart[n]];
+		upMiddle = new int[upStart[n]];
+		downSource = new int[downStart[n]];
+		downWeight = new double[downStart[n]];
+		downMiddle = new int[downStart[n]];
+
+		for (int v = 0; v < n; v++) {
+			Adjacency out = contraction.finalOut[v];
+			System.arraycopy(out.vertex, 0, upTarget, upStart[v], out.size);
+			System.arraycopy(out.weight, 0, upWeight, upStart[v], out.size);
+			System.arraycopy(out.middle, 0, upMiddle, upStart[v], out.size);
+			Adjacency in = contraction.finalIn[v];
+			System.arraycopy(in.vertex, 0, downSource, downStart[v], in.size);
+			System.arraycopy(in.weight, 0, downWeight, downStart[v], in.size);
+			System.arraycopy(in.middle, 0, downMiddle, downStart[v], in.size);
+		}
+	}
+
+	/**
+	 * Get the number of shortcuts the hierarchy added to the graph
+	 *
+	 * @return The number of shortcut edges.
+	 */
+	public int getNumShortcuts() {
+		return numberOfShortcuts;
+	}
+
+	/**
+	 * Get the position of a vertex in the contraction order
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The rank of the vertex, from 0 (contracted first) to n-1.
+	 */
+	public int getRank(int vertex) {
+		return rank[vertex];
+	}
+
+	/**
+	 * Find the shortest path from start to goal
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal), or null if there is no
+	 *         path or either location is not a vertex.
+	 */
+	public List<GeographicPoint> shortestPath(GeographicPoint start, GeographicPoint goal) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return null;
+		}
+
+		int[] path = query(startId, goalId);
+
+		return path != null ? graph.toPoints(path) : null;
+	}
+
+	/**
+	 * Find the length of the shortest path from start to goal
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @return The length of the shortest path, or infinity if there is no path
+	 *         or either location is not a vertex.
+	 */
+	public double distance(GeographicPoint start, GeographicPoint goal) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		SearchWorkspace forward = SearchWorkspace.acquire(graph.getNumVertices());
+		SearchWorkspace backward = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			int meeting = upwardSearch(forward, backward, startId, goalId);
+
+			return meeting != NO_EDGE ? forward.distance(meeting) + backward.distance(meeting)
+					: Double.POSITIVE_INFINITY;
+		} finally {
+			forward.release();
+			backward.release();
+		}
+	}
+
+	/**
+	 * Find the shortest path between two vertex ids
+	 *
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @return The ids of the vertices on the shortest path, or null if there
+	 *         is none.
+	 */
+	int[] query(int start, int goal) {
+		SearchWorkspace forward = SearchWorkspace.acquire(graph.getNumVertices());
+		SearchWorkspace backward = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			int meeting = upwardSearch(forward, backward, start, goal);
+
+			if (meeting == NO_EDGE) {
+				return null;
+			}
+
+			IntList path = new IntList();
+			path.add(start);
+
+			// Collect the vertices from the meeting vertex back to start, then
+			// unpack the upward edges into them in start-to-meeting order.
+			IntList upward = new IntList();
+			for (int v = meeting; v != start; v = forward.parent(v)) {
+				upward.add(v);
+			}
+			for (int i = upward.size() - 1; i >= 0; i--) {
+				int v = upward.get(i);
+				unpack(forward.parent(v), v, upMiddle[forward.parentEdge(v)], path);
+			}
+
+			// The backward search reached each vertex from the lower one after
+			// it on the path, along a downward edge.
+			for (int v = meeting; v != goal; v = backward.parent(v)) {
+				unpack(v, backward.parent(v), downMiddle[backward.parentEdge(v)], path);
+			}
+
+			return path.toArray();
+		} finally {
+			forward.release();
+			backward.release();
+		}
+	}
+
+	// Run the two upward searches and return the vertex where the shortest
+	// path peaks, or NO_EDGE if the goal cannot be reached.
+	private int upwardSearch(SearchWorkspace forward, SearchWorkspace backward, int start, int goal) {
+		forward.update(start, 0, NO_EDGE, NO_EDGE);
+		backward.update(goal, 0, NO_EDGE, NO_EDGE);
+
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = NO_EDGE;
+		boolean forwardTurn = true;
+
+		while (true) {
+			boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+			boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+			if (!forwardOpen && !backwardOpen) {
+				break;
+			}
+
+			boolean useForward = forwardOpen && (forwardTurn || !backwardOpen);
+			forwardTurn = !forwardTurn;
+
+			if (useForward) {
+				int v = forward.heap.poll();
+				double d = forward.distance(v);
+				if (backward.isReached(v) && d + backward.distance(v) < best) {
+					best = d + backward.distance(v);
+					meeting = v;
+				}
+				for (int edge = upStart[v]; edge < upStart[v + 1]; edge++) {
+					forward.relax(upTarget[edge], d + upWeight[edge], v, edge);
+				}
+			} else {
+				int v = backward.heap.poll();
+				double d = backward.distance(v);
+				if (forward.isReached(v) && d + forward.distance(v) < best) {
+					best = d + forward.distance(v);
+					meeting = v;
+				}
+				for (int edge = downStart[v]; edge < downStart[v + 1]; edge++) {
+					backward.relax(downSource[edge], d + downWeight[edge], v, edge);
+				}
+			}
+		}
+
+		return meeting;
+	}
+
+	// Append the road graph vertices of the hierarchy edge from -> to,
+	// excluding from, which is already on the path. A shortcut is expanded
+	// through its middle vertex, which was contracted before both ends, so
+	// from -> middle is stored as a downward edge of middle and middle -> to
+	// as an upward edge of middle.
+	private void unpack(int from, int to, int middle, IntList path) {
+		if (middle == NO_MIDDLE) {
+			path.add(to);
+			return;
+		}
+
+		// Depth first expansion: the stack holds the vertices still to be
+		// reached, in reverse order, each possibly through a shortcut.
+		IntList stack = new IntList();
+		stack.add(to);
+		stack.add(middle);
+		int current = from;
+
+		while (stack.size() > 0) {
+			int next = stack.get(stack.size() - 1);
+			int viaMiddle = edgeMiddle(current, next);
+
+			if (viaMiddle == NO_MIDDLE) {
+				path.add(next);
+				current = next;
+				stack.removeLast();
+			} else {
+				stack.add(viaMiddle);
+			}
+		}
+	}
+
+	// The middle vertex of the hierarchy edge from -> to, or NO_MIDDLE if it
+	// is an original road segment.
+	private int edgeMiddle(int from, int to) {
+		if (rank[from] < rank[to]) {
+			for (int edge = upStart[from]; edge < upStart[from + 1]; edge++) {
+				if (upTarget[edge] == to) {
+					return upMiddle[edge];
+				}
+			}
+		} else {
+			for (int edge = downStart[to]; edge < downStart[to + 1]; edge++) {
+				if (downSource[edge] == from) {
+					return downMiddle[edge];
+				}
+			}
+		}
+
+		throw new IllegalStateException("Missing hierarchy edge " + from + " -> " + to);
+	}
+
+	// The neighbors of a vertex in the graph being contracted, with the
+	// weight of each edge and its middle vertex (NO_MIDDLE for a road
+	// segment).
+	static final class Adjacency {
+		int[] vertex = new int[4];
+		double[] weight = new double[4];
+		int[] middle = new int[4];
+		int size;
+
+		// Add the edge, or lower the weight of an existing edge to the same
+		// vertex.
+		void put(int v, double w, int via) {
+			for (int i = 0; i < size; i++) {
+				if (vertex[i] == v) {
+					if (w < weight[i]) {
+						weight[i] = w;
+						middle[i] = via;
+					}
+					return;
+				}
+			}
+
+			if (size == vertex.length) {
+				vertex = Arrays.copyOf(vertex, size * 2);
+				weight = Arrays.copyOf(weight, size * 2);
+				middle = Arrays.copyOf(middle, size * 2);
+			}
+			vertex[size] = v;
+			weight[size] = w;
+			middle[size] = via;
+			size++;
+		}
+
+		// Drop the edges to contracted vertices
+		void prune(boolean[] contracted) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (!contracted[vertex[i]]) {
+					vertex[kept] = vertex[i];
+					weight[kept] = weight[i];
+					middle[kept] = middle[i];
+					kept++;
+				}
+			}
+			size = kept;
+		}
+	}
+
+	// The preprocessing state: the remaining graph, the priorities and the
+	// order in which vertices were contracted.
+	private static final class Contraction {
+		final int n;
+		final Adjacency[] out;
+		final Adjacency[] in;
+		final Adjacency[] finalOut;
+		final Adjacency[] finalIn;
+		final int[] rank;
+		final boolean[] contracted;
+		// Vertices contracted or being contracted in the current round,
+		// which witness searches must not pass through
+		final boolean[] blocked;
+		final int[] contractedNeighbors;
+		final int[] priority;
+
+		Contraction(CompactGraph graph, double[] weights) {
+			n = graph.getNumVertices();
+			out = new Adjacency[n];
+			in = new Adjacency[n];
+			finalOut = new Adjacency[n];
+			finalIn = new Adjacency[n];
+			rank = new int[n];
+			contracted = new boolean[n];
+			blocked = new boolean[n];
+			contractedNeighbors = new int[n];
+			priority = new int[n];
+
+			for (int v = 0; v < n; v++) {
+				out[v] = new Adjacency();
+				in[v] = new Adjacency();
+			}
+			for (int v = 0; v < n; v++) {
+				for (int edge = graph.getOutEdgeStart(v); edge < graph.getOutEdgeEnd(v); edge++) {
+					int w = graph.getEdgeTarget(edge);
+					if (w != v) {
+						out[v].put(w, weights[edge], NO_MIDDLE);
+						in[w].put(v, weights[edge], NO_MIDDLE);
+					}
+				}
+			}
+		}
+
+		void run() {
+			IntStream.range(0, n).parallel().forEach(v -> priority[v] = computePriority(v));
+
+			int remaining = n;
+			int nextRank = 0;
+			int[] candidates = new int[n];
+			boolean[] dirty = new boolean[n];
+
+			while (remaining > 0) {
+				// Pick the vertices that beat all their remaining neighbors
+				int count = 0;
+				for (int v = 0; v < n; v++) {
+					if (!contracted[v] && isLocalMinimum(v)) {
+						candidates[count++] = v;
+					}
+				}
+
+				int[] round = Arrays.copyOf(candidates, count);
+				for (int v : round) {
+					blocked[v] = true;
+				}
+
+				List<List<Shortcut>> shortcuts = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					shortcuts.add(null);
+				}
+				IntStream.range(0, count).parallel().forEach(i -> shortcuts.set(i, findShortcuts(round[i], true)));
+
+				for (int i = 0; i < count; i++) {
+					int v = round[i];
+					contracted[v] = true;
+					rank[v] = nextRank++;
+					finalOut[v] = out[v];
+					finalIn[v] = in[v];
+					finalOut[v].prune(contracted);
+					finalIn[v].prune(contracted);
+				}
+
+				for (int i = 0; i < count; i++) {
+					int v = round[i];
+					for (Shortcut shortcut : shortcuts.get(i)) {
+						out[shortcut.from].put(shortcut.to, shortcut.weight, v);
+						in[shortcut.to].put(shortcut.from, shortcut.weight, v);
+					}
+					markNeighbors(v, dirty);
+				}
+
+				// Drop the edges to this round's vertices from the lists of
+				// their neighbors
+				for (int i = 0; i < count; i++) {
+					int v = round[i];
+					for (int j = 0; j < finalOut[v].size; j++) {
+						out[finalOut[v].vertex[j]].prune(contracted);
+						in[finalOut[v].vertex[j]].prune(contracted);
+					}
+					for (int j = 0; j < finalIn[v].size; j++) {
+						out[finalIn[v].vertex[j]].prune(contracted);
+						in[finalIn[v].vertex[j]].prune(contracted);
+					}
+				}
+
+				remaining -= count;
+				int[] toUpdate = IntStream.range(0, n).filter(v -> dirty[v] && !contracted[v]).toArray();
+				Arrays.fill(dirty, false);
+				IntStream.of(toUpdate).parallel().forEach(v -> priority[v] = computePriority(v));
+			}
+		}
+
+		private boolean isLocalMinimum(int v) {
+			Adjacency[][] sides = { out, in };
+			for (Adjacency[] side : sides) {
+				Adjacency neighbors = side[v];
+				for (int i = 0; i < neighbors.size; i++) {
+					int u = neighbors.vertex[i];
+					if (!contracted[u] && (priority[u] < priority[v] || (priority[u] == priority[v] && u < v))) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private void markNeighbors(int v, boolean[] dirty) {
+			for (int i = 0; i < finalOut[v].size; i++) {
+				dirty[finalOut[v].vertex[i]] = true;
+				contractedNeighbors[finalOut[v].vertex[i]]++;
+			}
+			for (int i = 0; i < finalIn[v].size; i++) {
+				dirty[finalIn[v].vertex[i]] = true;
+				contractedNeighbors[finalIn[v].vertex[i]]++;
+			}
+		}
+
+		// Edge difference plus the number of contracted neighbors, which
+		// spreads contraction evenly over the map.
+		private int computePriority(int v) {
+			int shortcuts = findShortcuts(v, false).size();
+			int removed = 0;
+			for (int i = 0; i < out[v].size; i++) {
+				removed += contracted[out[v].vertex[i]] ? 0 : 1;
+			}
+			for (int i = 0; i < in[v].size; i++) {
+				removed += contracted[in[v].vertex[i]] ? 0 : 1;
+			}
+			return shortcuts - removed + contractedNeighbors[v];
+		}
+
+		// The shortcuts contracting v requires. During a round (inRound is
+		// true) the witness searches avoid every blocked vertex; when only
+		// estimating a priority they avoid contracted vertices and v itself.
+		private List<Shortcut> findShortcuts(int v, boolean inRound) {
+			List<Shortcut> shortcuts = new ArrayList<>();
+			Adjacency incoming = in[v];
+			Adjacency outgoing = out[v];
+
+			double maxOut = 0;
+			for (int j = 0; j < outgoing.size; j++) {
+				if (!contracted[outgoing.vertex[j]]) {
+					maxOut = Math.max(maxOut, outgoing.weight[j]);
+				}
+			}
+
+			SearchWorkspace labels = SearchWorkspace.acquire(n);
+			try {
+				for (int i = 0; i < incoming.size; i++) {
+					int u = incoming.vertex[i];
+					if (contracted[u] || (inRound && blocked[u])) {
+						continue;
+					}
+
+					double limit = incoming.weight[i] + maxOut;
+					witnessSearch(labels, u, v, limit, inRound);
+
+					for (int j = 0; j < outgoing.size; j++) {
+						int w = outgoing.vertex[j];
+						if (w == u || contracted[w] || (inRound && blocked[w])) {
+							continue;
+						}
+						double viaV = incoming.weight[i] + outgoing.weight[j];
+						if (labels.distance(w) > viaV) {
+							shortcuts.add(new Shortcut(u, w, viaV));
+						}
+					}
+				}
+			} finally {
+				labels.release();
+			}
+
+			return shortcuts;
+		}
+
+		// Dijkstra from source in the remaining graph without v, settling
+		// at most WITNESS_SETTLED_LIMIT vertices and nothing beyond limit.
+		private void witnessSearch(SearchWorkspace labels, int source, int v, double limit, boolean inRound) {
+			labels.reset();
+			labels.update(source, 0, NO_EDGE, NO_EDGE);
+			int settled = 0;
+
+			while (!labels.heap.isEmpty() && labels.heap.peekKey() <= limit && settled < WITNESS_SETTLED_LIMIT) {
+				int x = labels.heap.poll();
+				double d = labels.distance(x);
+				settled++;
+
+				Adjacency neighbors = out[x];
+				for (int j = 0; j < neighbors.size; j++) {
+					int y = neighbors.vertex[j];
+					if (y == v || contracted[y] || (inRound && blocked[y])) {
+						continue;
+					}
+					labels.relax(y, d + neighbors.weight[j], x, NO_EDGE);
+				}
+			}
+		}
+	}
+
+	private static final class Shortcut {
+		final int from;
+		final int to;
+		final double weight;
+
+		Shortcut(int from, int to, double weight) {
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+		}
+	}
+}
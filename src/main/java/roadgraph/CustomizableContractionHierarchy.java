@@ -0,0 +1,654 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import geography.GeographicPoint;
+import util.IntList;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         A Customizable Contraction Hierarchy (CCH), after Dibbelt, Strasser
+ *         and Wagner: a contraction hierarchy whose expensive preprocessing
+ *         only looks at the topology of the graph, so that new edge weights,
+ *         such as travel times under current traffic, can be applied in a
+ *         fraction of the time a ContractionHierarchy takes to build.
+ *
+ *         Preprocessing orders the vertices by geometric nested dissection:
+ *         the map is cut in two across one of its axes, near the median, the
+ *         vertices on one side of the cut that touch the other side form a
+ *         separator, which is ranked above both halves, and each half is
+ *         ordered the same way. Of a few candidate cuts the one with the
+ *         smallest separator is kept. Contracting the vertices in that order, with every neighbor of
+ *         a contracted vertex joined to every other (no witness searches),
+ *         gives the arcs of the hierarchy. They depend on the order alone.
+ *
+ *         Customization computes the weight of every arc in both directions
+ *         for a weight vector: an arc x - y is the cheapest of the original
+ *         edges between x and y and of every path x - v - y through a lower
+ *         vertex v. The arcs of a vertex only depend on the arcs of lower
+ *         vertices, so the vertices are customized level by level, and all
+ *         the vertices of a level in parallel.
+ *
+ *         The arcs above a vertex lead to its ancestors in the elimination
+ *         tree (each vertex's parent is its lowest upward neighbor), so a
+ *         query simply walks the ancestors of both ends in rank order, with
+ *         no priority queue, and meets at their common ancestors.
+ *
+ *         The customized weights form an immutable metric that customize()
+ *         replaces with one volatile write. Every query reads the metric once,
+ *         so queries running during an update finish on the weights they
+ *         started with and later queries see the new ones.
+ *
+ */
+public class CustomizableContractionHierarchy {
+
+	private static final int NO_MIDDLE = -1;
+	private static final int NO_ARC = -1;
+	// Parts of the map this small are ordered without cutting them further
+	private static final int LEAF_SIZE = 4;
+
+	private final CompactGraph graph;
+	private final int[] rank;
+
+	// Arcs a = x - y with rank[x] < rank[y], in CSR form by x, sorted by y
+	private final int[] upStart;
+	private final int[] upTarget;
+
+	// The arcs below every vertex y: the lower end x and the arc id of every
+	// arc x - y, in CSR form by y, sorted by x
+	private final int[] downStart;
+	private final int[] downSource;
+	private final int[] downArc;
+
+	// The lowest upward neighbor of every vertex, or -1 for a root
+	private final int[] parent;
+
+	// The vertices of each customization level, in CSR form by level
+	private final int[] levelStart;
+	private final int[] levelVertices;
+
+	// The arc every edge of the graph lies on, and whether the edge runs
+	// upward along it
+	private final int[] edgeArc;
+	private final boolean[] edgeUpward;
+
+	private volatile Metric metric;
+
+	/**
+	 * Preprocess the topology of a graph and customize it with the edge
+	 * lengths
+	 *
+	 * @param graph
+	 *            The graph to preprocess, usually from MapGraph.freeze()
+	 */
+	public CustomizableContractionHierarchy(CompactGraph graph) {
+		this.graph = graph;
+		int n = graph.getNumVertices();
+
+		rank = new NestedDissection(graph).order();
+
+		int[][] upper = contract();
+
+		parent = new int[n];
+		upStart = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			parent[v] = -1;
+			for (int w : upper[v]) {
+				if (parent[v] < 0 || rank[w] < rank[parent[v]]) {
+					parent[v] = w;
+				}
+			}
+			Arrays.sort(upper[v]);
+			upStart[v + 1] = upStart[v] + upper[v].length;
+		}
+
+		int arcs = upStart[n];
+		upTarget = new int[arcs];
+		downStart = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			System.arraycopy(upper[v], 0, upTarget, upStart[v], upper[v].length);
+			for (int w : upper[v]) {
+				downStart[w + 1]++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			downStart[v + 1] += downStart[v];
+		}
+
+		// Lower ends are added in increasing vertex id, so every list is
+		// sorted.
+		downSource = new int[arcs];
+		downArc = new int[arcs];
+		int[] fill = Arrays.copyOf(downStart, n);
+		for (int v = 0; v < n; v++) {
+			for (int arc = upStart[v]; arc < upStart[v + 1]; arc++) {
+				int w = upTarget[arc];
+				downSource[fill[w]] = v;
+				downArc[fill[w]++] = arc;
+			}
+		}
+
+		// A vertex's level is one more than the highest level below it
+		int[] byRank = new int[n];
+		for (int v = 0; v < n; v++) {
+			byRank[rank[v]] = v;
+		}
+		int[] level = new int[n];
+		int levels = 0;
+		for (int v : byRank) {
+			for (int i = downStart[v]; i < downStart[v + 1]; i++) {
+				level[v] = Math.max(level[v], level[downSource[i]] + 1);
+			}
+			levels = Math.max(levels, level[v] + 1);
+		}
+		levelStart = new int[levels + 1];
+		for (int v = 0; v < n; v++) {
+			levelStart[level[v] + 1]++;
+		}
+		for (int l = 0; l < levels; l++) {
+			levelStart[l + 1] += levelStart[l];
+		}
+		levelVertices = new int[n];
+		fill = Arrays.copyOf(levelStart, levels);
+		for (int v = 0; v < n; v++) {
+			levelVertices[fill[level[v]]++] = v;
+		}
+
+		edgeArc = new int[graph.getNumEdges()];
+		edgeUpward = new boolean[graph.getNumEdges()];
+		for (int v = 0; v < n; v++) {
+			for (int edge = graph.getOutEdgeStart(v); edge < graph.getOutEdgeEnd(v); edge++) {
+				int w = graph.getEdgeTarget(edge);
+				edgeUpward[edge] = rank[v] < rank[w];
+				edgeArc[edge] = w == v ? NO_ARC : edgeUpward[edge] ? findArc(v, w) : findArc(w, v);
+			}
+		}
+
+		customize(graph.edgeLengths());
+	}
+
+	/**
+	 * Get the graph the hierarchy was built for
+	 *
+	 * @return The CompactGraph whose vertex and edge ids the queries and
+	 *         weight vectors refer to.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get the number of arcs of the hierarchy, original edges and shortcuts
+	 * alike, counting both directions of a pair of vertices once
+	 *
+	 * @return The number of arcs.
+	 */
+	public int getNumArcs() {
+		return upTarget.length;
+	}
+
+	/**
+	 * Get the position of a vertex in the contraction order
+	 *
+	 * @param vertex
+	 *            The id of the vertex
+	 * @return The rank of the vertex, from 0 (contracted first) to n-1.
+	 */
+	public int getRank(int vertex) {
+		return rank[vertex];
+	}
+
+	/**
+	 * Apply the weights of a weighting. Queries started before this call
+	 * returns keep the previous weights.
+	 *
+	 * @param weighting
+	 *            The cost queries will minimize from now on
+	 */
+	public void customize(Weighting weighting) {
+		customize(weighting.computeWeights(graph));
+	}
+
+	/**
+	 * Apply a new weight for every edge, for example after a traffic update.
+	 * Queries started before this call returns keep the previous weights.
+	 *
+	 * @param weights
+	 *            The weight of every edge of the graph, indexed by edge id.
+	 *            Weights must not be negative. The array is only read during
+	 *            the call.
+	 */
+	public void customize(double[] weights) {
+		if (weights.length != graph.getNumEdges()) {
+			throw new IllegalArgumentException(
+					"Expected " + graph.getNumEdges() + " edge weights, got " + weights.length);
+		}
+
+		int arcs = upTarget.length;
+		Metric next = new Metric(arcs);
+		Arrays.fill(next.up, Double.POSITIVE_INFINITY);
+		Arrays.fill(next.down, Double.POSITIVE_INFINITY);
+		Arrays.fill(next.upMiddle, NO_MIDDLE);
+		Arrays.fill(next.downMiddle, NO_MIDDLE);
+
+		// Every up weight is written by the edges out of the lower end of its
+		// arc and every down weight by the edges out of the upper end, so
+		// the vertices can be handled in parallel.
+		IntStream.range(0, graph.getNumVertices()).parallel().forEach(v -> {
+			for (int edge = graph.getOutEdgeStart(v); edge < graph.getOutEdgeEnd(v); edge++) {
+				int arc = edgeArc[edge];
+				if (arc == NO_ARC) {
+					continue;
+				}
+				double[] side = edgeUpward[edge] ? next.up : next.down;
+				side[arc] = Math.min(side[arc], weights[edge]);
+			}
+		});
+
+		for (int l = 0; l + 1 < levelStart.length; l++) {
+			IntStream.range(levelStart[l], levelStart[l + 1]).parallel()
+					.forEach(i -> customizeVertex(levelVertices[i], next));
+		}
+
+		metric = next;
+	}
+
+	// Lower the arcs x - y above x through every lower triangle x - v - y.
+	// The arcs of v are final, since v is on a lower level than x.
+	private void customizeVertex(int x, Metric m) {
+		for (int arc = upStart[x]; arc < upStart[x + 1]; arc++) {
+			int y = upTarget[arc];
+
+			// Merge the vertices below x with those below y
+			int i = downStart[x];
+			int j = downStart[y];
+			while (i < downStart[x + 1] && j < downStart[y + 1]) {
+				if (downSource[i] < downSource[j]) {
+					i++;
+				} else if (downSource[i] > downSource[j]) {
+					j++;
+				} else {
+					int v = downSource[i];
+					int vx = downArc[i];
+					int vy = downArc[j];
+					// x -> v -> y and y -> v -> x
+					if (m.down[vx] + m.up[vy] < m.up[arc]) {
+						m.up[arc] = m.down[vx] + m.up[vy];
+						m.upMiddle[arc] = v;
+					}
+					if (m.down[vy] + m.up[vx] < m.down[arc]) {
+						m.down[arc] = m.down[vy] + m.up[vx];
+						m.downMiddle[arc] = v;
+					}
+					i++;
+					j++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the cheapest path from start to goal under the current weights
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal), or null if there is no
+	 *         path or either location is not a vertex.
+	 */
+	public List<GeographicPoint> shortestPath(GeographicPoint start, GeographicPoint goal) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return null;
+		}
+
+		int[] path = query(startId, goalId);
+
+		return path != null ? graph.toPoints(path) : null;
+	}
+
+	/**
+	 * Find the weight of the cheapest path from start to goal under the
+	 * current weights
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @return The weight of the cheapest path, or infinity if there is no path
+	 *         or either location is not a vertex.
+	 */
+	public double distance(GeographicPoint start, GeographicPoint goal) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		Metric m = metric;
+		SearchWorkspace forward = SearchWorkspace.acquire(graph.getNumVertices());
+		SearchWorkspace backward = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			int meeting = treeSearch(m, forward, backward, startId, goalId);
+
+			return meeting >= 0 ? forward.distance(meeting) + backward.distance(meeting) : Double.POSITIVE_INFINITY;
+		} finally {
+			forward.release();
+			backward.release();
+		}
+	}
+
+	/**
+	 * Find the cheapest path between two vertex ids under the current weights
+	 *
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @return The ids of the vertices on the path, or null if there is none.
+	 */
+	int[] query(int start, int goal) {
+		Metric m = metric;
+		SearchWorkspace forward = SearchWorkspace.acquire(graph.getNumVertices());
+		SearchWorkspace backward = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			int meeting = treeSearch(m, forward, backward, start, goal);
+
+			if (meeting < 0) {
+				return null;
+			}
+
+			IntList upward = new IntList();
+			for (int v = meeting; v != start; v = forward.parent(v)) {
+				upward.add(v);
+			}
+
+			IntList path = new IntList();
+			path.add(start);
+			for (int i = upward.size() - 1; i >= 0; i--) {
+				int v = upward.get(i);
+				unpack(m, forward.parent(v), v, path);
+			}
+			for (int v = meeting; v != goal; v = backward.parent(v)) {
+				unpack(m, v, backward.parent(v), path);
+			}
+
+			return path.toArray();
+		} finally {
+			forward.release();
+			backward.release();
+		}
+	}
+
+	// Relax the upward arcs of the ancestors of start, then the downward arcs
+	// of the ancestors of goal, in rank order, and return the common ancestor
+	// the cheapest path peaks at, or -1 if there is none.
+	private int treeSearch(Metric m, SearchWorkspace forward, SearchWorkspace backward, int start, int goal) {
+		forward.reach(start, 0, SearchWorkspace.NO_PARENT, NO_ARC);
+		for (int v = start; v >= 0; v = parent[v]) {
+			if (forward.isReached(v)) {
+				double d = forward.distance(v);
+				for (int arc = upStart[v]; arc < upStart[v + 1]; arc++) {
+					if (d + m.up[arc] < forward.distance(upTarget[arc])) {
+						forward.reach(upTarget[arc], d + m.up[arc], v, arc);
+					}
+				}
+			}
+		}
+
+		backward.reach(goal, 0, SearchWorkspace.NO_PARENT, NO_ARC);
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = -1;
+		for (int v = goal; v >= 0; v = parent[v]) {
+			if (backward.isReached(v)) {
+				double d = backward.distance(v);
+				if (d + forward.distance(v) < best) {
+					best = d + forward.distance(v);
+					meeting = v;
+				}
+				for (int arc = upStart[v]; arc < upStart[v + 1]; arc++) {
+					if (d + m.down[arc] < backward.distance(upTarget[arc])) {
+						backward.reach(upTarget[arc], d + m.down[arc], v, arc);
+					}
+				}
+			}
+		}
+
+		return meeting;
+	}
+
+	// Append the road graph vertices from -> to, excluding from, expanding
+	// the arcs that were lowered through a middle vertex.
+	private void unpack(Metric m, int from, int to, IntList path) {
+		IntList stack = new IntList();
+		stack.add(to);
+		int current = from;
+
+		while (stack.size() > 0) {
+			int next = stack.get(stack.size() - 1);
+			int middle = rank[current] < rank[next] ? m.upMiddle[findArc(current, next)]
+					: m.downMiddle[findArc(next, current)];
+
+			if (middle == NO_MIDDLE) {
+				path.add(next);
+				current = next;
+				stack.removeLast();
+			} else {
+				stack.add(middle);
+			}
+		}
+	}
+
+	// The id of the arc from lower to the higher vertex upper
+	private int findArc(int lower, int upper) {
+		int arc = Arrays.binarySearch(upTarget, upStart[lower], upStart[lower + 1], upper);
+		if (arc < 0) {
+			throw new IllegalStateException("Missing hierarchy arc " + lower + " - " + upper);
+		}
+		return arc;
+	}
+
+	// Contract the vertices in rank order, joining the upward neighbors of
+	// each one. It is enough to join them all to the lowest of them, whose
+	// own upward neighbors are then joined when it is contracted. Returns
+	// the upward neighbors of every vertex.
+	private int[][] contract() {
+		int n = graph.getNumVertices();
+		IntList[] upper = new IntList[n];
+		for (int v = 0; v < n; v++) {
+			upper[v] = new IntList();
+		}
+		for (int v = 0; v < n; v++) {
+			for (int edge = graph.getOutEdgeStart(v); edge < graph.getOutEdgeEnd(v); edge++) {
+				int w = graph.getEdgeTarget(edge);
+				if (rank[v] < rank[w]) {
+					upper[v].add(w);
+				} else if (rank[w] < rank[v]) {
+					upper[w].add(v);
+				}
+			}
+		}
+
+		int[] byRank = new int[n];
+		for (int v = 0; v < n; v++) {
+			byRank[rank[v]] = v;
+		}
+
+		int[][] result = new int[n][];
+		boolean[] seen = new boolean[n];
+		for (int v : byRank) {
+			// Drop duplicates
+			IntList neighbors = new IntList();
+			int lowest = -1;
+			for (int i = 0; i < upper[v].size(); i++) {
+				int w = upper[v].get(i);
+				if (!seen[w]) {
+					seen[w] = true;
+					neighbors.add(w);
+					if (lowest < 0 || rank[w] < rank[lowest]) {
+						lowest = w;
+					}
+				}
+			}
+			for (int i = 0; i < neighbors.size(); i++) {
+				seen[neighbors.get(i)] = false;
+				if (neighbors.get(i) != lowest) {
+					upper[lowest].add(neighbors.get(i));
+				}
+			}
+
+			result[v] = neighbors.toArray();
+			upper[v] = null;
+		}
+
+		return result;
+	}
+
+	// The weights of the arcs for one weight vector: the weight and middle
+	// vertex of every arc upward, from its lower end to its upper end, and
+	// downward.
+	private static final class Metric {
+		final double[] up;
+		final double[] down;
+		final int[] upMiddle;
+		final int[] downMiddle;
+
+		Metric(int arcs) {
+			up = new double[arcs];
+			down = new double[arcs];
+			upMiddle = new int[arcs];
+			downMiddle = new int[arcs];
+		}
+	}
+
+	// Orders the vertices by recursive geometric bisection
+	private static final class NestedDissection {
+		final CompactGraph graph;
+		final int[] rank;
+		// Which part of the current bisection every vertex is in: 1 on the
+		// low side, 2 on the high side, 0 outside the part being cut
+		final byte[] side;
+
+		NestedDissection(CompactGraph graph) {
+			this.graph = graph;
+			rank = new int[graph.getNumVertices()];
+			side = new byte[graph.getNumVertices()];
+		}
+
+		int[] order() {
+			int[] all = IntStream.range(0, graph.getNumVertices()).toArray();
+			dissect(all, graph.getNumVertices());
+			return rank;
+		}
+
+		// Give the vertices the ranks just below top, highest to the
+		// separator
+		void dissect(int[] part, int top) {
+			if (part.length <= LEAF_SIZE) {
+				for (int v : part) {
+					rank[v] = --top;
+				}
+				return;
+			}
+
+			// Try cuts across both axes at a few positions around the median
+			// and keep the one with the smallest separator.
+			int[] bestOrder = null;
+			int bestSplit = 0;
+			int bestSize = Integer.MAX_VALUE;
+			for (int axis = 0; axis < 2; axis++) {
+				int[] order = sortAlong(part, axis == 0);
+				for (int percent = 30; percent <= 70; percent += 5) {
+					int split = part.length * percent / 100;
+					int size = cut(part, order, split).size();
+					if (size < bestSize) {
+						bestSize = size;
+						bestOrder = order;
+						bestSplit = split;
+					}
+				}
+			}
+			IntList separator = cut(part, bestOrder, bestSplit);
+
+			for (int i = 0; i < separator.size(); i++) {
+				int v = separator.get(i);
+				side[v] = 0;
+				rank[v] = --top;
+			}
+
+			IntList low = new IntList();
+			IntList high = new IntList();
+			for (int v : part) {
+				if (side[v] == 1) {
+					low.add(v);
+				} else if (side[v] == 2) {
+					high.add(v);
+				}
+				side[v] = 0;
+			}
+
+			dissect(high.toArray(), top);
+			dissect(low.toArray(), top - high.size());
+		}
+
+		// The vertices of a part sorted by latitude or by longitude
+		int[] sortAlong(int[] part, boolean byLatitude) {
+			Integer[] sorted = new Integer[part.length];
+			for (int i = 0; i < part.length; i++) {
+				sorted[i] = part[i];
+			}
+			if (byLatitude) {
+				Arrays.sort(sorted, (a, b) -> Double.compare(graph.getLatitude(a), graph.getLatitude(b)));
+			} else {
+				Arrays.sort(sorted, (a, b) -> Double.compare(graph.getLongitude(a), graph.getLongitude(b)));
+			}
+
+			int[] order = new int[part.length];
+			for (int i = 0; i < part.length; i++) {
+				order[i] = sorted[i];
+			}
+			return order;
+		}
+
+		// Put the first split vertices of order on the low side and the rest
+		// on the high side, and return the separator: the vertices of the
+		// smaller side boundary, those with a neighbor on the other side.
+		// Removing either boundary disconnects the two sides.
+		IntList cut(int[] part, int[] order, int split) {
+			for (int i = 0; i < order.length; i++) {
+				side[order[i]] = (byte) (i < split ? 1 : 2);
+			}
+
+			IntList[] boundary = { new IntList(), new IntList() };
+			for (int v : part) {
+				if (touches(v, side[v] == 1 ? 2 : 1)) {
+					boundary[side[v] - 1].add(v);
+				}
+			}
+			return boundary[0].size() <= boundary[1].size() ? boundary[0] : boundary[1];
+		}
+
+		// Whether v has an in or out neighbor on the given side
+		boolean touches(int v, int other) {
+			for (int edge = graph.getOutEdgeStart(v); edge < graph.getOutEdgeEnd(v); edge++) {
+				if (side[graph.getEdgeTarget(edge)] == other) {
+					return true;
+				}
+			}
+			for (int i = graph.getInEdgeStart(v); i < graph.getInEdgeEnd(v); i++) {
+				if (side[graph.getInEdgeSource(i)] == other) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Many-to-many shortest path distances. Every source runs one
+ *         Dijkstra search that stops as soon as all the targets are settled,
+ *         instead of one search per (source, target) pair, and the sources
+ *         are searched in parallel. Each search writes straight into its own
+ *         row of the result, so no cell is ever boxed.
+ *
+ */
+final class DistanceMatrix {
+
+	private static final int ABSENT = -1;
+
+	private DistanceMatrix() {
+	}
+
+	/**
+	 * Compute the shortest path distance from every source to every target
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The weight of every edge, indexed by edge id. Weights must
+	 *            not be negative.
+	 * @param sources
+	 *            The ids of the source vertices, or -1 for a source that is
+	 *            not in the graph
+	 * @param targets
+	 *            The ids of the target vertices, or -1 for a target that is
+	 *            not in the graph
+	 * @return A sources.length by targets.length matrix, where [i][j] is the
+	 *         distance from sources[i] to targets[j], or infinity if there is
+	 *         no path.
+	 */
+	static double[][] compute(CompactGraph graph, double[] weights, int[] sources, int[] targets) {
+		boolean[] isTarget = new boolean[graph.getNumVertices()];
+		int distinctTargets = 0;
+		for (int target : targets) {
+			if (target != ABSENT && !isTarget[target]) {
+				isTarget[target] = true;
+				distinctTargets++;
+			}
+		}
+
+		double[][] matrix = new double[sources.length][];
+		int targetCount = distinctTargets;
+		IntStream.range(0, sources.length).parallel().forEach(
+				i -> matrix[i] = oneToMany(graph, weights, sources[i], targets, isTarget, targetCount));
+
+		return matrix;
+	}
+
+	// One row of the matrix: Dijkstra from source until every target is
+	// settled or the frontier runs out.
+	private static double[] oneToMany(CompactGraph graph, double[] weights, int source, int[] targets,
+			boolean[] isTarget, int targetCount) {
+		double[] row = new double[targets.length];
+		Arrays.fill(row, Double.POSITIVE_INFINITY);
+
+		if (source == ABSENT || targetCount == 0) {
+			return row;
+		}
+
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.update(source, 0, SearchWorkspace.NO_PARENT, SearchWorkspace.NO_PARENT);
+			int targetsLeft = targetCount;
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+
+				if (isTarget[currentNode] && --targetsLeft == 0) {
+					break;
+				}
+
+				double currentDistance = workspace.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					workspace.relax(graph.getEdgeTarget(edge), currentDistance + weights[edge], currentNode, edge);
+				}
+			}
+
+			// Any target still unsettled was never reached, so its distance
+			// is infinite.
+			for (int j = 0; j < targets.length; j++) {
+				if (targets[j] != ABSENT) {
+					row[j] = workspace.distance(targets[j]);
+				}
+			}
+		} finally {
+			workspace.release();
+		}
+
+		return row;
+	}
+}
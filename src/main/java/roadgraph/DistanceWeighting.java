@@ -0,0 +1,26 @@
+package roadgraph;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Weighs every edge by its length, guided by the straight line
+ *         distance. Use Weighting.DISTANCE.
+ *
+ */
+final class DistanceWeighting implements Weighting {
+
+	@Override
+	public double[] computeWeights(CompactGraph graph) {
+		return graph.edgeLengths();
+	}
+
+	@Override
+	public Heuristic heuristic(CompactGraph graph) {
+		return graph::straightLineDistance;
+	}
+
+	@Override
+	public String toString() {
+		return "distance";
+	}
+}
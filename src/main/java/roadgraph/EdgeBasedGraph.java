@@ -0,0 +1,391 @@
+package roadgraph;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         An edge-based view of a MapGraph for routing with turn costs and turn
+ *         restrictions. The states of its searches are the road segments
+ *         (edges) of the graph instead of the intersections, and driving from
+ *         one segment onto the next through their shared intersection is a
+ *         turn with a cost of its own, so forbidding a left turn or charging
+ *         for a U-turn is just a transition cost.
+ *
+ *         The expanded graph is never built. The turns out of a segment are
+ *         the out-edges of the vertex it ends at in the CSR arrays of the
+ *         underlying CompactGraph, and their costs come from two places:
+ *         every turn has a default cost from its geometry (straight on, left,
+ *         right or back), and a compact TurnCostTable holds the turns given a
+ *         cost of their own, such as the forbidden ones. On top of the base
+ *         graph this costs a source vertex id and a heading per edge, twelve
+ *         bytes per explicit turn, and search workspaces sized by the number
+ *         of edges rather than vertices. See getOverheadBytes().
+ *
+ *         The view is built on the snapshot the MapGraph had when it was
+ *         created; later changes to the MapGraph are not seen. Turn costs must
+ *         not be changed while a search is running.
+ *
+ */
+public class EdgeBasedGraph {
+
+	// Turns that change the heading by more than this are left or right turns
+	private static final double STRAIGHT_ANGLE = Math.toRadians(45);
+
+	private final CompactGraph graph;
+	private final double leftTurnCost;
+	private final double rightTurnCost;
+	private final double uTurnCost;
+
+	// The vertex every edge starts at and its compass heading in radians,
+	// counterclockwise from east, indexed by edge id
+	private final int[] edgeSource;
+	private final float[] edgeHeading;
+
+	private final TurnCostTable turnCosts;
+
+	/**
+	 * Create an edge-based view of a graph
+	 *
+	 * @param map
+	 *            The graph to route on
+	 * @param leftTurnCost
+	 *            The cost added for turning left, in the units of the
+	 *            weightings the view is searched with
+	 * @param rightTurnCost
+	 *            The cost added for turning right
+	 * @param uTurnCost
+	 *            The cost added for driving back to the intersection just
+	 *            left
+	 * @throws IllegalArgumentException
+	 *             If any cost is negative or NaN.
+	 */
+	public EdgeBasedGraph(MapGraph map, double leftTurnCost, double rightTurnCost, double uTurnCost) {
+		if (!(leftTurnCost >= 0 && rightTurnCost >= 0 && uTurnCost >= 0)) {
+			throw new IllegalArgumentException("Turn costs must not be negative");
+		}
+
+		this.graph = map.freeze();
+		this.leftTurnCost = leftTurnCost;
+		this.rightTurnCost = rightTurnCost;
+		this.uTurnCost = uTurnCost;
+
+		int m = graph.getNumEdges();
+		edgeSource = new int[m];
+		edgeHeading = new float[m];
+		for (int v = 0; v < graph.getNumVertices(); v++) {
+			double cosLatitude = Math.cos(Math.toRadians(graph.getLatitude(v)));
+			for (int edge = graph.getOutEdgeStart(v), end = graph.getOutEdgeEnd(v); edge < end; edge++) {
+				int target = graph.getEdgeTarget(edge);
+				edgeSource[edge] = v;
+				edgeHeading[edge] = (float) Math.atan2(graph.getLatitude(target) - graph.getLatitude(v),
+						(graph.getLongitude(target) - graph.getLongitude(v)) * cosLatitude);
+			}
+		}
+
+		turnCosts = new TurnCostTable();
+	}
+
+	/**
+	 * Get the snapshot this view was built on
+	 *
+	 * @return The CompactGraph whose edge ids are the states of the searches.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get the number of turns given a cost of their own with setTurnCost or
+	 * forbidTurn
+	 *
+	 * @return The number of entries in the turn cost table.
+	 */
+	public int getNumTurnCosts() {
+		return turnCosts.size();
+	}
+
+	/**
+	 * Get the memory this view holds on top of its CompactGraph: the per-edge
+	 * arrays and the turn cost table. Search workspaces, which hold about 40
+	 * bytes per edge per thread instead of per vertex, are not included.
+	 *
+	 * @return The size of the arrays of the view, in bytes.
+	 */
+	public long getOverheadBytes() {
+		return 8L * graph.getNumEdges() + turnCosts.bytes();
+	}
+
+	/**
+	 * Give one turn a cost of its own instead of the default cost for its
+	 * geometry
+	 *
+	 * @param from
+	 *            The intersection the turn comes from
+	 * @param via
+	 *            The intersection the turn is made at
+	 * @param to
+	 *            The intersection the turn goes to
+	 * @param cost
+	 *            The cost of the turn, or infinity if the turn is forbidden
+	 * @throws IllegalArgumentException
+	 *             If the graph has no edge from one point to the next, or the
+	 *             cost is negative or NaN.
+	 */
+	public void setTurnCost(GeographicPoint from, GeographicPoint via, GeographicPoint to, double cost)
+			throws IllegalArgumentException {
+		int in = edge(from, via);
+		int out = edge(via, to);
+
+		if (in < 0 || out < 0 || !(cost >= 0)) {
+			throw new IllegalArgumentException();
+		}
+
+		turnCosts.set(in, out, cost);
+	}
+
+	/**
+	 * Forbid a turn
+	 *
+	 * @param from
+	 *            The intersection the turn comes from
+	 * @param via
+	 *            The intersection the turn is made at
+	 * @param to
+	 *            The intersection the turn goes to
+	 * @throws IllegalArgumentException
+	 *             If the graph has no edge from one point to the next.
+	 */
+	public void forbidTurn(GeographicPoint from, GeographicPoint via, GeographicPoint to)
+			throws IllegalArgumentException {
+		setTurnCost(from, via, to, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Get the cost of a turn
+	 *
+	 * @param from
+	 *            The intersection the turn comes from
+	 * @param via
+	 *            The intersection the turn is made at
+	 * @param to
+	 *            The intersection the turn goes to
+	 * @return The cost of the turn, infinity if it is forbidden, or NaN if
+	 *         the graph has no edge from one point to the next.
+	 */
+	public double getTurnCost(GeographicPoint from, GeographicPoint via, GeographicPoint to) {
+		int in = edge(from, via);
+		int out = edge(via, to);
+		return in >= 0 && out >= 0 ? turnCost(in, out, turnCosts.first(in)) : Double.NaN;
+	}
+
+	/**
+	 * Find the cheapest path from start to goal, turns included, using
+	 * Dijkstra's algorithm on the road segments
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost of driving the edges, such as a TravelTimeWeighting
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, Weighting weighting) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return dijkstra(start, goal, weighting, temp);
+	}
+
+	/**
+	 * Find the cheapest path from start to goal, turns included, using
+	 * Dijkstra's algorithm on the road segments
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost of driving the edges, such as a TravelTimeWeighting
+	 * @param nodeSearched
+	 *            A hook for visualization, called with the intersection at the
+	 *            end of every road segment as it is settled.
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, Weighting weighting,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(start, goal, weighting, null, nodeSearched);
+	}
+
+	/**
+	 * Find the cheapest path from start to goal, turns included, using A*
+	 * search on the road segments. Turn costs are never negative, so the
+	 * heuristic of the weighting stays admissible.
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost of driving the edges, such as a TravelTimeWeighting
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, Weighting weighting) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return aStarSearch(start, goal, weighting, temp);
+	}
+
+	/**
+	 * Find the cheapest path from start to goal, turns included, using A*
+	 * search on the road segments
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost of driving the edges, such as a TravelTimeWeighting
+	 * @param nodeSearched
+	 *            A hook for visualization, called with the intersection at the
+	 *            end of every road segment as it is settled.
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, Weighting weighting,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(start, goal, weighting, weighting.heuristic(graph), nodeSearched);
+	}
+
+	/**
+	 * Compute the cost of a path, turns included
+	 *
+	 * @param path
+	 *            The intersections of the path, in order
+	 * @param weighting
+	 *            The cost of driving the edges
+	 * @return The total cost, infinity if the path makes a forbidden turn, or
+	 *         NaN if it follows an edge the graph does not have.
+	 */
+	public double pathCost(List<GeographicPoint> path, Weighting weighting) {
+		double[] weights = graph.weights(weighting);
+		double cost = 0;
+		int previous = -1;
+		for (int i = 1; i < path.size(); i++) {
+			int edge = edge(path.get(i - 1), path.get(i));
+			if (edge < 0) {
+				return Double.NaN;
+			}
+			cost += weights[edge] + (previous >= 0 ? turnCost(previous, edge, turnCosts.first(previous)) : 0);
+			previous = edge;
+		}
+		return cost;
+	}
+
+	// Search the road segments, with A* if heuristic is not null. The first
+	// segments are those out of start, and the search ends when a segment
+	// into goal is settled.
+	private List<GeographicPoint> search(GeographicPoint start, GeographicPoint goal, Weighting weighting,
+			Heuristic heuristic, Consumer<GeographicPoint> nodeSearched) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return null;
+		}
+		if (startId == goalId) {
+			return graph.toPoints(new int[] { startId });
+		}
+
+		double[] weights = graph.weights(weighting);
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumEdges());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			for (int edge = graph.getOutEdgeStart(startId), end = graph.getOutEdgeEnd(startId); edge < end; edge++) {
+				enqueue(workspace, edge, weights[edge], SearchWorkspace.NO_PARENT, heuristic, goalId);
+			}
+
+			while (!frontier.isEmpty()) {
+				int currentEdge = frontier.poll();
+				int via = graph.getEdgeTarget(currentEdge);
+				nodeSearched.accept(graph.getPoint(via));
+
+				if (via == goalId) {
+					int[] edges = workspace.buildPath(currentEdge);
+					int[] vertices = new int[edges.length + 1];
+					vertices[0] = startId;
+					for (int i = 0; i < edges.length; i++) {
+						vertices[i + 1] = graph.getEdgeTarget(edges[i]);
+					}
+					return graph.toPoints(vertices);
+				}
+
+				double currentCost = workspace.distance(currentEdge);
+				int turns = turnCosts.first(currentEdge);
+				for (int edge = graph.getOutEdgeStart(via), end = graph.getOutEdgeEnd(via); edge < end; edge++) {
+					double newCost = currentCost + turnCost(currentEdge, edge, turns) + weights[edge];
+					if (newCost < workspace.distance(edge)) {
+						enqueue(workspace, edge, newCost, currentEdge, heuristic, goalId);
+					}
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+
+	private void enqueue(SearchWorkspace workspace, int edge, double cost, int parent, Heuristic heuristic,
+			int goal) {
+		if (cost == Double.POSITIVE_INFINITY) {
+			return;
+		}
+		workspace.reach(edge, cost, parent, parent);
+		double estimate = heuristic != null ? heuristic.estimate(graph.getEdgeTarget(edge), goal) : 0;
+		workspace.heap.insertOrDecrease(edge, cost + estimate);
+	}
+
+	// The cost of turning from one edge onto the next, given the position of
+	// the first table entry for turns out of the first edge
+	private double turnCost(int from, int to, int turns) {
+		double cost = turnCosts.find(turns, from, to);
+		if (!Double.isNaN(cost)) {
+			return cost;
+		}
+
+		if (graph.getEdgeTarget(to) == edgeSource[from]) {
+			return uTurnCost;
+		}
+
+		double angle = edgeHeading[to] - edgeHeading[from];
+		if (angle > Math.PI) {
+			angle -= 2 * Math.PI;
+		} else if (angle <= -Math.PI) {
+			angle += 2 * Math.PI;
+		}
+
+		if (angle > STRAIGHT_ANGLE) {
+			return leftTurnCost;
+		}
+		if (angle < -STRAIGHT_ANGLE) {
+			return rightTurnCost;
+		}
+		return 0;
+	}
+
+	// The id of the edge between two locations, or -1
+	private int edge(GeographicPoint from, GeographicPoint to) {
+		int source = graph.indexOf(from);
+		int target = graph.indexOf(to);
+		return source >= 0 && target >= 0 ? graph.findEdge(source, target) : -1;
+	}
+}
@@ -0,0 +1,424 @@
+package roadgraph;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import geography.GeographicPoint;
+import geography.GeometryStore;
+import geography.RoadSegment;
+import util.StringTable;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Reads and writes a MapGraph, and optionally the road segments that
+ *         give its roads their shape, as a binary snapshot. A snapshot holds
+ *         the graph in the CSR layout of CompactGraph, so it is read with bulk
+ *         copies out of a memory-mapped file: nothing is parsed and no
+ *         intersections are computed, and the graph loaded starts with its
+ *         CompactGraph already built.
+ *
+ *         A snapshot is little-endian. It starts with a header of twelve ints:
+ *         the magic number "UCGS", the format version, the number of vertices
+ *         n, of edges m, of road names and of the first of them that belong
+ *         to edges, the same two counts for road types, the number of bytes
+ *         of string data, the number of road segments s (or -1 if they were
+ *         not written), the number of geometry points g and a reserved zero. The
+ *         sections follow without padding:
+ *
+ *         <pre>
+ *         double[n] latitude, double[n] longitude   vertices
+ *         int[n+1] outStart, int[m] target           CSR edges
+ *         double[m] length, int[m] roadName, int[m] roadType
+ *         int[names+types] end, byte[] utf8          strings, names first
+ *         double[s] x4 latitude and longitude of both ends,
+ *         int[s] roadName, int[s] roadType, double[s] length,
+ *         int[s] geometryEnd, double[g] latitude, double[g] longitude
+ *         </pre>
+ *
+ *         Travel time profiles are not part of a snapshot, just as they are
+ *         not part of a .map file.
+ *
+ */
+public final class GraphSnapshot {
+
+	private static final int MAGIC = 0x53474355; // "UCGS" in little-endian
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 48;
+
+	private GraphSnapshot() {
+	}
+
+	/**
+	 * Write a graph and its road segments to a snapshot file. The file is
+	 * written under a temporary name and then renamed, so a reader never sees
+	 * a partial snapshot.
+	 *
+	 * @param filename
+	 *            The file to write
+	 * @param graph
+	 *            The graph to write
+	 * @param segments
+	 *            The road segments of the graph, keyed by both of their end
+	 *            points as GraphLoader builds them, or null
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 * @throws IllegalArgumentException
+	 *             If an edge of the graph has a travel time profile.
+	 */
+	public static void write(String filename, MapGraph graph,
+			HashMap<GeographicPoint, HashSet<RoadSegment>> segments) throws IOException {
+		CompactGraph compact = graph.freeze();
+		if (compact.getNumTravelTimeProfiles() > 0) {
+			throw new IllegalArgumentException("Travel time profiles cannot be written to a snapshot");
+		}
+
+		int n = compact.getNumVertices();
+		int m = compact.getNumEdges();
+
+		// Names and types of the edges keep their ids; those of segments only
+		// are added after them
+		StringTable names = new StringTable();
+		for (int i = 0; i < compact.getNumRoadNames(); i++) {
+			names.intern(compact.getRoadName(i));
+		}
+		StringTable types = new StringTable();
+		for (int i = 0; i < compact.getNumRoadTypes(); i++) {
+			types.intern(compact.getRoadType(i));
+		}
+
+		// Every segment is in the sets of both of its ends
+		List<RoadSegment> distinct = new ArrayList<RoadSegment>();
+		int geometryPoints = 0;
+		if (segments != null) {
+			Set<RoadSegment> seen = Collections.newSetFromMap(new IdentityHashMap<RoadSegment, Boolean>());
+			for (HashSet<RoadSegment> set : segments.values()) {
+				for (RoadSegment segment : set) {
+					if (seen.add(segment)) {
+						distinct.add(segment);
+						names.intern(segment.getRoadName());
+						types.intern(segment.getRoadType());
+						geometryPoints += segment.getNumGeometryPoints();
+					}
+				}
+			}
+		}
+
+		int strings = names.size() + types.size();
+		byte[][] encoded = new byte[strings][];
+		int stringBytes = 0;
+		for (int i = 0; i < strings; i++) {
+			String value = i < names.size() ? names.get(i) : types.get(i - names.size());
+			encoded[i] = value.getBytes(StandardCharsets.UTF_8);
+			stringBytes += encoded[i].length;
+		}
+
+		int s = segments != null ? distinct.size() : -1;
+		long size = size(n, m, strings, stringBytes, s, geometryPoints);
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Graph too large for a snapshot");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m);
+		buffer.putInt(names.size()).putInt(compact.getNumRoadNames());
+		buffer.putInt(types.size()).putInt(compact.getNumRoadTypes());
+		buffer.putInt(stringBytes).putInt(s).putInt(geometryPoints).putInt(0);
+
+		for (int v = 0; v < n; v++) {
+			buffer.putDouble(compact.getLatitude(v));
+		}
+		for (int v = 0; v < n; v++) {
+			buffer.putDouble(compact.getLongitude(v));
+		}
+		for (int v = 0; v < n; v++) {
+			buffer.putInt(compact.getOutEdgeStart(v));
+		}
+		buffer.putInt(m);
+		for (int e = 0; e < m; e++) {
+			buffer.putInt(compact.getEdgeTarget(e));
+		}
+		for (int e = 0; e < m; e++) {
+			buffer.putDouble(compact.getEdgeLength(e));
+		}
+		for (int e = 0; e < m; e++) {
+			buffer.putInt(compact.getEdgeRoadName(e));
+		}
+		for (int e = 0; e < m; e++) {
+			buffer.putInt(compact.getEdgeRoadType(e));
+		}
+
+		int end = 0;
+		for (byte[] value : encoded) {
+			end += value.length;
+			buffer.putInt(end);
+		}
+		for (byte[] value : encoded) {
+			buffer.put(value);
+		}
+
+		if (s > 0) {
+			for (RoadSegment segment : distinct) {
+				buffer.putDouble(segment.getPoint1().getX());
+			}
+			for (RoadSegment segment : distinct) {
+				buffer.putDouble(segment.getPoint1().getY());
+			}
+			for (RoadSegment segment : distinct) {
+				buffer.putDouble(segment.getPoint2().getX());
+			}
+			for (RoadSegment segment : distinct) {
+				buffer.putDouble(segment.getPoint2().getY());
+			}
+			for (RoadSegment segment : distinct) {
+				buffer.putInt(names.indexOf(segment.getRoadName()));
+			}
+			for (RoadSegment segment : distinct) {
+				buffer.putInt(types.indexOf(segment.getRoadType()));
+			}
+			for (RoadSegment segment : distinct) {
+				buffer.putDouble(segment.getLength());
+			}
+			double[] geometryLatitude = new double[geometryPoints];
+			double[] geometryLongitude = new double[geometryPoints];
+			end = 0;
+			for (RoadSegment segment : distinct) {
+				for (GeographicPoint point : segment.getGeometryPoints()) {
+					geometryLatitude[end] = point.getX();
+					geometryLongitude[end] = point.getY();
+					end++;
+				}
+				buffer.putInt(end);
+			}
+			for (double latitude : geometryLatitude) {
+				buffer.putDouble(latitude);
+			}
+			for (double longitude : geometryLongitude) {
+				buffer.putDouble(longitude);
+			}
+		}
+		buffer.flip();
+
+		Path path = Paths.get(filename).toAbsolutePath();
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Read a snapshot into an empty graph. The file is memory-mapped and
+	 * checked completely before the graph, segments or intersections are
+	 * touched, so they are left as they were if it cannot be read.
+	 *
+	 * @param filename
+	 *            The snapshot file
+	 * @param graph
+	 *            The graph to load the snapshot into. It must be empty.
+	 * @param segments
+	 *            Receives the road segments of the snapshot keyed by both of
+	 *            their end points, as GraphLoader builds them, or null
+	 * @param intersections
+	 *            Receives the vertices of the graph, or null
+	 * @throws IOException
+	 *             If the file cannot be read or is not a valid snapshot.
+	 * @throws IllegalStateException
+	 *             If the graph is not empty.
+	 */
+	public static void read(String filename, MapGraph graph, HashMap<GeographicPoint, HashSet<RoadSegment>> segments,
+			Set<GeographicPoint> intersections) throws IOException {
+		if (graph.getNumVertices() > 0) {
+			throw new IllegalStateException("The graph is not empty");
+		}
+
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+				throw invalid(filename, "bad size");
+			}
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw invalid(filename, "bad magic number");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw invalid(filename, "unsupported version " + version);
+			}
+
+			int n = buffer.getInt();
+			int m = buffer.getInt();
+			int nameCount = buffer.getInt();
+			int edgeNames = buffer.getInt();
+			int typeCount = buffer.getInt();
+			int edgeTypes = buffer.getInt();
+			int stringBytes = buffer.getInt();
+			int s = buffer.getInt();
+			int geometryPoints = buffer.getInt();
+			buffer.getInt();
+
+			if (n < 0 || m < 0 || edgeNames < 0 || edgeNames > nameCount || edgeTypes < 0 || edgeTypes > typeCount
+					|| stringBytes < 0 || s < -1 || geometryPoints < 0 || (s <= 0 && geometryPoints > 0)
+					|| size(n, m, nameCount + (long) typeCount, stringBytes, s, geometryPoints) != buffer.limit()) {
+				throw invalid(filename, "bad header");
+			}
+			if (segments != null && s < 0) {
+				throw invalid(filename, "no road segments");
+			}
+
+			double[] latitude = doubles(buffer, n);
+			double[] longitude = doubles(buffer, n);
+			int[] outStart = ints(buffer, n + 1);
+			int[] target = ints(buffer, m);
+			double[] length = doubles(buffer, m);
+			int[] roadName = ints(buffer, m);
+			int[] roadType = ints(buffer, m);
+			int[] stringEnd = ints(buffer, nameCount + typeCount);
+			byte[] utf8 = new byte[stringBytes];
+			buffer.get(utf8);
+
+			if (outStart[0] != 0 || outStart[n] != m) {
+				throw invalid(filename, "bad edge offsets");
+			}
+			for (int v = 0; v < n; v++) {
+				if (outStart[v] > outStart[v + 1]) {
+					throw invalid(filename, "bad edge offsets");
+				}
+			}
+			for (int e = 0; e < m; e++) {
+				if (target[e] < 0 || target[e] >= n || roadName[e] < 0 || roadName[e] >= edgeNames
+						|| roadType[e] < 0 || roadType[e] >= edgeTypes || !(length[e] >= 0)) {
+					throw invalid(filename, "bad edge " + e);
+				}
+			}
+
+			String[] strings = new String[stringEnd.length];
+			int start = 0;
+			for (int i = 0; i < strings.length; i++) {
+				if (stringEnd[i] < start || stringEnd[i] > stringBytes) {
+					throw invalid(filename, "bad string table");
+				}
+				strings[i] = new String(utf8, start, stringEnd[i] - start, StandardCharsets.UTF_8);
+				start = stringEnd[i];
+			}
+
+			GeographicPoint[] points = new GeographicPoint[n];
+			for (int v = 0; v < n; v++) {
+				points[v] = new GeographicPoint(latitude[v], longitude[v]);
+			}
+
+			List<RoadSegment> roads = new ArrayList<RoadSegment>();
+			if (s > 0) {
+				double[] latitude1 = doubles(buffer, s);
+				double[] longitude1 = doubles(buffer, s);
+				double[] latitude2 = doubles(buffer, s);
+				double[] longitude2 = doubles(buffer, s);
+				int[] segmentName = ints(buffer, s);
+				int[] segmentType = ints(buffer, s);
+				double[] segmentLength = doubles(buffer, s);
+				int[] geometryEnd = ints(buffer, s);
+				// The segments keep their points in the arrays read, made
+				// into GeographicPoints only when asked for
+				GeometryStore geometry = GeometryStore.of(doubles(buffer, geometryPoints),
+						doubles(buffer, geometryPoints));
+
+				start = 0;
+				for (int i = 0; i < s; i++) {
+					if (segmentName[i] < 0 || segmentName[i] >= nameCount || segmentType[i] < 0
+							|| segmentType[i] >= typeCount || geometryEnd[i] < start
+							|| geometryEnd[i] > geometryPoints) {
+						throw invalid(filename, "bad road segment " + i);
+					}
+					roads.add(new RoadSegment(new GeographicPoint(latitude1[i], longitude1[i]),
+							new GeographicPoint(latitude2[i], longitude2[i]), geometry, start, geometryEnd[i],
+							strings[segmentName[i]], strings[nameCount + segmentType[i]], segmentLength[i]));
+					start = geometryEnd[i];
+				}
+			}
+
+			String[] names = new String[edgeNames];
+			System.arraycopy(strings, 0, names, 0, edgeNames);
+			String[] types = new String[edgeTypes];
+			System.arraycopy(strings, nameCount, types, 0, edgeTypes);
+			graph.load(points, outStart, target, length, roadName, roadType, names, types);
+
+			if (intersections != null) {
+				Collections.addAll(intersections, points);
+			}
+			if (segments != null) {
+				for (RoadSegment road : roads) {
+					addSegment(segments, road.getPoint1(), road);
+					addSegment(segments, road.getPoint2(), road);
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw invalid(filename, "truncated");
+		} catch (IllegalArgumentException e) {
+			throw invalid(filename, e.getMessage());
+		}
+	}
+
+	private static void addSegment(HashMap<GeographicPoint, HashSet<RoadSegment>> segments, GeographicPoint point,
+			RoadSegment segment) {
+		HashSet<RoadSegment> set = segments.get(point);
+		if (set == null) {
+			set = new HashSet<RoadSegment>();
+			segments.put(point, set);
+		}
+		set.add(segment);
+	}
+
+	// The number of bytes of a snapshot with the given counts
+	private static long size(long n, long m, long strings, long stringBytes, long s, long geometryPoints) {
+		long size = HEADER_BYTES + 16 * n + 4 * (n + 1) + 4 * m + 16 * m + 4 * strings + stringBytes;
+		if (s > 0) {
+			size += 52 * s + 16 * geometryPoints;
+		}
+		return size;
+	}
+
+	private static double[] doubles(ByteBuffer buffer, int count) {
+		double[] values = new double[count];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + 8 * count);
+		return values;
+	}
+
+	private static int[] ints(ByteBuffer buffer, int count) {
+		int[] values = new int[count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * count);
+		return values;
+	}
+
+	private static IOException invalid(String filename, String reason) {
+		return new IOException("Not a valid graph snapshot: " + filename + " (" + reason + ")");
+	}
+}
@@ -0,0 +1,30 @@
+package roadgraph;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         An estimate of the remaining cost from a vertex to the goal of an A*
+ *         search. For A* to return shortest paths the estimate must never be
+ *         larger than the true cost (admissible), and it should be consistent:
+ *         estimate(u, goal) <= weight(u, v) + estimate(v, goal) for every
+ *         edge u -> v. Bidirectional A* also asks for estimate(start, v) to
+ *         bound the distance from the start, so the estimate must hold for any
+ *         pair of vertices, not only for paths ending at the goal.
+ *
+ *         Implementations are stateless with respect to a query, so a single
+ *         instance can serve many concurrent searches.
+ *
+ */
+public interface Heuristic {
+
+	/**
+	 * Estimate the cost of the cheapest path from a vertex to the goal
+	 *
+	 * @param vertex
+	 *            The id of the vertex the estimate is for
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @return A lower bound of the cost from vertex to goal
+	 */
+	double estimate(int vertex, int goal);
+}
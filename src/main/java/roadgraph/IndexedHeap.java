@@ -0,0 +1,159 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         An indexed d-ary min-heap of int items 0 .. capacity-1 with double
+ *         keys. Besides insert and poll it supports decrease-key, which
+ *         Dijkstra and A* use to relax an edge in place instead of queueing a
+ *         new entry. All storage is allocated up front, so no operation
+ *         allocates.
+ *
+ *         A 4-ary heap is shallower than a binary heap and keeps the children
+ *         of a node next to each other in memory, which favors the many
+ *         decrease-key (sift up) operations of a road network search.
+ *
+ */
+final class IndexedHeap {
+
+	private static final int ARITY = 4;
+	private static final int ABSENT = -1;
+
+	// heap[i] is the item in slot i and keys[i] its key; position[item] is
+	// the slot of an item, or ABSENT if it is not in the heap.
+	private final int[] heap;
+	private final double[] keys;
+	private final int[] position;
+	private int size;
+
+	/**
+	 * Create a new empty heap for the items 0 .. capacity-1
+	 *
+	 * @param capacity
+	 *            The number of distinct items the heap can hold
+	 */
+	IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new double[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, ABSENT);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int item) {
+		return position[item] != ABSENT;
+	}
+
+	/**
+	 * Get the smallest key in the heap. The heap must not be empty.
+	 *
+	 * @return The key of the item poll() would return.
+	 */
+	double peekKey() {
+		return keys[0];
+	}
+
+	/**
+	 * Add an item to the heap, or lower its key if it is already there. A key
+	 * that is not lower than the current one is ignored.
+	 *
+	 * @param item
+	 *            The item to add or update
+	 * @param key
+	 *            The new key of the item
+	 */
+	void insertOrDecrease(int item, double key) {
+		int slot = position[item];
+
+		if (slot == ABSENT) {
+			slot = size++;
+		} else if (key >= keys[slot]) {
+			return;
+		}
+
+		siftUp(slot, item, key);
+	}
+
+	/**
+	 * Remove the item with the smallest key. The heap must not be empty.
+	 *
+	 * @return The item that had the smallest key.
+	 */
+	int poll() {
+		int top = heap[0];
+		position[top] = ABSENT;
+		size--;
+
+		if (size > 0) {
+			siftDown(0, heap[size], keys[size]);
+		}
+
+		return top;
+	}
+
+	/**
+	 * Remove every item from the heap. Takes time proportional to the number
+	 * of items left in the heap, not to its capacity.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = ABSENT;
+		}
+		size = 0;
+	}
+
+	// Move the item up from slot until its parent has a key no larger
+	// than its own.
+	private void siftUp(int slot, int item, double key) {
+		while (slot > 0) {
+			int parent = (slot - 1) / ARITY;
+			if (keys[parent] <= key) {
+				break;
+			}
+			place(slot, heap[parent], keys[parent]);
+			slot = parent;
+		}
+		place(slot, item, key);
+	}
+
+	// Move the item down from slot until all its children have keys no
+	// smaller than its own.
+	private void siftDown(int slot, int item, double key) {
+		while (true) {
+			int firstChild = slot * ARITY + 1;
+			if (firstChild >= size) {
+				break;
+			}
+
+			int smallest = firstChild;
+			int lastChild = Math.min(firstChild + ARITY, size);
+			for (int child = firstChild + 1; child < lastChild; child++) {
+				if (keys[child] < keys[smallest]) {
+					smallest = child;
+				}
+			}
+
+			if (keys[smallest] >= key) {
+				break;
+			}
+			place(slot, heap[smallest], keys[smallest]);
+			slot = smallest;
+		}
+		place(slot, item, key);
+	}
+
+	private void place(int slot, int item, double key) {
+		heap[slot] = item;
+		keys[slot] = key;
+		position[item] = slot;
+	}
+}
@@ -0,0 +1,268 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Yen's algorithm for the k shortest loopless paths between two
+ *         vertices. Every accepted path is branched at each of its vertices:
+ *         the spur search looks for the shortest way from that vertex to the
+ *         goal that keeps off the root path before it and off the next edge of
+ *         every accepted path sharing that root. The cheapest candidate is
+ *         accepted next.
+ *
+ *         Three things keep the spur searches cheap. One backward Dijkstra
+ *         from the goal gives the exact distance to the goal of every vertex
+ *         on the whole graph, which is an admissible and consistent A*
+ *         heuristic for every spur search on a part of it. Its shortest path
+ *         tree answers a spur search outright whenever the tree path from the
+ *         spur vertex avoids everything removed. And only the k - |accepted|
+ *         cheapest candidates are kept, since no others can be accepted, so
+ *         once there are that many, a spur search stops as soon as it cannot
+ *         beat the most expensive of them.
+ *
+ */
+final class KShortestPaths {
+
+	private static final int NO_PARENT = SearchWorkspace.NO_PARENT;
+
+	private KShortestPaths() {
+	}
+
+	/**
+	 * Find the k shortest loopless paths from start to goal
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The weight of every edge, indexed by edge id. Weights must
+	 *            not be negative.
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param k
+	 *            The number of paths wanted
+	 * @return Up to k paths as the ids of their vertices from start to goal,
+	 *         cheapest first. Fewer if there are not that many loopless paths.
+	 */
+	static List<int[]> find(CompactGraph graph, double[] weights, int start, int goal, int k) {
+		int n = graph.getNumVertices();
+		double[] toGoal = new double[n];
+		int[] next = new int[n];
+		shortestPathTree(graph, weights, goal, toGoal, next);
+
+		List<int[]> accepted = new ArrayList<>();
+		if (k <= 0 || toGoal[start] == Double.POSITIVE_INFINITY) {
+			return accepted;
+		}
+		accepted.add(treePath(new int[0], start, goal, next));
+
+		// The best candidates, cheapest first
+		List<int[]> candidates = new ArrayList<>();
+		List<Double> candidateCosts = new ArrayList<>();
+
+		// blocked[v] == stamp marks the vertices a spur search must avoid
+		int[] blocked = new int[n];
+		int stamp = 0;
+
+		while (accepted.size() < k) {
+			int[] previous = accepted.get(accepted.size() - 1);
+			int wanted = k - accepted.size();
+			double rootCost = 0;
+			stamp++;
+
+			for (int i = 0; i + 1 < previous.length; i++) {
+				int spur = previous[i];
+				if (i > 0) {
+					// The root grows by one vertex for every spur
+					blocked[previous[i - 1]] = stamp;
+					rootCost += weights[graph.findEdge(previous[i - 1], spur)];
+				}
+
+				// The next vertex of every accepted path with the same root
+				int[] removed = new int[accepted.size()];
+				int numRemoved = 0;
+				for (int[] path : accepted) {
+					if (path.length > i + 1 && sameRoot(path, previous, i)) {
+						removed[numRemoved++] = path[i + 1];
+					}
+				}
+
+				double bound = bound(candidateCosts, wanted);
+				if (rootCost + toGoal[spur] >= bound) {
+					continue;
+				}
+
+				int[] spurPath = followsTree(spur, goal, next, blocked, stamp, removed, numRemoved)
+						? treePath(Arrays.copyOf(previous, i), spur, goal, next)
+						: spurSearch(graph, weights, toGoal, previous, i, goal, blocked, stamp, removed, numRemoved,
+								bound - rootCost);
+				if (spurPath == null) {
+					continue;
+				}
+
+				double cost = graph.pathWeight(spurPath, weights);
+				if (cost < bound && !contains(candidates, spurPath)) {
+					int position = candidates.size();
+					while (position > 0 && candidateCosts.get(position - 1) > cost) {
+						position--;
+					}
+					candidates.add(position, spurPath);
+					candidateCosts.add(position, cost);
+					if (candidates.size() > wanted) {
+						candidates.remove(wanted);
+						candidateCosts.remove(wanted);
+					}
+					bound = bound(candidateCosts, wanted);
+				}
+			}
+
+			if (candidates.isEmpty()) {
+				break;
+			}
+			accepted.add(candidates.remove(0));
+			candidateCosts.remove(0);
+		}
+
+		return accepted;
+	}
+
+	// The cost a new candidate must beat to be kept: the cost of the last
+	// candidate that can still be accepted, once there are enough of them
+	private static double bound(List<Double> candidateCosts, int wanted) {
+		return candidateCosts.size() >= wanted ? candidateCosts.get(wanted - 1) : Double.POSITIVE_INFINITY;
+	}
+
+	// Backward Dijkstra from goal: the distance from every vertex to goal and
+	// the next vertex on its shortest path there, or NO_PARENT
+	private static void shortestPathTree(CompactGraph graph, double[] weights, int goal, double[] toGoal,
+			int[] next) {
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.update(goal, 0, NO_PARENT, NO_PARENT);
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+				double currentDistance = workspace.distance(currentNode);
+				for (int i = graph.getInEdgeStart(currentNode), end = graph.getInEdgeEnd(currentNode); i < end; i++) {
+					workspace.relax(graph.getInEdgeSource(i), currentDistance + weights[graph.getInEdge(i)],
+							currentNode, graph.getInEdge(i));
+				}
+			}
+
+			for (int v = 0; v < toGoal.length; v++) {
+				toGoal[v] = workspace.distance(v);
+				next[v] = workspace.isReached(v) ? workspace.parent(v) : NO_PARENT;
+			}
+		} finally {
+			workspace.release();
+		}
+	}
+
+	// Whether the tree path from spur to goal avoids the blocked vertices and
+	// does not start with a removed edge
+	private static boolean followsTree(int spur, int goal, int[] next, int[] blocked, int stamp, int[] removed,
+			int numRemoved) {
+		for (int r = 0; r < numRemoved; r++) {
+			if (removed[r] == next[spur]) {
+				return false;
+			}
+		}
+		for (int v = spur; v != goal; v = next[v]) {
+			if (blocked[v] == stamp) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The root followed by the tree path from spur to goal
+	private static int[] treePath(int[] root, int spur, int goal, int[] next) {
+		int length = root.length + 1;
+		for (int v = spur; v != goal; v = next[v]) {
+			length++;
+		}
+
+		int[] path = Arrays.copyOf(root, length);
+		int i = root.length;
+		for (int v = spur; v != goal; v = next[v]) {
+			path[i++] = v;
+		}
+		path[i] = goal;
+		return path;
+	}
+
+	// A* from previous[spurIndex] to goal around the blocked vertices and
+	// removed edges, giving up once no path can cost less than limit. Returns
+	// the root followed by the spur path, or null.
+	private static int[] spurSearch(CompactGraph graph, double[] weights, double[] toGoal, int[] previous,
+			int spurIndex, int goal, int[] blocked, int stamp, int[] removed, int numRemoved, double limit) {
+		int spur = previous[spurIndex];
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.reach(spur, 0, NO_PARENT, NO_PARENT);
+			frontier.insertOrDecrease(spur, toGoal[spur]);
+
+			while (!frontier.isEmpty() && frontier.peekKey() < limit) {
+				int currentNode = frontier.poll();
+
+				if (currentNode == goal) {
+					int[] spurPath = workspace.buildPath(goal);
+					int[] path = Arrays.copyOf(previous, spurIndex + spurPath.length);
+					System.arraycopy(spurPath, 0, path, spurIndex, spurPath.length);
+					return path;
+				}
+
+				double currentDistance = workspace.distance(currentNode);
+				edges: for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					int outNeighbor = graph.getEdgeTarget(edge);
+					if (blocked[outNeighbor] == stamp || toGoal[outNeighbor] == Double.POSITIVE_INFINITY) {
+						continue;
+					}
+					if (currentNode == spur) {
+						for (int r = 0; r < numRemoved; r++) {
+							if (removed[r] == outNeighbor) {
+								continue edges;
+							}
+						}
+					}
+
+					double newDistance = currentDistance + weights[edge];
+					if (newDistance < workspace.distance(outNeighbor)) {
+						workspace.reach(outNeighbor, newDistance, currentNode, edge);
+						frontier.insertOrDecrease(outNeighbor, newDistance + toGoal[outNeighbor]);
+					}
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+
+	// Whether two paths share their first count + 1 vertices
+	private static boolean sameRoot(int[] path, int[] other, int count) {
+		for (int j = 0; j <= count; j++) {
+			if (path[j] != other[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean contains(List<int[]> paths, int[] path) {
+		for (int[] other : paths) {
+			if (Arrays.equals(other, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,377 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The ALT (A*, landmarks, triangle inequality) heuristic. A few
+ *         landmark vertices are chosen up front and the distance from every
+ *         landmark L to every vertex, and from every vertex to L, is stored.
+ *         By the triangle inequality
+ *
+ *         d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L)
+ *
+ *         so the largest of these bounds over all landmarks is an admissible
+ *         and consistent estimate for A*. Unlike the straight line distance it
+ *         follows the road network, and it stays valid for any non-negative
+ *         weights, such as travel times. The distances are those of the
+ *         Weighting the landmarks are built for, and a search guided by them
+ *         must minimize the same weighting.
+ *
+ *         Landmarks are picked either by farthest selection (each new
+ *         landmark is the vertex farthest from the ones chosen so far) or by
+ *         avoid selection (a new landmark is placed in the region of a
+ *         shortest path tree where the current bounds are weakest). The
+ *         distance tables of each landmark are filled by a forward and a
+ *         backward Dijkstra run in parallel, and stored as floats, one row of
+ *         all the landmarks per vertex, so an estimate reads two short
+ *         contiguous rows. Rounding to float is made up for by widening every
+ *         bound by one float ulp.
+ *
+ *         Landmarks belong to the CompactGraph they were built from and are
+ *         immutable, so one instance can serve any number of concurrent
+ *         queries on that snapshot.
+ *
+ */
+public class Landmarks implements Heuristic {
+
+	/**
+	 * How the landmark vertices are chosen
+	 */
+	public enum Selection {
+		/** Each landmark is the vertex farthest from the ones already chosen. */
+		FARTHEST,
+		/** Each landmark covers the region the current landmarks bound worst. */
+		AVOID
+	}
+
+	private static final int NO_PARENT = SearchWorkspace.NO_PARENT;
+	// Fixed so that the same graph always gets the same landmarks
+	private static final long SEED = 1;
+
+	private final CompactGraph graph;
+	private final Weighting weighting;
+	private final int count;
+	private final int[] landmarks;
+
+	// fromLandmark[v * count + i] is the distance from landmark i to v and
+	// toLandmark[v * count + i] the distance from v to landmark i.
+	private final float[] fromLandmark;
+	private final float[] toLandmark;
+
+	/**
+	 * Choose landmarks on the edge lengths of a graph using avoid selection
+	 *
+	 * @param graph
+	 *            The graph the landmarks are for, usually from
+	 *            MapGraph.freeze()
+	 * @param count
+	 *            The number of landmarks to choose
+	 */
+	public Landmarks(CompactGraph graph, int count) {
+		this(graph, count, Selection.AVOID);
+	}
+
+	/**
+	 * Choose landmarks on the edge lengths of a graph
+	 *
+	 * @param graph
+	 *            The graph the landmarks are for, usually from
+	 *            MapGraph.freeze()
+	 * @param count
+	 *            The number of landmarks to choose
+	 * @param selection
+	 *            How to choose the landmarks
+	 */
+	public Landmarks(CompactGraph graph, int count, Selection selection) {
+		this(graph, Weighting.DISTANCE, count, selection);
+	}
+
+	/**
+	 * Choose landmarks on the weights of a weighting, such as travel times
+	 *
+	 * @param graph
+	 *            The graph the landmarks are for, usually from
+	 *            MapGraph.freeze()
+	 * @param weighting
+	 *            The cost the landmark distances are measured in
+	 * @param count
+	 *            The number of landmarks to choose
+	 * @param selection
+	 *            How to choose the landmarks
+	 */
+	public Landmarks(CompactGraph graph, Weighting weighting, int count, Selection selection) {
+		if (count < 1) {
+			throw new IllegalArgumentException("At least one landmark is needed, got " + count);
+		}
+
+		int n = graph.getNumVertices();
+		double[] weights = graph.weights(weighting);
+		this.graph = graph;
+		this.weighting = weighting;
+		this.count = Math.min(count, n);
+		landmarks = new int[this.count];
+		fromLandmark = new float[n * this.count];
+		toLandmark = new float[n * this.count];
+
+		Random random = new Random(SEED);
+		double[] nearest = new double[n];
+		Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+		for (int i = 0; i < this.count; i++) {
+			int landmark;
+			if (i == 0) {
+				landmark = farthest(shortestDistances(graph, weights, random.nextInt(n), false, null, null));
+			} else if (selection == Selection.FARTHEST) {
+				landmark = farthest(nearest);
+			} else {
+				landmark = avoid(weights, random.nextInt(n), i);
+			}
+			landmarks[i] = landmark;
+
+			int index = i;
+			double[][] distances = new double[2][];
+			IntStream.range(0, 2).parallel().forEach(
+					backward -> distances[backward] = shortestDistances(graph, weights, landmark, backward == 1, null, null));
+
+			for (int v = 0; v < n; v++) {
+				fromLandmark[v * this.count + index] = (float) distances[0][v];
+				toLandmark[v * this.count + index] = (float) distances[1][v];
+				nearest[v] = Math.min(nearest[v], distances[0][v]);
+			}
+		}
+	}
+
+	/**
+	 * Get the graph these landmarks were built for
+	 *
+	 * @return The CompactGraph whose vertex ids the estimates refer to.
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get the weighting these landmarks were built on
+	 *
+	 * @return The weighting whose cost the estimates bound.
+	 */
+	public Weighting getWeighting() {
+		return weighting;
+	}
+
+	/**
+	 * Get the number of landmarks
+	 *
+	 * @return The number of landmarks, which is at most the number of
+	 *         vertices of the graph.
+	 */
+	public int getNumLandmarks() {
+		return count;
+	}
+
+	/**
+	 * Get the vertex id of a landmark
+	 *
+	 * @param index
+	 *            The index of the landmark, 0 .. getNumLandmarks()-1
+	 * @return The id of the landmark vertex
+	 */
+	public int getLandmark(int index) {
+		return landmarks[index];
+	}
+
+	/**
+	 * Estimate the distance from vertex to goal as the best triangle
+	 * inequality bound over all landmarks. A landmark that cannot reach one of
+	 * the two vertices, or that one of them cannot reach, gives no bound.
+	 *
+	 * @param vertex
+	 *            The id of the vertex the estimate is for
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @return A lower bound of the distance from vertex to goal
+	 */
+	@Override
+	public double estimate(int vertex, int goal) {
+		int v = vertex * count;
+		int t = goal * count;
+		double best = 0;
+
+		for (int i = 0; i < count; i++) {
+			best = Math.max(best, bound(fromLandmark[t + i], fromLandmark[v + i]));
+			best = Math.max(best, bound(toLandmark[v + i], toLandmark[t + i]));
+		}
+
+		return best;
+	}
+
+	// A lower bound of larger - smaller given their float roundings, or 0 if
+	// either is unknown.
+	private static double bound(float larger, float smaller) {
+		if (larger == Float.POSITIVE_INFINITY || smaller == Float.POSITIVE_INFINITY) {
+			return 0;
+		}
+		return ((double) larger - Math.ulp(larger)) - ((double) smaller + Math.ulp(smaller));
+	}
+
+	// The vertex with the largest finite distance, or the first unreachable
+	// one, which lies in a part of the graph no landmark covers yet.
+	private static int farthest(double[] distance) {
+		int farthest = 0;
+		for (int v = 0; v < distance.length; v++) {
+			if (distance[v] == Double.POSITIVE_INFINITY) {
+				return v;
+			}
+			if (distance[v] > distance[farthest]) {
+				farthest = v;
+			}
+		}
+		return farthest;
+	}
+
+	/*
+	 * Avoid selection (Goldberg and Werneck). Grow a shortest path tree from
+	 * root and weigh every vertex by how much the current landmarks
+	 * underestimate its distance from root. The size of a vertex is the total
+	 * weight of its subtree, or zero if the subtree already holds a landmark.
+	 * Starting at the vertex of largest size, walk down to the child of
+	 * largest size until reaching a leaf, which becomes the new landmark.
+	 */
+	private int avoid(double[] weights, int root, int chosen) {
+		int n = graph.getNumVertices();
+		int[] parent = new int[n];
+		int[] order = new int[n + 1];
+		double[] distance = shortestDistances(graph, weights, root, false, parent, order);
+		int reached = order[n];
+
+		double[] size = new double[n];
+		boolean[] covered = new boolean[n];
+		for (int i = 0; i < chosen; i++) {
+			covered[landmarks[i]] = true;
+		}
+
+		// Children are settled after their parents, so a reverse pass over the
+		// settle order sees every subtree complete.
+		for (int i = reached - 1; i >= 0; i--) {
+			int v = order[i];
+			size[v] += distance[v] - lowerBound(root, v, chosen);
+			int p = parent[v];
+			if (p != NO_PARENT) {
+				if (covered[v]) {
+					covered[p] = true;
+				} else {
+					size[p] += size[v];
+				}
+			}
+		}
+
+		int best = root;
+		for (int i = 0; i < reached; i++) {
+			int v = order[i];
+			if (covered[v]) {
+				size[v] = 0;
+			} else if (size[v] > size[best]) {
+				best = v;
+			}
+		}
+
+		if (size[best] <= 0) {
+			// The landmarks already bound every vertex reached from root
+			// exactly, so fall back to covering the farthest one.
+			return order[reached - 1];
+		}
+
+		// Walk down to a leaf through the heaviest children. The children of
+		// a vertex are found by scanning its out-edges for tree edges.
+		int current = best;
+		while (true) {
+			int next = NO_PARENT;
+			for (int edge = graph.getOutEdgeStart(current), end = graph.getOutEdgeEnd(current); edge < end; edge++) {
+				int child = graph.getEdgeTarget(edge);
+				if (parent[child] == current && child != root && (next == NO_PARENT || size[child] > size[next])) {
+					next = child;
+				}
+			}
+			if (next == NO_PARENT) {
+				return current;
+			}
+			current = next;
+		}
+	}
+
+	// The best bound of d(from, to) the first chosen landmarks give
+	private double lowerBound(int from, int to, int chosen) {
+		double best = 0;
+		for (int i = 0; i < chosen; i++) {
+			best = Math.max(best, bound(fromLandmark[to * count + i], fromLandmark[from * count + i]));
+			best = Math.max(best, bound(toLandmark[from * count + i], toLandmark[to * count + i]));
+		}
+		return best;
+	}
+
+	/**
+	 * Run Dijkstra from a source to every vertex of the graph
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The weight of every edge, indexed by edge id
+	 * @param source
+	 *            The id of the vertex to search from
+	 * @param backward
+	 *            Whether to follow the edges backwards, which gives the
+	 *            distance from every vertex to source instead
+	 * @param parent
+	 *            If not null, receives the shortest path tree
+	 * @param order
+	 *            If not null, receives the vertices in the order they were
+	 *            settled, followed by the number of vertices settled in its
+	 *            last slot, so it needs n + 1 entries.
+	 * @return The distance of every vertex, infinite for the ones not reached.
+	 */
+	private static double[] shortestDistances(CompactGraph graph, double[] weights, int source, boolean backward,
+			int[] parent, int[] order) {
+		int n = graph.getNumVertices();
+		SearchWorkspace workspace = SearchWorkspace.acquire(n);
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.update(source, 0, NO_PARENT, NO_PARENT);
+			int settled = 0;
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+				if (order != null) {
+					order[settled] = currentNode;
+				}
+				settled++;
+
+				double currentDistance = workspace.distance(currentNode);
+				int start = backward ? graph.getInEdgeStart(currentNode) : graph.getOutEdgeStart(currentNode);
+				int end = backward ? graph.getInEdgeEnd(currentNode) : graph.getOutEdgeEnd(currentNode);
+				for (int i = start; i < end; i++) {
+					int edge = backward ? graph.getInEdge(i) : i;
+					int neighbor = backward ? graph.getInEdgeSource(i) : graph.getEdgeTarget(i);
+					workspace.relax(neighbor, currentDistance + weights[edge], currentNode, edge);
+				}
+			}
+
+			double[] distance = new double[n];
+			for (int v = 0; v < n; v++) {
+				distance[v] = workspace.distance(v);
+				if (parent != null) {
+					parent[v] = workspace.isReached(v) ? workspace.parent(v) : NO_PARENT;
+				}
+			}
+			if (order != null) {
+				order[n] = settled;
+			}
+			return distance;
+		} finally {
+			workspace.release();
+		}
+	}
+}
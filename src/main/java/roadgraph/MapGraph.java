@@ -7,20 +7,19 @@
  */
 package roadgraph;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.function.Consumer;
 
 import geography.GeographicPoint;
+import util.CoordinateMap;
 import util.GraphLoader;
+import util.StringTable;
 
 /**
  * @author UCSD MOOC development team and YOU
@@ -30,23 +29,66 @@ import util.GraphLoader;
  *
  */
 public class MapGraph {
-	// TODO: Make it final or return a copy instead:
-	//	getVertices
-	//    	return adjacencyList.keySet();
-	//	getOutNeighborsFromVertex
-	//		adjacencyList.get(vertex)
-	//	getInNeighborsFromVertex
-	//		inNeighbors carries references to the GeographicPoints of adjacencyList.keySet() 
-	
-	private Map<GeographicPoint, ArrayList<GeographicPoint>> adjacencyList;
+	private static final int NO_EDGE = -1;
+	private static final int NO_PROFILE = -1;
+
+	// Vertices get dense ids in the order they are added
+	private CoordinateMap vertexIds;
+	private ArrayList<GeographicPoint> vertices;
+
+	// Adjacency lists kept as linked lists threaded through the edge arrays:
+	// firstOut/lastOut[v] are the first and last edge leaving v and
+	// nextOut[e] the edge after e; firstIn/lastIn/nextIn index the edges
+	// entering each vertex in the same way.
+	private int[] firstOut;
+	private int[] lastOut;
+	private int[] firstIn;
+	private int[] lastIn;
+
+	// Edge attributes in parallel primitive arrays, indexed by edge id.
+	// Road names and types are interned and stored as ids.
+	private int[] edgeSource;
+	private int[] edgeTarget;
+	private int[] nextOut;
+	private int[] nextIn;
+	private double[] edgeLength;
+	private int[] edgeRoadName;
+	private int[] edgeRoadType;
+	private StringTable roadNames;
+	private StringTable roadTypes;
+	// Id into profiles of the travel time profile of every edge, or NO_PROFILE
+	private int[] edgeProfile;
+	private ProfileTable profiles;
+
 	private int numberOfVertices;
 	private int numberOfEdges;
 
+	// CSR snapshot used by the searches, rebuilt after the graph changes
+	private volatile CompactGraph frozen;
+
 	/**
 	 * Create a new empty MapGraph
 	 */
 	public MapGraph() {
-		adjacencyList = new HashMap<GeographicPoint, ArrayList<GeographicPoint>>();
+		vertexIds = new CoordinateMap();
+		vertices = new ArrayList<GeographicPoint>();
+
+		firstOut = new int[16];
+		lastOut = new int[16];
+		firstIn = new int[16];
+		lastIn = new int[16];
+
+		edgeSource = new int[16];
+		edgeTarget = new int[16];
+		nextOut = new int[16];
+		nextIn = new int[16];
+		edgeLength = new double[16];
+		edgeRoadName = new int[16];
+		edgeRoadType = new int[16];
+		roadNames = new StringTable();
+		roadTypes = new StringTable();
+		edgeProfile = new int[16];
+		profiles = new ProfileTable();
 	}
 
 	/**
@@ -61,30 +103,307 @@ public class MapGraph {
 	/**
 	 * Return the intersections, which are the vertices in this graph.
 	 * 
-	 * @return The vertices in this graph as GeographicPoints
+	 * @return An unmodifiable view of the vertices in this graph as
+	 *         GeographicPoints
 	 */
 	public Set<GeographicPoint> getVertices() {
-		return adjacencyList.keySet();
+		return new AbstractSet<GeographicPoint>() {
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof GeographicPoint && indexOf((GeographicPoint) o) >= 0;
+			}
+
+			@Override
+			public Iterator<GeographicPoint> iterator() {
+				return Collections.unmodifiableList(vertices).iterator();
+			}
+
+			@Override
+			public int size() {
+				return numberOfVertices;
+			}
+		};
 	}
 
+	/**
+	 * Get the vertices reached by the edges leaving the given vertex, in the
+	 * order those edges were added.
+	 * 
+	 * @param vertex
+	 *            The vertex whose out-neighbors are wanted
+	 * @return A new list with the out-neighbors of the vertex, or an empty list
+	 *         if the vertex is not in the graph.
+	 */
 	public List<GeographicPoint> getOutNeighborsFromVertex(GeographicPoint vertex) {
-		return adjacencyList.get(vertex) != null ? adjacencyList.get(vertex) : new ArrayList<GeographicPoint>();
+		List<GeographicPoint> outNeighbors = new ArrayList<GeographicPoint>();
+		int id = indexOf(vertex);
+
+		if (id >= 0) {
+			for (int edge = firstOut[id]; edge != NO_EDGE; edge = nextOut[edge]) {
+				outNeighbors.add(vertices.get(edgeTarget[edge]));
+			}
+		}
+
+		return outNeighbors;
 	}
 
+	/**
+	 * Get the vertices that have an edge into the given vertex, in the order
+	 * those edges were added. The list is read from an index maintained by
+	 * addEdge, so this takes time proportional to the in-degree of the vertex.
+	 * 
+	 * @param vertex
+	 *            The vertex whose in-neighbors are wanted
+	 * @return A new list with the in-neighbors of the vertex, or an empty list
+	 *         if the vertex is not in the graph.
+	 */
 	public List<GeographicPoint> getInNeighborsFromVertex(GeographicPoint vertex) {
 		List<GeographicPoint> inNeighbors = new ArrayList<GeographicPoint>();
+		int id = indexOf(vertex);
 
-		for (GeographicPoint possibleInNeighbor : adjacencyList.keySet()) {
-			for (GeographicPoint possibleOutNeighborOfInNeighbor : adjacencyList.get(possibleInNeighbor)) {
-				if (possibleOutNeighborOfInNeighbor.equals(vertex)) {
-					inNeighbors.add(possibleInNeighbor);
-				}
+		if (id >= 0) {
+			for (int edge = firstIn[id]; edge != NO_EDGE; edge = nextIn[edge]) {
+				inNeighbors.add(vertices.get(edgeSource[edge]));
 			}
 		}
 
 		return inNeighbors;
 	}
 
+	/**
+	 * Get the length of the edge from one vertex to another
+	 * 
+	 * @param from
+	 *            The starting point of the edge
+	 * @param to
+	 *            The ending point of the edge
+	 * @return The length of the edge, in km, or NaN if there is no such edge.
+	 */
+	public double getEdgeLength(GeographicPoint from, GeographicPoint to) {
+		int edge = findEdge(indexOf(from), indexOf(to));
+		return edge != NO_EDGE ? edgeLength[edge] : Double.NaN;
+	}
+
+	/**
+	 * Get the name of the road the edge from one vertex to another belongs to
+	 * 
+	 * @param from
+	 *            The starting point of the edge
+	 * @param to
+	 *            The ending point of the edge
+	 * @return The name of the road, or null if there is no such edge.
+	 */
+	public String getEdgeRoadName(GeographicPoint from, GeographicPoint to) {
+		int edge = findEdge(indexOf(from), indexOf(to));
+		return edge != NO_EDGE ? roadNames.get(edgeRoadName[edge]) : null;
+	}
+
+	/**
+	 * Get the type of the road the edge from one vertex to another belongs to
+	 * 
+	 * @param from
+	 *            The starting point of the edge
+	 * @param to
+	 *            The ending point of the edge
+	 * @return The type of the road, or null if there is no such edge.
+	 */
+	public String getEdgeRoadType(GeographicPoint from, GeographicPoint to) {
+		int edge = findEdge(indexOf(from), indexOf(to));
+		return edge != NO_EDGE ? roadTypes.get(edgeRoadType[edge]) : null;
+	}
+
+	/**
+	 * Get the travel time profile of the edge from one vertex to another
+	 * 
+	 * @param from
+	 *            The starting point of the edge
+	 * @param to
+	 *            The ending point of the edge
+	 * @return The profile, or null if the edge has none or there is no such
+	 *         edge.
+	 */
+	public TravelTimeProfile getTravelTimeProfile(GeographicPoint from, GeographicPoint to) {
+		int edge = findEdge(indexOf(from), indexOf(to));
+		return edge != NO_EDGE && edgeProfile[edge] != NO_PROFILE ? profiles.get(edgeProfile[edge]) : null;
+	}
+
+	/**
+	 * Set how long it takes to drive the edge from one vertex to another at
+	 * each time of day. Equal profiles are stored once, however many edges
+	 * carry them. Edges without a profile take the travel time of the static
+	 * weighting given to the time-dependent searches.
+	 * 
+	 * @param from
+	 *            The starting point of the edge
+	 * @param to
+	 *            The ending point of the edge
+	 * @param profile
+	 *            The travel time profile, or null to remove the profile of the
+	 *            edge
+	 * @throws IllegalArgumentException
+	 *             If there is no edge from one point to the other.
+	 */
+	public void setTravelTimeProfile(GeographicPoint from, GeographicPoint to, TravelTimeProfile profile)
+			throws IllegalArgumentException {
+		int edge = findEdge(indexOf(from), indexOf(to));
+
+		if (edge == NO_EDGE) {
+			throw new IllegalArgumentException();
+		}
+
+		edgeProfile[edge] = profile != null ? profiles.intern(profile) : NO_PROFILE;
+		frozen = null;
+	}
+
+	/**
+	 * Freeze the current state of the graph into an immutable, int-indexed
+	 * compressed sparse row (CSR) representation. The snapshot is cached and
+	 * reused by the search methods until the graph is changed by addVertex,
+	 * addEdge or setTravelTimeProfile.
+	 * 
+	 * @return A CompactGraph with the same vertices, edges and edge attributes
+	 *         as this graph. Vertex ids follow the order in which the vertices
+	 *         were added and the out-edges of every vertex keep the order in
+	 *         which they were added.
+	 */
+	public CompactGraph freeze() {
+		CompactGraph snapshot = frozen;
+
+		if (snapshot == null) {
+			synchronized (this) {
+				snapshot = frozen;
+				if (snapshot == null) {
+					snapshot = buildCompactGraph();
+					frozen = snapshot;
+				}
+			}
+		}
+
+		return snapshot;
+	}
+
+	private CompactGraph buildCompactGraph() {
+		int n = numberOfVertices;
+		int m = numberOfEdges;
+		int[] outStart = new int[n + 1];
+		int[] target = new int[m];
+		double[] length = new double[m];
+		int[] roadName = new int[m];
+		int[] roadType = new int[m];
+		int[] profile = new int[m];
+
+		int edge = 0;
+		for (int v = 0; v < n; v++) {
+			outStart[v] = edge;
+			for (int e = firstOut[v]; e != NO_EDGE; e = nextOut[e]) {
+				target[edge] = edgeTarget[e];
+				length[edge] = edgeLength[e];
+				roadName[edge] = edgeRoadName[e];
+				roadType[edge] = edgeRoadType[e];
+				profile[edge] = edgeProfile[e];
+				edge++;
+			}
+		}
+		outStart[n] = edge;
+
+		return new CompactGraph(vertices.toArray(new GeographicPoint[n]), outStart, target, length, roadName,
+				roadType, roadNames.toArray(), roadTypes.toArray(), profile, profiles.startArray(),
+				profiles.timeArray(), profiles.travelTimeArray());
+	}
+
+	/**
+	 * Fill an empty graph from CSR arrays, such as those of a GraphSnapshot,
+	 * and keep a CompactGraph over them as the frozen snapshot, so that the
+	 * first search does not rebuild it. Edge ids follow the CSR order, so the
+	 * in-edges of every vertex are ordered by source vertex. The arrays are
+	 * given to the CompactGraph and must not be changed afterwards.
+	 *
+	 * @throws IllegalStateException
+	 *             If the graph is not empty.
+	 * @throws IllegalArgumentException
+	 *             If two vertices or two road names or types are equal.
+	 */
+	void load(GeographicPoint[] points, int[] outStart, int[] target, double[] length, int[] roadName,
+			int[] roadType, String[] names, String[] types) {
+		if (numberOfVertices > 0) {
+			throw new IllegalStateException("The graph is not empty");
+		}
+
+		int n = points.length;
+		int m = target.length;
+		int vertexCapacity = Math.max(n, 16);
+		int edgeCapacity = Math.max(m, 16);
+
+		// Checked in locals, so that a bad snapshot leaves the graph empty
+		CoordinateMap ids = new CoordinateMap(n);
+		for (int v = 0; v < n; v++) {
+			if (ids.add(points[v].getX(), points[v].getY()) != v) {
+				throw new IllegalArgumentException("Vertex " + v + " is a duplicate");
+			}
+		}
+		StringTable nameTable = new StringTable();
+		for (String name : names) {
+			if (nameTable.intern(name) != nameTable.size() - 1) {
+				throw new IllegalArgumentException("Duplicate road name " + name);
+			}
+		}
+		StringTable typeTable = new StringTable();
+		for (String type : types) {
+			if (typeTable.intern(type) != typeTable.size() - 1) {
+				throw new IllegalArgumentException("Duplicate road type " + type);
+			}
+		}
+
+		vertexIds = ids;
+		vertices = new ArrayList<GeographicPoint>(Arrays.asList(points));
+		roadNames = nameTable;
+		roadTypes = typeTable;
+
+		firstOut = new int[vertexCapacity];
+		lastOut = new int[vertexCapacity];
+		firstIn = new int[vertexCapacity];
+		lastIn = new int[vertexCapacity];
+		Arrays.fill(firstOut, NO_EDGE);
+		Arrays.fill(lastOut, NO_EDGE);
+		Arrays.fill(firstIn, NO_EDGE);
+		Arrays.fill(lastIn, NO_EDGE);
+
+		edgeSource = new int[edgeCapacity];
+		edgeTarget = Arrays.copyOf(target, edgeCapacity);
+		nextOut = new int[edgeCapacity];
+		nextIn = new int[edgeCapacity];
+		edgeLength = Arrays.copyOf(length, edgeCapacity);
+		edgeRoadName = Arrays.copyOf(roadName, edgeCapacity);
+		edgeRoadType = Arrays.copyOf(roadType, edgeCapacity);
+		edgeProfile = new int[edgeCapacity];
+		Arrays.fill(edgeProfile, NO_PROFILE);
+		profiles = new ProfileTable();
+
+		for (int v = 0; v < n; v++) {
+			for (int edge = outStart[v]; edge < outStart[v + 1]; edge++) {
+				edgeSource[edge] = v;
+				nextOut[edge] = edge + 1 < outStart[v + 1] ? edge + 1 : NO_EDGE;
+				nextIn[edge] = NO_EDGE;
+				if (lastIn[target[edge]] == NO_EDGE) {
+					firstIn[target[edge]] = edge;
+				} else {
+					nextIn[lastIn[target[edge]]] = edge;
+				}
+				lastIn[target[edge]] = edge;
+			}
+			if (outStart[v] < outStart[v + 1]) {
+				firstOut[v] = outStart[v];
+				lastOut[v] = outStart[v + 1] - 1;
+			}
+		}
+
+		numberOfVertices = n;
+		numberOfEdges = m;
+		frozen = new CompactGraph(points, outStart, target, length, roadName, roadType, names, types,
+				Arrays.copyOf(edgeProfile, m), profiles.startArray(), profiles.timeArray(),
+				profiles.travelTimeArray());
+	}
+
 	/**
 	 * Get the number of road segments in the graph
 	 * 
@@ -94,6 +413,18 @@ public class MapGraph {
 		return numberOfEdges;
 	}
 
+	/**
+	 * Snap a location to the nearest intersection of the graph, as measured
+	 * by GeographicPoint.distance.
+	 * 
+	 * @param location
+	 *            Any location, not necessarily a vertex
+	 * @return The nearest vertex, or null if the graph has no vertices.
+	 */
+	public GeographicPoint nearestVertex(GeographicPoint location) {
+		return freeze().getSpatialIndex().nearest(location);
+	}
+
 	/**
 	 * Add a node corresponding to an intersection at a Geographic Point If the
 	 * location is already in the graph or null, this method does not change the
@@ -106,9 +437,22 @@ public class MapGraph {
 	 */
 	public boolean addVertex(GeographicPoint location) {
 
-		if (location != null && !adjacencyList.containsKey(location)) {
-			adjacencyList.put(location, new ArrayList<GeographicPoint>());
+		if (location != null && vertexIds.add(location.getX(), location.getY()) == numberOfVertices) {
+			if (numberOfVertices == firstOut.length) {
+				int capacity = numberOfVertices * 2;
+				firstOut = Arrays.copyOf(firstOut, capacity);
+				lastOut = Arrays.copyOf(lastOut, capacity);
+				firstIn = Arrays.copyOf(firstIn, capacity);
+				lastIn = Arrays.copyOf(lastIn, capacity);
+			}
+
+			firstOut[numberOfVertices] = NO_EDGE;
+			lastOut[numberOfVertices] = NO_EDGE;
+			firstIn[numberOfVertices] = NO_EDGE;
+			lastIn[numberOfVertices] = NO_EDGE;
+			vertices.add(location);
 			numberOfVertices++;
+			frozen = null;
 			return true;
 		}
 
@@ -119,6 +463,10 @@ public class MapGraph {
 	 * Adds a directed edge to the graph from pt1 to pt2. Precondition: Both
 	 * GeographicPoints have already been added to the graph
 	 * 
+	 * The graph keeps a single edge between any two vertices. If an edge from
+	 * pt1 to pt2 is already there, it is kept, but takes the road name, road
+	 * type and length of the new one when the new one is shorter.
+	 * 
 	 * @param from
 	 *            The starting point of the edge
 	 * @param to
@@ -137,17 +485,76 @@ public class MapGraph {
 	public void addEdge(GeographicPoint from, GeographicPoint to, String roadName, String roadType, double length)
 			throws IllegalArgumentException {
 
-		if (from == null || to == null || roadName == null || roadType == null || length < 0
-				|| !getVertices().contains(from) || !getVertices().contains(to)) {
+		int source = indexOf(from);
+		int target = indexOf(to);
+
+		if (source < 0 || target < 0 || roadName == null || roadType == null || length < 0) {
 			throw new IllegalArgumentException();
 		}
 
-		if (!getOutNeighborsFromVertex(from).contains(to)) {
-			// RoadSegment edge = new RoadSegment(from, to, null, roadName,
-			// roadType, length);
-			adjacencyList.get(from).add(to);
-			numberOfEdges++;
+		int edge = findEdge(source, target);
+
+		if (edge == NO_EDGE) {
+			if (numberOfEdges == edgeSource.length) {
+				int capacity = numberOfEdges * 2;
+				edgeSource = Arrays.copyOf(edgeSource, capacity);
+				edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+				nextOut = Arrays.copyOf(nextOut, capacity);
+				nextIn = Arrays.copyOf(nextIn, capacity);
+				edgeLength = Arrays.copyOf(edgeLength, capacity);
+				edgeRoadName = Arrays.copyOf(edgeRoadName, capacity);
+				edgeRoadType = Arrays.copyOf(edgeRoadType, capacity);
+				edgeProfile = Arrays.copyOf(edgeProfile, capacity);
+			}
+
+			edge = numberOfEdges++;
+			edgeSource[edge] = source;
+			edgeTarget[edge] = target;
+			nextOut[edge] = NO_EDGE;
+			nextIn[edge] = NO_EDGE;
+			edgeProfile[edge] = NO_PROFILE;
+
+			if (lastOut[source] == NO_EDGE) {
+				firstOut[source] = edge;
+			} else {
+				nextOut[lastOut[source]] = edge;
+			}
+			lastOut[source] = edge;
+
+			if (lastIn[target] == NO_EDGE) {
+				firstIn[target] = edge;
+			} else {
+				nextIn[lastIn[target]] = edge;
+			}
+			lastIn[target] = edge;
+		} else if (length >= edgeLength[edge]) {
+			return;
+		}
+
+		edgeLength[edge] = length;
+		edgeRoadName[edge] = roadNames.intern(roadName);
+		edgeRoadType[edge] = roadTypes.intern(roadType);
+		frozen = null;
+	}
+
+	// The id of a location, or -1 if it is null or not a vertex
+	private int indexOf(GeographicPoint location) {
+		return location != null ? vertexIds.get(location.getX(), location.getY()) : -1;
+	}
+
+	// The edge from source to target, or NO_EDGE if there is none
+	private int findEdge(int source, int target) {
+		if (source < 0 || target < 0) {
+			return NO_EDGE;
+		}
+
+		for (int edge = firstOut[source]; edge != NO_EDGE; edge = nextOut[edge]) {
+			if (edgeTarget[edge] == target) {
+				return edge;
+			}
 		}
+
+		return NO_EDGE;
 	}
 
 	/**
@@ -182,47 +589,7 @@ public class MapGraph {
 	 */
 	public List<GeographicPoint> bfs(GeographicPoint start, GeographicPoint goal,
 			Consumer<GeographicPoint> nodeSearched) {
-
-
-		if (getVertices().containsAll(Arrays.asList(start, goal))) {
-			Queue<GeographicPoint> whereToNext = new LinkedList<GeographicPoint>();
-			HashSet<GeographicPoint> visited = new HashSet<>();
-			HashMap<GeographicPoint, GeographicPoint> parent = new HashMap<>();
-
-			whereToNext.add(start);
-			visited.add(start);
-
-			while (!whereToNext.isEmpty()) {
-				GeographicPoint currentNode = whereToNext.poll();
-				nodeSearched.accept(currentNode);
-				
-				if (currentNode.equals(goal)) {
-					ArrayList<GeographicPoint> shortestPath = new ArrayList<>();
-					GeographicPoint nextHop = parent.get(goal);
-					shortestPath.add(goal);
-					
-					while(nextHop != null) {
-						shortestPath.add(nextHop);
-						nextHop = parent.get(nextHop);
-					}
-					
-					Collections.reverse(shortestPath);
-					
-					return shortestPath;
-				}
-
-				for (GeographicPoint outNeighbor : getOutNeighborsFromVertex(currentNode)) {
-					if (!visited.contains(outNeighbor)) {
-						visited.add(outNeighbor);
-						parent.put(outNeighbor, currentNode);
-						whereToNext.add(outNeighbor);
-					}
-				}
-			}
-
-		}
-
-		return null;
+		return search(SearchAlgorithm.BFS, Weighting.DISTANCE, start, goal, nodeSearched);
 	}
 
 	/**
@@ -258,12 +625,46 @@ public class MapGraph {
 	 */
 	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal,
 			Consumer<GeographicPoint> nodeSearched) {
-		// TODO: Implement this method in WEEK 3
+		return search(SearchAlgorithm.DIJKSTRA, Weighting.DISTANCE, start, goal, nodeSearched);
+	}
 
-		// Hook for visualization. See writeup.
-		// nodeSearched.accept(next.getLocation());
+	/**
+	 * Find the cheapest path from start to goal using Dijkstra's algorithm
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost to minimize, such as a TravelTimeWeighting
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, Weighting weighting) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return dijkstra(start, goal, weighting, temp);
+	}
 
-		return null;
+	/**
+	 * Find the cheapest path from start to goal using Dijkstra's algorithm
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost to minimize, such as a TravelTimeWeighting
+	 * @param nodeSearched
+	 *            A hook for visualization. See assignment instructions for how
+	 *            to use it.
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> dijkstra(GeographicPoint start, GeographicPoint goal, Weighting weighting,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(SearchAlgorithm.DIJKSTRA, weighting, start, goal, nodeSearched);
 	}
 
 	/**
@@ -298,12 +699,426 @@ public class MapGraph {
 	 */
 	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal,
 			Consumer<GeographicPoint> nodeSearched) {
-		// TODO: Implement this method in WEEK 3
+		return search(SearchAlgorithm.A_STAR, Weighting.DISTANCE, start, goal, nodeSearched);
+	}
 
-		// Hook for visualization. See writeup.
-		// nodeSearched.accept(next.getLocation());
+	/**
+	 * Find the cheapest path from start to goal using A-Star search guided by
+	 * the heuristic of the weighting
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost to minimize, such as a TravelTimeWeighting
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, Weighting weighting) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return aStarSearch(start, goal, weighting, temp);
+	}
 
-		return null;
+	/**
+	 * Find the cheapest path from start to goal using A-Star search guided by
+	 * the heuristic of the weighting
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param weighting
+	 *            The cost to minimize, such as a TravelTimeWeighting
+	 * @param nodeSearched
+	 *            A hook for visualization. See assignment instructions for how
+	 *            to use it.
+	 * @return The list of intersections that form the cheapest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, Weighting weighting,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(SearchAlgorithm.A_STAR, weighting, start, goal, nodeSearched);
+	}
+
+	/**
+	 * Find the path from start to goal using A-Star search guided by
+	 * landmarks (ALT) instead of the straight line distance
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param landmarks
+	 *            Landmarks built from the current freeze() of this graph. The
+	 *            search minimizes the weighting they were built on.
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, Landmarks landmarks) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return aStarSearch(start, goal, landmarks, temp);
+	}
+
+	/**
+	 * Find the path from start to goal using A-Star search guided by
+	 * landmarks (ALT) instead of the straight line distance
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param landmarks
+	 *            Landmarks built from the current freeze() of this graph. The
+	 *            search minimizes the weighting they were built on.
+	 * @param nodeSearched
+	 *            A hook for visualization. See assignment instructions for how
+	 *            to use it.
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 * @throws IllegalArgumentException
+	 *             if the landmarks were built before the graph last changed
+	 */
+	public List<GeographicPoint> aStarSearch(GeographicPoint start, GeographicPoint goal, Landmarks landmarks,
+			Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph graph = freeze();
+		if (landmarks.getGraph() != graph) {
+			throw new IllegalArgumentException("The landmarks were built for an older version of the graph");
+		}
+
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return null;
+		}
+
+		int[] path = PathSearch.aStar(graph, graph.weights(landmarks.getWeighting()), landmarks, startId, goalId,
+				nodeSearched);
+
+		return path != null ? graph.toPoints(path) : null;
+	}
+
+	/**
+	 * Find the path from start to goal using bidirectional Dijkstra: a forward
+	 * search from start and a backward search from goal that stop once they
+	 * meet on the shortest path.
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return bidirectionalDijkstra(start, goal, temp);
+	}
+
+	/**
+	 * Find the path from start to goal using bidirectional Dijkstra: a forward
+	 * search from start and a backward search from goal that stop once they
+	 * meet on the shortest path.
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param nodeSearched
+	 *            A hook for visualization, called with the vertices settled by
+	 *            both searches.
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalDijkstra(GeographicPoint start, GeographicPoint goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(SearchAlgorithm.BIDIRECTIONAL_DIJKSTRA, Weighting.DISTANCE, start, goal, nodeSearched);
+	}
+
+	/**
+	 * Find the path from start to goal using bidirectional A-Star search
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStarSearch(GeographicPoint start, GeographicPoint goal) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return bidirectionalAStarSearch(start, goal, temp);
+	}
+
+	/**
+	 * Find the path from start to goal using bidirectional A-Star search
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param nodeSearched
+	 *            A hook for visualization, called with the vertices settled by
+	 *            both searches.
+	 * @return The list of intersections that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> bidirectionalAStarSearch(GeographicPoint start, GeographicPoint goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		return search(SearchAlgorithm.BIDIRECTIONAL_A_STAR, Weighting.DISTANCE, start, goal, nodeSearched);
+	}
+
+	// Run one of the searches on the current snapshot of the graph
+	private List<GeographicPoint> search(SearchAlgorithm algorithm, Weighting weighting, GeographicPoint start,
+			GeographicPoint goal, Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph graph = freeze();
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return null;
+		}
+
+		int[] path = algorithm.search(graph, weighting, startId, goalId, nodeSearched);
+
+		return path != null ? graph.toPoints(path) : null;
+	}
+
+	/**
+	 * Find the k shortest loopless paths from start to goal, for suggesting
+	 * alternative routes. Uses Yen's algorithm, with spur searches guided and
+	 * pruned by the exact distances to the goal.
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param k
+	 *            The number of paths wanted
+	 * @return Up to k routes, shortest first. The list is shorter if there are
+	 *         fewer loopless paths, and empty if there is none or either
+	 *         location is not in the graph.
+	 */
+	public List<RouteResult> kShortestPaths(GeographicPoint start, GeographicPoint goal, int k) {
+		return kShortestPaths(start, goal, k, Weighting.DISTANCE);
+	}
+
+	/**
+	 * Find the k cheapest loopless paths from start to goal
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param k
+	 *            The number of paths wanted
+	 * @param weighting
+	 *            The cost to minimize, such as a TravelTimeWeighting
+	 * @return Up to k routes, cheapest first, each with its total weight.
+	 *         The list is shorter if there are fewer loopless
+	 *         paths, and empty if there is none or either location is not in
+	 *         the graph.
+	 */
+	public List<RouteResult> kShortestPaths(GeographicPoint start, GeographicPoint goal, int k,
+			Weighting weighting) {
+		CompactGraph graph = freeze();
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		List<RouteResult> routes = new ArrayList<>();
+
+		if (startId < 0 || goalId < 0) {
+			return routes;
+		}
+
+		double[] weights = graph.weights(weighting);
+		for (int[] path : KShortestPaths.find(graph, weights, startId, goalId, k)) {
+			routes.add(new RouteResult(start, goal, graph.toPoints(path), graph.pathWeight(path, weights)));
+		}
+		return routes;
+	}
+
+	/**
+	 * Find the path from start to goal that arrives earliest when leaving at
+	 * a given time, using Dijkstra's algorithm. Edges with a travel time
+	 * profile take the travel time of the moment they are reached; the others
+	 * take their static weight under the weighting.
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param weighting
+	 *            The travel time in hours of the edges without a profile, such
+	 *            as a TravelTimeWeighting
+	 * @return The list of intersections that form the earliest arriving path
+	 *         from start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentDijkstra(GeographicPoint start, GeographicPoint goal,
+			double departureTime, Weighting weighting) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return timeDependentDijkstra(start, goal, departureTime, weighting, temp);
+	}
+
+	/**
+	 * Find the path from start to goal that arrives earliest when leaving at
+	 * a given time, using Dijkstra's algorithm
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param weighting
+	 *            The travel time in hours of the edges without a profile, such
+	 *            as a TravelTimeWeighting
+	 * @param nodeSearched
+	 *            A hook for visualization. See assignment instructions for how
+	 *            to use it.
+	 * @return The list of intersections that form the earliest arriving path
+	 *         from start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentDijkstra(GeographicPoint start, GeographicPoint goal,
+			double departureTime, Weighting weighting, Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph graph = freeze();
+		int[] path = timeDependentSearch(graph, false, weighting, start, goal, departureTime, nodeSearched);
+		return path != null ? graph.toPoints(path) : null;
+	}
+
+	/**
+	 * Find the path from start to goal that arrives earliest when leaving at
+	 * a given time, using A-Star search. The heuristic is the straight line
+	 * distance at the highest speed any edge reaches at any time of day.
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param weighting
+	 *            The travel time in hours of the edges without a profile, such
+	 *            as a TravelTimeWeighting
+	 * @return The list of intersections that form the earliest arriving path
+	 *         from start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentAStarSearch(GeographicPoint start, GeographicPoint goal,
+			double departureTime, Weighting weighting) {
+		// Dummy variable for calling the search algorithms
+		Consumer<GeographicPoint> temp = (x) -> {
+		};
+		return timeDependentAStarSearch(start, goal, departureTime, weighting, temp);
+	}
+
+	/**
+	 * Find the path from start to goal that arrives earliest when leaving at
+	 * a given time, using A-Star search
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param weighting
+	 *            The travel time in hours of the edges without a profile, such
+	 *            as a TravelTimeWeighting
+	 * @param nodeSearched
+	 *            A hook for visualization. See assignment instructions for how
+	 *            to use it.
+	 * @return The list of intersections that form the earliest arriving path
+	 *         from start to goal (including both start and goal).
+	 */
+	public List<GeographicPoint> timeDependentAStarSearch(GeographicPoint start, GeographicPoint goal,
+			double departureTime, Weighting weighting, Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph graph = freeze();
+		int[] path = timeDependentSearch(graph, true, weighting, start, goal, departureTime, nodeSearched);
+		return path != null ? graph.toPoints(path) : null;
+	}
+
+	/**
+	 * Compute the earliest time of arrival at goal when leaving start at a
+	 * given time
+	 * 
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param weighting
+	 *            The travel time in hours of the edges without a profile, such
+	 *            as a TravelTimeWeighting
+	 * @return The arrival time in hours since midnight of the day of
+	 *         departure, or infinity if there is no path or either location
+	 *         is not in the graph.
+	 */
+	public double earliestArrival(GeographicPoint start, GeographicPoint goal, double departureTime,
+			Weighting weighting) {
+		CompactGraph graph = freeze();
+		int[] path = timeDependentSearch(graph, true, weighting, start, goal, departureTime, (x) -> {
+		});
+		return path != null ? graph.arrivalTime(path, departureTime, graph.weights(weighting))
+				: Double.POSITIVE_INFINITY;
+	}
+
+	// Run one of the time-dependent searches on a snapshot of the graph
+	private static int[] timeDependentSearch(CompactGraph graph, boolean aStar, Weighting weighting,
+			GeographicPoint start, GeographicPoint goal, double departureTime,
+			Consumer<GeographicPoint> nodeSearched) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+
+		if (startId < 0 || goalId < 0) {
+			return null;
+		}
+
+		double[] weights = graph.weights(weighting);
+		return aStar
+				? PathSearch.timeDependentAStar(graph, weights, graph.timeDependentHeuristic(weighting), startId,
+						goalId, departureTime, nodeSearched)
+				: PathSearch.timeDependentDijkstra(graph, weights, startId, goalId, departureTime, nodeSearched);
+	}
+
+	/**
+	 * Compute the shortest path distance from every source to every target.
+	 * Runs one search per source, which stops once all the targets are
+	 * reached, and searches the sources in parallel.
+	 * 
+	 * @param sources
+	 *            The starting locations
+	 * @param targets
+	 *            The goal locations
+	 * @return A sources.size() by targets.size() matrix, where [i][j] is the
+	 *         length of the shortest path from sources.get(i) to
+	 *         targets.get(j), or infinity if there is no path or either
+	 *         location is not in the graph.
+	 */
+	public double[][] distanceMatrix(List<GeographicPoint> sources, List<GeographicPoint> targets) {
+		CompactGraph graph = freeze();
+		return DistanceMatrix.compute(graph, graph.edgeLengths(), indexesOf(graph, sources),
+				indexesOf(graph, targets));
+	}
+
+	private static int[] indexesOf(CompactGraph graph, List<GeographicPoint> locations) {
+		int[] ids = new int[locations.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = graph.indexOf(locations.get(i));
+		}
+		return ids;
 	}
 
 	public static void main(String[] args) {
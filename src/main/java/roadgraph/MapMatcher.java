@@ -0,0 +1,512 @@
+package roadgraph;
+
+import static roadgraph.SearchWorkspace.NO_PARENT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import geography.SegmentIndex;
+import geography.SegmentMatch;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Matches GPS traces onto the road map with a hidden Markov model, in
+ *         the manner of Newson and Krumm. The hidden states of an
+ *         observation are its candidate positions: the closest point of every
+ *         road segment near it, found with a SegmentIndex. A candidate is
+ *         more likely the closer it is to the observation, and a move between
+ *         the candidates of two consecutive observations is more likely the
+ *         closer its driving distance is to the straight line distance between
+ *         the observations. Driving distances come from a Dijkstra search on
+ *         the graph, bounded to a few times the straight line distance. The
+ *         most likely sequence of candidates is decoded with the Viterbi
+ *         algorithm, in log probabilities.
+ *
+ *         Traces are matched online, one observation at a time. Only the
+ *         observations whose match is still undecided are kept: as soon as
+ *         every surviving candidate of the newest observation descends from
+ *         the same candidate of an older one, everything up to that one is
+ *         decided and handed to the output. If no decision is reached within
+ *         a fixed number of observations, the oldest one is decided on the
+ *         most likely sequence so far, so the memory a trace uses is bounded
+ *         however long it runs.
+ *
+ *         The matcher works on a snapshot of the graph taken when it is
+ *         created. It is immutable, so any number of traces can be matched at
+ *         once from different threads; each Trace must be fed by one thread.
+ *
+ */
+public class MapMatcher {
+
+	// The standard deviation of GPS noise, in km
+	private static final double DEFAULT_SIGMA = 0.01;
+	// The scale of the difference between driving and straight line
+	// distances, in km
+	private static final double DEFAULT_BETA = 0.05;
+	private static final double DEFAULT_RADIUS = 0.05;
+	private static final int DEFAULT_CANDIDATES = 8;
+	private static final int DEFAULT_LAG = 64;
+
+	// Routes longer than this many times the distance between the
+	// observations, plus the search radius at both ends, are not considered.
+	private static final double ROUTE_FACTOR = 3;
+
+	private final CompactGraph graph;
+	private final double[] weights;
+	private final SegmentIndex index;
+	private final double sigma;
+	private final double beta;
+	private final double radius;
+	private final int maxCandidates;
+	private final int maxLag;
+
+	/**
+	 * Create a matcher with parameters suited to consumer GPS receivers
+	 * reporting every few seconds
+	 *
+	 * @param graph
+	 *            The road graph. Its current state is frozen into the snapshot
+	 *            the matcher uses.
+	 * @param index
+	 *            An index over the road segments of the same map
+	 */
+	public MapMatcher(MapGraph graph, SegmentIndex index) {
+		this(graph, index, DEFAULT_SIGMA, DEFAULT_BETA, DEFAULT_RADIUS, DEFAULT_CANDIDATES, DEFAULT_LAG);
+	}
+
+	/**
+	 * Create a matcher
+	 *
+	 * @param graph
+	 *            The road graph. Its current state is frozen into the snapshot
+	 *            the matcher uses.
+	 * @param index
+	 *            An index over the road segments of the same map
+	 * @param sigma
+	 *            The standard deviation of the GPS noise, in km
+	 * @param beta
+	 *            How much the driving distance between two observations
+	 *            typically exceeds their straight line distance, in km
+	 * @param radius
+	 *            How far from an observation candidates are looked for, in km
+	 * @param maxCandidates
+	 *            The largest number of candidates per observation
+	 * @param maxLag
+	 *            The largest number of undecided observations kept per trace
+	 */
+	public MapMatcher(MapGraph graph, SegmentIndex index, double sigma, double beta, double radius, int maxCandidates,
+			int maxLag) {
+		if (sigma <= 0 || beta <= 0 || radius <= 0 || maxCandidates < 1 || maxLag < 1) {
+			throw new IllegalArgumentException("The matching parameters must be positive");
+		}
+
+		this.graph = graph.freeze();
+		this.weights = this.graph.edgeLengths();
+		this.index = index;
+		this.sigma = sigma;
+		this.beta = beta;
+		this.radius = radius;
+		this.maxCandidates = maxCandidates;
+		this.maxLag = maxLag;
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Start matching a trace
+	 *
+	 * @param output
+	 *            Receives every observation of the trace, matched, in the
+	 *            order they were added
+	 * @return The trace to add the observations to.
+	 */
+	public Trace open(Consumer<MatchedPoint> output) {
+		return new Trace(output);
+	}
+
+	/**
+	 * Match a whole trace
+	 *
+	 * @param observations
+	 *            The GPS positions, in the order they were recorded
+	 * @return One matched point per observation.
+	 */
+	public List<MatchedPoint> match(List<GeographicPoint> observations) {
+		List<MatchedPoint> matched = new ArrayList<>(observations.size());
+		Trace trace = open(matched::add);
+		for (GeographicPoint observation : observations) {
+			trace.add(observation);
+		}
+		trace.close();
+		return matched;
+	}
+
+	/**
+	 * Match many traces in parallel on the common ForkJoinPool
+	 *
+	 * @param traces
+	 *            The traces to match
+	 * @return The matched points of every trace, in the order of the traces.
+	 */
+	public List<List<MatchedPoint>> matchAll(List<? extends List<GeographicPoint>> traces) {
+		return traces.parallelStream().map(this::match).collect(Collectors.toList());
+	}
+
+	// The log probability of observing a position at this distance from the
+	// road, up to a constant
+	private double emission(double distance) {
+		double z = distance / sigma;
+		return -0.5 * z * z;
+	}
+
+	// The log probability of a move, up to a constant
+	private double transition(double routeLength, double straightLine) {
+		return -Math.abs(routeLength - straightLine) / beta;
+	}
+
+	/**
+	 * @author UCSD MOOC development team and YOU
+	 *
+	 *         A trace being matched. Observations are added one at a time and
+	 *         come out of the output as soon as their match is decided;
+	 *         close() decides the rest.
+	 *
+	 */
+	public final class Trace implements AutoCloseable {
+		private final Consumer<MatchedPoint> output;
+		// The undecided observations, oldest first
+		private final List<Step> window;
+		// The last decided observation, with only its match left alive, or
+		// null if the next observation starts a new piece of the trace
+		private Step anchor;
+
+		private Trace(Consumer<MatchedPoint> output) {
+			this.output = output;
+			window = new ArrayList<>();
+		}
+
+		/**
+		 * Add the next observation of the trace
+		 *
+		 * @param observation
+		 *            The GPS position
+		 */
+		public void add(GeographicPoint observation) {
+			Step step = new Step(observation, candidates(observation));
+
+			if (step.candidates.length == 0) {
+				close();
+				output.accept(new MatchedPoint(observation, null, null));
+				return;
+			}
+
+			Step previous = window.isEmpty() ? anchor : window.get(window.size() - 1);
+			if (previous == null || !connect(previous, step)) {
+				close();
+				for (Candidate candidate : step.candidates) {
+					candidate.score = emission(candidate.match.getDistance());
+				}
+			}
+			window.add(step);
+
+			decideConverged();
+			if (window.size() > maxLag) {
+				decideOldest();
+			}
+		}
+
+		/**
+		 * Decide the observations still pending on the most likely sequence.
+		 * An observation added afterwards starts a new piece of the trace.
+		 */
+		@Override
+		public void close() {
+			if (!window.isEmpty()) {
+				int last = window.size() - 1;
+				decide(last, best(window.get(last)));
+			}
+			anchor = null;
+		}
+
+		// Score the candidates of step from those of previous. Returns false
+		// if no candidate can be reached from any of the previous ones.
+		private boolean connect(Step previous, Step step) {
+			double straightLine = previous.observation.distance(step.observation);
+			double bound = ROUTE_FACTOR * straightLine + 2 * radius;
+			boolean connected = false;
+
+			for (int p = 0; p < previous.candidates.length; p++) {
+				Candidate from = previous.candidates[p];
+				if (from.score == Double.NEGATIVE_INFINITY) {
+					continue;
+				}
+
+				SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+				try {
+					search(workspace, from, bound);
+
+					for (Candidate to : step.candidates) {
+						double best = Double.POSITIVE_INFINITY;
+						int[] route = null;
+
+						// Along the segment both are on
+						if (to.match.getSegment() == from.match.getSegment()) {
+							double along = (to.match.getOffset() - from.match.getOffset()) * to.length;
+							if ((along >= 0 && to.forward) || (along <= 0 && to.backward)) {
+								best = Math.abs(along);
+								route = new int[0];
+							}
+						}
+
+						// Or through the graph, entering the segment at either end
+						if (to.forward && workspace.distance(to.point1) + to.match.getOffset() * to.length < best) {
+							best = workspace.distance(to.point1) + to.match.getOffset() * to.length;
+							route = workspace.buildPath(to.point1);
+						}
+						if (to.backward
+								&& workspace.distance(to.point2) + (1 - to.match.getOffset()) * to.length < best) {
+							best = workspace.distance(to.point2) + (1 - to.match.getOffset()) * to.length;
+							route = workspace.buildPath(to.point2);
+						}
+
+						if (best > bound) {
+							continue;
+						}
+
+						double score = from.score + transition(best, straightLine)
+								+ emission(to.match.getDistance());
+						if (score > to.score) {
+							to.score = score;
+							to.parent = p;
+							to.route = route;
+							connected = true;
+						}
+					}
+				} finally {
+					workspace.release();
+				}
+			}
+
+			if (connected) {
+				normalize(step);
+			}
+			return connected;
+		}
+
+		// Dijkstra from both ends of the segment the candidate is on, as far
+		// as they can be driven to, until every vertex within bound is
+		// settled.
+		private void search(SearchWorkspace workspace, Candidate from, double bound) {
+			IndexedHeap frontier = workspace.heap;
+			if (from.forward) {
+				workspace.relax(from.point2, (1 - from.match.getOffset()) * from.length, NO_PARENT, NO_PARENT);
+			}
+			if (from.backward) {
+				workspace.relax(from.point1, from.match.getOffset() * from.length, NO_PARENT, NO_PARENT);
+			}
+
+			// Every vertex left in the frontier is farther than bound, so all
+			// the distances within bound are final.
+			while (!frontier.isEmpty() && frontier.peekKey() <= bound) {
+				int currentNode = frontier.poll();
+				double currentDistance = workspace.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					workspace.relax(graph.getEdgeTarget(edge), currentDistance + weights[edge], currentNode, edge);
+				}
+			}
+		}
+
+		// Keep the scores near 0 however long the trace runs
+		private void normalize(Step step) {
+			double max = Double.NEGATIVE_INFINITY;
+			for (Candidate candidate : step.candidates) {
+				max = Math.max(max, candidate.score);
+			}
+			for (Candidate candidate : step.candidates) {
+				candidate.score -= max;
+			}
+		}
+
+		// Decide every observation up to the newest one whose surviving
+		// descendants all go through the same candidate
+		private void decideConverged() {
+			int last = window.size() - 1;
+			boolean[] alive = new boolean[window.get(last).candidates.length];
+			for (int c = 0; c < alive.length; c++) {
+				alive[c] = window.get(last).candidates[c].score > Double.NEGATIVE_INFINITY;
+			}
+
+			for (int k = last;; k--) {
+				int survivor = single(alive);
+				if (survivor >= 0) {
+					decide(k, survivor);
+					return;
+				}
+				if (k == 0) {
+					return;
+				}
+
+				boolean[] parents = new boolean[window.get(k - 1).candidates.length];
+				for (int c = 0; c < alive.length; c++) {
+					if (alive[c]) {
+						parents[window.get(k).candidates[c].parent] = true;
+					}
+				}
+				alive = parents;
+			}
+		}
+
+		// Decide the oldest observation on the most likely sequence so far,
+		// and drop every candidate that does not descend from its match.
+		private void decideOldest() {
+			int chosen = chain(window.size() - 1, best(window.get(window.size() - 1)))[0];
+			emit(window.remove(0), chosen);
+
+			Step previous = anchor;
+			for (Step step : window) {
+				for (Candidate candidate : step.candidates) {
+					if (candidate.parent != NO_PARENT
+							&& previous.candidates[candidate.parent].score == Double.NEGATIVE_INFINITY) {
+						candidate.score = Double.NEGATIVE_INFINITY;
+					}
+				}
+				previous = step;
+			}
+		}
+
+		// Emit the observations up to and including step k, matched along
+		// the chain of parents of the given candidate of step k
+		private void decide(int k, int candidate) {
+			int[] chain = chain(k, candidate);
+			for (int i = 0; i <= k; i++) {
+				emit(window.get(i), chain[i]);
+			}
+			window.subList(0, k + 1).clear();
+		}
+
+		// The candidate of every step up to k that leads to the given
+		// candidate of step k
+		private int[] chain(int k, int candidate) {
+			int[] chain = new int[k + 1];
+			chain[k] = candidate;
+			for (int i = k; i > 0; i--) {
+				chain[i - 1] = window.get(i).candidates[chain[i]].parent;
+			}
+			return chain;
+		}
+
+		// Hand an observation to the output and make it the anchor
+		private void emit(Step step, int chosen) {
+			Candidate candidate = step.candidates[chosen];
+			List<GeographicPoint> route = candidate.route != null ? graph.toPoints(candidate.route) : null;
+			output.accept(new MatchedPoint(step.observation, candidate.match, route));
+
+			for (int c = 0; c < step.candidates.length; c++) {
+				if (c != chosen) {
+					step.candidates[c].score = Double.NEGATIVE_INFINITY;
+				}
+				// The routes into the anchor are no longer needed
+				step.candidates[c].route = null;
+			}
+			anchor = step;
+		}
+
+		private int best(Step step) {
+			int best = 0;
+			for (int c = 1; c < step.candidates.length; c++) {
+				if (step.candidates[c].score > step.candidates[best].score) {
+					best = c;
+				}
+			}
+			return best;
+		}
+
+		// The only alive candidate, or -1 if there are several
+		private int single(boolean[] alive) {
+			int survivor = -1;
+			for (int c = 0; c < alive.length; c++) {
+				if (alive[c]) {
+					if (survivor >= 0) {
+						return -1;
+					}
+					survivor = c;
+				}
+			}
+			return survivor;
+		}
+	}
+
+	// The closest drivable segments to an observation
+	private Candidate[] candidates(GeographicPoint observation) {
+		List<SegmentMatch> matches = index.withinRadius(observation, radius);
+		Candidate[] candidates = new Candidate[Math.min(matches.size(), maxCandidates)];
+		int count = 0;
+
+		for (SegmentMatch match : matches) {
+			if (count == candidates.length) {
+				break;
+			}
+
+			RoadSegment segment = match.getSegment();
+			int point1 = graph.indexOf(segment.getPoint1());
+			int point2 = graph.indexOf(segment.getPoint2());
+			if (point1 < 0 || point2 < 0) {
+				continue;
+			}
+			boolean forward = graph.findEdge(point1, point2) >= 0;
+			boolean backward = graph.findEdge(point2, point1) >= 0;
+			if (forward || backward) {
+				candidates[count++] = new Candidate(match, point1, point2, forward, backward);
+			}
+		}
+
+		return count < candidates.length ? Arrays.copyOf(candidates, count) : candidates;
+	}
+
+	// An observation and its candidates
+	private static final class Step {
+		final GeographicPoint observation;
+		final Candidate[] candidates;
+
+		Step(GeographicPoint observation, Candidate[] candidates) {
+			this.observation = observation;
+			this.candidates = candidates;
+		}
+	}
+
+	// A position on a road segment an observation may have been made from,
+	// with the log probability of the most likely sequence ending there
+	private static final class Candidate {
+		final SegmentMatch match;
+		final int point1;
+		final int point2;
+		final double length;
+		// Whether the segment can be driven from point1 to point2, and back
+		final boolean forward;
+		final boolean backward;
+
+		double score = Double.NEGATIVE_INFINITY;
+		// The candidate of the previous step the sequence comes from
+		int parent = NO_PARENT;
+		// The vertices driven through from there, or null if the sequence
+		// starts here
+		int[] route;
+
+		Candidate(SegmentMatch match, int point1, int point2, boolean forward, boolean backward) {
+			this.match = match;
+			this.point1 = point1;
+			this.point2 = point2;
+			this.length = match.getSegment().getLength();
+			this.forward = forward;
+			this.backward = backward;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package roadgraph;
+
+import java.util.Collections;
+import java.util.List;
+
+import geography.GeographicPoint;
+import geography.SegmentMatch;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         One observation of a GPS trace as matched onto the road map by a
+ *         MapMatcher: the road position it was snapped to and the
+ *         intersections driven through since the previous observation.
+ *
+ */
+public final class MatchedPoint {
+	private final GeographicPoint observation;
+	private final SegmentMatch match;
+	private final List<GeographicPoint> route;
+
+	MatchedPoint(GeographicPoint observation, SegmentMatch match, List<GeographicPoint> route) {
+		this.observation = observation;
+		this.match = match;
+		this.route = route != null ? Collections.unmodifiableList(route) : null;
+	}
+
+	public GeographicPoint getObservation() {
+		return observation;
+	}
+
+	/**
+	 * Get the road position the observation was matched to
+	 *
+	 * @return The match, or null if no road was close enough to the
+	 *         observation.
+	 */
+	public SegmentMatch getMatch() {
+		return match;
+	}
+
+	public boolean isMatched() {
+		return match != null;
+	}
+
+	/**
+	 * Get the intersections driven through from the previous matched point to
+	 * this one, in order. The list is empty if both lie on the same road
+	 * segment.
+	 *
+	 * @return The intersections, or null if this point starts a new piece of
+	 *         the trace: it is the first point, or no route joins it to the
+	 *         previous point, or it was not matched.
+	 */
+	public List<GeographicPoint> getRoute() {
+		return route;
+	}
+
+	@Override
+	public String toString() {
+		return "MatchedPoint [" + observation + " -> " + (match != null ? match.getProjectedPoint() : "unmatched")
+				+ (route != null ? " via " + route : "") + "]";
+	}
+}
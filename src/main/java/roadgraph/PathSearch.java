@@ -0,0 +1,287 @@
+package roadgraph;
+
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The search algorithms behind MapGraph, written against the int
+ *         vertex ids of a CompactGraph. Every method returns the vertex ids of
+ *         the path found, from start to goal, or null if there is none.
+ *
+ */
+final class PathSearch {
+
+	private static final int NO_PARENT = SearchWorkspace.NO_PARENT;
+
+	private PathSearch() {
+	}
+
+	/**
+	 * Find the path from start to goal using breadth first search
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex taken off
+	 *            the queue.
+	 * @return The ids of the vertices that form the shortest (unweighted) path
+	 *         from start to goal (including both start and goal).
+	 */
+	static int[] bfs(CompactGraph graph, int start, int goal, Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			int[] queue = workspace.queue;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = start;
+			workspace.reach(start, 0, NO_PARENT, NO_PARENT);
+
+			while (head < tail) {
+				int currentNode = queue[head++];
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				if (currentNode == goal) {
+					return workspace.buildPath(goal);
+				}
+
+				double depth = workspace.distance(currentNode) + 1;
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					int outNeighbor = graph.getEdgeTarget(edge);
+					if (!workspace.isReached(outNeighbor)) {
+						workspace.reach(outNeighbor, depth, currentNode, edge);
+						queue[tail++] = outNeighbor;
+					}
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Find the shortest path from start to goal using Dijkstra's algorithm.
+	 * The frontier is an indexed d-ary heap with decrease-key and distances
+	 * and parents live in the primitive arrays of a pooled SearchWorkspace, so
+	 * neither a query nor relaxing an edge allocates beyond the returned path.
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The weight of every edge, indexed by edge id. Weights must
+	 *            not be negative.
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex as it is
+	 *            settled.
+	 * @return The ids of the vertices that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	static int[] dijkstra(CompactGraph graph, double[] weights, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.update(start, 0, NO_PARENT, NO_PARENT);
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				if (currentNode == goal) {
+					return workspace.buildPath(goal);
+				}
+
+				double currentDistance = workspace.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					workspace.relax(graph.getEdgeTarget(edge), currentDistance + weights[edge], currentNode, edge);
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Find the shortest path from start to goal using A* search. The frontier
+	 * is ordered by the distance from start plus the heuristic estimate of the
+	 * distance left to the goal.
+	 *
+	 * A vertex whose distance improves after it was settled is queued again,
+	 * so the path stays optimal even if rounding makes the heuristic very
+	 * slightly inconsistent.
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The weight of every edge, indexed by edge id. Weights must
+	 *            not be negative.
+	 * @param heuristic
+	 *            An admissible estimate of the weight left to the goal
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex as it is
+	 *            settled.
+	 * @return The ids of the vertices that form the shortest path from start
+	 *         to goal (including both start and goal).
+	 */
+	static int[] aStar(CompactGraph graph, double[] weights, Heuristic heuristic, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.reach(start, 0, NO_PARENT, NO_PARENT);
+			frontier.insertOrDecrease(start, heuristic.estimate(start, goal));
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				if (currentNode == goal) {
+					return workspace.buildPath(goal);
+				}
+
+				double currentDistance = workspace.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					int outNeighbor = graph.getEdgeTarget(edge);
+					double newDistance = currentDistance + weights[edge];
+					if (newDistance < workspace.distance(outNeighbor)) {
+						workspace.reach(outNeighbor, newDistance, currentNode, edge);
+						frontier.insertOrDecrease(outNeighbor, newDistance + heuristic.estimate(outNeighbor, goal));
+					}
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Find the path from start to goal that arrives earliest when leaving
+	 * start at a given time, using Dijkstra's algorithm on arrival times. The
+	 * travel time of an edge is read from its profile at the time the search
+	 * reaches it. As long as every profile is FIFO, waiting never pays off and
+	 * the first arrival settled at the goal is the earliest one.
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The travel time of every edge without a profile, in hours,
+	 *            indexed by edge id
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex as it is
+	 *            settled.
+	 * @return The ids of the vertices that form the earliest arriving path
+	 *         from start to goal (including both start and goal).
+	 */
+	static int[] timeDependentDijkstra(CompactGraph graph, double[] weights, int start, int goal,
+			double departureTime, Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.update(start, departureTime, NO_PARENT, NO_PARENT);
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				if (currentNode == goal) {
+					return workspace.buildPath(goal);
+				}
+
+				double arrival = workspace.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					workspace.relax(graph.getEdgeTarget(edge), arrival + graph.travelTime(edge, arrival, weights),
+							currentNode, edge);
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Find the path from start to goal that arrives earliest when leaving
+	 * start at a given time, using A* search on arrival times. The frontier is
+	 * ordered by the arrival time plus the heuristic estimate of the travel
+	 * time left, which must hold at every time of day.
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weights
+	 *            The travel time of every edge without a profile, in hours,
+	 *            indexed by edge id
+	 * @param heuristic
+	 *            An estimate of the travel time left to the goal that is
+	 *            admissible at any departure time
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param departureTime
+	 *            The time of leaving start, in hours since midnight
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex as it is
+	 *            settled.
+	 * @return The ids of the vertices that form the earliest arriving path
+	 *         from start to goal (including both start and goal).
+	 */
+	static int[] timeDependentAStar(CompactGraph graph, double[] weights, Heuristic heuristic, int start,
+			int goal, double departureTime, Consumer<GeographicPoint> nodeSearched) {
+		SearchWorkspace workspace = SearchWorkspace.acquire(graph.getNumVertices());
+		try {
+			IndexedHeap frontier = workspace.heap;
+			workspace.reach(start, departureTime, NO_PARENT, NO_PARENT);
+			frontier.insertOrDecrease(start, departureTime + heuristic.estimate(start, goal));
+
+			while (!frontier.isEmpty()) {
+				int currentNode = frontier.poll();
+				nodeSearched.accept(graph.getPoint(currentNode));
+
+				if (currentNode == goal) {
+					return workspace.buildPath(goal);
+				}
+
+				double arrival = workspace.distance(currentNode);
+				for (int edge = graph.getOutEdgeStart(currentNode), end = graph.getOutEdgeEnd(currentNode); edge < end; edge++) {
+					int outNeighbor = graph.getEdgeTarget(edge);
+					double newArrival = arrival + graph.travelTime(edge, arrival, weights);
+					if (newArrival < workspace.distance(outNeighbor)) {
+						workspace.reach(outNeighbor, newArrival, currentNode, edge);
+						frontier.insertOrDecrease(outNeighbor, newArrival + heuristic.estimate(outNeighbor, goal));
+					}
+				}
+			}
+
+			return null;
+		} finally {
+			workspace.release();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package roadgraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         A table of interned travel time profiles. Like the road names of a
+ *         StringTable, every distinct profile gets a dense int id, so edges
+ *         store one int each and the many roads sharing a rush hour shape
+ *         share its breakpoints. The breakpoints of all profiles live in two
+ *         flat double arrays: those of profile p are start[p] .. start[p+1]-1.
+ *
+ */
+final class ProfileTable {
+
+	private final Map<TravelTimeProfile, Integer> ids;
+	private int[] start;
+	private double[] times;
+	private double[] travelTimes;
+	private int numberOfProfiles;
+
+	/**
+	 * Create a new empty ProfileTable
+	 */
+	ProfileTable() {
+		ids = new HashMap<TravelTimeProfile, Integer>();
+		start = new int[16];
+		times = new double[16];
+		travelTimes = new double[16];
+	}
+
+	int size() {
+		return numberOfProfiles;
+	}
+
+	/**
+	 * Add a profile to the table if it is not already there.
+	 *
+	 * @param profile
+	 *            The profile to intern
+	 * @return The id of the profile
+	 */
+	int intern(TravelTimeProfile profile) {
+		Integer id = ids.get(profile);
+
+		if (id == null) {
+			id = numberOfProfiles;
+			int offset = start[id];
+			int count = profile.getNumBreakpoints();
+
+			if (id + 2 > start.length) {
+				start = Arrays.copyOf(start, start.length * 2);
+			}
+			if (offset + count > times.length) {
+				int capacity = Math.max(times.length * 2, offset + count);
+				times = Arrays.copyOf(times, capacity);
+				travelTimes = Arrays.copyOf(travelTimes, capacity);
+			}
+
+			for (int i = 0; i < count; i++) {
+				times[offset + i] = profile.getTime(i);
+				travelTimes[offset + i] = profile.getTravelTime(i);
+			}
+			start[id + 1] = offset + count;
+			numberOfProfiles++;
+			ids.put(profile, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Get a profile by id
+	 *
+	 * @param id
+	 *            The id of the profile
+	 * @return A profile equal to the one interned with this id
+	 */
+	TravelTimeProfile get(int id) {
+		return new TravelTimeProfile(Arrays.copyOfRange(times, start[id], start[id + 1]),
+				Arrays.copyOfRange(travelTimes, start[id], start[id + 1]));
+	}
+
+	/** The breakpoint offsets, with a trailing entry, trimmed to size */
+	int[] startArray() {
+		return Arrays.copyOf(start, numberOfProfiles + 1);
+	}
+
+	/** The departure times of all breakpoints, trimmed to size */
+	double[] timeArray() {
+		return Arrays.copyOf(times, start[numberOfProfiles]);
+	}
+
+	/** The travel times of all breakpoints, trimmed to size */
+	double[] travelTimeArray() {
+		return Arrays.copyOf(travelTimes, start[numberOfProfiles]);
+	}
+}
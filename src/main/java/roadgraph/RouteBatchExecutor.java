@@ -0,0 +1,281 @@
+package roadgraph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Runs large batches of route requests in parallel against one
+ *         read-only snapshot of a graph. Requests are read from a stream in
+ *         chunks, each chunk is solved by all the threads of a ForkJoinPool,
+ *         and the results come back as a stream in the order the requests
+ *         were submitted. A few chunks are kept in flight so the pool stays
+ *         busy while the caller consumes the results, and at most that many
+ *         chunks of requests and results are held in memory at a time.
+ *
+ *         The snapshot is taken when the executor is created; later changes
+ *         to the MapGraph do not affect it. An executor can be used by several
+ *         threads at once and keeps running totals in its metrics.
+ *
+ */
+public class RouteBatchExecutor {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1024;
+	private static final int CHUNKS_IN_FLIGHT = 2;
+
+	private static final Consumer<GeographicPoint> IGNORE = (x) -> {
+	};
+
+	private final CompactGraph graph;
+	private final SearchAlgorithm algorithm;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	private final LongAdder completed;
+	private final LongAdder found;
+	private final LongAdder searchNanos;
+	private final AtomicLong firstSubmitted;
+	private final AtomicLong lastCompleted;
+
+	/**
+	 * Create an executor that runs A* on the common ForkJoinPool
+	 *
+	 * @param graph
+	 *            The graph to route on. Its current state is frozen into the
+	 *            snapshot the executor uses.
+	 */
+	public RouteBatchExecutor(MapGraph graph) {
+		this(graph.freeze(), SearchAlgorithm.A_STAR, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create an executor
+	 *
+	 * @param graph
+	 *            The snapshot to route on
+	 * @param algorithm
+	 *            The search that answers each request
+	 * @param pool
+	 *            The pool that runs the searches
+	 * @param chunkSize
+	 *            How many requests are read and solved together
+	 */
+	public RouteBatchExecutor(CompactGraph graph, SearchAlgorithm algorithm, ForkJoinPool pool, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("The chunk size must be positive, got " + chunkSize);
+		}
+
+		this.graph = graph;
+		this.algorithm = algorithm;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		completed = new LongAdder();
+		found = new LongAdder();
+		searchNanos = new LongAdder();
+		firstSubmitted = new AtomicLong();
+		lastCompleted = new AtomicLong();
+	}
+
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	public SearchAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Solve a stream of requests in parallel. The requests are consumed
+	 * lazily as the results are read, so the returned stream must be
+	 * consumed (or closed) by a single thread.
+	 *
+	 * @param requests
+	 *            The requests to solve
+	 * @return The results, one per request, in the order of the requests.
+	 */
+	public Stream<RouteResult> execute(Stream<RouteRequest> requests) {
+		Iterator<RouteResult> results = new ResultIterator(requests.iterator());
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(requests::close);
+	}
+
+	/**
+	 * Solve a single request on the calling thread
+	 *
+	 * @param request
+	 *            The request to solve
+	 * @return The route from the start to the goal of the request.
+	 */
+	public RouteResult route(RouteRequest request) {
+		firstSubmitted.compareAndSet(0, System.nanoTime());
+		RouteResult result = solve(request);
+		lastCompleted.accumulateAndGet(System.nanoTime(), Math::max);
+		return result;
+	}
+
+	/**
+	 * Get the totals of every request solved so far
+	 *
+	 * @return A snapshot of the metrics.
+	 */
+	public Metrics getMetrics() {
+		long start = firstSubmitted.get();
+		long elapsed = start != 0 ? lastCompleted.get() - start : 0;
+		return new Metrics(completed.sum(), found.sum(), searchNanos.sum(), Math.max(elapsed, 0));
+	}
+
+	private RouteResult solve(RouteRequest request) {
+		long begin = System.nanoTime();
+		RouteResult result = algorithm.route(graph, request.getStart(), request.getGoal(), IGNORE);
+
+		searchNanos.add(System.nanoTime() - begin);
+		completed.increment();
+		if (result.isFound()) {
+			found.increment();
+		}
+		return result;
+	}
+
+	// Solve one chunk with every thread of the pool
+	private RouteResult[] solveChunk(RouteRequest[] chunk) {
+		RouteResult[] results = new RouteResult[chunk.length];
+		IntStream.range(0, chunk.length).parallel().forEach(i -> results[i] = solve(chunk[i]));
+		lastCompleted.accumulateAndGet(System.nanoTime(), Math::max);
+		return results;
+	}
+
+	// Reads chunks of requests ahead of the consumer and hands out their
+	// results in order.
+	private final class ResultIterator implements Iterator<RouteResult> {
+		private final Iterator<RouteRequest> requests;
+		private final ArrayDeque<ForkJoinTask<RouteResult[]>> inFlight;
+		private RouteResult[] current;
+		private int next;
+
+		ResultIterator(Iterator<RouteRequest> requests) {
+			this.requests = requests;
+			inFlight = new ArrayDeque<>(CHUNKS_IN_FLIGHT);
+			current = new RouteResult[0];
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next < current.length) {
+				return true;
+			}
+
+			submitChunks();
+			if (inFlight.isEmpty()) {
+				return false;
+			}
+
+			current = inFlight.poll().join();
+			next = 0;
+			submitChunks();
+			return true;
+		}
+
+		@Override
+		public RouteResult next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current[next++];
+		}
+
+		private void submitChunks() {
+			while (inFlight.size() < CHUNKS_IN_FLIGHT && requests.hasNext()) {
+				RouteRequest[] chunk = new RouteRequest[chunkSize];
+				int size = 0;
+				while (size < chunkSize && requests.hasNext()) {
+					chunk[size++] = requests.next();
+				}
+				RouteRequest[] filled = size < chunkSize ? Arrays.copyOf(chunk, size) : chunk;
+
+				firstSubmitted.compareAndSet(0, System.nanoTime());
+				// A parallel stream started from inside a pool task runs on
+				// that pool rather than on the common pool.
+				inFlight.add(pool.submit(() -> solveChunk(filled)));
+			}
+		}
+	}
+
+	/**
+	 * @author UCSD MOOC development team and YOU
+	 *
+	 *         Running totals of a RouteBatchExecutor
+	 *
+	 */
+	public static final class Metrics {
+		private final long completed;
+		private final long found;
+		private final long searchNanos;
+		private final long elapsedNanos;
+
+		Metrics(long completed, long found, long searchNanos, long elapsedNanos) {
+			this.completed = completed;
+			this.found = found;
+			this.searchNanos = searchNanos;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/** @return The number of requests solved. */
+		public long getCompleted() {
+			return completed;
+		}
+
+		/** @return The number of requests for which a path was found. */
+		public long getFound() {
+			return found;
+		}
+
+		/**
+		 * @return The wall clock time from the first request submitted to the
+		 *         last one solved, in nanoseconds.
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/** @return The number of requests solved per second of wall clock time. */
+		public double getRoutesPerSecond() {
+			return elapsedNanos > 0 ? completed * 1e9 / elapsedNanos : 0;
+		}
+
+		/** @return The average time one search took, in microseconds. */
+		public double getAverageSearchMicros() {
+			return completed > 0 ? searchNanos / 1e3 / completed : 0;
+		}
+
+		/**
+		 * @return The average number of searches running at once, which is
+		 *         close to the number of cores when the pool is saturated.
+		 */
+		public double getAverageParallelism() {
+			return elapsedNanos > 0 ? (double) searchNanos / elapsedNanos : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d routes (%d found) in %.1f ms: %.0f routes/s, %.1f us/search, parallelism %.1f",
+					completed, found, elapsedNanos / 1e6, getRoutesPerSecond(), getAverageSearchMicros(),
+					getAverageParallelism());
+		}
+	}
+}
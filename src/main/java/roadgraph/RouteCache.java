@@ -0,0 +1,295 @@
+package roadgraph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         A bounded least-recently-used cache of routes over a MapGraph,
+ *         keyed on the start vertex, the goal vertex and the search
+ *         algorithm. The cache is bounded both by its number of routes and by
+ *         their total weight, the number of intersections on all the cached
+ *         paths, so a few very long routes cannot crowd out memory.
+ *
+ *         A route asked for with a visualization hook also keeps the vertices
+ *         its search explored, which a later hit replays to the hook in the
+ *         same order. They count toward the weight of the route.
+ *
+ *         Every route is computed on a snapshot of the graph (see
+ *         MapGraph.freeze()). Adding a vertex or an edge to the graph
+ *         discards its snapshot, and the next lookup that finds the snapshot
+ *         changed clears the cache before searching, so a route is never
+ *         served from an older version of the graph.
+ *
+ *         Cached results are immutable RouteResults and are shared by every
+ *         thread that asks for the same route. The cache can be used from
+ *         several threads at once; two threads missing on the same route at
+ *         the same time may both compute it.
+ *
+ */
+public class RouteCache {
+
+	private static final Consumer<GeographicPoint> IGNORE = (x) -> {
+	};
+
+	private final MapGraph graph;
+	private final int maxRoutes;
+	private final long maxWeight;
+
+	// In access order, so the eldest entry is the least recently used one
+	private final LinkedHashMap<Key, Entry> routes;
+	private CompactGraph snapshot;
+	private long weight;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * Create a new empty cache
+	 *
+	 * @param graph
+	 *            The graph the routes are computed on
+	 * @param maxRoutes
+	 *            The largest number of routes to keep
+	 * @param maxWeight
+	 *            The largest total number of intersections on the routes
+	 *            kept
+	 */
+	public RouteCache(MapGraph graph, int maxRoutes, long maxWeight) {
+		if (maxRoutes < 1 || maxWeight < 1) {
+			throw new IllegalArgumentException("The cache bounds must be positive");
+		}
+
+		this.graph = graph;
+		this.maxRoutes = maxRoutes;
+		this.maxWeight = maxWeight;
+		routes = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	}
+
+	public MapGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Find the route from start to goal, from the cache if it holds it
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param algorithm
+	 *            The search to run on a miss
+	 * @return The route, shared with every other caller asking for it.
+	 */
+	public RouteResult route(GeographicPoint start, GeographicPoint goal, SearchAlgorithm algorithm) {
+		return route(start, goal, algorithm, IGNORE);
+	}
+
+	/**
+	 * Find the route from start to goal, from the cache if it holds it
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param algorithm
+	 *            The search to run on a miss
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex the search
+	 *            explored. On a hit the vertices recorded when the route was
+	 *            computed are replayed; a route cached without them is searched
+	 *            again.
+	 * @return The route, shared with every other caller asking for it.
+	 */
+	public RouteResult route(GeographicPoint start, GeographicPoint goal, SearchAlgorithm algorithm,
+			Consumer<GeographicPoint> nodeSearched) {
+		CompactGraph current = graph.freeze();
+		int startId = current.indexOf(start);
+		int goalId = current.indexOf(goal);
+
+		// Locations that are not in the graph are answered without a search
+		// and not cached.
+		if (startId < 0 || goalId < 0) {
+			return algorithm.route(current, start, goal, nodeSearched);
+		}
+
+		Key key = new Key(startId, goalId, algorithm);
+		Entry cached;
+		synchronized (this) {
+			if (snapshot != current) {
+				invalidate(current);
+			}
+
+			cached = routes.get(key);
+			if (cached != null && (nodeSearched == IGNORE || cached.searched != null)) {
+				hits++;
+			} else {
+				cached = null;
+				misses++;
+			}
+		}
+
+		if (cached != null) {
+			if (nodeSearched != IGNORE) {
+				for (GeographicPoint vertex : cached.searched) {
+					nodeSearched.accept(vertex);
+				}
+			}
+			return cached.result;
+		}
+
+		Entry entry;
+		if (nodeSearched == IGNORE) {
+			entry = new Entry(algorithm.route(current, start, goal, IGNORE), null);
+		} else {
+			ArrayList<GeographicPoint> searched = new ArrayList<GeographicPoint>();
+			RouteResult result = algorithm.route(current, start, goal, (vertex) -> {
+				searched.add(vertex);
+				nodeSearched.accept(vertex);
+			});
+			entry = new Entry(result, searched.toArray(new GeographicPoint[searched.size()]));
+		}
+
+		synchronized (this) {
+			// Only keep the route if the graph did not change during the
+			// search.
+			if (snapshot == current) {
+				Entry previous = routes.put(key, entry);
+				weight += entry.weight() - (previous != null ? previous.weight() : 0);
+				evict();
+			}
+		}
+
+		return entry.result;
+	}
+
+	/**
+	 * Remove every route from the cache
+	 */
+	public synchronized void clear() {
+		routes.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return routes.size();
+	}
+
+	/**
+	 * Get the total weight of the cached routes
+	 *
+	 * @return The number of intersections on all the cached paths and
+	 *         recorded searches.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of routes removed to respect the bounds of the cache
+	 *
+	 * @return The number of routes evicted.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Get the number of times the cache was cleared because the graph
+	 * changed
+	 *
+	 * @return The number of invalidations.
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Get the fraction of lookups answered from the cache
+	 *
+	 * @return hits / (hits + misses), or 0 before the first lookup.
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups > 0 ? (double) hits / lookups : 0;
+	}
+
+	private void invalidate(CompactGraph current) {
+		if (snapshot != null) {
+			invalidations++;
+		}
+		snapshot = current;
+		routes.clear();
+		weight = 0;
+	}
+
+	// Drop the least recently used routes until both bounds hold
+	private void evict() {
+		Iterator<Map.Entry<Key, Entry>> eldest = routes.entrySet().iterator();
+		while ((routes.size() > maxRoutes || weight > maxWeight) && eldest.hasNext()) {
+			weight -= eldest.next().getValue().weight();
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	// A cached route and the vertices its search explored, if they were
+	// recorded
+	private static final class Entry {
+		private final RouteResult result;
+		private final GeographicPoint[] searched;
+
+		Entry(RouteResult result, GeographicPoint[] searched) {
+			this.result = result;
+			this.searched = searched;
+		}
+
+		// Routes without a path still take an entry, so they weigh 1.
+		long weight() {
+			long pathWeight = result.isFound() ? result.getPath().size() : 1;
+			return pathWeight + (searched != null ? searched.length : 0);
+		}
+	}
+
+	private static final class Key {
+		private final int start;
+		private final int goal;
+		private final SearchAlgorithm algorithm;
+
+		Key(int start, int goal, SearchAlgorithm algorithm) {
+			this.start = start;
+			this.goal = goal;
+			this.algorithm = algorithm;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return start == other.start && goal == other.goal && algorithm == other.algorithm;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * start + goal) * 31 + algorithm.ordinal();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package roadgraph;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         A request for the route between two locations, as submitted to a
+ *         RouteBatchExecutor.
+ *
+ */
+public final class RouteRequest {
+
+	private final GeographicPoint start;
+	private final GeographicPoint goal;
+
+	/**
+	 * Create a new request
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 */
+	public RouteRequest(GeographicPoint start, GeographicPoint goal) {
+		this.start = start;
+		this.goal = goal;
+	}
+
+	public GeographicPoint getStart() {
+		return start;
+	}
+
+	public GeographicPoint getGoal() {
+		return goal;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteRequest [start=" + start + ", goal=" + goal + "]";
+	}
+}
@@ -0,0 +1,88 @@
+package roadgraph;
+
+import java.util.Collections;
+import java.util.List;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The answer to a route request: the path found, if any, and its
+ *         total weight under the Weighting it was searched with, which is its
+ *         length in km for Weighting.DISTANCE. A RouteResult is immutable,
+ *         so it can be shared between threads and handed out more than once.
+ *
+ */
+public final class RouteResult {
+
+	private final GeographicPoint start;
+	private final GeographicPoint goal;
+	private final List<GeographicPoint> path;
+	private final double weight;
+
+	/**
+	 * Create a new result
+	 *
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param path
+	 *            The intersections of the path from start to goal, or null if
+	 *            there is none. The list must not be modified afterwards.
+	 * @param weight
+	 *            The total weight of the path under the weighting searched
+	 *            with
+	 */
+	RouteResult(GeographicPoint start, GeographicPoint goal, List<GeographicPoint> path, double weight) {
+		this.start = start;
+		this.goal = goal;
+		this.path = path != null ? Collections.unmodifiableList(path) : null;
+		this.weight = path != null ? weight : Double.POSITIVE_INFINITY;
+	}
+
+	public GeographicPoint getStart() {
+		return start;
+	}
+
+	public GeographicPoint getGoal() {
+		return goal;
+	}
+
+	/**
+	 * Whether a path from start to goal was found
+	 *
+	 * @return true if there is a path, false if the goal cannot be reached or
+	 *         either location is not in the graph.
+	 */
+	public boolean isFound() {
+		return path != null;
+	}
+
+	/**
+	 * Get the path found
+	 *
+	 * @return An unmodifiable list of the intersections from start to goal, or
+	 *         null if there is no path.
+	 */
+	public List<GeographicPoint> getPath() {
+		return path;
+	}
+
+	/**
+	 * Get the total weight of the path found, under the weighting it was
+	 * searched with: its length in km for Weighting.DISTANCE, its driving
+	 * time in hours for a TravelTimeWeighting
+	 *
+	 * @return The weight of the path, or infinity if there is no path.
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		return "RouteResult [start=" + start + ", goal=" + goal + ", weight=" + weight + "]";
+	}
+}
@@ -0,0 +1,125 @@
+package roadgraph;
+
+import java.util.function.Consumer;
+
+import geography.GeographicPoint;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The point-to-point search algorithms MapGraph offers, as values that
+ *         batch runners and caches can hold on to and compare. Each one
+ *         minimizes the weights of a Weighting, the edge lengths unless told
+ *         otherwise; the A* variants are guided by its heuristic.
+ *
+ */
+public enum SearchAlgorithm {
+	/** Breadth first search, which finds the path with the fewest edges */
+	BFS {
+		@Override
+		int[] search(CompactGraph graph, Weighting weighting, int start, int goal,
+				Consumer<GeographicPoint> nodeSearched) {
+			return PathSearch.bfs(graph, start, goal, nodeSearched);
+		}
+	},
+	/** Dijkstra's algorithm */
+	DIJKSTRA {
+		@Override
+		int[] search(CompactGraph graph, Weighting weighting, int start, int goal,
+				Consumer<GeographicPoint> nodeSearched) {
+			return PathSearch.dijkstra(graph, graph.weights(weighting), start, goal, nodeSearched);
+		}
+	},
+	/** A* guided by the heuristic of the weighting */
+	A_STAR {
+		@Override
+		int[] search(CompactGraph graph, Weighting weighting, int start, int goal,
+				Consumer<GeographicPoint> nodeSearched) {
+			return PathSearch.aStar(graph, graph.weights(weighting), weighting.heuristic(graph), start, goal,
+					nodeSearched);
+		}
+	},
+	/** Dijkstra from both ends */
+	BIDIRECTIONAL_DIJKSTRA {
+		@Override
+		int[] search(CompactGraph graph, Weighting weighting, int start, int goal,
+				Consumer<GeographicPoint> nodeSearched) {
+			return BidirectionalSearch.search(graph, graph.weights(weighting), null, start, goal, nodeSearched);
+		}
+	},
+	/** A* from both ends, guided by the heuristic of the weighting */
+	BIDIRECTIONAL_A_STAR {
+		@Override
+		int[] search(CompactGraph graph, Weighting weighting, int start, int goal,
+				Consumer<GeographicPoint> nodeSearched) {
+			return BidirectionalSearch.search(graph, graph.weights(weighting), weighting.heuristic(graph), start,
+					goal, nodeSearched);
+		}
+	};
+
+	/**
+	 * Find the shortest route between two locations of a graph
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex explored
+	 * @return The route found, which is not found if either location is not a
+	 *         vertex of the graph.
+	 */
+	RouteResult route(CompactGraph graph, GeographicPoint start, GeographicPoint goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		return route(graph, Weighting.DISTANCE, start, goal, nodeSearched);
+	}
+
+	/**
+	 * Find the cheapest route between two locations of a graph
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weighting
+	 *            The cost to minimize
+	 * @param start
+	 *            The starting location
+	 * @param goal
+	 *            The goal location
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex explored
+	 * @return The route found, with its total weight, or not found if either
+	 *         location is not a vertex of the graph.
+	 */
+	RouteResult route(CompactGraph graph, Weighting weighting, GeographicPoint start, GeographicPoint goal,
+			Consumer<GeographicPoint> nodeSearched) {
+		int startId = graph.indexOf(start);
+		int goalId = graph.indexOf(goal);
+		int[] path = startId >= 0 && goalId >= 0 ? search(graph, weighting, startId, goalId, nodeSearched) : null;
+
+		if (path == null) {
+			return new RouteResult(start, goal, null, Double.POSITIVE_INFINITY);
+		}
+		return new RouteResult(start, goal, graph.toPoints(path), graph.pathWeight(path, graph.weights(weighting)));
+	}
+
+	/**
+	 * Find a path between two vertices of a graph
+	 *
+	 * @param graph
+	 *            The graph to search
+	 * @param weighting
+	 *            The cost to minimize
+	 * @param start
+	 *            The id of the starting vertex
+	 * @param goal
+	 *            The id of the goal vertex
+	 * @param nodeSearched
+	 *            A hook for visualization, called with every vertex explored
+	 * @return The ids of the vertices on the path, from start to goal, or null
+	 *         if there is none.
+	 */
+	abstract int[] search(CompactGraph graph, Weighting weighting, int start, int goal,
+			Consumer<GeographicPoint> nodeSearched);
+}
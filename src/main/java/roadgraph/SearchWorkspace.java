@@ -0,0 +1,190 @@
+package roadgraph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The per-vertex state of one graph search: an int queue, a heap, and
+ *         the distance, parent and parent edge of every vertex reached. A
+ *         vertex only counts as reached when its stamp matches the current
+ *         epoch, so reset() starts a new search by bumping the epoch instead
+ *         of clearing the arrays.
+ *
+ *         Workspaces are borrowed from a small per-thread pool with acquire()
+ *         and handed back with release(), so a thread that runs many queries
+ *         keeps reusing the same arrays and a query allocates little more
+ *         than the path it returns. A search that needs two label sets, such
+ *         as a bidirectional one, simply borrows two.
+ *
+ */
+final class SearchWorkspace {
+
+	static final int NO_PARENT = -1;
+
+	// Enough for a bidirectional search that calls back into another
+	// search from its nodeSearched hook
+	private static final int POOL_SIZE = 4;
+
+	private static final ThreadLocal<ArrayDeque<SearchWorkspace>> POOL = ThreadLocal
+			.withInitial(() -> new ArrayDeque<SearchWorkspace>(POOL_SIZE));
+
+	final IndexedHeap heap;
+	final int[] queue;
+	private final double[] distance;
+	private final int[] parent;
+	private final int[] parentEdge;
+	private final int[] stamp;
+	private int epoch;
+
+	private SearchWorkspace(int capacity) {
+		heap = new IndexedHeap(capacity);
+		queue = new int[capacity];
+		distance = new double[capacity];
+		parent = new int[capacity];
+		parentEdge = new int[capacity];
+		stamp = new int[capacity];
+		// The stamps start at 0, so no vertex counts as reached in epoch 1
+		epoch = 1;
+	}
+
+	/**
+	 * Borrow a reset workspace for a graph with the given number of vertices
+	 * from the pool of the current thread. The workspace must be handed back
+	 * with release() once the search no longer needs it.
+	 *
+	 * @param numVertices
+	 *            The number of vertices of the graph to search
+	 * @return A workspace with no vertex reached and an empty heap.
+	 */
+	static SearchWorkspace acquire(int numVertices) {
+		SearchWorkspace workspace = POOL.get().pollFirst();
+
+		// A workspace that is too small for this graph is dropped and
+		// replaced by a bigger one when it is released.
+		if (workspace == null || workspace.capacity() < numVertices) {
+			return new SearchWorkspace(numVertices);
+		}
+
+		workspace.reset();
+		return workspace;
+	}
+
+	/**
+	 * Hand the workspace back to the pool of the current thread. It must not
+	 * be used again after this call.
+	 */
+	void release() {
+		ArrayDeque<SearchWorkspace> pool = POOL.get();
+		if (pool.size() < POOL_SIZE) {
+			pool.addFirst(this);
+		}
+	}
+
+	int capacity() {
+		return stamp.length;
+	}
+
+	/**
+	 * Forget every vertex reached and empty the heap. Takes constant time
+	 * plus the number of items left in the heap.
+	 */
+	void reset() {
+		heap.clear();
+		epoch++;
+
+		// After 2^32 resets the stamps wrap around and could match again.
+		if (epoch == 0) {
+			Arrays.fill(stamp, 0);
+			epoch = 1;
+		}
+	}
+
+	boolean isReached(int v) {
+		return stamp[v] == epoch;
+	}
+
+	double distance(int v) {
+		return stamp[v] == epoch ? distance[v] : Double.POSITIVE_INFINITY;
+	}
+
+	int parent(int v) {
+		return parent[v];
+	}
+
+	int parentEdge(int v) {
+		return parentEdge[v];
+	}
+
+	/**
+	 * Mark a vertex as reached without queueing it
+	 *
+	 * @param v
+	 *            The vertex reached
+	 * @param d
+	 *            Its distance
+	 * @param from
+	 *            The vertex it was reached from, or NO_PARENT
+	 * @param edge
+	 *            The edge it was reached through
+	 */
+	void reach(int v, double d, int from, int edge) {
+		stamp[v] = epoch;
+		distance[v] = d;
+		parent[v] = from;
+		parentEdge[v] = edge;
+	}
+
+	/**
+	 * Mark a vertex as reached and queue it in the heap with its distance as
+	 * the key
+	 *
+	 * @param v
+	 *            The vertex reached
+	 * @param d
+	 *            Its distance
+	 * @param from
+	 *            The vertex it was reached from, or NO_PARENT
+	 * @param edge
+	 *            The edge it was reached through
+	 */
+	void update(int v, double d, int from, int edge) {
+		reach(v, d, from, edge);
+		heap.insertOrDecrease(v, d);
+	}
+
+	/**
+	 * Update a vertex if d is shorter than its current distance
+	 *
+	 * @return Whether the vertex was updated.
+	 */
+	boolean relax(int v, double d, int from, int edge) {
+		if (d < distance(v)) {
+			update(v, d, from, edge);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Walk the parents back from a reached vertex
+	 *
+	 * @param goal
+	 *            The last vertex of the path
+	 * @return The vertex ids from the root of the search to goal.
+	 */
+	int[] buildPath(int goal) {
+		int length = 0;
+		for (int node = goal; node != NO_PARENT; node = parent[node]) {
+			length++;
+		}
+
+		int[] path = new int[length];
+		for (int node = goal; node != NO_PARENT; node = parent[node]) {
+			path[--length] = node;
+		}
+
+		return path;
+	}
+}
@@ -0,0 +1,120 @@
+package roadgraph;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The speed, in km/h, to expect on each type of road. Road types are
+ *         the OpenStreetMap highway values the maps are made of ("motorway",
+ *         "residential", "living_street" ...), and any type the profile does
+ *         not name is driven at its default speed.
+ *
+ */
+public final class SpeedProfile {
+
+	private final Map<String, Double> speeds;
+	private final double defaultSpeed;
+	private final double maxSpeed;
+
+	/**
+	 * Create a profile
+	 *
+	 * @param speeds
+	 *            The speed on every road type the profile names, in km/h
+	 * @param defaultSpeed
+	 *            The speed on any other road type, in km/h
+	 */
+	public SpeedProfile(Map<String, Double> speeds, double defaultSpeed) {
+		double max = checkSpeed(defaultSpeed);
+		for (double speed : speeds.values()) {
+			max = Math.max(max, checkSpeed(speed));
+		}
+
+		this.speeds = Collections.unmodifiableMap(new HashMap<String, Double>(speeds));
+		this.defaultSpeed = defaultSpeed;
+		this.maxSpeed = max;
+	}
+
+	/**
+	 * Get a profile with typical urban car speeds for the road types
+	 * DataFetcher downloads
+	 *
+	 * @return The car profile.
+	 */
+	public static SpeedProfile car() {
+		Map<String, Double> speeds = new HashMap<>();
+		speeds.put("motorway", 100.0);
+		speeds.put("motorway_link", 60.0);
+		speeds.put("trunk", 80.0);
+		speeds.put("trunk_link", 50.0);
+		speeds.put("primary", 60.0);
+		speeds.put("primary_link", 45.0);
+		speeds.put("secondary", 50.0);
+		speeds.put("secondary_link", 40.0);
+		speeds.put("tertiary", 45.0);
+		speeds.put("tertiary_link", 35.0);
+		speeds.put("unclassified", 35.0);
+		speeds.put("residential", 30.0);
+		speeds.put("living_street", 10.0);
+		return new SpeedProfile(speeds, 30);
+	}
+
+	/**
+	 * Get the speed on a type of road
+	 *
+	 * @param roadType
+	 *            The road type
+	 * @return The speed in km/h.
+	 */
+	public double getSpeed(String roadType) {
+		Double speed = speeds.get(roadType);
+		return speed != null ? speed : defaultSpeed;
+	}
+
+	public double getDefaultSpeed() {
+		return defaultSpeed;
+	}
+
+	/**
+	 * Get the highest speed of the profile, which bounds how fast any road
+	 * can be driven
+	 *
+	 * @return The highest speed in km/h.
+	 */
+	public double getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	public Map<String, Double> getSpeeds() {
+		return speeds;
+	}
+
+	private static double checkSpeed(double speed) {
+		if (!(speed > 0) || Double.isInfinite(speed)) {
+			throw new IllegalArgumentException("Speeds must be positive and finite, got " + speed);
+		}
+		return speed;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof SpeedProfile)) {
+			return false;
+		}
+		SpeedProfile other = (SpeedProfile) o;
+		return speeds.equals(other.speeds) && defaultSpeed == other.defaultSpeed;
+	}
+
+	@Override
+	public int hashCode() {
+		return speeds.hashCode() * 31 + Double.hashCode(defaultSpeed);
+	}
+
+	@Override
+	public String toString() {
+		return "SpeedProfile " + speeds + ", default " + defaultSpeed;
+	}
+}
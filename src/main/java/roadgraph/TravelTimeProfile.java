@@ -0,0 +1,186 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         How long it takes to drive along a road at each time of day, as a
+ *         piecewise linear function repeating every 24 hours. The function is
+ *         given by its breakpoints: departure times in hours since midnight,
+ *         each with the travel time in hours of a car leaving then. Between
+ *         two breakpoints the travel time is interpolated linearly, and after
+ *         the last breakpoint it runs towards the first one of the next day.
+ *
+ *         Profiles must be FIFO (first in, first out): leaving later never
+ *         gets a car there earlier, so no piece of the function falls faster
+ *         than one hour of travel time per hour of departure time. This is
+ *         what makes a Dijkstra search on arrival times exact.
+ *
+ */
+public final class TravelTimeProfile {
+
+	/** The length of the day the profiles repeat over, in hours */
+	public static final double PERIOD = 24;
+
+	private final double[] times;
+	private final double[] travelTimes;
+
+	/**
+	 * Create a profile from its breakpoints. The arrays are copied.
+	 *
+	 * @param times
+	 *            The departure time of every breakpoint, in hours since
+	 *            midnight, strictly increasing and in [0, 24)
+	 * @param travelTimes
+	 *            The travel time at every breakpoint, in hours
+	 * @throws IllegalArgumentException
+	 *             If there are no breakpoints, the arrays differ in length, a
+	 *             time is out of order or range, a travel time is not positive,
+	 *             or the profile is not FIFO.
+	 */
+	public TravelTimeProfile(double[] times, double[] travelTimes) {
+		if (times.length == 0 || times.length != travelTimes.length) {
+			throw new IllegalArgumentException("Expected as many travel times as departure times");
+		}
+		for (int i = 0; i < times.length; i++) {
+			if (!(times[i] >= 0 && times[i] < PERIOD) || (i > 0 && !(times[i] > times[i - 1]))) {
+				throw new IllegalArgumentException("Departure times must increase within [0, 24): " + times[i]);
+			}
+			if (!(travelTimes[i] > 0) || Double.isInfinite(travelTimes[i])) {
+				throw new IllegalArgumentException("Travel times must be positive: " + travelTimes[i]);
+			}
+		}
+		for (int i = 0; i < times.length && times.length > 1; i++) {
+			int next = (i + 1) % times.length;
+			double span = next > i ? times[next] - times[i] : times[next] + PERIOD - times[i];
+			if (travelTimes[next] - travelTimes[i] < -span) {
+				throw new IllegalArgumentException("Profile is not FIFO after " + times[i]);
+			}
+		}
+
+		this.times = times.clone();
+		this.travelTimes = travelTimes.clone();
+	}
+
+	/**
+	 * Get a profile with the same travel time all day
+	 *
+	 * @param travelTime
+	 *            The travel time, in hours
+	 * @return The constant profile.
+	 */
+	public static TravelTimeProfile constant(double travelTime) {
+		return new TravelTimeProfile(new double[] { 0 }, new double[] { travelTime });
+	}
+
+	/**
+	 * Get a profile of the same shape with every travel time multiplied by a
+	 * factor, such as a rush hour shape fitted to the length of a road
+	 *
+	 * @param factor
+	 *            The positive factor to multiply the travel times by
+	 * @return The scaled profile.
+	 * @throws IllegalArgumentException
+	 *             If the scaled profile is not FIFO.
+	 */
+	public TravelTimeProfile scaled(double factor) {
+		double[] scaled = new double[travelTimes.length];
+		for (int i = 0; i < scaled.length; i++) {
+			scaled[i] = travelTimes[i] * factor;
+		}
+		return new TravelTimeProfile(times, scaled);
+	}
+
+	public int getNumBreakpoints() {
+		return times.length;
+	}
+
+	public double getTime(int breakpoint) {
+		return times[breakpoint];
+	}
+
+	public double getTravelTime(int breakpoint) {
+		return travelTimes[breakpoint];
+	}
+
+	/**
+	 * Get the travel time for a departure time
+	 *
+	 * @param departureTime
+	 *            The departure time in hours. Times outside [0, 24) stand for
+	 *            the same time of another day.
+	 * @return The travel time in hours.
+	 */
+	public double travelTime(double departureTime) {
+		return evaluate(times, travelTimes, 0, times.length, departureTime);
+	}
+
+	/**
+	 * Evaluate a profile stored as the breakpoints start .. end-1 of two
+	 * arrays shared by many profiles, as CompactGraph keeps them.
+	 */
+	static double evaluate(double[] times, double[] travelTimes, int start, int end, double departureTime) {
+		if (end - start == 1) {
+			return travelTimes[start];
+		}
+
+		double time = departureTime - PERIOD * Math.floor(departureTime / PERIOD);
+
+		// The last breakpoint at or before time, or start - 1 if time comes
+		// before the first one
+		int low = start;
+		int high = end - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (times[middle] <= time) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		int before = high;
+		int after = high + 1;
+		double beforeTime;
+		double afterTime;
+		if (before < start) {
+			before = end - 1;
+			beforeTime = times[before] - PERIOD;
+			afterTime = times[after];
+		} else if (after == end) {
+			after = start;
+			beforeTime = times[before];
+			afterTime = times[after] + PERIOD;
+		} else {
+			beforeTime = times[before];
+			afterTime = times[after];
+		}
+
+		double fraction = (time - beforeTime) / (afterTime - beforeTime);
+		return travelTimes[before] + fraction * (travelTimes[after] - travelTimes[before]);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof TravelTimeProfile)) {
+			return false;
+		}
+		TravelTimeProfile other = (TravelTimeProfile) o;
+		return Arrays.equals(times, other.times) && Arrays.equals(travelTimes, other.travelTimes);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(times) + Arrays.hashCode(travelTimes);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("TravelTimeProfile [");
+		for (int i = 0; i < times.length; i++) {
+			builder.append(i > 0 ? ", " : "").append(times[i]).append("h: ").append(travelTimes[i]);
+		}
+		return builder.append("]").toString();
+	}
+}
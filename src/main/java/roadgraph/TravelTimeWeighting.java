@@ -0,0 +1,69 @@
+package roadgraph;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         Weighs every edge by the time it takes to drive, in hours: its
+ *         length divided by the speed of its road type in a SpeedProfile. The
+ *         profile is looked up once per road type, not once per edge, when
+ *         the weights of a snapshot are computed.
+ *
+ *         The A* heuristic is the straight line distance driven at the
+ *         highest speed of the profile. No road is shorter than the straight
+ *         line or faster than that speed, so the bound is admissible, and it
+ *         is consistent for the same reason the straight line distance is.
+ *
+ */
+public class TravelTimeWeighting implements Weighting {
+
+	private final SpeedProfile profile;
+
+	/**
+	 * Create a travel time weighting
+	 *
+	 * @param profile
+	 *            The speed on each road type
+	 */
+	public TravelTimeWeighting(SpeedProfile profile) {
+		this.profile = profile;
+	}
+
+	public SpeedProfile getProfile() {
+		return profile;
+	}
+
+	@Override
+	public double[] computeWeights(CompactGraph graph) {
+		double[] speedOfType = new double[graph.getNumRoadTypes()];
+		for (int type = 0; type < speedOfType.length; type++) {
+			speedOfType[type] = profile.getSpeed(graph.getRoadType(type));
+		}
+
+		double[] weights = new double[graph.getNumEdges()];
+		for (int edge = 0; edge < weights.length; edge++) {
+			weights[edge] = graph.getEdgeLength(edge) / speedOfType[graph.getEdgeRoadType(edge)];
+		}
+		return weights;
+	}
+
+	@Override
+	public Heuristic heuristic(CompactGraph graph) {
+		double maxSpeed = profile.getMaxSpeed();
+		return (vertex, goal) -> graph.straightLineDistance(vertex, goal) / maxSpeed;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof TravelTimeWeighting && profile.equals(((TravelTimeWeighting) o).profile);
+	}
+
+	@Override
+	public int hashCode() {
+		return profile.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "travel time, " + profile;
+	}
+}
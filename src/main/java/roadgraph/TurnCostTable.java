@@ -0,0 +1,96 @@
+package roadgraph;
+
+import java.util.Arrays;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         The turn costs set explicitly on an EdgeBasedGraph. A turn is a pair
+ *         of edge ids, the edge driven in on and the edge driven out on, packed
+ *         into one long key. The keys are kept sorted in a primitive array
+ *         with the cost of every turn in a parallel float array, so an entry
+ *         costs twelve bytes and all the turns out of one edge sit next to
+ *         each other, found with a single binary search.
+ *
+ */
+final class TurnCostTable {
+
+	private long[] keys;
+	private float[] costs;
+	private int size;
+
+	TurnCostTable() {
+		keys = new long[16];
+		costs = new float[16];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Set the cost of a turn, replacing any cost set before
+	 *
+	 * @param from
+	 *            The id of the edge driven in on
+	 * @param to
+	 *            The id of the edge driven out on
+	 * @param cost
+	 *            The cost of the turn, infinite if it is forbidden
+	 */
+	void set(int from, int to, double cost) {
+		long key = key(from, to);
+		int position = Arrays.binarySearch(keys, 0, size, key);
+
+		if (position < 0) {
+			position = -position - 1;
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				costs = Arrays.copyOf(costs, size * 2);
+			}
+			System.arraycopy(keys, position, keys, position + 1, size - position);
+			System.arraycopy(costs, position, costs, position + 1, size - position);
+			keys[position] = key;
+			size++;
+		}
+
+		costs[position] = (float) cost;
+	}
+
+	/**
+	 * Get the position of the first turn out of an edge
+	 *
+	 * @param from
+	 *            The id of the edge driven in on
+	 * @return The position of the first entry whose turn starts on the edge,
+	 *         or of the entry after where it would be if there is none
+	 */
+	int first(int from) {
+		int position = Arrays.binarySearch(keys, 0, size, key(from, 0));
+		return position < 0 ? -position - 1 : position;
+	}
+
+	/**
+	 * Find the cost of a turn, scanning from the position given by first()
+	 *
+	 * @return The cost of the turn, or NaN if it was not set
+	 */
+	double find(int position, int from, int to) {
+		long key = key(from, to);
+		for (; position < size && keys[position] <= key; position++) {
+			if (keys[position] == key) {
+				return costs[position];
+			}
+		}
+		return Double.NaN;
+	}
+
+	/** The number of bytes held by the arrays of the table */
+	long bytes() {
+		return 12L * keys.length;
+	}
+
+	private static long key(int from, int to) {
+		return ((long) from << 32) | to;
+	}
+}
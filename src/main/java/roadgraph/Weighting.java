@@ -0,0 +1,42 @@
+package roadgraph;
+
+/**
+ * @author UCSD MOOC development team and YOU
+ *
+ *         What a search minimizes: a cost for every edge of a graph, and an
+ *         admissible A* heuristic for that cost. Weights are computed once per
+ *         snapshot into a primitive array indexed by edge id, so a search
+ *         never evaluates a weighting edge by edge.
+ *
+ *         Implementations must be immutable, since the weights they compute
+ *         are cached with the snapshot, keyed by the weighting, and shared by
+ *         every search on it. Weightings that compute the same weights should
+ *         be equal.
+ *
+ */
+public interface Weighting {
+
+	/** Edge lengths in km, the cost every search minimizes by default */
+	Weighting DISTANCE = new DistanceWeighting();
+
+	/**
+	 * Compute the weight of every edge of a graph
+	 *
+	 * @param graph
+	 *            The graph to weigh
+	 * @return The weights, indexed by edge id. None may be negative.
+	 */
+	double[] computeWeights(CompactGraph graph);
+
+	/**
+	 * Get an A* heuristic for the weights of a graph. It must be admissible
+	 * and consistent, and symmetric enough to bound the cost from the start
+	 * too, as described in Heuristic.
+	 *
+	 * @param graph
+	 *            The graph the weights are for
+	 * @return A lower bound of the weight of the cheapest path between two
+	 *         vertices.
+	 */
+	Heuristic heuristic(CompactGraph graph);
+}
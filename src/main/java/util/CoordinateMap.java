@@ -0,0 +1,188 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash table that assigns dense integer ids (0 .. size-1)
+ * to latitude/longitude pairs. Coordinates are kept in two parallel primitive
+ * arrays indexed by id, so the table holds no boxed keys or entry objects.
+ *
+ * Two coordinates are the same key when their double values are equal, which
+ * matches the equality used by GeographicPoint.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class CoordinateMap {
+
+	private static final int EMPTY = -1;
+
+	private double[] latitudes;
+	private double[] longitudes;
+	private int[] table;
+	private int size;
+
+	/**
+	 * Create a new empty CoordinateMap
+	 */
+	public CoordinateMap() {
+		this(16);
+	}
+
+	/**
+	 * Create a new empty CoordinateMap sized to hold the given number of
+	 * coordinates without rehashing.
+	 *
+	 * @param expectedSize
+	 *            The number of coordinates expected to be added.
+	 */
+	public CoordinateMap(int expectedSize) {
+		int capacity = Math.max(expectedSize, 4);
+		latitudes = new double[capacity];
+		longitudes = new double[capacity];
+		table = new int[tableSizeFor(capacity)];
+		Arrays.fill(table, EMPTY);
+	}
+
+	/**
+	 * Get the number of distinct coordinates in the map
+	 *
+	 * @return The number of coordinates, which is also the next id to be
+	 *         assigned.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the id of a coordinate.
+	 *
+	 * @param latitude
+	 *            The latitude of the coordinate
+	 * @param longitude
+	 *            The longitude of the coordinate
+	 * @return The id of the coordinate, or -1 if it is not in the map.
+	 */
+	public int get(double latitude, double longitude) {
+		int mask = table.length - 1;
+		int slot = hash(latitude, longitude) & mask;
+		int id;
+
+		while ((id = table[slot]) != EMPTY) {
+			if (latitudes[id] == latitude && longitudes[id] == longitude) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		return EMPTY;
+	}
+
+	/**
+	 * Add a coordinate to the map if it is not already there.
+	 *
+	 * @param latitude
+	 *            The latitude of the coordinate
+	 * @param longitude
+	 *            The longitude of the coordinate
+	 * @return The id of the coordinate, either the existing one or the newly
+	 *         assigned one (which is always the previous size of the map).
+	 */
+	public int add(double latitude, double longitude) {
+		int mask = table.length - 1;
+		int slot = hash(latitude, longitude) & mask;
+		int id;
+
+		while ((id = table[slot]) != EMPTY) {
+			if (latitudes[id] == latitude && longitudes[id] == longitude) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == latitudes.length) {
+			latitudes = Arrays.copyOf(latitudes, size * 2);
+			longitudes = Arrays.copyOf(longitudes, size * 2);
+		}
+
+		id = size++;
+		latitudes[id] = latitude;
+		longitudes[id] = longitude;
+		table[slot] = id;
+
+		if (size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Get the latitude of the coordinate with the given id
+	 *
+	 * @param id
+	 *            The id of the coordinate
+	 * @return The latitude of the coordinate
+	 */
+	public double getLatitude(int id) {
+		return latitudes[id];
+	}
+
+	/**
+	 * Get the longitude of the coordinate with the given id
+	 *
+	 * @param id
+	 *            The id of the coordinate
+	 * @return The longitude of the coordinate
+	 */
+	public double getLongitude(int id) {
+		return longitudes[id];
+	}
+
+	/**
+	 * Return a copy of the latitudes, indexed by id.
+	 *
+	 * @return An array of length size() with the latitude of every id.
+	 */
+	public double[] latitudes() {
+		return Arrays.copyOf(latitudes, size);
+	}
+
+	/**
+	 * Return a copy of the longitudes, indexed by id.
+	 *
+	 * @return An array of length size() with the longitude of every id.
+	 */
+	public double[] longitudes() {
+		return Arrays.copyOf(longitudes, size);
+	}
+
+	private void rehash(int newTableSize) {
+		table = new int[newTableSize];
+		Arrays.fill(table, EMPTY);
+		int mask = newTableSize - 1;
+
+		for (int id = 0; id < size; id++) {
+			int slot = hash(latitudes[id], longitudes[id]) & mask;
+			while (table[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id;
+		}
+	}
+
+	// Mix the bits of both coordinates so that points on the same street
+	// (which share most of their high order bits) spread over the table.
+	// Adding 0.0 folds -0.0 into 0.0, since the two compare equal.
+	private static int hash(double latitude, double longitude) {
+		long bits = Double.doubleToLongBits(latitude + 0.0) * 0x9E3779B97F4A7C15L
+				+ Double.doubleToLongBits(longitude + 0.0);
+		bits *= 0xC2B2AE3D27D4EB4FL;
+		return (int) (bits ^ (bits >>> 32));
+	}
+
+	private static int tableSizeFor(int capacity) {
+		int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+		return Math.max(tableSize, 8);
+	}
+}
@@ -7,27 +7,44 @@
 package util;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import basicgraph.Graph;
 import geography.GeographicPoint;
+import geography.GeometryStore;
 import geography.RoadSegment;
+import roadgraph.GraphSnapshot;
 import roadgraph.MapGraph;
 
 
 public class GraphLoader 
 {
+	/** Appended to the name of a map file to name its snapshot */
+	public static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+	// The size range of the chunks loadRoadMapParallel parses
+	private static final long MIN_CHUNK_BYTES = 1 << 20;
+	private static final long MAX_CHUNK_BYTES = 1 << 26;
 	
 	/** 
 	 * 	 * The file contains data lines as follows:
@@ -45,34 +62,25 @@ public class GraphLoader
 	 */
 	public static void createIntersectionsFile(String roadDataFile, String intersectionsFile)
 	{
-		Collection<GeographicPoint> nodes = new HashSet<GeographicPoint>();
-        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		buildPointMapOneWay(roadDataFile);
+		RoadLineTable lines = readRoadLines(roadDataFile);
 		
         // Print the intersections to the file
-		List<GeographicPoint> intersections = findIntersections(pointMap);
-		for (GeographicPoint pt : intersections) {
-			nodes.add(pt);
-		}
+		boolean[] intersections = lines.findIntersections();
 
 		try {
 			PrintWriter writer = new PrintWriter(intersectionsFile, "UTF-8");
 
 			// Now we need to add the edges
 			// This is the tricky part
-			for (GeographicPoint pt : nodes) {
-				// Trace the node to its next node, building up the points 
-				// on the edge as you go.
-				List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-				LinkedList<RoadLineInfo> outgoing = inAndOut.get(0);
-				for (RoadLineInfo info : outgoing) {
-					HashSet<GeographicPoint> used = new HashSet<GeographicPoint>();
-					used.add(pt);
-				
-					List<GeographicPoint> pointsOnEdge = 
-							findPointsOnEdge(pointMap, info, nodes);
-					GeographicPoint end = pointsOnEdge.remove(pointsOnEdge.size()-1);
-					writer.println(pt + " " + end);
+			for (int pt = 0; pt < intersections.length; pt++) {
+				if (!intersections[pt]) {
+					continue;
+				}
+				// Trace the node to its next node
+				for (int i = lines.getOutStart(pt); i < lines.getOutEnd(pt); i++) {
+					int[] pointsOnEdge = lines.traceEdge(lines.getOutLine(i), intersections);
+					writer.println(lines.getPoint(pt) + " " + 
+							lines.getPoint(pointsOnEdge[pointsOnEdge.length - 1]));
 				}
 				
 			}
@@ -134,22 +142,123 @@ public class GraphLoader
 			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
 			Set<GeographicPoint> intersectionsToLoad)
 	{
-		Collection<GeographicPoint> nodes = new HashSet<GeographicPoint>();
-        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		buildPointMapOneWay(filename);
+		loadRoadMap(readRoadLines(filename), map, segments, intersectionsToLoad);
+	}
+
+	
+	/**
+	 *  Read in a file specifying a map, parsing it on all available cores.
+	 *
+	 * The file has the format loadRoadMap reads. It is memory-mapped and
+	 * split at line boundaries into chunks, which are parsed in parallel,
+	 * each into a point map of its own. The point maps are merged in file
+	 * order, so the graph built is exactly the one loadRoadMap builds.
+	 * 
+	 * @param filename The file containing the road data, in the format 
+	 *   described.
+	 * @param map The graph to load the map into.  The graph is
+	 *   assumed to be directed.
+	 */
+	public static void loadRoadMapParallel(String filename, roadgraph.MapGraph map)
+	{
+		loadRoadMapParallel(filename, map, null, null);
+	}
+
+	
+	/**
+	 *  Read in a file specifying a map, parsing it on all available cores.
+	 *  See loadRoadMapParallel(String, MapGraph).
+	 * 
+	 * @param filename The file containing the road data, in the format 
+	 *   described.
+	 * @param map The graph to load the map into.  The graph is
+	 *   assumed to be directed.
+	 * @param segments The collection of RoadSegments that define the 
+	 *   shape of a road, or null.
+	 * @param intersectionsToLoad Receives the intersections loaded, or null.
+	 */
+	public static void loadRoadMapParallel(String filename, roadgraph.MapGraph map,  
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad)
+	{
+		loadRoadMapParallel(filename, map, segments, intersectionsToLoad, MIN_CHUNK_BYTES);
+	}
+
+	
+	/**
+	 *  Read in a map, from its binary snapshot when there is an up to date
+	 *  one. The snapshot is the file named like the map file with
+	 *  SNAPSHOT_SUFFIX appended. If it is missing, older than the map file,
+	 *  invalid or lacks the road segments asked for, the map file is read as
+	 *  loadRoadMap reads it and the snapshot is written for the next load.
+	 *  The graph, segments and intersections are the same either way, but for
+	 *  the order of the in-neighbors of a vertex. See GraphSnapshot.
+	 * 
+	 * @param filename The file containing the road data, in the format 
+	 *   loadRoadMap reads.
+	 * @param map The graph to load the map into.  It must be empty.
+	 * @param segments The collection of RoadSegments that define the 
+	 *   shape of a road, or null.
+	 * @param intersectionsToLoad Receives the intersections loaded, or null.
+	 */
+	public static void loadRoadMapWithSnapshot(String filename, roadgraph.MapGraph map,  
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad)
+	{
+		File mapFile = new File(filename);
+		File snapshot = new File(filename + SNAPSHOT_SUFFIX);
+		if (snapshot.isFile() && snapshot.lastModified() >= mapFile.lastModified()) {
+			try {
+				GraphSnapshot.read(snapshot.getPath(), map, segments, intersectionsToLoad);
+				return;
+			} catch (IOException e) {
+				System.err.println("Problem loading snapshot, reading the map file instead: " + e.getMessage());
+			}
+		}
+		
+		loadRoadMap(filename, map, segments, intersectionsToLoad);
+		if (map.getNumVertices() > 0) {
+			try {
+				GraphSnapshot.write(snapshot.getPath(), map, segments);
+			} catch (IOException e) {
+				System.err.println("Problem writing snapshot: " + e.getMessage());
+			}
+		}
+	}
+
+	
+	// Parallel load with the smallest chunk size given, so that tests can
+	// split small files
+	static void loadRoadMapParallel(String filename, roadgraph.MapGraph map,  
+			HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad, long minChunkBytes)
+	{
+		loadRoadMap(readRoadLinesParallel(filename, minChunkBytes), map, segments, intersectionsToLoad);
+	}
+
+	
+	// Add the intersections of the lines of a map to the graph, in the
+	// order they first appear, and the roads between them
+	private static void loadRoadMap(RoadLineTable lines,
+			roadgraph.MapGraph map, HashMap<GeographicPoint,HashSet<RoadSegment>> segments, 
+			Set<GeographicPoint> intersectionsToLoad)
+	{
+		boolean[] intersections = lines.findIntersections();
+		GeographicPoint[] nodes = new GeographicPoint[intersections.length];
 		
         // Add the nodes to the graph
-		List<GeographicPoint> intersections = findIntersections(pointMap);
-		for (GeographicPoint pt : intersections) {
-			map.addVertex(pt);
-			if (intersectionsToLoad != null) {
-				intersectionsToLoad.add(pt);
+		for (int pt = 0; pt < intersections.length; pt++) {
+			if (intersections[pt]) {
+				nodes[pt] = lines.getPoint(pt);
+				map.addVertex(nodes[pt]);
+				if (intersectionsToLoad != null) {
+					intersectionsToLoad.add(nodes[pt]);
+				}
 			}
-			nodes.add(pt);
 		}
 		
 		
-		addEdgesAndSegments(nodes, pointMap, map, segments);
+		addEdgesAndSegments(lines, intersections, nodes, map, segments);
 	}
 
 	
@@ -173,38 +282,30 @@ public class GraphLoader
 	 */
 	public static void loadRoadMap(String filename, basicgraph.Graph theGraph)
 	{
-		HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		buildPointMapOneWay(filename);
-		
-		HashMap<Integer,GeographicPoint> vertexMap = 
-				new HashMap<Integer,GeographicPoint>();
-		HashMap<GeographicPoint,Integer> reverseMap = 
-				new HashMap<GeographicPoint,Integer>();
+		RoadLineTable lines = readRoadLines(filename);
 		
         // Add the nodes to the graph
-		List<GeographicPoint> intersections = findIntersections(pointMap);
+		boolean[] intersections = lines.findIntersections();
+		int[] vertexNumbers = new int[intersections.length];
 		
 		int index = 0;
-		for (GeographicPoint pt : intersections) {
-			theGraph.addVertex();
-			vertexMap.put(index, pt);
-			reverseMap.put(pt, index);
-			index++;
+		for (int pt = 0; pt < intersections.length; pt++) {
+			if (intersections[pt]) {
+				theGraph.addVertex();
+				vertexNumbers[pt] = index;
+				index++;
+			}
 		}
 		
 		// Now add the edges
-		Collection<Integer> nodes = vertexMap.keySet();
-		for (Integer nodeNum : nodes) {
-			// Trace the node to its next node, building up the points 
-			// on the edge as you go.
-			GeographicPoint pt = vertexMap.get(nodeNum);
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-			List<RoadLineInfo> infoList = inAndOut.get(0);
-			for (RoadLineInfo info : infoList) {
-				GeographicPoint end = findEndOfEdge(pointMap, info, theGraph, 
-						reverseMap);
-				Integer endNum = reverseMap.get(end);
-				theGraph.addEdge(nodeNum, endNum);
+		for (int pt = 0; pt < intersections.length; pt++) {
+			if (!intersections[pt]) {
+				continue;
+			}
+			// Trace the node to its next node
+			for (int i = lines.getOutStart(pt); i < lines.getOutEnd(pt); i++) {
+				int[] pointsOnEdge = lines.traceEdge(lines.getOutLine(i), intersections);
+				theGraph.addEdge(vertexNumbers[pt], vertexNumbers[pointsOnEdge[pointsOnEdge.length - 1]]);
 			}
 		}
 	}
@@ -319,50 +420,63 @@ public class GraphLoader
 	
 
 	
-	// Once you have built the pointMap and added the Nodes, 
+	// Once you have found the intersections and added the Nodes, 
 	// add the edges and build the road segments if the segments
-	// map is not null.
-	private static void addEdgesAndSegments(Collection<GeographicPoint> nodes, 
-			HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
-			MapGraph map, 
+	// map is not null. The intermediate points of the segments are kept
+	// in a GeometryStore over the coordinates of the table and only made
+	// into GeographicPoints when a segment is asked for them.
+	private static void addEdgesAndSegments(RoadLineTable lines, boolean[] intersections,
+			GeographicPoint[] nodes, MapGraph map, 
 			HashMap<GeographicPoint,HashSet<RoadSegment>> segments)
 	{
+		GeometryStore geometry = segments != null ? 
+				new GeometryStore(lines.latitudes(), lines.longitudes()) : null;
 	
 		// Now we need to add the edges
 		// This is the tricky part
-		for (GeographicPoint pt : nodes) {
+		for (int node = 0; node < intersections.length; node++) {
+			if (!intersections[node]) {
+				continue;
+			}
+			GeographicPoint pt = nodes[node];
 			// Trace the node to its next node, building up the points 
 			// on the edge as you go.
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(pt);
-			LinkedList<RoadLineInfo> outgoing = inAndOut.get(0);
-			for (RoadLineInfo info : outgoing) {
-				HashSet<GeographicPoint> used = new HashSet<GeographicPoint>();
-				used.add(pt);
-				
-				List<GeographicPoint> pointsOnEdge = 
-						findPointsOnEdge(pointMap, info, nodes);
-				GeographicPoint end = pointsOnEdge.remove(pointsOnEdge.size()-1);
-				double length = getRoadLength(pt, end, pointsOnEdge);
-				map.addEdge(pt, end, info.roadName, info.roadType, length);
+			for (int i = lines.getOutStart(node); i < lines.getOutEnd(node); i++) {
+				int line = lines.getOutLine(i);
+				int[] pointsOnEdge = lines.traceEdge(line, intersections);
+				GeographicPoint end = nodes[pointsOnEdge[pointsOnEdge.length - 1]];
+				String roadName = lines.getRoadName(line);
+				String roadType = lines.getRoadType(line);
+				double length = getRoadLength(lines, node, pointsOnEdge);
+				map.addEdge(pt, end, roadName, roadType, length);
 
 				// If the segments variable is not null, then we 
 				// save the road geometry
 				if (segments != null) {
 					// Now create road Segments for each edge
+					int start = geometry.size();
+					for (int j = 0; j < pointsOnEdge.length - 1; j++) {
+						geometry.add(pointsOnEdge[j]);
+					}
+					RoadSegment seg = new RoadSegment(pt, end, geometry, start, geometry.size(), 
+							roadName, roadType, length);
 					HashSet<RoadSegment> segs = segments.get(pt);
 					if (segs == null) {
 						segs = new HashSet<RoadSegment>();
 						segments.put(pt,segs);
 					}
-					RoadSegment seg = new RoadSegment(pt, end, pointsOnEdge, 
-							info.roadName, info.roadType, length);
-					segs.add(seg);
+					boolean added = segs.add(seg);
 					segs = segments.get(end);
 					if (segs == null) {
 						segs = new HashSet<RoadSegment>();
 						segments.put(end,segs);
 					}
-					segs.add(seg);
+					added |= segs.add(seg);
+					// The other direction of a two way road is an equal
+					// segment, already there
+					if (!added) {
+						geometry.truncate(start);
+					}
 				}
 			}
 		}
@@ -371,231 +485,113 @@ public class GraphLoader
 	
 	// Calculate the length of this road segment taking into account all of the 
 	// intermediate geographic points.
-	private static double getRoadLength(GeographicPoint start, GeographicPoint end,
-			List<GeographicPoint> path)
+	private static double getRoadLength(RoadLineTable lines, int start, int[] path)
 	{
 		double dist = 0.0;
-		GeographicPoint curr = start;
-		for (GeographicPoint next : path) {
-			dist += curr.distance(next);
+		int curr = start;
+		for (int next : path) {
+			dist += GeographicPoint.distance(lines.getLatitude(curr), lines.getLongitude(curr),
+					lines.getLatitude(next), lines.getLongitude(next));
 			curr = next;
 		}
-		dist += curr.distance(end);
 		return dist;
 	}
 	
-	private static List<GeographicPoint>
-	findPointsOnEdge(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
-		RoadLineInfo info, Collection<GeographicPoint> nodes) 
+	// Read the lines of a map file into a table
+	private static RoadLineTable readRoadLines(String filename)
 	{
-		List<GeographicPoint> toReturn = new LinkedList<GeographicPoint>();
-		GeographicPoint pt = info.point1;
-		GeographicPoint end = info.point2;
-		List<LinkedList<RoadLineInfo>> nextInAndOut = pointMap.get(end);
-		LinkedList<RoadLineInfo> nextLines = nextInAndOut.get(0);
-		while (!nodes.contains(end)) {
-			toReturn.add(end);
-			RoadLineInfo nextInfo = nextLines.get(0);
-			if (nextLines.size() == 2) {
-				if (nextInfo.point2.equals(pt)) {
-					nextInfo = nextLines.get(1);
-				}
-			}
-			else if (nextLines.size() != 1) {
-				System.out.println("Something went wrong building edges");
-			}
-			pt = end;
-			end = nextInfo.point2;
-			nextInAndOut = pointMap.get(end);
-			nextLines = nextInAndOut.get(0);
-		}
-		toReturn.add(end);
+		RoadLineTable lines = new RoadLineTable();
+		try (RoadLineReader reader = new RoadLineReader(new FileReader(filename))) {
+			lines = RoadLineTable.read(reader);
+        } catch (IOException e) {
+            System.err.println("Problem loading map file: " + filename);
+            e.printStackTrace();
+        }
 		
-		return toReturn;
+		return lines;
 	}
 
-	// Find the other end of the road segment.  Trace through the pointMap 
-	// starting from the first point in this info until you get to the second.
-	private static GeographicPoint
-	findEndOfEdge(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap,
-		RoadLineInfo info, basicgraph.Graph graph, 
-		HashMap<GeographicPoint, Integer> reverseMap) 
+
+	// Read the same table as readRoadLines, parsing chunks of the file in
+	// parallel. Every chunk is read into a table of its own, and adding the
+	// tables up in file order gives the points the ids readRoadLines does.
+	private static RoadLineTable readRoadLinesParallel(String filename, long minChunkBytes)
 	{
-		
-		GeographicPoint pt = info.point1;
-		GeographicPoint end = info.point2;
-		Integer endNum = reverseMap.get(end);
-		while (endNum==null) {
-			List<LinkedList<RoadLineInfo>> inAndOut = pointMap.get(end);
-			List<RoadLineInfo> nextLines = inAndOut.get(0);
-			RoadLineInfo nextInfo = nextLines.get(0);
-			if (nextLines.size() == 2) {
-				if (nextInfo.point2.equals(pt)) {
-					nextInfo = nextLines.get(1);
-				}
-			}
-			else if (nextLines.size() != 1) {
-				System.out.println("Something went wrong building edges");
+		RoadLineTable lines = new RoadLineTable();
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long[] bounds = chunkBounds(channel, minChunkBytes);
+			List<RoadLineTable> chunks = IntStream.range(0, bounds.length - 1).parallel()
+					.mapToObj(i -> readChunk(channel, bounds[i], bounds[i + 1]))
+					.collect(Collectors.toList());
+
+			for (RoadLineTable chunk : chunks) {
+				lines.addAll(chunk);
 			}
-			pt = end;
-			end = nextInfo.point2;
-			endNum = reverseMap.get(end);
+		} catch (IOException | UncheckedIOException e) {
+            System.err.println("Problem loading map file: " + filename);
+            e.printStackTrace();
 		}
 		
-		return end;
+		return lines;
 	}
+
 	
-	// Find all the intersections.  Intersections are either dead ends 
-	// (1 road in and 1 road out, which are the reverse of each other)
-	// or intersections between two different roads, or where three
-	// or more segments of the same road meet.
-	private static List<GeographicPoint> 
-	findIntersections(HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap) {
-		// Now find the intersections.  These are roads that do not have
-		// Exactly 1 or 2 roads coming in and out, where the roads in
-		// match the roads out.
-		List<GeographicPoint> intersections = new LinkedList<GeographicPoint>();
-		for (GeographicPoint pt : pointMap.keySet()) {
-			List<LinkedList<RoadLineInfo>> roadsInAndOut = pointMap.get(pt);
-			LinkedList<RoadLineInfo> roadsOut = roadsInAndOut.get(0);
-			LinkedList<RoadLineInfo> roadsIn = roadsInAndOut.get(1);
-			
-			boolean isNode = true;
-			
-			if (roadsIn.size() == 1 && roadsOut.size() == 1) {
-				// If these are the reverse of each other, then this is
-				// and intersection (dead end)
-				if (!(roadsIn.get(0).point1.equals(roadsOut.get(0).point2) &&
-						roadsIn.get(0).point2.equals(roadsOut.get(0).point1))
-						&& roadsIn.get(0).roadName.equals(roadsOut.get(0).roadName)) {
-					isNode = false;
-				}
-			}
-			if (roadsIn.size() == 2 && roadsOut.size() == 2) {
-				// If all the road segments have the same name, 
-				// And there are two pairs of reversed nodes, then 
-				// this is not an intersection because the roads pass
-				// through.
-			
-				String name = roadsIn.get(0).roadName;
-				boolean sameName = true;
-				for (RoadLineInfo info : roadsIn) {
-					if (!info.roadName.equals(name)) {
-						sameName = false;
-					}
+	// Split a file into chunks of whole lines: chunk i is the bytes
+	// bounds[i] .. bounds[i+1]-1. Aims for a few chunks per core, none
+	// smaller than minChunkBytes unless the file is, and none larger than
+	// MAX_CHUNK_BYTES.
+	private static long[] chunkBounds(FileChannel channel, long minChunkBytes) throws IOException
+	{
+		long size = channel.size();
+		long chunks = Math.min(4L * ForkJoinPool.getCommonPoolParallelism(), size / minChunkBytes);
+		chunks = Math.max(chunks, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+		chunks = Math.max(chunks, 1);
+
+		long[] bounds = new long[(int) chunks + 1];
+		int count = 1;
+		ByteBuffer window = ByteBuffer.allocate(8192);
+		for (long i = 1; i < chunks; i++) {
+			// Move the cut forward to the start of the next line. In UTF-8
+			// and the single byte charsets a '\n' byte is always a newline.
+			long position = size * i / chunks;
+			long cut = size;
+			while (position < size && cut == size) {
+				window.clear();
+				int read = channel.read(window, position);
+				if (read <= 0) {
+					break;
 				}
-				for (RoadLineInfo info : roadsOut) {
-					if (!info.roadName.equals(name)) {
-						sameName = false;
+				for (int j = 0; j < read; j++) {
+					if (window.get(j) == '\n') {
+						cut = position + j + 1;
+						break;
 					}
 				}
-				
-				RoadLineInfo in1 = roadsIn.get(0);
-				RoadLineInfo in2 = roadsIn.get(1);
-				RoadLineInfo out1 = roadsOut.get(0);
-				RoadLineInfo out2 = roadsOut.get(1);
-		
-				boolean passThrough = false;
-				if ((in1.isReverse(out1) && in2.isReverse(out2)) ||
-						(in1.isReverse(out2) && in2.isReverse(out1))) {
-					
-					passThrough = true;
-				} 
-				
-				if (sameName && passThrough) {
-					isNode = false;
-				} 
-
-			} 
-			if (isNode) {
-				intersections.add(pt);
+				position += read;
+			}
+			if (cut > bounds[count - 1] && cut < size) {
+				bounds[count++] = cut;
 			}
 		}
-		return intersections;
-	}
-		
-	// Build the map from points to lists of lists of lines.
-	// The map returned is indexed by a GeographicPoint.  The values
-	// are lists of length two where each entry in the list is a list.
-	// The first list stores the outgoing roads while the second 
-	// stores the outgoing roads.
-	private static HashMap<GeographicPoint, List<LinkedList<RoadLineInfo>>>
-	buildPointMapOneWay(String filename)
-	{
-		BufferedReader reader = null;
-        HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> pointMap = 
-        		new HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>>();
-		try {
-            String nextLine;
-            reader = new BufferedReader(new FileReader(filename));
-            // Read the lines out of the file and put them in a HashMap by points
-            while ((nextLine = reader.readLine()) != null) {
-            	RoadLineInfo line = splitInputString(nextLine);
-            	addToPointsMapOneWay(line, pointMap);
-            }
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("Problem loading dictionary file: " + filename);
-            e.printStackTrace();
-        }
-		
-		return pointMap;
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
 	}
 
-
-	// Add the next line read from the file to the points map.
-	private static void 
-	addToPointsMapOneWay(RoadLineInfo line,
-						HashMap<GeographicPoint,List<LinkedList<RoadLineInfo>>> map)
-	{
-		List<LinkedList<RoadLineInfo>> pt1Infos = map.get(line.point1);
-		if (pt1Infos == null) {
-			pt1Infos = new ArrayList<LinkedList<RoadLineInfo>>();
-			pt1Infos.add(new LinkedList<RoadLineInfo>());
-			pt1Infos.add(new LinkedList<RoadLineInfo>());
-			map.put(line.point1, pt1Infos);
-		}
-		List<RoadLineInfo> outgoing = pt1Infos.get(0);
-		outgoing.add(line);
-		
-		List<LinkedList<RoadLineInfo>> pt2Infos = map.get(line.point2);
-		if (pt2Infos == null) {
-			pt2Infos = new ArrayList<LinkedList<RoadLineInfo>>();
-			pt2Infos.add(new LinkedList<RoadLineInfo>());
-			pt2Infos.add(new LinkedList<RoadLineInfo>());
-			map.put(line.point2, pt2Infos);
-		}
-		List<RoadLineInfo> incoming = pt2Infos.get(1);
-		incoming.add(line);
-		
-	}
 	
-	// Split the input string into the line information
-	private static RoadLineInfo splitInputString(String input)
-	{	
-		
-		ArrayList<String> tokens = new ArrayList<String>();
-		Pattern tokSplitter = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"");
-		Matcher m = tokSplitter.matcher(input);
-		
-		while (m.find()) {
-			if (m.group(1) != null) {
-				tokens.add(m.group(1));	
-			}
-			else {
-				tokens.add(m.group());
-			}
+	// Parse the lines of one chunk of a file into a table
+	private static RoadLineTable readChunk(FileChannel channel, long start, long end)
+	{
+		try {
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			// Decoded as FileReader decodes
+			CharBuffer chars = Charset.defaultCharset().newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE)
+					.decode(bytes);
+			return RoadLineTable.read(new RoadLineReader(chars.array(), chars.limit()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-
-    	double lat1 = Double.parseDouble(tokens.get(0));
-        double lon1 = Double.parseDouble(tokens.get(1));
-        double lat2 = Double.parseDouble(tokens.get(2));
-        double lon2 = Double.parseDouble(tokens.get(3));
-        GeographicPoint p1 = new GeographicPoint(lat1, lon1);
-        GeographicPoint p2 = new GeographicPoint(lat2, lon2);
-
-        return new RoadLineInfo(p1, p2, tokens.get(4), tokens.get(5));
-		
 	}
 	
 	public static void main(String[] args)
@@ -613,104 +609,4 @@ public class GraphLoader
 
 	}
 	
-}	
-	
-
-// A class to store information about the lines in the road files.
-class RoadLineInfo
-{
-	GeographicPoint point1;
-	GeographicPoint point2;
-	
-	String roadName;
-	String roadType;
-	
-	/** Create a new RoadLineInfo object to store information about the line 
-	 * read from the file
-	 * @param p1 One of the points
-	 * @param p2 The other point
-	 * @param roadName The name of the road
-	 * @param roadType The type of the road
-	 */
-	RoadLineInfo(GeographicPoint p1, GeographicPoint p2, String roadName, String roadType) 
-	{
-		point1 = p1;
-		point2 = p2;
-		this.roadName = roadName;
-		this.roadType = roadType;
-	}
-	
-	
-	/** Get the other point from this roadLineInfo */
-	public GeographicPoint getOtherPoint(GeographicPoint pt)
-	{
-		if (pt == null) throw new IllegalArgumentException();
-		if (pt.equals(point1)) {
-			return point2;
-		}
-		else if (pt.equals(point2)) {
-			return point1;
-		}
-		else throw new IllegalArgumentException();
-	}
-	
-	/** Two RoadLineInfo objects are considered equal if they have the same
-	 * two points and the same roadName and roadType.
-	 */
-	public boolean equals(Object o)
-	{
-		if (o == null || !(o instanceof RoadLineInfo))
-		{
-			return false;
-		}
-		RoadLineInfo info = (RoadLineInfo)o;
-		return info.point1.equals(this.point1) && info.point2.equals(this.point2)  &&
-				info.roadType.equals(this.roadType) && info.roadName.equals(this.roadName);
-				
-	}
-	
-	/** Calculate the hashCode based on the hashCodes of the two points
-	 * @return The hashcode for this object.
-	 */
-	public int hashCode()
-	{
-		return point1.hashCode() + point2.hashCode();
-		
-	}
-	
-	/** Returns whether these segments are part of the same road in terms of
-	 * road name and road type.
-	 * @param info The RoadLineInfo to compare against.
-	 * @return true if these represent the same road, false otherwise.
-	 */
-	public boolean sameRoad(RoadLineInfo info)
-	{
-		return info.roadName.equals(this.roadName) && info.roadType.equals(this.roadType);
-	}
-	
-	/** Return a copy of this LineInfo in the other direction */
-	public RoadLineInfo getReverseCopy()
-	{
-		return new RoadLineInfo(this.point2, this.point1, this.roadName, this.roadType);
-	}
-	
-	/** Return true if this road is the same segment as other, but in reverse
-	 *   Otherwise return false.
-	 */
-	public boolean isReverse(RoadLineInfo other)
-	{
-		return this.point1.equals(other.point2) && this.point2.equals(other.point1) &&
-				this.roadName.equals(other.roadName) && this.roadType.equals(other.roadType);
-	}
-	
-	/** Return the string representation of this LineInfo. */
-	public String toString()
-	{
-		return this.point1 + " " + this.point2 + " " + this.roadName + " " + this.roadType;
-		
-	}
-	
-	
-	
-	
 }
@@ -0,0 +1,82 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints in one primitive array, for the vertex and point
+ * ids the searches and spatial indexes collect, without boxing them into a
+ * List of Integers. It can also be used as a stack through add, get and
+ * removeLast.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public final class IntList {
+
+	private int[] values;
+	private int size;
+
+	/**
+	 * Create a new empty IntList
+	 */
+	public IntList() {
+		values = new int[8];
+	}
+
+	/**
+	 * Get the number of values in the list
+	 *
+	 * @return The number of values added and not removed.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Add a value to the end of the list
+	 *
+	 * @param value
+	 *            The value to add
+	 */
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Get a value of the list
+	 *
+	 * @param index
+	 *            The position of the value, 0 .. size()-1
+	 * @return The value at that position
+	 */
+	public int get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		}
+		return values[index];
+	}
+
+	/**
+	 * Remove the last value of the list
+	 *
+	 * @return The value removed
+	 */
+	public int removeLast() {
+		if (size == 0) {
+			throw new IndexOutOfBoundsException("The list is empty");
+		}
+		return values[--size];
+	}
+
+	/**
+	 * Copy the values into an array
+	 *
+	 * @return A new array of the values, in order
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
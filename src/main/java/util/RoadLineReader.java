@@ -0,0 +1,354 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the lines of a .map file one at a time, without regular expressions
+ * or an object per line: advance() reads the next line and the getters return
+ * its two points, road name and road type. Characters are read in large
+ * blocks into one char buffer and every line is tokenized in place: the four
+ * coordinates are parsed straight from the buffer and the road name and road
+ * type are looked up in a small cache of the strings seen so far, so a name
+ * shared by many lines becomes a String only once.
+ *
+ * Tokens follow the rules of the pattern GraphLoader used to split lines
+ * with, [^\s"']+|"([^"]*)": a token is either a run of characters other than
+ * whitespace and quotes, or the text between two double quotes. A quote with
+ * no closing quote on its line, and any single quote outside double quotes,
+ * only separates tokens.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+final class RoadLineReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// A decimal of at most 15 digits is an integer below 2^53 divided by a
+	// power of ten up to 1e15. Both are exact doubles, so their quotient is
+	// correctly rounded, just as Double.parseDouble would round it.
+	private static final int MAX_EXACT_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15 };
+
+	private static final int STRING_CACHE_SIZE = 1 << 12;
+
+	// The characters that end an unquoted token, as bit masks over the
+	// first 64 chars: the whitespace of \s in a regular expression, and both
+	// kinds of quote
+	private static final long WHITESPACE = 1L << ' ' | 1L << '\t' | 1L << '\n' | 1L << '\u000B' | 1L << '\f'
+			| 1L << '\r';
+	private static final long SEPARATORS = WHITESPACE | 1L << '"' | 1L << '\'';
+
+	private final Reader in;
+	private char[] buffer;
+	// The unread characters are buffer[position] .. buffer[limit-1]
+	private int position;
+	private int limit;
+	private boolean endOfInput;
+	private boolean afterCarriageReturn;
+	private int lineNumber;
+
+	// Token boundaries of the current line, as offsets into buffer
+	private final int[] tokenStart = new int[6];
+	private final int[] tokenEnd = new int[6];
+
+	private final String[] stringCache = new String[STRING_CACHE_SIZE];
+
+	// The line read by the last call of advance()
+	private double latitude1;
+	private double longitude1;
+	private double latitude2;
+	private double longitude2;
+	private String roadName;
+	private String roadType;
+
+	/**
+	 * Create a reader over the characters of a .map file
+	 *
+	 * @param in
+	 *            The characters to read. Closed by close().
+	 */
+	RoadLineReader(Reader in) {
+		this.in = in;
+		this.buffer = new char[BUFFER_SIZE];
+	}
+
+	/**
+	 * Create a reader over characters already in memory, such as one decoded
+	 * chunk of a memory-mapped file
+	 *
+	 * @param chars
+	 *            The array holding the characters. It is read, not copied.
+	 * @param length
+	 *            The number of characters, from the start of the array
+	 */
+	RoadLineReader(char[] chars, int length) {
+		this.in = null;
+		this.buffer = chars;
+		this.limit = length;
+		this.endOfInput = true;
+	}
+
+	/**
+	 * Read the next line of road data, skipping blank lines, without making
+	 * objects for it. The values of the line are then returned by the getters
+	 * until the next call.
+	 *
+	 * @return true if a line was read, false at the end of the input.
+	 * @throws IOException
+	 *             If the input cannot be read.
+	 * @throws IllegalArgumentException
+	 *             If a line has fewer than six tokens or a coordinate is not a
+	 *             number.
+	 */
+	boolean advance() throws IOException {
+		while (true) {
+			int tokens = tokenizeLine();
+			if (tokens < 0) {
+				return false;
+			}
+
+			lineNumber++;
+			if (tokens == 0) {
+				continue;
+			}
+			if (tokens < 6) {
+				throw new IllegalArgumentException("Line " + lineNumber + ": expected 6 tokens");
+			}
+
+			latitude1 = parseDouble(0);
+			longitude1 = parseDouble(1);
+			latitude2 = parseDouble(2);
+			longitude2 = parseDouble(3);
+			roadName = string(4);
+			roadType = string(5);
+			return true;
+		}
+	}
+
+	double getLatitude1() {
+		return latitude1;
+	}
+
+	double getLongitude1() {
+		return longitude1;
+	}
+
+	double getLatitude2() {
+		return latitude2;
+	}
+
+	double getLongitude2() {
+		return longitude2;
+	}
+
+	String getRoadName() {
+		return roadName;
+	}
+
+	String getRoadType() {
+		return roadType;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+		}
+	}
+
+	// Find the first six tokens of the line at position in a single pass and
+	// move position past the line and its terminator. The tokens stay valid
+	// until the next call. Returns how many tokens there are, or -1 if there
+	// is no input left.
+	private int tokenizeLine() throws IOException {
+		if (afterCarriageReturn) {
+			if (position == limit && !endOfInput) {
+				fill();
+			}
+			if (position < limit && buffer[position] == '\n') {
+				position++;
+			}
+			afterCarriageReturn = false;
+		}
+
+		while (true) {
+			int count = 0;
+			int i = position;
+
+			// Stops at the end of the line, or at the end of the buffered
+			// input, in which case the line is read again after a refill
+			while (i < limit) {
+				char c = buffer[i];
+				if (c == '\n' || c == '\r') {
+					break;
+				} else if (c == '"') {
+					int close = i + 1;
+					while (close < limit && buffer[close] != '"' && buffer[close] != '\n' && buffer[close] != '\r') {
+						close++;
+					}
+					if (close == limit && !endOfInput) {
+						i = limit;
+					} else if (close < limit && buffer[close] == '"') {
+						count = addToken(count, i + 1, close);
+						i = close + 1;
+					} else {
+						// No closing quote on this line
+						i++;
+					}
+				} else if (c == '\'' || isWhitespace(c)) {
+					i++;
+				} else {
+					int tokenEnds = i + 1;
+					while (tokenEnds < limit && !isSeparator(buffer[tokenEnds])) {
+						tokenEnds++;
+					}
+					count = addToken(count, i, tokenEnds);
+					i = tokenEnds;
+				}
+			}
+
+			if (i < limit || endOfInput) {
+				if (i == position && i == limit) {
+					return -1;
+				}
+				position = i;
+				skipLineTerminator();
+				return count;
+			}
+			fill();
+		}
+	}
+
+	private int addToken(int count, int start, int end) {
+		if (count < tokenStart.length) {
+			tokenStart[count] = start;
+			tokenEnd[count] = end;
+		}
+		return count + 1;
+	}
+
+	// Move the unread characters to the front of the buffer, growing it for
+	// a line longer than the buffer, and read more behind them
+	private void fill() throws IOException {
+		int unread = limit - position;
+		if (unread == buffer.length) {
+			char[] larger = new char[buffer.length * 2];
+			System.arraycopy(buffer, position, larger, 0, unread);
+			buffer = larger;
+		} else {
+			System.arraycopy(buffer, position, buffer, 0, unread);
+		}
+		position = 0;
+		limit = unread;
+
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			endOfInput = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	// Skip one \n, \r or \r\n at position without reading more input, which
+	// would move the tokens of the line. A \r at the end of the buffered input
+	// leaves its \n to be skipped by the next call of tokenizeLine.
+	private void skipLineTerminator() {
+		if (position < limit && buffer[position] == '\n') {
+			position++;
+		} else if (position < limit && buffer[position] == '\r') {
+			position++;
+			if (position < limit) {
+				if (buffer[position] == '\n') {
+					position++;
+				}
+			} else if (!endOfInput) {
+				afterCarriageReturn = true;
+			}
+		}
+	}
+
+	private static boolean isSeparator(char c) {
+		return c < 64 && ((SEPARATORS >>> c) & 1) != 0;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c < 64 && ((WHITESPACE >>> c) & 1) != 0;
+	}
+
+	// Parse a token as a double. Plain decimals of at most 15 digits, such
+	// as every coordinate of the maps, are converted exactly here; anything
+	// else, such as exponents or long fractions, goes to Double.parseDouble.
+	private double parseDouble(int token) {
+		int i = tokenStart[token];
+		int end = tokenEnd[token];
+		boolean negative = false;
+
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+
+		// At most 15 digits, plus a point
+		int length = end - i;
+		if (length == 0 || length > MAX_EXACT_DIGITS + 1) {
+			return slowParse(token);
+		}
+
+		long mantissa = 0;
+		int point = -1;
+		for (; i < end; i++) {
+			int digit = buffer[i] - '0';
+			if (digit >= 0 && digit <= 9) {
+				mantissa = mantissa * 10 + digit;
+			} else if (buffer[i] == '.' && point < 0 && length > 1) {
+				point = i;
+			} else {
+				return slowParse(token);
+			}
+		}
+		if (point < 0 && length > MAX_EXACT_DIGITS) {
+			return slowParse(token);
+		}
+
+		double value = point < 0 ? mantissa : mantissa / POWERS_OF_TEN[end - point - 1];
+		return negative ? -value : value;
+	}
+
+	private double slowParse(int token) {
+		return Double.parseDouble(new String(buffer, tokenStart[token], tokenEnd[token] - tokenStart[token]));
+	}
+
+	// The token as a String, shared with earlier tokens of the same text
+	private String string(int token) {
+		int start = tokenStart[token];
+		int length = tokenEnd[token] - start;
+
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer[start + i];
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+		String cached = stringCache[slot];
+		if (cached != null && cached.length() == length && cached.hashCode() == hash && matches(cached, start)) {
+			return cached;
+		}
+
+		String value = new String(buffer, start, length);
+		stringCache[slot] = value;
+		return value;
+	}
+
+	private boolean matches(String value, int start) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) != buffer[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,312 @@
+package util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import geography.GeographicPoint;
+
+/**
+ * The lines of a .map file, held in primitive arrays so that a large map can
+ * be collapsed into its intersections without an object per point or line.
+ * Points get dense ids in the order they first appear, through a
+ * CoordinateMap, and road names and types are interned in StringTables. A
+ * line is its two point ids and its name and type ids, four ints in parallel
+ * arrays.
+ *
+ * The lines leaving and entering every point are indexed in CSR form, in file
+ * order, which is all findIntersections and traceEdge need: both run in time
+ * linear in the number of lines.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+final class RoadLineTable {
+
+	private final CoordinateMap points;
+	private final StringTable roadNames;
+	private final StringTable roadTypes;
+
+	// Line l goes from point lineFrom[l] to lineTo[l]
+	private int[] lineFrom;
+	private int[] lineTo;
+	private int[] lineName;
+	private int[] lineType;
+	private int numberOfLines;
+
+	// outStart[p] .. outStart[p+1]-1 index in outLines the lines leaving p,
+	// and inStart/inLines those entering p. Built on first use.
+	private int[] outStart;
+	private int[] outLines;
+	private int[] inStart;
+	private int[] inLines;
+
+	RoadLineTable() {
+		points = new CoordinateMap();
+		roadNames = new StringTable();
+		roadTypes = new StringTable();
+		lineFrom = new int[16];
+		lineTo = new int[16];
+		lineName = new int[16];
+		lineType = new int[16];
+	}
+
+	/**
+	 * Read every line of a reader into a new table
+	 *
+	 * @param reader
+	 *            The lines to read
+	 * @return The table of the lines read
+	 * @throws IOException
+	 *             If the input cannot be read.
+	 */
+	static RoadLineTable read(RoadLineReader reader) throws IOException {
+		RoadLineTable table = new RoadLineTable();
+		while (reader.advance()) {
+			table.add(reader.getLatitude1(), reader.getLongitude1(), reader.getLatitude2(),
+					reader.getLongitude2(), reader.getRoadName(), reader.getRoadType());
+		}
+		return table;
+	}
+
+	int getNumPoints() {
+		return points.size();
+	}
+
+	int getNumLines() {
+		return numberOfLines;
+	}
+
+	/** A new GeographicPoint at the location of a point */
+	GeographicPoint getPoint(int point) {
+		return new GeographicPoint(points.getLatitude(point), points.getLongitude(point));
+	}
+
+	double getLatitude(int point) {
+		return points.getLatitude(point);
+	}
+
+	double getLongitude(int point) {
+		return points.getLongitude(point);
+	}
+
+	/** A copy of the latitude of every point, by id */
+	double[] latitudes() {
+		return points.latitudes();
+	}
+
+	/** A copy of the longitude of every point, by id */
+	double[] longitudes() {
+		return points.longitudes();
+	}
+
+	String getRoadName(int line) {
+		return roadNames.get(lineName[line]);
+	}
+
+	String getRoadType(int line) {
+		return roadTypes.get(lineType[line]);
+	}
+
+	/** The first position in getOutLine of the lines leaving a point */
+	int getOutStart(int point) {
+		index();
+		return outStart[point];
+	}
+
+	/** The position after the last line leaving a point */
+	int getOutEnd(int point) {
+		index();
+		return outStart[point + 1];
+	}
+
+	int getOutLine(int position) {
+		return outLines[position];
+	}
+
+	/**
+	 * Add a line, going from its first point to its second
+	 */
+	void add(double latitude1, double longitude1, double latitude2, double longitude2, String roadName,
+			String roadType) {
+		add(points.add(latitude1, longitude1), points.add(latitude2, longitude2), roadNames.intern(roadName),
+				roadTypes.intern(roadType));
+	}
+
+	/**
+	 * Add the lines of another table after the lines of this one. Points and
+	 * strings new to this table get ids in the order the other table has
+	 * them, so reading a file in chunks and adding the chunks in order gives
+	 * the table reading the whole file would.
+	 *
+	 * @param other
+	 *            The table whose lines are added
+	 */
+	void addAll(RoadLineTable other) {
+		int[] pointIds = new int[other.points.size()];
+		for (int p = 0; p < pointIds.length; p++) {
+			pointIds[p] = points.add(other.points.getLatitude(p), other.points.getLongitude(p));
+		}
+		int[] nameIds = new int[other.roadNames.size()];
+		for (int i = 0; i < nameIds.length; i++) {
+			nameIds[i] = roadNames.intern(other.roadNames.get(i));
+		}
+		int[] typeIds = new int[other.roadTypes.size()];
+		for (int i = 0; i < typeIds.length; i++) {
+			typeIds[i] = roadTypes.intern(other.roadTypes.get(i));
+		}
+
+		for (int line = 0; line < other.numberOfLines; line++) {
+			add(pointIds[other.lineFrom[line]], pointIds[other.lineTo[line]], nameIds[other.lineName[line]],
+					typeIds[other.lineType[line]]);
+		}
+	}
+
+	private void add(int from, int to, int name, int type) {
+		if (numberOfLines == lineFrom.length) {
+			int capacity = numberOfLines * 2;
+			lineFrom = Arrays.copyOf(lineFrom, capacity);
+			lineTo = Arrays.copyOf(lineTo, capacity);
+			lineName = Arrays.copyOf(lineName, capacity);
+			lineType = Arrays.copyOf(lineType, capacity);
+		}
+
+		lineFrom[numberOfLines] = from;
+		lineTo[numberOfLines] = to;
+		lineName[numberOfLines] = name;
+		lineType[numberOfLines] = type;
+		numberOfLines++;
+		outStart = null;
+	}
+
+	/**
+	 * Find all the intersections. Intersections are either dead ends (1 road
+	 * in and 1 road out, which are the reverse of each other) or intersections
+	 * between two different roads, or where three or more segments of the
+	 * same road meet.
+	 *
+	 * @return Whether every point is an intersection, indexed by point id
+	 */
+	boolean[] findIntersections() {
+		index();
+		boolean[] intersection = new boolean[points.size()];
+
+		for (int p = 0; p < intersection.length; p++) {
+			int in = inStart[p + 1] - inStart[p];
+			int out = outStart[p + 1] - outStart[p];
+			boolean isNode = true;
+
+			if (in == 1 && out == 1) {
+				// If these are the reverse of each other, then this is an
+				// intersection (dead end)
+				int lineIn = inLines[inStart[p]];
+				int lineOut = outLines[outStart[p]];
+				if (!(lineFrom[lineIn] == lineTo[lineOut] && lineTo[lineIn] == lineFrom[lineOut])
+						&& lineName[lineIn] == lineName[lineOut]) {
+					isNode = false;
+				}
+			}
+			if (in == 2 && out == 2) {
+				// If all the road segments have the same name, and there are
+				// two pairs of reversed lines, then this is not an
+				// intersection because the roads pass through.
+				int in1 = inLines[inStart[p]];
+				int in2 = inLines[inStart[p] + 1];
+				int out1 = outLines[outStart[p]];
+				int out2 = outLines[outStart[p] + 1];
+
+				int name = lineName[in1];
+				boolean sameName = lineName[in2] == name && lineName[out1] == name && lineName[out2] == name;
+				boolean passThrough = (isReverse(in1, out1) && isReverse(in2, out2))
+						|| (isReverse(in1, out2) && isReverse(in2, out1));
+
+				if (sameName && passThrough) {
+					isNode = false;
+				}
+			}
+
+			intersection[p] = isNode;
+		}
+
+		return intersection;
+	}
+
+	/**
+	 * Follow a line through the points that are not intersections to the
+	 * intersection the road it is on reaches
+	 *
+	 * @param line
+	 *            The line, which leaves an intersection
+	 * @param intersection
+	 *            The intersections, as found by findIntersections
+	 * @return The points passed through in order, ending with the intersection
+	 *         reached
+	 */
+	int[] traceEdge(int line, boolean[] intersection) {
+		index();
+		int[] trace = new int[4];
+		int length = 0;
+		int point = lineFrom[line];
+		int end = lineTo[line];
+
+		while (!intersection[end]) {
+			if (length == trace.length) {
+				trace = Arrays.copyOf(trace, length * 2);
+			}
+			trace[length++] = end;
+
+			int lines = outStart[end + 1] - outStart[end];
+			int next = outLines[outStart[end]];
+			if (lines == 2) {
+				if (lineTo[next] == point) {
+					next = outLines[outStart[end] + 1];
+				}
+			} else if (lines != 1) {
+				System.out.println("Something went wrong building edges");
+			}
+			point = end;
+			end = lineTo[next];
+		}
+
+		trace = Arrays.copyOf(trace, length + 1);
+		trace[length] = end;
+		return trace;
+	}
+
+	// Whether line a is line b driven the other way, on the same road
+	private boolean isReverse(int a, int b) {
+		return lineFrom[a] == lineTo[b] && lineTo[a] == lineFrom[b] && lineName[a] == lineName[b]
+				&& lineType[a] == lineType[b];
+	}
+
+	// Build the CSR index of the lines leaving and entering every point with
+	// a counting sort; walking the lines in order keeps them in file order.
+	private void index() {
+		if (outStart != null) {
+			return;
+		}
+
+		int n = points.size();
+		int[] out = new int[n + 1];
+		int[] in = new int[n + 1];
+		for (int line = 0; line < numberOfLines; line++) {
+			out[lineFrom[line] + 1]++;
+			in[lineTo[line] + 1]++;
+		}
+		for (int p = 0; p < n; p++) {
+			out[p + 1] += out[p];
+			in[p + 1] += in[p];
+		}
+
+		outLines = new int[numberOfLines];
+		inLines = new int[numberOfLines];
+		int[] nextOut = Arrays.copyOf(out, n);
+		int[] nextIn = Arrays.copyOf(in, n);
+		for (int line = 0; line < numberOfLines; line++) {
+			outLines[nextOut[lineFrom[line]]++] = line;
+			inLines[nextIn[lineTo[line]]++] = line;
+		}
+
+		inStart = in;
+		outStart = out;
+	}
+}
@@ -0,0 +1,89 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of interned strings. Every distinct string added gets a dense int id
+ * (0 .. size-1), so that structures holding many copies of a few values, such
+ * as the road name and road type of every edge of a map, can store one int per
+ * entry and share a single String instance per value.
+ *
+ * @author UCSD MOOC development team and YOU
+ *
+ */
+public class StringTable {
+
+	private Map<String, Integer> ids;
+	private List<String> values;
+
+	/**
+	 * Create a new empty StringTable
+	 */
+	public StringTable() {
+		ids = new HashMap<String, Integer>();
+		values = new ArrayList<String>();
+	}
+
+	/**
+	 * Get the number of distinct strings in the table
+	 *
+	 * @return The number of strings in the table.
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Add a string to the table if it is not already there.
+	 *
+	 * @param value
+	 *            The string to intern
+	 * @return The id of the string
+	 */
+	public int intern(String value) {
+		Integer id = ids.get(value);
+
+		if (id == null) {
+			id = values.size();
+			ids.put(value, id);
+			values.add(value);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Find the id of a string.
+	 *
+	 * @param value
+	 *            The string to look for
+	 * @return The id of the string, or -1 if it is not in the table.
+	 */
+	public int indexOf(String value) {
+		Integer id = ids.get(value);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Get the string with the given id
+	 *
+	 * @param id
+	 *            The id of the string
+	 * @return The interned string
+	 */
+	public String get(int id) {
+		return values.get(id);
+	}
+
+	/**
+	 * Return the strings in the table, indexed by id.
+	 *
+	 * @return A new array holding every string of the table.
+	 */
+	public String[] toArray() {
+		return values.toArray(new String[values.size()]);
+	}
+}
@@ -0,0 +1,51 @@
+package geography;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GeometryStoreTest {
+
+	private static final double[] LATITUDES = { 0, 0.5, 1, 1.5, 2 };
+	private static final double[] LONGITUDES = { 10, 10.5, 11, 11.5, 12 };
+
+	@Test
+	public void segmentOverStoreMatchesEagerSegment() {
+		GeographicPoint start = new GeographicPoint(0, 10);
+		GeographicPoint end = new GeographicPoint(2, 12);
+		List<GeographicPoint> between = Arrays.asList(new GeographicPoint(1.5, 11.5), new GeographicPoint(0.5, 10.5));
+
+		GeometryStore store = new GeometryStore(LATITUDES, LONGITUDES);
+		store.add(4);
+		store.add(3);
+		store.add(1);
+		RoadSegment lazy = new RoadSegment(start, end, store, 1, 3, "Main", "residential", 3);
+		RoadSegment eager = new RoadSegment(start, end, between, "Main", "residential", 3);
+
+		assertEquals(eager, lazy);
+		assertEquals(2, lazy.getNumGeometryPoints());
+		assertEquals(between, lazy.getGeometryPoints());
+		assertEquals(eager.getPoints(start, end), lazy.getPoints(start, end));
+		assertEquals(eager.getPoints(end, start), lazy.getPoints(end, start));
+		assertEquals(eager.toString(), lazy.toString());
+
+		store.truncate(1);
+		assertEquals(1, store.size());
+		assertEquals(2, store.getLatitude(0), 0);
+	}
+
+	@Test
+	public void storeOverPointsHoldsThemInOrder() {
+		GeometryStore store = GeometryStore.of(LATITUDES, LONGITUDES);
+		assertEquals(5, store.size());
+		assertEquals(Arrays.asList(new GeographicPoint(0.5, 10.5), new GeographicPoint(1, 11)), store.getPoints(1, 3));
+		try {
+			store.add(0);
+			fail("Added to a store made over its points");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package geography;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import roadgraph.MapGraph;
+import util.GraphLoader;
+
+public class SegmentIndexTest {
+
+	private Set<RoadSegment> roads;
+	private SegmentIndex index;
+	private Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		HashMap<GeographicPoint, HashSet<RoadSegment>> segments = new HashMap<>();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", new MapGraph(), segments, null);
+
+		roads = new LinkedHashSet<>();
+		for (HashSet<RoadSegment> atPoint : segments.values()) {
+			roads.addAll(atPoint);
+		}
+		index = new SegmentIndex(segments);
+		random = new Random(31);
+	}
+
+	@Test
+	public void nearestMatchesALinearScan() {
+		assertEquals(roads.size(), index.size());
+
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint location = randomPoint();
+			SegmentMatch match = index.nearest(location);
+
+			double expected = Double.POSITIVE_INFINITY;
+			for (RoadSegment road : roads) {
+				expected = Math.min(expected, nearestDistance(road, location));
+			}
+
+			assertTrue(roads.contains(match.getSegment()));
+			assertEquals(expected, match.getDistance(), 1e-6);
+			assertEquals(location.distance(match.getProjectedPoint()), match.getDistance(), 0);
+			assertTrue(match.getOffset() >= 0 && match.getOffset() <= 1);
+		}
+	}
+
+	@Test
+	public void withinRadiusMatchesALinearScan() {
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint location = randomPoint();
+			double radius = random.nextDouble() * 0.5;
+			List<SegmentMatch> found = index.withinRadius(location, radius);
+
+			Set<RoadSegment> expected = new HashSet<>();
+			for (RoadSegment road : roads) {
+				if (nearestDistance(road, location) <= radius) {
+					expected.add(road);
+				}
+			}
+
+			Set<RoadSegment> segments = new HashSet<>();
+			for (int k = 0; k < found.size(); k++) {
+				SegmentMatch match = found.get(k);
+				segments.add(match.getSegment());
+				assertEquals(nearestDistance(match.getSegment(), location), match.getDistance(), 1e-6);
+				assertTrue(match.getDistance() <= radius);
+				if (k > 0) {
+					assertTrue(found.get(k - 1).getDistance() <= match.getDistance());
+				}
+			}
+			assertEquals(found.size(), segments.size());
+			assertEquals(expected, segments);
+		}
+	}
+
+	@Test
+	public void nearestOnAnIntersection() {
+		RoadSegment road = roads.iterator().next();
+
+		SegmentMatch match = index.nearest(road.getPoint1());
+		assertEquals(0, match.getDistance(), 1e-12);
+		// Other segments meet at the same intersection, so the offset is
+		// 0 or 1 depending on which one was matched.
+		assertEquals(0, Math.min(match.getOffset(), 1 - match.getOffset()), 1e-9);
+
+		assertNull(new SegmentIndex(new HashSet<RoadSegment>()).nearest(road.getPoint1()));
+	}
+
+	@Test
+	public void withinBoundsMatchesALinearScan() {
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint corner = randomPoint();
+			double minLat = corner.getX();
+			double minLon = corner.getY();
+			double maxLat = minLat + random.nextDouble() * 0.02;
+			double maxLon = minLon + random.nextDouble() * 0.02;
+
+			List<RoadSegment> found = index.withinBounds(minLat, minLon, maxLat, maxLon);
+			assertEquals(found.size(), new HashSet<RoadSegment>(found).size());
+
+			for (RoadSegment road : roads) {
+				boolean pointInside = false;
+				double lowLat = Double.POSITIVE_INFINITY, lowLon = Double.POSITIVE_INFINITY;
+				double highLat = Double.NEGATIVE_INFINITY, highLon = Double.NEGATIVE_INFINITY;
+				for (GeographicPoint p : road.getPoints(road.getPoint1(), road.getPoint2())) {
+					pointInside |= p.getX() >= minLat && p.getX() <= maxLat && p.getY() >= minLon && p.getY() <= maxLon;
+					lowLat = Math.min(lowLat, p.getX());
+					lowLon = Math.min(lowLon, p.getY());
+					highLat = Math.max(highLat, p.getX());
+					highLon = Math.max(highLon, p.getY());
+				}
+
+				if (pointInside) {
+					assertTrue(found.contains(road));
+				}
+				if (found.contains(road)) {
+					assertTrue(highLat >= minLat && lowLat <= maxLat && highLon >= minLon && lowLon <= maxLon);
+				}
+			}
+		}
+	}
+
+	// Inside the bounding box of the san_diego map
+	private GeographicPoint randomPoint() {
+		return new GeographicPoint(32.70 + random.nextDouble() * 0.05, -117.17 + random.nextDouble() * 0.06);
+	}
+
+	// The smallest distance from location to a piece of the road, projected
+	// in the same local plane as the index uses
+	private static double nearestDistance(RoadSegment road, GeographicPoint location) {
+		double scale = Math.cos(Math.toRadians(location.getX()));
+		List<GeographicPoint> points = road.getPoints(road.getPoint1(), road.getPoint2());
+		double best = Double.POSITIVE_INFINITY;
+
+		for (int i = 0; i + 1 < points.size(); i++) {
+			GeographicPoint a = points.get(i);
+			GeographicPoint b = points.get(i + 1);
+			double ax = (a.getY() - location.getY()) * scale, ay = a.getX() - location.getX();
+			double dx = (b.getY() - a.getY()) * scale, dy = b.getX() - a.getX();
+			double lengthSquared = dx * dx + dy * dy;
+			double t = lengthSquared > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared)) : 0;
+			GeographicPoint projected = new GeographicPoint(a.getX() + t * (b.getX() - a.getX()),
+					a.getY() + t * (b.getY() - a.getY()));
+			best = Math.min(best, location.distance(projected));
+		}
+
+		return best;
+	}
+}
@@ -0,0 +1,112 @@
+package geography;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpatialIndexTest {
+
+	private List<GeographicPoint> points;
+	private SpatialIndex index;
+	private Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		random = new Random(29);
+		points = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			points.add(randomPoint());
+		}
+		index = new SpatialIndex(points);
+	}
+
+	@Test
+	public void nearestMatchesALinearScan() {
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint location = randomPoint();
+			List<GeographicPoint> expected = byDistance(location);
+
+			assertEquals(location.distance(expected.get(0)), location.distance(index.nearest(location)), 0);
+			assertEquals(index.nearest(location), points.get(index.nearestIndex(location)));
+
+			List<GeographicPoint> nearest = index.nearest(location, 5);
+			assertEquals(5, nearest.size());
+			for (int k = 0; k < 5; k++) {
+				assertEquals(location.distance(expected.get(k)), location.distance(nearest.get(k)), 0);
+			}
+		}
+	}
+
+	@Test
+	public void withinRadiusMatchesALinearScan() {
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint location = randomPoint();
+			double radius = random.nextDouble() * 5;
+
+			List<GeographicPoint> expected = new ArrayList<>();
+			for (GeographicPoint point : byDistance(location)) {
+				if (location.distance(point) <= radius) {
+					expected.add(point);
+				}
+			}
+
+			List<GeographicPoint> found = index.withinRadius(location, radius);
+			assertEquals(new HashSet<>(expected), new HashSet<>(found));
+			for (int k = 1; k < found.size(); k++) {
+				assertTrue(location.distance(found.get(k - 1)) <= location.distance(found.get(k)));
+			}
+		}
+	}
+
+	@Test
+	public void withinBoundsMatchesALinearScan() {
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint corner = randomPoint();
+			double minLat = corner.getX();
+			double minLon = corner.getY();
+			double maxLat = minLat + random.nextDouble() * 0.03;
+			double maxLon = minLon + random.nextDouble() * 0.03;
+
+			HashSet<GeographicPoint> expected = new HashSet<>();
+			for (GeographicPoint point : points) {
+				if (point.getX() >= minLat && point.getX() <= maxLat && point.getY() >= minLon
+						&& point.getY() <= maxLon) {
+					expected.add(point);
+				}
+			}
+
+			assertEquals(expected, new HashSet<>(index.withinBounds(minLat, minLon, maxLat, maxLon)));
+		}
+	}
+
+	@Test
+	public void emptyIndexFindsNothing() {
+		SpatialIndex empty = new SpatialIndex(new ArrayList<GeographicPoint>());
+		GeographicPoint location = new GeographicPoint(32.87, -117.23);
+
+		assertNull(empty.nearest(location));
+		assertEquals(-1, empty.nearestIndex(location));
+		assertTrue(empty.nearest(location, 3).isEmpty());
+		assertTrue(empty.withinRadius(location, 10).isEmpty());
+		assertTrue(empty.withinBounds(-90, -180, 90, 180).isEmpty());
+	}
+
+	// A point in a box of about 5 x 5 km around UCSD
+	private GeographicPoint randomPoint() {
+		return new GeographicPoint(32.85 + random.nextDouble() * 0.045, -117.26 + random.nextDouble() * 0.055);
+	}
+
+	private List<GeographicPoint> byDistance(GeographicPoint location) {
+		List<GeographicPoint> sorted = new ArrayList<>(points);
+		Collections.sort(sorted, Comparator.comparingDouble(location::distance));
+		return sorted;
+	}
+}
@@ -4,8 +4,23 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import geography.GeometryStoreTest;
+import geography.SegmentIndexTest;
+import geography.SpatialIndexTest;
+import util.GraphLoaderTest;
+import util.RoadLineReaderTest;
+import util.RoadLineTableTest;
+
 @RunWith(Suite.class)
-@SuiteClasses({ MapGraphEdgesTest.class, MapGraphTest.class })
+@SuiteClasses({ MapGraphEdgesTest.class, MapGraphTest.class, CompactGraphTest.class,
+		IndexedHeapTest.class, ContractionHierarchyTest.class, LandmarksTest.class,
+		SearchWorkspaceTest.class, RouteBatchExecutorTest.class,
+		RouteCacheTest.class, SpatialIndexTest.class, SegmentIndexTest.class,
+		MapMatcherTest.class, TravelTimeWeightingTest.class, CustomizableContractionHierarchyTest.class,
+		TimeDependentRoutingTest.class, KShortestPathsTest.class,
+		EdgeBasedGraphTest.class, RoadLineReaderTest.class, GraphLoaderTest.class,
+		GraphSnapshotTest.class, RoadLineTableTest.class,
+		GeometryStoreTest.class })
 public class AllTests {
 
 }
@@ -0,0 +1,123 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class CompactGraphTest {
+
+	private MapGraph graph;
+	private GeographicPoint location1;
+	private GeographicPoint location2;
+	private GeographicPoint location3;
+	private GeographicPoint location4;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new MapGraph();
+		location1 = new GeographicPoint(1, 1);
+		location2 = new GeographicPoint(2, 1);
+		location3 = new GeographicPoint(3, 1);
+		location4 = new GeographicPoint(4, 1);
+
+		graph.addVertex(location1);
+		graph.addVertex(location2);
+		graph.addVertex(location3);
+		graph.addVertex(location4);
+
+		graph.addEdge(location1, location2, "", "", 1.0);
+		graph.addEdge(location1, location3, "", "", 1.0);
+		graph.addEdge(location1, location4, "", "", 1.0);
+		graph.addEdge(location2, location4, "", "", 1.0);
+	}
+
+	@Test
+	public void freezeKeepsTheNumberOfVerticesAndEdges() {
+		CompactGraph compact = graph.freeze();
+
+		assertEquals(4, compact.getNumVertices());
+		assertEquals(4, compact.getNumEdges());
+	}
+
+	@Test
+	public void freezeMapsEveryVertexToItsOwnId() {
+		CompactGraph compact = graph.freeze();
+
+		for (GeographicPoint location : graph.getVertices()) {
+			int id = compact.indexOf(location);
+			assertEquals(location, compact.getPoint(id));
+			assertEquals(location.getX(), compact.getLatitude(id), 0);
+			assertEquals(location.getY(), compact.getLongitude(id), 0);
+		}
+		assertEquals(-1, compact.indexOf(new GeographicPoint(5, 1)));
+		assertEquals(-1, compact.indexOf(null));
+	}
+
+	@Test
+	public void freezeKeepsTheOrderOfTheOutEdges() {
+		CompactGraph compact = graph.freeze();
+		int from = compact.indexOf(location1);
+
+		assertEquals(3, compact.getOutEdgeEnd(from) - compact.getOutEdgeStart(from));
+		assertEquals(location2, compact.getPoint(compact.getEdgeTarget(compact.getOutEdgeStart(from))));
+		assertEquals(location3, compact.getPoint(compact.getEdgeTarget(compact.getOutEdgeStart(from) + 1)));
+		assertEquals(location4, compact.getPoint(compact.getEdgeTarget(compact.getOutEdgeStart(from) + 2)));
+
+		int leaf = compact.indexOf(location3);
+		assertEquals(compact.getOutEdgeStart(leaf), compact.getOutEdgeEnd(leaf));
+	}
+
+	@Test
+	public void freezeIndexesTheInEdges() {
+		CompactGraph compact = graph.freeze();
+		int to = compact.indexOf(location4);
+
+		Set<GeographicPoint> sources = new HashSet<>();
+		for (int i = compact.getInEdgeStart(to); i < compact.getInEdgeEnd(to); i++) {
+			assertEquals(to, compact.getEdgeTarget(compact.getInEdge(i)));
+			sources.add(compact.getPoint(compact.getInEdgeSource(i)));
+		}
+
+		assertEquals(2, compact.getInEdgeEnd(to) - compact.getInEdgeStart(to));
+		assertTrue(sources.contains(location1));
+		assertTrue(sources.contains(location2));
+
+		int root = compact.indexOf(location1);
+		assertEquals(compact.getInEdgeStart(root), compact.getInEdgeEnd(root));
+	}
+
+	@Test
+	public void freezeReusesTheSnapshotUntilTheGraphChanges() {
+		CompactGraph compact = graph.freeze();
+		assertSame(compact, graph.freeze());
+
+		graph.addEdge(location3, location1, "", "", 1.0);
+		CompactGraph changed = graph.freeze();
+
+		assertNotSame(compact, changed);
+		assertEquals(4, compact.getNumEdges());
+		assertEquals(5, changed.getNumEdges());
+	}
+
+	@Test
+	public void freezeLoadedMap() {
+		MapGraph loaded = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/graders/mod2/ucsd.map", loaded);
+		CompactGraph compact = loaded.freeze();
+
+		assertEquals(loaded.getNumVertices(), compact.getNumVertices());
+		assertEquals(loaded.getNumEdges(), compact.getNumEdges());
+		for (GeographicPoint location : loaded.getVertices()) {
+			int id = compact.indexOf(location);
+			assertEquals(loaded.getOutNeighborsFromVertex(location).size(),
+					compact.getOutEdgeEnd(id) - compact.getOutEdgeStart(id));
+		}
+	}
+}
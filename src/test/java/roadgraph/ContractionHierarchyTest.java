@@ -0,0 +1,82 @@
+package roadgraph;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class ContractionHierarchyTest {
+
+	@Test
+	public void shortestPathMatchesDijkstra() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		ContractionHierarchy hierarchy = new ContractionHierarchy(graph.freeze());
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(3);
+
+		assertTrue(hierarchy.getNumShortcuts() > 0);
+
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> expected = graph.dijkstra(start, goal);
+			List<GeographicPoint> path = hierarchy.shortestPath(start, goal);
+
+			if (expected == null) {
+				assertNull(path);
+				assertEquals(Double.POSITIVE_INFINITY, hierarchy.distance(start, goal), 0);
+			} else {
+				assertEquals(start, path.get(0));
+				assertEquals(goal, path.get(path.size() - 1));
+				assertEquals(pathLength(graph, expected), pathLength(graph, path), 1e-9);
+				assertEquals(pathLength(graph, expected), hierarchy.distance(start, goal), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void shortestPathUCSDMap() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/ucsd.map", graph);
+		ContractionHierarchy hierarchy = new ContractionHierarchy(graph.freeze());
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(32.8709815, -117.2434254));
+		expectedVertices.add(new GeographicPoint(32.8710666, -117.2432407));
+		expectedVertices.add(new GeographicPoint(32.8715162, -117.2422525));
+		expectedVertices.add(new GeographicPoint(32.8717705, -117.2419172));
+		expectedVertices.add(new GeographicPoint(32.8726064, -117.2418224));
+		expectedVertices.add(new GeographicPoint(32.8741164, -117.2382689));
+		expectedVertices.add(new GeographicPoint(32.8742087, -117.2381344));
+
+		assertThat(hierarchy.shortestPath(new GeographicPoint(32.8709815, -117.2434254),
+				new GeographicPoint(32.8742087, -117.2381344)), is(expectedVertices));
+	}
+
+	@Test
+	public void shortestPathWithoutAPath() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/graders/mod2/map2.txt", graph);
+		ContractionHierarchy hierarchy = new ContractionHierarchy(graph.freeze());
+
+		assertNull(hierarchy.shortestPath(new GeographicPoint(6, 6), new GeographicPoint(0, 0)));
+		assertNull(hierarchy.shortestPath(new GeographicPoint(0, 0), new GeographicPoint(100, 100)));
+	}
+
+	private double pathLength(MapGraph graph, List<GeographicPoint> path) {
+		double length = 0;
+		for (int i = 0; i < path.size() - 1; i++) {
+			length += graph.getEdgeLength(path.get(i), path.get(i + 1));
+		}
+		return length;
+	}
+}
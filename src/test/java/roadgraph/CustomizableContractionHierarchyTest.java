@@ -0,0 +1,132 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class CustomizableContractionHierarchyTest {
+
+	private MapGraph graph;
+	private CompactGraph compact;
+	private CustomizableContractionHierarchy hierarchy;
+	private List<GeographicPoint> vertices;
+	private Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		compact = graph.freeze();
+		hierarchy = new CustomizableContractionHierarchy(compact);
+		vertices = new ArrayList<>(graph.getVertices());
+		random = new Random(43);
+	}
+
+	@Test
+	public void shortestPathMatchesDijkstra() {
+		assertTrue(hierarchy.getNumArcs() > compact.getNumEdges() / 2);
+
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> expected = graph.dijkstra(start, goal);
+			List<GeographicPoint> path = hierarchy.shortestPath(start, goal);
+
+			if (expected == null) {
+				assertNull(path);
+				assertEquals(Double.POSITIVE_INFINITY, hierarchy.distance(start, goal), 0);
+			} else {
+				assertEquals(start, path.get(0));
+				assertEquals(goal, path.get(path.size() - 1));
+				assertEquals(weight(expected, compact.edgeLengths()), weight(path, compact.edgeLengths()), 1e-9);
+				assertEquals(weight(expected, compact.edgeLengths()), hierarchy.distance(start, goal), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void customizeAppliesNewWeights() {
+		TravelTimeWeighting travelTime = new TravelTimeWeighting(SpeedProfile.car());
+		double[] weights = compact.weights(travelTime);
+		hierarchy.customize(travelTime);
+
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> expected = graph.dijkstra(start, goal, travelTime);
+			List<GeographicPoint> path = hierarchy.shortestPath(start, goal);
+
+			if (expected == null) {
+				assertNull(path);
+			} else {
+				assertEquals(weight(expected, weights), weight(path, weights), 1e-12);
+				assertEquals(weight(expected, weights), hierarchy.distance(start, goal), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void queriesDuringCustomizationSeeOneMetric() throws Exception {
+		double[] lengths = compact.edgeLengths();
+		double[] doubled = new double[lengths.length];
+		for (int edge = 0; edge < lengths.length; edge++) {
+			doubled[edge] = 2 * lengths[edge];
+		}
+
+		GeographicPoint start = vertices.get(0);
+		GeographicPoint goal = null;
+		double distance = Double.POSITIVE_INFINITY;
+		while (distance == Double.POSITIVE_INFINITY || distance == 0) {
+			goal = vertices.get(random.nextInt(vertices.size()));
+			distance = hierarchy.distance(start, goal);
+		}
+
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Double> mixed = new AtomicReference<>();
+		GeographicPoint target = goal;
+		double expected = distance;
+		Thread reader = new Thread(() -> {
+			while (!done.get()) {
+				double d = hierarchy.distance(start, target);
+				if (Math.abs(d - expected) > 1e-9 && Math.abs(d - 2 * expected) > 1e-9) {
+					mixed.set(d);
+				}
+			}
+		});
+		reader.start();
+
+		for (int i = 0; i < 50; i++) {
+			hierarchy.customize(i % 2 == 0 ? doubled : lengths);
+		}
+		done.set(true);
+		reader.join();
+
+		assertNull(mixed.get());
+		assertEquals(expected, hierarchy.distance(start, goal), 1e-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void customizeRejectsWeightsOfAnotherGraph() {
+		hierarchy.customize(new double[compact.getNumEdges() + 1]);
+	}
+
+	private double weight(List<GeographicPoint> path, double[] weights) {
+		int[] ids = new int[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = compact.indexOf(path.get(i));
+		}
+		return compact.pathWeight(ids, weights);
+	}
+}
@@ -0,0 +1,127 @@
+package roadgraph;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class EdgeBasedGraphTest {
+
+	// A crossroads with one block to the north east of it
+	private MapGraph crossroads;
+	private GeographicPoint center = new GeographicPoint(0, 0);
+	private GeographicPoint west = new GeographicPoint(0, -0.01);
+	private GeographicPoint east = new GeographicPoint(0, 0.01);
+	private GeographicPoint north = new GeographicPoint(0.01, 0);
+	private GeographicPoint south = new GeographicPoint(-0.01, 0);
+	private GeographicPoint northEast = new GeographicPoint(0.01, 0.01);
+
+	@Before
+	public void setUp() throws Exception {
+		crossroads = new MapGraph();
+		for (GeographicPoint point : Arrays.asList(center, west, east, north, south, northEast)) {
+			crossroads.addVertex(point);
+		}
+		for (GeographicPoint arm : Arrays.asList(west, east, north, south)) {
+			crossroads.addEdge(center, arm, "street", "residential", 1);
+			crossroads.addEdge(arm, center, "street", "residential", 1);
+		}
+		crossroads.addEdge(east, northEast, "block", "residential", 1);
+		crossroads.addEdge(northEast, north, "block", "residential", 1);
+	}
+
+	@Test
+	public void turnsAreClassifiedByGeometry() {
+		EdgeBasedGraph turns = new EdgeBasedGraph(crossroads, 3, 1, 10);
+
+		assertEquals(0, turns.getTurnCost(west, center, east), 0);
+		assertEquals(3, turns.getTurnCost(west, center, north), 0);
+		assertEquals(1, turns.getTurnCost(west, center, south), 0);
+		assertEquals(10, turns.getTurnCost(west, center, west), 0);
+		assertTrue(Double.isNaN(turns.getTurnCost(west, center, northEast)));
+
+		turns.setTurnCost(west, center, north, 0.5);
+		assertEquals(0.5, turns.getTurnCost(west, center, north), 0);
+		assertEquals(3, turns.getTurnCost(east, center, south), 0);
+		assertEquals(1, turns.getNumTurnCosts());
+	}
+
+	@Test
+	public void forbiddenTurnIsDrivenAround() {
+		EdgeBasedGraph turns = new EdgeBasedGraph(crossroads, 0, 0, 0);
+		assertThat(turns.dijkstra(west, north, Weighting.DISTANCE), is(Arrays.asList(west, center, north)));
+
+		turns.forbidTurn(west, center, north);
+
+		List<GeographicPoint> around = Arrays.asList(west, center, east, northEast, north);
+		assertThat(turns.dijkstra(west, north, Weighting.DISTANCE), is(around));
+		assertThat(turns.aStarSearch(west, north, Weighting.DISTANCE), is(around));
+		assertEquals(Double.POSITIVE_INFINITY, turns.pathCost(Arrays.asList(west, center, north), Weighting.DISTANCE), 0);
+		// The turn is still allowed from the other arms
+		assertThat(turns.dijkstra(south, north, Weighting.DISTANCE), is(Arrays.asList(south, center, north)));
+	}
+
+	@Test
+	public void withoutTurnCostsMatchesVertexSearch() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		EdgeBasedGraph turns = new EdgeBasedGraph(graph, 0, 0, 0);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(59);
+
+		for (int i = 0; i < 100; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> expected = graph.dijkstra(start, goal);
+			List<GeographicPoint> path = turns.dijkstra(start, goal, Weighting.DISTANCE);
+
+			if (expected == null) {
+				assertNull(path);
+				continue;
+			}
+			assertEquals(turns.pathCost(expected, Weighting.DISTANCE), turns.pathCost(path, Weighting.DISTANCE),
+					1e-9);
+		}
+	}
+
+	@Test
+	public void aStarMatchesDijkstraWithTurnCosts() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		TravelTimeWeighting travelTime = new TravelTimeWeighting(SpeedProfile.car());
+		// Seconds of waiting, in hours
+		EdgeBasedGraph turns = new EdgeBasedGraph(graph, 20 / 3600.0, 5 / 3600.0, 60 / 3600.0);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(61);
+		int[] explored = new int[2];
+
+		for (int i = 0; i < 100; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> dijkstra = turns.dijkstra(start, goal, travelTime, (x) -> explored[0]++);
+			List<GeographicPoint> aStar = turns.aStarSearch(start, goal, travelTime, (x) -> explored[1]++);
+			List<GeographicPoint> ignoringTurns = graph.dijkstra(start, goal, travelTime);
+
+			if (dijkstra == null) {
+				assertNull(aStar);
+				continue;
+			}
+			double cost = turns.pathCost(dijkstra, travelTime);
+			assertEquals(cost, turns.pathCost(aStar, travelTime), 1e-9);
+			assertTrue(cost <= turns.pathCost(ignoringTurns, travelTime) + 1e-9);
+		}
+
+		assertTrue(explored[1] < explored[0]);
+	}
+}
@@ -0,0 +1,174 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import util.GraphLoader;
+
+public class GraphSnapshotTest {
+
+	private static final String MAP = "src/main/resources/data/maps/hollywood_large.map";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void snapshotRoundTripsGraphAndSegments() throws IOException {
+		MapGraph expected = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> expectedSegments = new HashMap<>();
+		GraphLoader.loadRoadMap(MAP, expected, expectedSegments, null);
+		String snapshot = folder.newFile().getPath();
+		GraphSnapshot.write(snapshot, expected, expectedSegments);
+
+		MapGraph graph = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> segments = new HashMap<>();
+		Set<GeographicPoint> intersections = new HashSet<>();
+		GraphSnapshot.read(snapshot, graph, segments, intersections);
+
+		List<GeographicPoint> vertices = new ArrayList<>(expected.getVertices());
+		assertEquals(vertices, new ArrayList<>(graph.getVertices()));
+		assertEquals(new HashSet<>(vertices), intersections);
+		assertEquals(expected.getNumEdges(), graph.getNumEdges());
+		for (GeographicPoint vertex : vertices) {
+			List<GeographicPoint> neighbors = expected.getOutNeighborsFromVertex(vertex);
+			assertEquals(neighbors, graph.getOutNeighborsFromVertex(vertex));
+			assertEquals(new HashSet<>(expected.getInNeighborsFromVertex(vertex)),
+					new HashSet<>(graph.getInNeighborsFromVertex(vertex)));
+			for (GeographicPoint neighbor : neighbors) {
+				assertEquals(expected.getEdgeLength(vertex, neighbor), graph.getEdgeLength(vertex, neighbor), 0);
+				assertEquals(expected.getEdgeRoadName(vertex, neighbor), graph.getEdgeRoadName(vertex, neighbor));
+				assertEquals(expected.getEdgeRoadType(vertex, neighbor), graph.getEdgeRoadType(vertex, neighbor));
+			}
+		}
+		assertEquals(expectedSegments, segments);
+		for (GeographicPoint point : expectedSegments.keySet()) {
+			for (RoadSegment segment : segments.get(point)) {
+				for (RoadSegment original : expectedSegments.get(point)) {
+					if (original.equals(segment)) {
+						assertEquals(original.getGeometryPoints(), segment.getGeometryPoints());
+						assertEquals(original.getRoadType(), segment.getRoadType());
+					}
+				}
+			}
+		}
+
+		// The loaded graph searches and still takes new edges
+		Random random = new Random(71);
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+			assertEquals(expected.dijkstra(start, goal), graph.aStarSearch(start, goal));
+		}
+		GeographicPoint added = new GeographicPoint(0, 0);
+		assertTrue(graph.addVertex(added));
+		graph.addEdge(vertices.get(0), added, "new", "residential", 1);
+		assertEquals(expected.getNumEdges() + 1, graph.getNumEdges());
+		assertEquals(2, graph.dijkstra(vertices.get(0), added).size());
+	}
+
+	@Test
+	public void invalidSnapshotLeavesGraphEmpty() throws IOException {
+		MapGraph original = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/testdata/simpletest.map", original);
+		File snapshot = folder.newFile();
+		GraphSnapshot.write(snapshot.getPath(), original, null);
+
+		try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+			file.setLength(file.length() - 1);
+		}
+		MapGraph graph = new MapGraph();
+		try {
+			GraphSnapshot.read(snapshot.getPath(), graph, null, null);
+			fail("Read a truncated snapshot");
+		} catch (IOException e) {
+			assertEquals(0, graph.getNumVertices());
+		}
+
+		// Written without segments, so it cannot provide them
+		GraphSnapshot.write(snapshot.getPath(), original, null);
+		try {
+			GraphSnapshot.read(snapshot.getPath(), graph, new HashMap<>(), null);
+			fail("Read segments from a snapshot without them");
+		} catch (IOException e) {
+			assertEquals(0, graph.getNumVertices());
+		}
+	}
+
+	@Test
+	public void loaderFallsBackFromSnapshotWithDuplicateVertex() throws IOException {
+		File map = folder.newFile("simpletest.map");
+		Files.copy(new File("src/main/resources/data/testdata/simpletest.map").toPath(), map.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		MapGraph expected = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> expectedSegments = new HashMap<>();
+		GraphLoader.loadRoadMap(map.getPath(), expected, expectedSegments, null);
+
+		// A snapshot of another map, with its last vertex moved onto the one
+		// before. The vertex coordinates follow the 48 byte header,
+		// latitudes first.
+		MapGraph other = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> otherSegments = new HashMap<>();
+		GraphLoader.loadRoadMap("src/main/resources/data/testdata/kitsilanotest.map", other, otherSegments, null);
+		File snapshot = new File(map.getPath() + GraphLoader.SNAPSHOT_SUFFIX);
+		GraphSnapshot.write(snapshot.getPath(), other, otherSegments);
+		int n = other.getNumVertices();
+		try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+			byte[] coordinate = new byte[8];
+			for (long offset : new long[] { 48 + 8L * (n - 2), 48 + 8L * (2 * n - 2) }) {
+				file.seek(offset);
+				file.readFully(coordinate);
+				file.write(coordinate);
+			}
+		}
+		assertTrue(snapshot.setLastModified(map.lastModified() + 1000));
+
+		MapGraph graph = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> segments = new HashMap<>();
+		GraphLoader.loadRoadMapWithSnapshot(map.getPath(), graph, segments, null);
+
+		List<GeographicPoint> vertices = new ArrayList<>(expected.getVertices());
+		assertEquals(vertices, new ArrayList<>(graph.getVertices()));
+		assertEquals(expected.getNumEdges(), graph.getNumEdges());
+		for (GeographicPoint vertex : vertices) {
+			assertEquals(expected.getOutNeighborsFromVertex(vertex), graph.getOutNeighborsFromVertex(vertex));
+		}
+		assertEquals(expectedSegments, segments);
+	}
+
+	@Test
+	public void loaderWritesSnapshotAndReadsItBack() throws IOException {
+		File map = folder.newFile("simpletest.map");
+		Files.copy(new File("src/main/resources/data/testdata/simpletest.map").toPath(), map.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		File snapshot = new File(map.getPath() + GraphLoader.SNAPSHOT_SUFFIX);
+
+		MapGraph parsed = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> parsedSegments = new HashMap<>();
+		GraphLoader.loadRoadMapWithSnapshot(map.getPath(), parsed, parsedSegments, null);
+		assertTrue(snapshot.isFile());
+
+		MapGraph loaded = new MapGraph();
+		HashMap<GeographicPoint, HashSet<RoadSegment>> loadedSegments = new HashMap<>();
+		GraphLoader.loadRoadMapWithSnapshot(map.getPath(), loaded, loadedSegments, null);
+		assertEquals(new ArrayList<>(parsed.getVertices()), new ArrayList<>(loaded.getVertices()));
+		assertEquals(parsed.getNumEdges(), loaded.getNumEdges());
+		assertEquals(parsedSegments, loadedSegments);
+	}
+}
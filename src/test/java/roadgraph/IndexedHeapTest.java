@@ -0,0 +1,86 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexedHeapTest {
+
+	private IndexedHeap heap;
+
+	@Before
+	public void setUp() throws Exception {
+		heap = new IndexedHeap(10);
+	}
+
+	@Test
+	public void pollReturnsTheItemsInKeyOrder() {
+		heap.insertOrDecrease(3, 3.0);
+		heap.insertOrDecrease(1, 1.0);
+		heap.insertOrDecrease(7, 7.0);
+		heap.insertOrDecrease(5, 0.5);
+
+		assertEquals(4, heap.size());
+		assertEquals(0.5, heap.peekKey(), 0);
+		assertEquals(5, heap.poll());
+		assertEquals(1, heap.poll());
+		assertEquals(3, heap.poll());
+		assertEquals(7, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void insertOrDecreaseOnlyLowersTheKey() {
+		heap.insertOrDecrease(1, 1.0);
+		heap.insertOrDecrease(2, 2.0);
+		heap.insertOrDecrease(2, 0.5);
+		heap.insertOrDecrease(1, 4.0);
+
+		assertEquals(2, heap.size());
+		assertEquals(2, heap.poll());
+		assertEquals(1.0, heap.peekKey(), 0);
+		assertEquals(1, heap.poll());
+	}
+
+	@Test
+	public void clearEmptiesTheHeap() {
+		heap.insertOrDecrease(1, 1.0);
+		heap.insertOrDecrease(2, 2.0);
+		heap.clear();
+
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.contains(1));
+		heap.insertOrDecrease(2, 3.0);
+		assertEquals(3.0, heap.peekKey(), 0);
+	}
+
+	@Test
+	public void pollMatchesSortedKeysAfterRandomDecreases() {
+		Random random = new Random(42);
+		IndexedHeap large = new IndexedHeap(1000);
+		double[] keys = new double[1000];
+
+		for (int item = 0; item < keys.length; item++) {
+			keys[item] = random.nextDouble();
+			large.insertOrDecrease(item, keys[item]);
+		}
+		for (int i = 0; i < 500; i++) {
+			int item = random.nextInt(keys.length);
+			keys[item] *= random.nextDouble();
+			large.insertOrDecrease(item, keys[item]);
+		}
+
+		double[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		for (double key : sorted) {
+			assertEquals(key, large.peekKey(), 0);
+			int item = large.poll();
+			assertEquals(key, keys[item], 0);
+		}
+		assertTrue(large.isEmpty());
+	}
+}
@@ -0,0 +1,150 @@
+package roadgraph;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class KShortestPathsTest {
+
+	@Test
+	public void alternativesComeShortestFirst() {
+		MapGraph graph = new MapGraph();
+		GeographicPoint a = new GeographicPoint(0, 0);
+		GeographicPoint b = new GeographicPoint(1, 0);
+		GeographicPoint c = new GeographicPoint(1, 1);
+		GeographicPoint d = new GeographicPoint(2, 1);
+		for (GeographicPoint point : Arrays.asList(a, b, c, d)) {
+			graph.addVertex(point);
+		}
+		graph.addEdge(a, b, "ab", "residential", 1);
+		graph.addEdge(a, c, "ac", "residential", 2);
+		graph.addEdge(b, c, "bc", "residential", 0.5);
+		graph.addEdge(b, d, "bd", "residential", 3);
+		graph.addEdge(c, d, "cd", "residential", 1);
+
+		List<RouteResult> routes = graph.kShortestPaths(a, d, 10);
+
+		assertEquals(3, routes.size());
+		assertThat(routes.get(0).getPath(), is(Arrays.asList(a, b, c, d)));
+		assertEquals(2.5, routes.get(0).getWeight(), 1e-12);
+		assertThat(routes.get(1).getPath(), is(Arrays.asList(a, c, d)));
+		assertThat(routes.get(2).getPath(), is(Arrays.asList(a, b, d)));
+		assertTrue(graph.kShortestPaths(d, a, 3).isEmpty());
+		assertTrue(graph.kShortestPaths(a, new GeographicPoint(5, 5), 3).isEmpty());
+	}
+
+	@Test
+	public void matchesExhaustiveSearchOnGrid() {
+		// A 4 by 4 grid of two-way streets with random lengths, small enough
+		// to list every loopless path between opposite corners
+		MapGraph graph = new MapGraph();
+		Random random = new Random(47);
+		GeographicPoint[][] grid = new GeographicPoint[4][4];
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				grid[i][j] = new GeographicPoint(i, j);
+				graph.addVertex(grid[i][j]);
+			}
+		}
+		for (int i = 0; i < 4; i++) {
+			for (int j = 0; j < 4; j++) {
+				if (i + 1 < 4) {
+					addStreet(graph, grid[i][j], grid[i + 1][j], 1 + random.nextInt(5));
+				}
+				if (j + 1 < 4) {
+					addStreet(graph, grid[i][j], grid[i][j + 1], 1 + random.nextInt(5));
+				}
+			}
+		}
+
+		List<Double> lengths = new ArrayList<>();
+		allPaths(graph, new ArrayList<>(Collections.singletonList(grid[0][0])), grid[3][3], 0, lengths);
+		Collections.sort(lengths);
+
+		List<RouteResult> routes = graph.kShortestPaths(grid[0][0], grid[3][3], 12);
+		assertEquals(12, routes.size());
+		for (int i = 0; i < routes.size(); i++) {
+			assertEquals(lengths.get(i), routes.get(i).getWeight(), 1e-9);
+		}
+	}
+
+	@Test
+	public void alternativesAreDistinctLooplessRoutes() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		TravelTimeWeighting travelTime = new TravelTimeWeighting(SpeedProfile.car());
+		Random random = new Random(53);
+
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+			Weighting weighting = i % 2 == 0 ? Weighting.DISTANCE : travelTime;
+
+			List<RouteResult> routes = graph.kShortestPaths(start, goal, 5, weighting);
+			List<GeographicPoint> shortest = graph.dijkstra(start, goal, weighting);
+
+			if (shortest == null) {
+				assertTrue(routes.isEmpty());
+				continue;
+			}
+			assertEquals(weight(graph, weighting, shortest), routes.get(0).getWeight(), 1e-9);
+			HashSet<List<GeographicPoint>> seen = new HashSet<>();
+			for (int k = 0; k < routes.size(); k++) {
+				List<GeographicPoint> path = routes.get(k).getPath();
+				assertTrue(seen.add(path));
+				assertEquals(path.size(), new HashSet<>(path).size());
+				assertEquals(start, path.get(0));
+				assertEquals(goal, path.get(path.size() - 1));
+				for (int j = 1; j < path.size(); j++) {
+					assertTrue(graph.getOutNeighborsFromVertex(path.get(j - 1)).contains(path.get(j)));
+				}
+				if (k > 0) {
+					assertTrue(routes.get(k - 1).getWeight() <= routes.get(k).getWeight() + 1e-12);
+				}
+			}
+		}
+	}
+
+	private static double weight(MapGraph graph, Weighting weighting, List<GeographicPoint> path) {
+		CompactGraph compact = graph.freeze();
+		int[] ids = new int[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = compact.indexOf(path.get(i));
+		}
+		return compact.pathWeight(ids, compact.weights(weighting));
+	}
+
+	private static void addStreet(MapGraph graph, GeographicPoint a, GeographicPoint b, double length) {
+		graph.addEdge(a, b, "street", "residential", length);
+		graph.addEdge(b, a, "street", "residential", length);
+	}
+
+	// The length of every loopless path from the end of path to goal
+	private static void allPaths(MapGraph graph, List<GeographicPoint> path, GeographicPoint goal, double length,
+			List<Double> lengths) {
+		GeographicPoint last = path.get(path.size() - 1);
+		if (last.equals(goal)) {
+			lengths.add(length);
+			return;
+		}
+		for (GeographicPoint next : graph.getOutNeighborsFromVertex(last)) {
+			if (!path.contains(next)) {
+				path.add(next);
+				allPaths(graph, path, goal, length + graph.getEdgeLength(last, next), lengths);
+				path.remove(path.size() - 1);
+			}
+		}
+	}
+}
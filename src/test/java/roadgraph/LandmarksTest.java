@@ -0,0 +1,125 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class LandmarksTest {
+
+	private MapGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/hollywood_large.map", graph);
+	}
+
+	@Test
+	public void estimateIsALowerBoundOfTheDistance() {
+		CompactGraph compactGraph = graph.freeze();
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(13);
+
+		for (Landmarks.Selection selection : Landmarks.Selection.values()) {
+			Landmarks landmarks = new Landmarks(compactGraph, 8, selection);
+			assertEquals(8, landmarks.getNumLandmarks());
+
+			for (int i = 0; i < 100; i++) {
+				GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+				GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+				List<GeographicPoint> path = graph.dijkstra(start, goal);
+				double estimate = landmarks.estimate(compactGraph.indexOf(start), compactGraph.indexOf(goal));
+
+				assertTrue(estimate >= 0);
+				if (path != null) {
+					assertTrue(estimate <= pathLength(path));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void aStarSearchWithLandmarksMatchesDijkstraWithFewerNodesSearched() {
+		Landmarks landmarks = new Landmarks(graph.freeze(), 8);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(17);
+		int[] aStarSearched = new int[1];
+		int[] landmarksSearched = new int[1];
+
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> dijkstraPath = graph.dijkstra(start, goal);
+			graph.aStarSearch(start, goal, (x) -> aStarSearched[0]++);
+			List<GeographicPoint> landmarksPath = graph.aStarSearch(start, goal, landmarks,
+					(x) -> landmarksSearched[0]++);
+
+			if (dijkstraPath == null) {
+				assertNull(landmarksPath);
+			} else {
+				assertEquals(pathLength(dijkstraPath), pathLength(landmarksPath), 1e-9);
+			}
+		}
+
+		assertTrue(landmarksSearched[0] < aStarSearched[0]);
+	}
+
+	@Test
+	public void aStarSearchWithTravelTimeLandmarksMinimizesTravelTime() {
+		TravelTimeWeighting travelTime = new TravelTimeWeighting(SpeedProfile.car());
+		Landmarks landmarks = new Landmarks(graph.freeze(), travelTime, 8, Landmarks.Selection.AVOID);
+		assertSame(travelTime, landmarks.getWeighting());
+
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(19);
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> dijkstraPath = graph.dijkstra(start, goal, travelTime);
+			List<GeographicPoint> landmarksPath = graph.aStarSearch(start, goal, landmarks);
+
+			if (dijkstraPath == null) {
+				assertNull(landmarksPath);
+			} else {
+				assertEquals(travelTime(dijkstraPath, travelTime), travelTime(landmarksPath, travelTime), 1e-9);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void aStarSearchRejectsLandmarksOfAnOlderGraph() {
+		Landmarks landmarks = new Landmarks(graph.freeze(), 4);
+		graph.addVertex(new GeographicPoint(0, 0));
+
+		graph.aStarSearch(new GeographicPoint(0, 0), new GeographicPoint(0, 0), landmarks);
+	}
+
+	private double travelTime(List<GeographicPoint> path, Weighting weighting) {
+		CompactGraph compactGraph = graph.freeze();
+		double[] weights = compactGraph.weights(weighting);
+		double time = 0;
+		for (int i = 0; i < path.size() - 1; i++) {
+			time += weights[compactGraph.findEdge(compactGraph.indexOf(path.get(i)),
+					compactGraph.indexOf(path.get(i + 1)))];
+		}
+		return time;
+	}
+
+	private double pathLength(List<GeographicPoint> path) {
+		double length = 0;
+		for (int i = 0; i < path.size() - 1; i++) {
+			length += graph.getEdgeLength(path.get(i), path.get(i + 1));
+		}
+		return length;
+	}
+}
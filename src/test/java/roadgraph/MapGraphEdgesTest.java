@@ -127,5 +127,46 @@ public class MapGraphEdgesTest {
 		
 		assertEquals(1, graph.getNumEdges());
 	}
+
+	@Test
+	public void addEdgeStoresTheEdgeAttributes() {
+		graph.addEdge(from, to, "Oziel Doria", "residential", 0.5);
+
+		assertEquals(0.5, graph.getEdgeLength(from, to), 0);
+		assertEquals("Oziel Doria", graph.getEdgeRoadName(from, to));
+		assertEquals("residential", graph.getEdgeRoadType(from, to));
+		assertTrue(Double.isNaN(graph.getEdgeLength(to, from)));
+		assertNull(graph.getEdgeRoadName(to, from));
+	}
+
+	@Test
+	public void addEdgeKeepsTheShortestOfRepeatedEdges() {
+		graph.addEdge(from, to, "Oziel Doria", "residential", 0.5);
+		graph.addEdge(from, to, "Hugo D'Antola", "primary", 0.3);
+		graph.addEdge(from, to, "Oziel Doria", "residential", 0.4);
+
+		assertEquals(1, graph.getNumEdges());
+		assertEquals(0.3, graph.getEdgeLength(from, to), 0);
+		assertEquals("Hugo D'Antola", graph.getEdgeRoadName(from, to));
+		assertEquals("primary", graph.getEdgeRoadType(from, to));
+	}
+
+	@Test
+	public void freezeCarriesTheEdgeAttributes() {
+		GeographicPoint other = new GeographicPoint(1, 3);
+		graph.addVertex(other);
+		graph.addEdge(from, to, "Oziel Doria", "residential", 0.5);
+		graph.addEdge(to, other, "Oziel Doria", "residential", 0.7);
+		graph.addEdge(other, from, "Hugo D'Antola", "primary", 1.2);
+
+		CompactGraph compact = graph.freeze();
+		int edge = compact.getOutEdgeStart(compact.indexOf(other));
+
+		assertEquals(1.2, compact.getEdgeLength(edge), 0);
+		assertEquals("Hugo D'Antola", compact.getRoadName(compact.getEdgeRoadName(edge)));
+		assertEquals("primary", compact.getRoadType(compact.getEdgeRoadType(edge)));
+		assertEquals(2, compact.getNumRoadNames());
+		assertEquals(2, compact.getNumRoadTypes());
+	}
 	
 }
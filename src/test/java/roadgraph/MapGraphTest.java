@@ -6,6 +6,7 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.After;
@@ -122,6 +123,26 @@ public class MapGraphTest {
 		assertThat(graph.getInNeighborsFromVertex(location4), is(expectedInNeighborsOf4));
 	}
 
+	@Test
+	public void getInNeighborsFromVertexFollowsNewEdges() {
+		graph.addVertex(location1);
+		graph.addVertex(location2);
+		graph.addVertex(location3);
+
+		assertTrue(graph.getInNeighborsFromVertex(location3).isEmpty());
+		assertTrue(graph.getInNeighborsFromVertex(location5).isEmpty());
+
+		graph.addEdge(location2, location3, "", "", 1.0);
+		graph.addEdge(location2, location3, "", "", 1.0);
+		graph.addEdge(location1, location3, "", "", 1.0);
+
+		List<GeographicPoint> expectedInNeighborsOf3 = new ArrayList<GeographicPoint>();
+		expectedInNeighborsOf3.add(location2);
+		expectedInNeighborsOf3.add(location1);
+
+		assertThat(graph.getInNeighborsFromVertex(location3), is(expectedInNeighborsOf3));
+	}
+
 	@Test
 	public void addVertexUpdatesTheNumberOfVertices() {
 		graph.addVertex(location1);
@@ -232,4 +253,217 @@ public class MapGraphTest {
 		 		
 		assertThat(graph.bfs(new GeographicPoint(32.8756538, -117.2435715), new GeographicPoint(32.8742087, -117.2381344)), is(expectedVertices));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void dijkstraMap1() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/map1.txt", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(0, 0));
+		expectedVertices.add(new GeographicPoint(1, 1));
+		expectedVertices.add(new GeographicPoint(2, 2));
+		expectedVertices.add(new GeographicPoint(3, 3));
+		expectedVertices.add(new GeographicPoint(4, 4));
+		expectedVertices.add(new GeographicPoint(5, 5));
+		expectedVertices.add(new GeographicPoint(6, 6));
+
+		assertThat(graph.dijkstra(new GeographicPoint(0, 0), new GeographicPoint(6, 6)), is(expectedVertices));
+	}
+
+	@Test
+	public void dijkstraMap2() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/map2.txt", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(7, 3));
+		expectedVertices.add(new GeographicPoint(4, 1));
+		expectedVertices.add(new GeographicPoint(4, 0));
+		expectedVertices.add(new GeographicPoint(4, -1));
+
+		assertThat(graph.dijkstra(new GeographicPoint(7, 3), new GeographicPoint(4, -1)), is(expectedVertices));
+	}
+
+	@Test
+	public void dijkstraMap3() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/map3.txt", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(0, 0));
+		expectedVertices.add(new GeographicPoint(4, 4));
+		expectedVertices.add(new GeographicPoint(0, 4));
+
+		assertThat(graph.dijkstra(new GeographicPoint(0, 0), new GeographicPoint(0, 4)), is(expectedVertices));
+	}
+
+	@Test
+	public void dijkstraUCSDMap() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/ucsd.map", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(32.8709815, -117.2434254));
+		expectedVertices.add(new GeographicPoint(32.8710666, -117.2432407));
+		expectedVertices.add(new GeographicPoint(32.8715162, -117.2422525));
+		expectedVertices.add(new GeographicPoint(32.8717705, -117.2419172));
+		expectedVertices.add(new GeographicPoint(32.8726064, -117.2418224));
+		expectedVertices.add(new GeographicPoint(32.8741164, -117.2382689));
+		expectedVertices.add(new GeographicPoint(32.8742087, -117.2381344));
+
+		assertThat(graph.dijkstra(new GeographicPoint(32.8709815, -117.2434254), new GeographicPoint(32.8742087, -117.2381344)), is(expectedVertices));
+	}
+
+	@Test
+	public void dijkstraReturnsNullWhenThereIsNoPath() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod2/map2.txt", graph);
+
+		assertNull(graph.dijkstra(new GeographicPoint(6, 6), new GeographicPoint(0, 0)));
+		assertNull(graph.dijkstra(new GeographicPoint(0, 0), new GeographicPoint(100, 100)));
+	}
+
+	@Test
+	public void aStarSearchUCSDMap() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/ucsd.map", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(32.8709815, -117.2434254));
+		expectedVertices.add(new GeographicPoint(32.8710666, -117.2432407));
+		expectedVertices.add(new GeographicPoint(32.8715162, -117.2422525));
+		expectedVertices.add(new GeographicPoint(32.8717705, -117.2419172));
+		expectedVertices.add(new GeographicPoint(32.8726064, -117.2418224));
+		expectedVertices.add(new GeographicPoint(32.8741164, -117.2382689));
+		expectedVertices.add(new GeographicPoint(32.8742087, -117.2381344));
+
+		assertThat(graph.aStarSearch(new GeographicPoint(32.8709815, -117.2434254), new GeographicPoint(32.8742087, -117.2381344)), is(expectedVertices));
+	}
+
+	@Test
+	public void aStarSearchMap2() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/map2.txt", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(7, 3));
+		expectedVertices.add(new GeographicPoint(4, 1));
+		expectedVertices.add(new GeographicPoint(4, 0));
+		expectedVertices.add(new GeographicPoint(4, -1));
+
+		assertThat(graph.aStarSearch(new GeographicPoint(7, 3), new GeographicPoint(4, -1)), is(expectedVertices));
+	}
+
+	@Test
+	public void aStarSearchMatchesDijkstraWithFewerNodesSearched() {
+        GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(7);
+		int[] dijkstraSearched = new int[1];
+		int[] aStarSearched = new int[1];
+
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> dijkstraPath = graph.dijkstra(start, goal, (x) -> dijkstraSearched[0]++);
+			List<GeographicPoint> aStarPath = graph.aStarSearch(start, goal, (x) -> aStarSearched[0]++);
+
+			if (dijkstraPath == null) {
+				assertNull(aStarPath);
+			} else {
+				assertEquals(pathLength(dijkstraPath), pathLength(aStarPath), 1e-9);
+			}
+		}
+
+		assertTrue(aStarSearched[0] < dijkstraSearched[0]);
+	}
+
+	@Test
+	public void bidirectionalSearchesMatchDijkstraWithFewerNodesSearched() {
+        GraphLoader.loadRoadMap("src/main/resources/data/maps/new_york.map", graph);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(11);
+		int[] dijkstraSearched = new int[1];
+		int[] bidirectionalDijkstraSearched = new int[1];
+		int[] bidirectionalAStarSearched = new int[1];
+
+		for (int i = 0; i < 50; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> dijkstraPath = graph.dijkstra(start, goal, (x) -> dijkstraSearched[0]++);
+			List<GeographicPoint> bidirectionalDijkstraPath = graph.bidirectionalDijkstra(start, goal,
+					(x) -> bidirectionalDijkstraSearched[0]++);
+			List<GeographicPoint> bidirectionalAStarPath = graph.bidirectionalAStarSearch(start, goal,
+					(x) -> bidirectionalAStarSearched[0]++);
+
+			if (dijkstraPath == null) {
+				assertNull(bidirectionalDijkstraPath);
+				assertNull(bidirectionalAStarPath);
+			} else {
+				assertEquals(start, bidirectionalDijkstraPath.get(0));
+				assertEquals(goal, bidirectionalDijkstraPath.get(bidirectionalDijkstraPath.size() - 1));
+				assertEquals(pathLength(dijkstraPath), pathLength(bidirectionalDijkstraPath), 1e-9);
+				assertEquals(pathLength(dijkstraPath), pathLength(bidirectionalAStarPath), 1e-9);
+			}
+		}
+
+		assertTrue(bidirectionalDijkstraSearched[0] < dijkstraSearched[0]);
+		assertTrue(bidirectionalAStarSearched[0] < bidirectionalDijkstraSearched[0]);
+	}
+
+	@Test
+	public void bidirectionalSearchesFromAVertexToItself() {
+        GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/map1.txt", graph);
+
+		List<GeographicPoint> expectedVertices = new ArrayList<>();
+		expectedVertices.add(new GeographicPoint(3, 3));
+
+		assertThat(graph.bidirectionalDijkstra(new GeographicPoint(3, 3), new GeographicPoint(3, 3)), is(expectedVertices));
+		assertThat(graph.bidirectionalAStarSearch(new GeographicPoint(3, 3), new GeographicPoint(3, 3)), is(expectedVertices));
+		assertNull(graph.bidirectionalDijkstra(new GeographicPoint(6, 6), new GeographicPoint(0, 0)));
+	}
+
+	@Test
+	public void distanceMatrixMatchesDijkstra() {
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/new_york.map", graph);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(19);
+		List<GeographicPoint> sources = new ArrayList<>();
+		List<GeographicPoint> targets = new ArrayList<>();
+
+		for (int i = 0; i < 10; i++) {
+			sources.add(vertices.get(random.nextInt(vertices.size())));
+			targets.add(vertices.get(random.nextInt(vertices.size())));
+		}
+		sources.add(new GeographicPoint(0, 0));
+		targets.add(targets.get(0));
+		targets.add(sources.get(0));
+
+		double[][] matrix = graph.distanceMatrix(sources, targets);
+
+		assertEquals(sources.size(), matrix.length);
+		for (int i = 0; i < sources.size(); i++) {
+			assertEquals(targets.size(), matrix[i].length);
+			for (int j = 0; j < targets.size(); j++) {
+				List<GeographicPoint> path = graph.dijkstra(sources.get(i), targets.get(j));
+				double expected = path != null ? pathLength(path) : Double.POSITIVE_INFINITY;
+				assertEquals(expected, matrix[i][j], 1e-9);
+			}
+		}
+		assertEquals(0, matrix[0][targets.size() - 1], 0);
+	}
+
+	@Test
+	public void nearestVertexSnapsToTheClosestIntersection() {
+		GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/ucsd.map", graph);
+		GeographicPoint vertex = new GeographicPoint(32.8709815, -117.2434254);
+
+		assertEquals(vertex, graph.nearestVertex(vertex));
+		assertEquals(vertex, graph.nearestVertex(new GeographicPoint(32.87098, -117.24342)));
+		assertNull(new MapGraph().nearestVertex(vertex));
+	}
+
+	private double pathLength(List<GeographicPoint> path) {
+		double length = 0;
+		for (int i = 0; i < path.size() - 1; i++) {
+			length += graph.getEdgeLength(path.get(i), path.get(i + 1));
+		}
+		return length;
+	}
+}
@@ -0,0 +1,154 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import geography.SegmentIndex;
+import util.GraphLoader;
+
+public class MapMatcherTest {
+
+	private MapGraph graph;
+	private HashMap<GeographicPoint, HashSet<RoadSegment>> segments;
+	private SegmentIndex index;
+	private List<GeographicPoint> vertices;
+	private Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new MapGraph();
+		segments = new HashMap<>();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph, segments, null);
+		index = new SegmentIndex(segments);
+		vertices = new ArrayList<>(graph.getVertices());
+		random = new Random(37);
+	}
+
+	@Test
+	public void matchRecoversTheRouteDriven() {
+		MapMatcher matcher = new MapMatcher(graph, index);
+
+		for (int i = 0; i < 20; i++) {
+			List<GeographicPoint> path = randomPath();
+			List<MatchedPoint> matched = matcher.match(drive(path));
+
+			// The routes between the matched points add up to the path,
+			// without the intersections the trace starts and ends between.
+			List<GeographicPoint> driven = new ArrayList<>();
+			for (int k = 0; k < matched.size(); k++) {
+				MatchedPoint point = matched.get(k);
+				assertTrue(point.isMatched());
+				assertEquals(0, point.getMatch().getDistance(), 1e-3);
+				if (k == 0) {
+					assertNull(point.getRoute());
+				} else {
+					driven.addAll(point.getRoute());
+				}
+			}
+			assertEquals(path.subList(1, path.size() - 1), driven);
+		}
+	}
+
+	@Test
+	public void traceDecidesWithBoundedLag() {
+		MapMatcher matcher = new MapMatcher(graph, index, 0.01, 0.05, 0.05, 8, 3);
+		List<GeographicPoint> observations = drive(randomPath());
+		List<MatchedPoint> matched = new ArrayList<>();
+
+		MapMatcher.Trace trace = matcher.open(matched::add);
+		for (int k = 0; k < observations.size(); k++) {
+			trace.add(observations.get(k));
+			assertTrue(matched.size() >= k + 1 - 3);
+		}
+		trace.close();
+
+		assertEquals(observations.size(), matched.size());
+		for (int k = 0; k < matched.size(); k++) {
+			assertEquals(observations.get(k), matched.get(k).getObservation());
+			assertEquals(k == 0, matched.get(k).getRoute() == null);
+		}
+	}
+
+	@Test
+	public void observationFarFromAnyRoadIsNotMatched() {
+		MapMatcher matcher = new MapMatcher(graph, index);
+		List<GeographicPoint> observations;
+		do {
+			observations = drive(randomPath());
+		} while (observations.size() < 6);
+		int middle = observations.size() / 2;
+		observations.add(middle, new GeographicPoint(0, 0));
+
+		List<MatchedPoint> matched = matcher.match(observations);
+
+		assertEquals(observations.size(), matched.size());
+		assertFalse(matched.get(middle).isMatched());
+		assertNull(matched.get(middle).getRoute());
+		// The trace starts a new piece after the gap
+		assertNull(matched.get(middle + 1).getRoute());
+		assertNotNull(matched.get(middle + 2).getRoute());
+	}
+
+	@Test
+	public void matchAllMatchesEveryTrace() {
+		MapMatcher matcher = new MapMatcher(graph, index);
+		List<List<GeographicPoint>> traces = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			traces.add(drive(randomPath()));
+		}
+
+		List<List<MatchedPoint>> matched = matcher.matchAll(traces);
+
+		assertEquals(traces.size(), matched.size());
+		for (int i = 0; i < traces.size(); i++) {
+			List<MatchedPoint> expected = matcher.match(traces.get(i));
+			assertEquals(expected.size(), matched.get(i).size());
+			for (int k = 0; k < expected.size(); k++) {
+				assertEquals(expected.get(k).getMatch().getSegment(), matched.get(i).get(k).getMatch().getSegment());
+				assertEquals(expected.get(k).getRoute(), matched.get(i).get(k).getRoute());
+			}
+		}
+	}
+
+	private List<GeographicPoint> randomPath() {
+		while (true) {
+			List<GeographicPoint> path = graph.dijkstra(vertices.get(random.nextInt(vertices.size())),
+					vertices.get(random.nextInt(vertices.size())));
+			if (path != null && path.size() >= 3) {
+				return path;
+			}
+		}
+	}
+
+	// One observation halfway along every piece of road geometry on the path
+	private List<GeographicPoint> drive(List<GeographicPoint> path) {
+		List<GeographicPoint> observations = new ArrayList<>();
+		for (int i = 0; i + 1 < path.size(); i++) {
+			RoadSegment road = null;
+			for (RoadSegment candidate : segments.get(path.get(i))) {
+				if (path.get(i + 1).equals(candidate.getOtherPoint(path.get(i)))
+						&& (road == null || candidate.getLength() < road.getLength())) {
+					road = candidate;
+				}
+			}
+
+			List<GeographicPoint> points = road.getPoints(path.get(i), path.get(i + 1));
+			for (int k = 0; k + 1 < points.size(); k++) {
+				GeographicPoint a = points.get(k);
+				GeographicPoint b = points.get(k + 1);
+				observations.add(new GeographicPoint((a.getX() + b.getX()) / 2, (a.getY() + b.getY()) / 2));
+			}
+		}
+		return observations;
+	}
+}
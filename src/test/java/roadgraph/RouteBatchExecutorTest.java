@@ -0,0 +1,98 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class RouteBatchExecutorTest {
+
+	private MapGraph graph;
+	private List<RouteRequest> requests;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(23);
+		requests = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			requests.add(new RouteRequest(vertices.get(random.nextInt(vertices.size())),
+					vertices.get(random.nextInt(vertices.size()))));
+		}
+		requests.add(new RouteRequest(new GeographicPoint(0, 0), vertices.get(0)));
+	}
+
+	@Test
+	public void executeReturnsTheResultsInSubmissionOrder() {
+		RouteBatchExecutor executor = new RouteBatchExecutor(graph.freeze(), SearchAlgorithm.DIJKSTRA,
+				ForkJoinPool.commonPool(), 16);
+
+		List<RouteResult> results = executor.execute(requests.stream()).collect(Collectors.toList());
+
+		assertEquals(requests.size(), results.size());
+		int found = 0;
+		for (int i = 0; i < requests.size(); i++) {
+			RouteRequest request = requests.get(i);
+			RouteResult result = results.get(i);
+			List<GeographicPoint> expected = graph.dijkstra(request.getStart(), request.getGoal());
+
+			assertSame(request.getStart(), result.getStart());
+			assertSame(request.getGoal(), result.getGoal());
+			assertEquals(expected, result.getPath());
+			if (expected != null) {
+				found++;
+				assertEquals(pathLength(expected), result.getWeight(), 1e-9);
+			} else {
+				assertFalse(result.isFound());
+				assertEquals(Double.POSITIVE_INFINITY, result.getWeight(), 0);
+			}
+		}
+
+		RouteBatchExecutor.Metrics metrics = executor.getMetrics();
+		assertEquals(requests.size(), metrics.getCompleted());
+		assertEquals(found, metrics.getFound());
+		assertTrue(metrics.getElapsedNanos() > 0);
+		assertTrue(metrics.getRoutesPerSecond() > 0);
+	}
+
+	@Test
+	public void executorKeepsRoutingOnItsSnapshot() {
+		RouteBatchExecutor executor = new RouteBatchExecutor(graph);
+		RouteRequest request = requests.get(0);
+		RouteResult before = executor.route(request);
+
+		graph.addVertex(new GeographicPoint(0, 0));
+		RouteResult after = executor.route(request);
+
+		assertEquals(before.getPath(), after.getPath());
+		assertNotSame(graph.freeze(), executor.getGraph());
+		assertEquals(2, executor.getMetrics().getCompleted());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void resultsAreImmutable() {
+		RouteResult result = new RouteBatchExecutor(graph).route(requests.get(0));
+
+		result.getPath().clear();
+	}
+
+	private double pathLength(List<GeographicPoint> path) {
+		double length = 0;
+		for (int i = 0; i < path.size() - 1; i++) {
+			length += graph.getEdgeLength(path.get(i), path.get(i + 1));
+		}
+		return length;
+	}
+}
@@ -0,0 +1,143 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class RouteCacheTest {
+
+	private MapGraph graph;
+	private GeographicPoint start;
+	private GeographicPoint goal;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/graders/mod3/ucsd.map", graph);
+		start = new GeographicPoint(32.8709815, -117.2434254);
+		goal = new GeographicPoint(32.8742087, -117.2381344);
+	}
+
+	@Test
+	public void repeatedRoutesAreServedFromTheCache() {
+		RouteCache cache = new RouteCache(graph, 10, 1000);
+
+		RouteResult first = cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		RouteResult second = cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		RouteResult other = cache.route(start, goal, SearchAlgorithm.BFS);
+
+		assertSame(first, second);
+		assertNotSame(first, other);
+		assertEquals(graph.dijkstra(start, goal), first.getPath());
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+		assertEquals(first.getPath().size() + other.getPath().size(), cache.getWeight());
+	}
+
+	@Test
+	public void hitsReplayTheVerticesSearched() {
+		RouteCache cache = new RouteCache(graph, 10, 1000);
+		List<GeographicPoint> expected = new ArrayList<>();
+		graph.aStarSearch(start, goal, expected::add);
+
+		List<GeographicPoint> first = new ArrayList<>();
+		List<GeographicPoint> second = new ArrayList<>();
+		RouteResult computed = cache.route(start, goal, SearchAlgorithm.A_STAR, first::add);
+		RouteResult replayed = cache.route(start, goal, SearchAlgorithm.A_STAR, second::add);
+
+		assertSame(computed, replayed);
+		assertEquals(expected, first);
+		assertEquals(expected, second);
+		assertEquals(1, cache.getHits());
+		assertEquals(computed.getPath().size() + expected.size(), cache.getWeight());
+	}
+
+	@Test
+	public void routesCachedWithoutTheirSearchAreSearchedAgainForAHook() {
+		RouteCache cache = new RouteCache(graph, 10, 1000);
+		List<GeographicPoint> searched = new ArrayList<>();
+
+		RouteResult plain = cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		RouteResult visualized = cache.route(start, goal, SearchAlgorithm.DIJKSTRA, searched::add);
+
+		assertEquals(plain.getPath(), visualized.getPath());
+		assertFalse(searched.isEmpty());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.size());
+		assertSame(visualized, cache.route(start, goal, SearchAlgorithm.DIJKSTRA));
+	}
+
+	@Test
+	public void cacheEvictsTheLeastRecentlyUsedRoute() {
+		RouteCache cache = new RouteCache(graph, 2, 1000);
+
+		RouteResult dijkstra = cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		cache.route(start, goal, SearchAlgorithm.BFS);
+		cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		cache.route(start, goal, SearchAlgorithm.A_STAR);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertSame(dijkstra, cache.route(start, goal, SearchAlgorithm.DIJKSTRA));
+		assertEquals(3, cache.getMisses());
+
+		cache.route(start, goal, SearchAlgorithm.BFS);
+		assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	public void cacheEvictsRoutesOverItsWeight() {
+		int pathSize = graph.dijkstra(start, goal).size();
+		RouteCache cache = new RouteCache(graph, 10, pathSize + 1);
+
+		cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		cache.route(start, goal, SearchAlgorithm.A_STAR);
+
+		assertEquals(1, cache.size());
+		assertTrue(cache.getWeight() <= pathSize + 1);
+	}
+
+	@Test
+	public void addEdgeInvalidatesTheCache() {
+		RouteCache cache = new RouteCache(graph, 10, 1000);
+		RouteResult before = cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+
+		graph.addEdge(start, goal, "shortcut", "residential", 0.1);
+		RouteResult after = cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+
+		assertNotSame(before, after);
+		assertEquals(2, after.getPath().size());
+		assertEquals(1, cache.getInvalidations());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void addVertexInvalidatesTheCache() {
+		RouteCache cache = new RouteCache(graph, 10, 1000);
+		GeographicPoint added = new GeographicPoint(32.9, -117.3);
+
+		assertFalse(cache.route(start, added, SearchAlgorithm.DIJKSTRA).isFound());
+		cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+		graph.addVertex(added);
+		cache.route(start, goal, SearchAlgorithm.DIJKSTRA);
+
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getInvalidations());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void cachedRoutesAreImmutable() {
+		List<GeographicPoint> path = new RouteCache(graph, 10, 1000).route(start, goal, SearchAlgorithm.A_STAR)
+				.getPath();
+
+		path.add(start);
+	}
+}
@@ -0,0 +1,62 @@
+package roadgraph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SearchWorkspaceTest {
+
+	@Test
+	public void newWorkspaceHasNothingReached() {
+		SearchWorkspace workspace = SearchWorkspace.acquire(5);
+
+		for (int v = 0; v < 5; v++) {
+			assertFalse(workspace.isReached(v));
+			assertEquals(Double.POSITIVE_INFINITY, workspace.distance(v), 0);
+		}
+		assertTrue(workspace.heap.isEmpty());
+		workspace.release();
+	}
+
+	@Test
+	public void resetForgetsTheReachedVertices() {
+		SearchWorkspace workspace = SearchWorkspace.acquire(5);
+		workspace.update(0, 0, SearchWorkspace.NO_PARENT, SearchWorkspace.NO_PARENT);
+		workspace.update(2, 4.0, 0, 7);
+		assertTrue(workspace.relax(2, 3.0, 0, 8));
+		assertFalse(workspace.relax(2, 3.5, 1, 9));
+
+		assertEquals(3.0, workspace.distance(2), 0);
+		assertEquals(0, workspace.parent(2));
+		assertEquals(8, workspace.parentEdge(2));
+		assertArrayEquals(new int[] { 0, 2 }, workspace.buildPath(2));
+
+		workspace.reset();
+
+		assertFalse(workspace.isReached(0));
+		assertFalse(workspace.isReached(2));
+		assertTrue(workspace.heap.isEmpty());
+		workspace.release();
+	}
+
+	@Test
+	public void acquireReusesReleasedWorkspaces() {
+		SearchWorkspace first = SearchWorkspace.acquire(5);
+		SearchWorkspace second = SearchWorkspace.acquire(5);
+		assertNotSame(first, second);
+
+		first.update(1, 2.0, SearchWorkspace.NO_PARENT, SearchWorkspace.NO_PARENT);
+		first.release();
+		second.release();
+
+		SearchWorkspace reused = SearchWorkspace.acquire(3);
+		SearchWorkspace other = SearchWorkspace.acquire(3);
+		assertTrue((reused == first && other == second) || (reused == second && other == first));
+		assertFalse(first.isReached(1));
+		assertTrue(first.heap.isEmpty());
+		reused.release();
+		other.release();
+
+		assertTrue(SearchWorkspace.acquire(10).capacity() >= 10);
+	}
+}
@@ -0,0 +1,132 @@
+package roadgraph;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class TimeDependentRoutingTest {
+
+	private TravelTimeWeighting travelTime;
+
+	@Before
+	public void setUp() throws Exception {
+		travelTime = new TravelTimeWeighting(SpeedProfile.car());
+	}
+
+	@Test
+	public void profileInterpolatesAcrossMidnight() {
+		TravelTimeProfile profile = new TravelTimeProfile(new double[] { 6, 8, 20 }, new double[] { 1, 2, 1 });
+
+		assertEquals(1.5, profile.travelTime(7), 1e-12);
+		assertEquals(1.5, profile.travelTime(14), 1e-12);
+		assertEquals(1, profile.travelTime(22), 1e-12);
+		assertEquals(1, profile.travelTime(2), 1e-12);
+		// Every day is the same
+		assertEquals(profile.travelTime(7), profile.travelTime(31), 1e-12);
+		assertEquals(profile.travelTime(7), profile.travelTime(-17), 1e-12);
+		assertEquals(0.25, TravelTimeProfile.constant(0.25).travelTime(13), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void profileRejectsOvertaking() {
+		// Leaving at 8:30 would arrive before leaving at 8:00
+		new TravelTimeProfile(new double[] { 8, 8.5 }, new double[] { 2, 1 });
+	}
+
+	@Test
+	public void rushHourTakesTheDetour() {
+		MapGraph graph = new MapGraph();
+		GeographicPoint start = new GeographicPoint(0, 0);
+		GeographicPoint ramp = new GeographicPoint(0.005, 0.005);
+		GeographicPoint goal = new GeographicPoint(0, 0.01);
+		graph.addVertex(start);
+		graph.addVertex(ramp);
+		graph.addVertex(goal);
+		graph.addEdge(start, goal, "main", "residential", 1);
+		graph.addEdge(start, ramp, "side", "residential", 1);
+		graph.addEdge(ramp, goal, "side", "residential", 1);
+
+		TravelTimeProfile rushHour = new TravelTimeProfile(new double[] { 6, 8, 10 },
+				new double[] { 0.05, 0.5, 0.05 });
+		graph.setTravelTimeProfile(start, goal, rushHour);
+		assertThat(graph.getTravelTimeProfile(start, goal), is(rushHour));
+		assertNull(graph.getTravelTimeProfile(start, ramp));
+
+		assertThat(graph.timeDependentDijkstra(start, goal, 3, travelTime), is(Arrays.asList(start, goal)));
+		assertThat(graph.timeDependentAStarSearch(start, goal, 8, travelTime), is(Arrays.asList(start, ramp, goal)));
+		assertEquals(3.05, graph.earliestArrival(start, goal, 3, travelTime), 1e-12);
+		assertEquals(8 + 2 / 30.0, graph.earliestArrival(start, goal, 8, travelTime), 1e-12);
+
+		graph.setTravelTimeProfile(start, goal, null);
+		assertNull(graph.getTravelTimeProfile(start, goal));
+		assertEquals(8 + 1 / 30.0, graph.earliestArrival(start, goal, 8, travelTime), 1e-12);
+	}
+
+	@Test
+	public void aStarMatchesDijkstraOnProfiledMap() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+
+		// Slow every road down at rush hour, in whole minutes of off-peak
+		// travel time, so that roads of similar length share a profile
+		for (GeographicPoint from : vertices) {
+			for (GeographicPoint to : graph.getOutNeighborsFromVertex(from)) {
+				double length = graph.getEdgeLength(from, to);
+				double minutes = Math.max(1,
+						Math.ceil(60 * length / SpeedProfile.car().getSpeed(graph.getEdgeRoadType(from, to))));
+				graph.setTravelTimeProfile(from, to, new TravelTimeProfile(new double[] { 6, 8, 10, 16, 18, 20 },
+						new double[] { 1, 3, 1, 1, 2.5, 1 }).scaled(minutes / 60));
+			}
+		}
+		CompactGraph compact = graph.freeze();
+		assertTrue(compact.getNumTravelTimeProfiles() < graph.getNumEdges() / 10);
+
+		Random random = new Random(43);
+		double[] weights = compact.weights(travelTime);
+		int[] explored = new int[2];
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+			double departure = 24 * random.nextDouble();
+
+			List<GeographicPoint> dijkstra = graph.timeDependentDijkstra(start, goal, departure, travelTime,
+					(x) -> explored[0]++);
+			List<GeographicPoint> aStar = graph.timeDependentAStarSearch(start, goal, departure, travelTime,
+					(x) -> explored[1]++);
+			double arrival = graph.earliestArrival(start, goal, departure, travelTime);
+
+			if (dijkstra == null) {
+				assertNull(aStar);
+				assertEquals(Double.POSITIVE_INFINITY, arrival, 0);
+				continue;
+			}
+			assertEquals(arrival, arrivalTime(compact, weights, dijkstra, departure), 1e-9);
+			assertEquals(arrival, arrivalTime(compact, weights, aStar, departure), 1e-9);
+			// No later than driving the fastest off-peak path
+			List<GeographicPoint> offPeak = graph.dijkstra(start, goal, travelTime);
+			assertTrue(arrival <= arrivalTime(compact, weights, offPeak, departure) + 1e-9);
+		}
+
+		assertTrue(explored[1] < explored[0]);
+	}
+
+	private static double arrivalTime(CompactGraph graph, double[] weights, List<GeographicPoint> path,
+			double departure) {
+		int[] ids = new int[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = graph.indexOf(path.get(i));
+		}
+		return graph.arrivalTime(ids, departure, weights);
+	}
+}
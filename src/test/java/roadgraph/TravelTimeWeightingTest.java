@@ -0,0 +1,117 @@
+package roadgraph;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import util.GraphLoader;
+
+public class TravelTimeWeightingTest {
+
+	private TravelTimeWeighting travelTime;
+
+	@Before
+	public void setUp() throws Exception {
+		travelTime = new TravelTimeWeighting(SpeedProfile.car());
+	}
+
+	@Test
+	public void weightsAreLengthOverSpeed() {
+		MapGraph graph = new MapGraph();
+		GeographicPoint a = new GeographicPoint(0, 0);
+		GeographicPoint b = new GeographicPoint(0, 0.01);
+		graph.addVertex(a);
+		graph.addVertex(b);
+		graph.addEdge(a, b, "main", "motorway", 2);
+		graph.addEdge(b, a, "side", "unknown type", 3);
+
+		CompactGraph compact = graph.freeze();
+		double[] weights = compact.weights(travelTime);
+
+		assertEquals(2 / 100.0, weights[compact.findEdge(0, 1)], 1e-12);
+		assertEquals(3 / 30.0, weights[compact.findEdge(1, 0)], 1e-12);
+		// Computed once per snapshot, for equal weightings too
+		assertThat(compact.weights(new TravelTimeWeighting(SpeedProfile.car())), is(sameInstance(weights)));
+		assertThat(compact.weights(Weighting.DISTANCE), is(sameInstance(compact.edgeLengths())));
+	}
+
+	@Test
+	public void travelTimePrefersFasterRoads() {
+		MapGraph graph = new MapGraph();
+		GeographicPoint start = new GeographicPoint(0, 0);
+		GeographicPoint ramp = new GeographicPoint(0.005, 0.005);
+		GeographicPoint goal = new GeographicPoint(0, 0.01);
+		graph.addVertex(start);
+		graph.addVertex(ramp);
+		graph.addVertex(goal);
+		graph.addEdge(start, goal, "main", "residential", 1.2);
+		graph.addEdge(start, ramp, "highway", "motorway", 1);
+		graph.addEdge(ramp, goal, "highway", "motorway", 1);
+
+		List<GeographicPoint> fastest = Arrays.asList(start, ramp, goal);
+		assertThat(graph.dijkstra(start, goal), is(Arrays.asList(start, goal)));
+		assertThat(graph.dijkstra(start, goal, travelTime), is(fastest));
+		assertThat(graph.aStarSearch(start, goal, travelTime), is(fastest));
+	}
+
+	@Test
+	public void aStarMatchesDijkstraUnderTravelTime() {
+		MapGraph graph = new MapGraph();
+		GraphLoader.loadRoadMap("src/main/resources/data/maps/san_diego.map", graph);
+		CompactGraph compact = graph.freeze();
+		double[] weights = compact.weights(travelTime);
+		List<GeographicPoint> vertices = new ArrayList<>(graph.getVertices());
+		Random random = new Random(41);
+		int[] explored = new int[2];
+
+		for (int i = 0; i < 200; i++) {
+			GeographicPoint start = vertices.get(random.nextInt(vertices.size()));
+			GeographicPoint goal = vertices.get(random.nextInt(vertices.size()));
+
+			List<GeographicPoint> dijkstra = graph.dijkstra(start, goal, travelTime, (x) -> explored[0]++);
+			List<GeographicPoint> aStar = graph.aStarSearch(start, goal, travelTime, (x) -> explored[1]++);
+			List<GeographicPoint> shortest = graph.dijkstra(start, goal);
+
+			if (dijkstra == null) {
+				assertNull(aStar);
+				continue;
+			}
+			double time = travelTime(compact, weights, dijkstra);
+			assertEquals(time, travelTime(compact, weights, aStar), 1e-9);
+			assertTrue(time <= travelTime(compact, weights, shortest) + 1e-9);
+		}
+
+		assertTrue(explored[1] < explored[0]);
+	}
+
+	@Test
+	public void speedProfileFallsBackToTheDefaultSpeed() {
+		SpeedProfile profile = new SpeedProfile(Collections.singletonMap("motorway", 120.0), 40);
+
+		assertEquals(120, profile.getSpeed("motorway"), 0);
+		assertEquals(40, profile.getSpeed("city street"), 0);
+		assertEquals(120, profile.getMaxSpeed(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void speedProfileRejectsStoppedRoads() {
+		new SpeedProfile(Collections.singletonMap("motorway", 0.0), 40);
+	}
+
+	private static double travelTime(CompactGraph graph, double[] weights, List<GeographicPoint> path) {
+		int[] ids = new int[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = graph.indexOf(path.get(i));
+		}
+		return graph.pathWeight(ids, weights);
+	}
+}
@@ -0,0 +1,51 @@
+package util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import geography.GeographicPoint;
+import geography.RoadSegment;
+import roadgraph.MapGraph;
+
+public class GraphLoaderTest {
+
+	@Test
+	public void parallelLoadMatchesSequentialLoad() {
+		for (String file : new String[] { "san_diego.map", "hollywood_large.map", "ucsd.map" }) {
+			String path = "src/main/resources/data/maps/" + file;
+			MapGraph expected = new MapGraph();
+			HashMap<GeographicPoint, HashSet<RoadSegment>> expectedSegments = new HashMap<>();
+			Set<GeographicPoint> expectedIntersections = new HashSet<>();
+			GraphLoader.loadRoadMap(path, expected, expectedSegments, expectedIntersections);
+
+			// Chunks of a few kilobytes, so that even small maps are split
+			// into many chunks with points shared between them
+			for (long chunkBytes : new long[] { 4096, 1 << 20 }) {
+				MapGraph graph = new MapGraph();
+				HashMap<GeographicPoint, HashSet<RoadSegment>> segments = new HashMap<>();
+				Set<GeographicPoint> intersections = new HashSet<>();
+				GraphLoader.loadRoadMapParallel(path, graph, segments, intersections, chunkBytes);
+
+				assertEquals(new ArrayList<>(expected.getVertices()), new ArrayList<>(graph.getVertices()));
+				assertEquals(expected.getNumEdges(), graph.getNumEdges());
+				for (GeographicPoint vertex : expected.getVertices()) {
+					List<GeographicPoint> neighbors = expected.getOutNeighborsFromVertex(vertex);
+					assertEquals(neighbors, graph.getOutNeighborsFromVertex(vertex));
+					for (GeographicPoint neighbor : neighbors) {
+						assertEquals(expected.getEdgeLength(vertex, neighbor), graph.getEdgeLength(vertex, neighbor), 0);
+						assertEquals(expected.getEdgeRoadName(vertex, neighbor), graph.getEdgeRoadName(vertex, neighbor));
+					}
+				}
+				assertEquals(expectedSegments, segments);
+				assertEquals(expectedIntersections, intersections);
+			}
+		}
+	}
+}
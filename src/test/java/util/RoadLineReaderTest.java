@@ -0,0 +1,81 @@
+package util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RoadLineReaderTest {
+
+	@Test
+	public void readsQuotedNamesAndEveryLineTerminator() throws IOException {
+		RoadLineReader reader = new RoadLineReader(new StringReader(
+				"34.1 -118.3 34.2 -118.4 \"North Saint Andrew's Place\" residential\r\n"
+						+ "\n"
+						+ "1 2 3 4 O'Neil\tprimary extra\r"
+						+ "-0.5 .5 5. +7 \"\" \"living street\""));
+
+		assertTrue(reader.advance());
+		assertEquals(34.1, reader.getLatitude1(), 0);
+		assertEquals(-118.3, reader.getLongitude1(), 0);
+		assertEquals(34.2, reader.getLatitude2(), 0);
+		assertEquals(-118.4, reader.getLongitude2(), 0);
+		assertEquals("North Saint Andrew's Place", reader.getRoadName());
+		assertEquals("residential", reader.getRoadType());
+
+		// A single quote outside double quotes separates tokens, as the
+		// regular expression GraphLoader used did
+		assertTrue(reader.advance());
+		assertEquals("O", reader.getRoadName());
+		assertEquals("Neil", reader.getRoadType());
+
+		assertTrue(reader.advance());
+		assertEquals(-0.5, reader.getLatitude1(), 0);
+		assertEquals(0.5, reader.getLongitude1(), 0);
+		assertEquals(5, reader.getLatitude2(), 0);
+		assertEquals(7, reader.getLongitude2(), 0);
+		assertEquals("", reader.getRoadName());
+		assertEquals("living street", reader.getRoadType());
+
+		assertFalse(reader.advance());
+		reader.close();
+	}
+
+	@Test
+	public void parsesCoordinatesExactly() throws IOException {
+		Random random = new Random(67);
+		StringBuilder text = new StringBuilder();
+		String[] numbers = new String[16000];
+		for (int i = 0; i < numbers.length; i++) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(6));
+			// Now and then an exponent, which takes the slow path
+			numbers[i] = i % 100 == 0 ? Double.toString(value * 1e-9)
+					: String.format(Locale.ROOT, "%." + random.nextInt(12) + "f", value);
+		}
+		for (int i = 0; i < numbers.length; i += 4) {
+			text.append(numbers[i]).append(' ').append(numbers[i + 1]).append(' ').append(numbers[i + 2]).append(' ')
+					.append(numbers[i + 3]).append(" \"Road ").append(i % 7).append("\" residential\n");
+		}
+
+		RoadLineReader reader = new RoadLineReader(new StringReader(text.toString()));
+		for (int i = 0; i < numbers.length; i += 4) {
+			assertTrue(reader.advance());
+			assertEquals(Double.parseDouble(numbers[i]), reader.getLatitude1(), 0);
+			assertEquals(Double.parseDouble(numbers[i + 1]), reader.getLongitude1(), 0);
+			assertEquals(Double.parseDouble(numbers[i + 2]), reader.getLatitude2(), 0);
+			assertEquals(Double.parseDouble(numbers[i + 3]), reader.getLongitude2(), 0);
+			assertEquals("Road " + i % 7, reader.getRoadName());
+		}
+		assertFalse(reader.advance());
+		reader.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsShortLines() throws IOException {
+		new RoadLineReader(new StringReader("34.1 -118.3 34.2 \"Fern Dell Drive\" residential\n")).advance();
+	}
+}
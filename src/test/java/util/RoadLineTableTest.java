@@ -0,0 +1,53 @@
+package util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class RoadLineTableTest {
+
+	// A two way street from point 0 through 1 and 2 to 3, a one way street
+	// from 2 to 4 and a two way street from 3 to 5 under another name
+	private static final String MAP = "0 0 0 1 \"Main\" residential\n" + "0 1 0 0 \"Main\" residential\n"
+			+ "0 1 0 2 \"Main\" residential\n" + "0 2 0 1 \"Main\" residential\n" + "0 2 0 3 \"Main\" residential\n"
+			+ "0 3 0 2 \"Main\" residential\n" + "0 2 1 2 \"Side\" residential\n" + "0 3 1 3 \"Cross\" residential\n"
+			+ "1 3 0 3 \"Cross\" residential\n";
+
+	@Test
+	public void collapsesRoadsToIntersections() throws IOException {
+		RoadLineTable lines = RoadLineTable.read(new RoadLineReader(new StringReader(MAP)));
+		assertEquals(6, lines.getNumPoints());
+		assertEquals(9, lines.getNumLines());
+
+		// Points get ids in the order they first appear
+		boolean[] intersections = lines.findIntersections();
+		assertArrayEquals(new boolean[] { true, false, true, true, true, true }, intersections);
+
+		// Main Street passes through point 1 to point 2
+		assertEquals(1, lines.getOutEnd(0) - lines.getOutStart(0));
+		assertArrayEquals(new int[] { 1, 2 }, lines.traceEdge(lines.getOutLine(lines.getOutStart(0)), intersections));
+		assertEquals("Main", lines.getRoadName(lines.getOutLine(lines.getOutStart(0))));
+		assertEquals(0, lines.getPoint(2).getX(), 0);
+		assertEquals(2, lines.getPoint(2).getY(), 0);
+	}
+
+	@Test
+	public void addingChunksInOrderMatchesReadingWhole() throws IOException {
+		RoadLineTable whole = RoadLineTable.read(new RoadLineReader(new StringReader(MAP)));
+		int cut = MAP.indexOf("0 2 0 3");
+		RoadLineTable chunks = new RoadLineTable();
+		chunks.addAll(RoadLineTable.read(new RoadLineReader(new StringReader(MAP.substring(0, cut)))));
+		chunks.addAll(RoadLineTable.read(new RoadLineReader(new StringReader(MAP.substring(cut)))));
+
+		assertEquals(whole.getNumPoints(), chunks.getNumPoints());
+		assertEquals(whole.getNumLines(), chunks.getNumLines());
+		for (int p = 0; p < whole.getNumPoints(); p++) {
+			assertEquals(whole.getPoint(p), chunks.getPoint(p));
+			assertEquals(whole.getOutEnd(p) - whole.getOutStart(p), chunks.getOutEnd(p) - chunks.getOutStart(p));
+		}
+		assertArrayEquals(whole.findIntersections(), chunks.findIntersections());
+	}
+}